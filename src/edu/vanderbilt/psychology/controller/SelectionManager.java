@@ -3,8 +3,12 @@
  */
 package edu.vanderbilt.psychology.controller;
 
+import java.awt.Container;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import edu.vanderbilt.psychology.gui.sideBar.PreviewPanel;
 import edu.vanderbilt.psychology.gui.sideBar.SectionedPanel;
@@ -17,6 +21,10 @@ import edu.vanderbilt.psychology.gui.slideElements.SlideElement;
  * {@link SlideElement}, and notifies the {@link SectionedPanel} when a
  * different element is clicked
  * 
+ * More than one element can be selected at once by dragging a rubber-band
+ * rectangle on the stage, see {@link #setSelection(List)}. Only a single
+ * selected element has its properties shown
+ * 
  * @author Hamilton Turner
  * 
  */
@@ -28,6 +36,7 @@ public class SelectionManager implements MouseListener {
 	// We need two b/c they can have different elements in focus
 	private SlideElement currentPreviewSelection_;
 	private SlideElement currentRealSelection_; 
+	private List<SlideElement> selection_ = new ArrayList<SlideElement>();
 
 	private SelectionManager() {
 	}
@@ -51,6 +60,8 @@ public class SelectionManager implements MouseListener {
 
 	/** Call when you need to make sure nothing is selected */
 	public void clearSelection() {
+		repaintOutlines(selection_);
+		selection_.clear();
 		previewPanel_.updatePreview(null);
 		propertyPanel_.updatePropertiesList(null);
 	}
@@ -83,15 +94,58 @@ public class SelectionManager implements MouseListener {
 		return currentRealSelection_;
 	}
 
+	/**
+	 * @return every selected element, which is empty if nothing is selected
+	 */
+	public List<SlideElement> getSelection() {
+		return Collections.unmodifiableList(selection_);
+	}
+
+	/**
+	 * Selects a group of elements at once. If there is only one, its
+	 * properties are shown as if it had been clicked
+	 */
+	public void setSelection(List<SlideElement> elements) {
+		repaintOutlines(selection_);
+		selection_ = new ArrayList<SlideElement>(elements);
+		repaintOutlines(selection_);
+
+		if (selection_.size() == 1) {
+			currentRealSelection_ = selection_.get(0);
+			propertyPanel_.updatePropertiesList(currentRealSelection_);
+		} else {
+			currentRealSelection_ = null;
+			propertyPanel_.updatePropertiesList(null);
+		}
+	}
+
 	public void mouseClicked(MouseEvent e) {
 		SlideElement se = (SlideElement) e.getSource();
 
 		if ((currentRealSelection_ != null)
-				&& (currentRealSelection_.equals(se)))
+				&& (currentRealSelection_.equals(se))
+				&& (selection_.size() == 1))
 			return;
 
+		repaintOutlines(selection_);
+		selection_ = new ArrayList<SlideElement>();
+		selection_.add(se);
 		currentRealSelection_ = se;
 		propertyPanel_.updatePropertiesList(se);
 	}
 
+	/**
+	 * Repaints the area around each element, where the stage outlines a
+	 * multiple selection, so that outlines appear and disappear as soon as
+	 * the selection changes
+	 */
+	private static void repaintOutlines(List<SlideElement> elements) {
+		for (SlideElement se : elements) {
+			Container parent = se.getParent();
+			if (parent != null)
+				parent.repaint(se.getX() - 1, se.getY() - 1,
+						se.getWidth() + 2, se.getHeight() + 2);
+		}
+	}
+
 }
@@ -30,18 +30,24 @@
  */
 package edu.vanderbilt.psychology.controller.toolbarActions;
 
+import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
+import java.awt.image.BufferedImage;
 import java.io.File;
 
 import javax.swing.AbstractAction;
 import javax.swing.JFileChooser;
 import javax.swing.JLayeredPane;
+import javax.swing.JOptionPane;
 import javax.swing.filechooser.FileFilter;
 
-import sun.awt.image.ImageFormatException;
+import edu.vanderbilt.psychology.controller.SelectionManager;
 import edu.vanderbilt.psychology.controller.toolbarActions.util.Utils;
 import edu.vanderbilt.psychology.gui.main.StageWrapper;
 import edu.vanderbilt.psychology.gui.slideElements.ImageElement;
+import edu.vanderbilt.psychology.model.media.ImageImporter;
+import edu.vanderbilt.psychology.model.media.ResolvedAsset;
 
 /**
  * @author Hamilton Turner
@@ -80,31 +86,51 @@ public class AddImageAction extends AbstractAction {
 		}
 	}
 
-	private void approve(File file) {
-		ImageElement ie;
-		try {
-			ie = new ImageElement(file);
-		} catch (ImageFormatException e) {
-			error(e);
-			return;
-		}
-
-		stage_.add(ie, JLayeredPane.PALETTE_LAYER); // TODO -
-		// decide
-		// which layer
-		// we would like
-		// to be adding stuff on here
-
+	/**
+	 * Imports the image on a background thread. A placeholder of the right
+	 * size is added to the stage as soon as the header has been read, and the
+	 * image is shown once a preview has been decoded
+	 */
+	private void approve(final File file) {
+		ImageImporter.importImage(file, stage_.getSize(),
+				new ImageImporter.Listener() {
+					private ImageElement element_;
+
+					public void headerRead(ResolvedAsset header, Dimension size) {
+						element_ = new ImageElement(file, size);
+
+						// TODO - decide which layer we would like to be
+						// adding stuff on here
+						stage_.add(element_, JLayeredPane.PALETTE_LAYER);
+						stage_.repaint(element_.getBounds());
+					}
+
+					public void previewDecoded(BufferedImage preview,
+							boolean subsampled) {
+						if (element_ != null)
+							element_.setPreview(preview, subsampled);
+					}
+
+					public void failed(String message) {
+						if (element_ != null) {
+							Rectangle bounds = element_.getBounds();
+							SelectionManager.getInstance().remove(element_);
+							stage_.remove(element_);
+							stage_.repaint(bounds);
+						}
+
+						error(message);
+					}
+				});
 	}
 
-	private void error(ImageFormatException e) {
-		if (e == null) {
-			// TODO Report Unknown error
+	private void error(String message) {
+		if (message == null)
+			message = "Unknown error";
 
-		} else {
-			// TODO report e.getMessage()
-			e.printStackTrace();
-		}
+		System.out.println("Unable to add image: " + message);
+		JOptionPane.showMessageDialog(stage_, "Unable to add the image:\n"
+				+ message, "Add Image", JOptionPane.ERROR_MESSAGE);
 	}
 
 	private class ImageFilter extends FileFilter {
@@ -0,0 +1,27 @@
+package edu.vanderbilt.psychology.controller.toolbarActions;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.AbstractAction;
+
+import edu.vanderbilt.psychology.gui.dialogs.DialogManager;
+import edu.vanderbilt.psychology.gui.dialogs.FindDialog;
+
+/**
+ * Shows the {@link FindDialog}
+ * 
+ * @author hamiltont
+ * 
+ */
+@SuppressWarnings("serial")
+public class FindAction extends AbstractAction {
+
+	public FindAction() {
+		super("Find");
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e) {
+		DialogManager.showFindDialog();
+	}
+}
@@ -1,10 +1,14 @@
 package edu.vanderbilt.psychology.controller.toolbarActions;
 
 import java.awt.event.ActionEvent;
+import java.io.IOException;
 
 import javax.swing.AbstractAction;
 import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
+
 import edu.vanderbilt.psychology.gui.main.StageWrapper;
+import edu.vanderbilt.psychology.model.BuilderState;
 import edu.vanderbilt.psychology.model.Experiment;
 
 @SuppressWarnings("serial")
@@ -20,17 +24,33 @@ public class OpenExperimentAction extends AbstractAction {
 
 	/**
 	 * Opens a {@link JFileChooser} so that the user can select an
-	 * {@link Experiment} to load.
+	 * {@link Experiment} to load, and then opens it in the builder (see
+	 * {@link BuilderState#openExperiment(java.io.File)})
 	 */
 	public void actionPerformed(ActionEvent e) {
 
 		JFileChooser open = new JFileChooser();
 		open.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
 		XMLFilter filter = new XMLFilter();
-	    open.setFileFilter(filter);
-	    int returnVal = open.showOpenDialog(stage_); {
-	    if (returnVal == JFileChooser.APPROVE_OPTION) {
-	       Experiment.loadExperiment(open.getSelectedFile());}
-	    }
+		open.setFileFilter(filter);
+		int returnVal = open.showOpenDialog(stage_);
+		if (returnVal != JFileChooser.APPROVE_OPTION)
+			return;
+
+		try {
+			BuilderState.getInstance().openExperiment(open.getSelectedFile());
+		} catch (IOException ex) {
+			ex.printStackTrace();
+			JOptionPane.showMessageDialog(stage_, "Unable to open "
+					+ open.getSelectedFile().getName(), "Open",
+					JOptionPane.ERROR_MESSAGE);
+		} catch (RuntimeException ex) {
+			// XStream reports a file it cannot read with unchecked exceptions
+			ex.printStackTrace();
+			JOptionPane.showMessageDialog(stage_, open.getSelectedFile()
+					.getName()
+					+ " is not an experiment", "Open",
+					JOptionPane.ERROR_MESSAGE);
+		}
 	}
 }
@@ -5,9 +5,11 @@ import java.io.File;
 
 import javax.swing.AbstractAction;
 import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
 
 import edu.vanderbilt.psychology.gui.main.StageWrapper;
 import edu.vanderbilt.psychology.model.BuilderState;
+import edu.vanderbilt.psychology.model.Experiment;
 import edu.vanderbilt.psychology.model.Slide;
 
 @SuppressWarnings("serial")
@@ -25,10 +27,26 @@ public class SaveExperimentAction extends AbstractAction {
 	 * Ensures the current {@link StageWrapper} state is saved into a
 	 * {@link Slide}, and that that {@link Slide} is saved into the
 	 * {@link BuilderState}, and then tells the {@link BuilderState} to save to
-	 * disk
+	 * disk. Saving while an {@link Experiment} is still being opened would
+	 * leave out the {@link Slide}s not read yet, so the user is asked to wait,
+	 * and an {@link Experiment} that could only be partly read is never saved
 	 */
 	public void actionPerformed(ActionEvent e) {
 
+		if (BuilderState.getInstance().isLoading()) {
+			JOptionPane.showMessageDialog(stage_,
+					"The experiment is still being opened, please try again in a moment");
+			return;
+		}
+
+		String loadError = BuilderState.getInstance().getLoadError();
+		if (loadError != null) {
+			JOptionPane.showMessageDialog(stage_,
+					"Only part of this experiment could be read, so it cannot be saved.\n"
+							+ loadError, "Save", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+
 		BuilderState.getInstance().saveCurrentSlide();
 		JFileChooser save = new JFileChooser();
 
@@ -75,16 +75,16 @@ public class SwitchSlideAction extends AbstractAction {
 		switch (direction_) {
 
 		case (SWITCH_NEXT_SLIDE):
-			Slide next = BuilderState.getInstance().getNextSlide();
+			// Also puts the next slide onto the stage
+			BuilderState.getInstance().getNextSlide();
 
 			SelectionManager.getInstance().clearSelection();
 			stage_.repaint();
-
-			BuilderState.writeSlideToStageWrapper(next, stage_);
 			break;
 
 		case (SWITCH_PREV_SLIDE):
-			Slide prev = BuilderState.getInstance().getPreviousSlide();
+			// Also puts the previous slide onto the stage
+			BuilderState.getInstance().getPreviousSlide();
 
 			// TODO put this into the SSAction
 			// SelectionManager.getInstance().clearSelection();
@@ -92,8 +92,6 @@ public class SwitchSlideAction extends AbstractAction {
 
 			SelectionManager.getInstance().clearSelection();
 			stage_.repaint();
-
-			BuilderState.writeSlideToStageWrapper(prev, stage_);
 			break;
 
 		default:
@@ -0,0 +1,56 @@
+package edu.vanderbilt.psychology.controller.toolbarActions;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.AbstractAction;
+
+import edu.vanderbilt.psychology.gui.main.StageWrapper;
+import edu.vanderbilt.psychology.model.BuilderState;
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.UndoHistory;
+
+/**
+ * An action that undoes or redoes the last change to the {@link Experiment}.
+ * The current {@link Slide} is saved first, so anything done on the stage since
+ * the last save is the first thing undone. See {@link UndoHistory}
+ * 
+ * @author hamiltont
+ * 
+ */
+public class UndoAction extends AbstractAction {
+
+	public static final int UNDO = 0;
+	public static final int REDO = 1;
+
+	private StageWrapper stage_;
+	private int direction_;
+
+	/**
+	 * @param direction
+	 *            Either {@link UndoAction#UNDO} or {@link UndoAction#REDO}
+	 */
+	public UndoAction(StageWrapper stage, int direction) {
+		super(direction == UNDO ? "Undo" : "Redo");
+
+		if ((direction != UNDO) && (direction != REDO))
+			throw new IllegalArgumentException(
+					"Invalid direction argument. Must be one of the two "
+							+ "directions defined in the UndoAction class");
+
+		stage_ = stage;
+		direction_ = direction;
+	}
+
+	public void actionPerformed(ActionEvent e) {
+		if (direction_ == UNDO)
+			BuilderState.getInstance().undo();
+		else
+			BuilderState.getInstance().redo();
+
+		stage_.repaint();
+	}
+
+	/** Provide a Universal ID for serialization */
+	private static final long serialVersionUID = -2206184387306325931L;
+}
@@ -42,8 +42,13 @@ class FontBuilder {
 		return style;
 	}
 
+	/**
+	 * @return the {@link Font} described by the current settings, shared
+	 *         through the {@link FontCatalogue}
+	 */
 	public static Font createFont() {
-		return new Font(family, generateStyle(), size);
+		return FontCatalogue.getInstance().getFont(family, generateStyle(),
+				size);
 	}
 
 	@Override
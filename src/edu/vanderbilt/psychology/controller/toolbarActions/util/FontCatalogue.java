@@ -0,0 +1,216 @@
+package edu.vanderbilt.psychology.controller.toolbarActions.util;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Knows which font families are installed, and keeps the {@link Font}s and
+ * {@link FontMetrics} that have been asked for so they are only created once.
+ *
+ * <p>
+ * Asking the system for its font families can take several seconds on a
+ * machine with many fonts installed, so it is done on a background thread
+ * started by {@link #loadInBackground()} when the builder starts. The family
+ * list is written to the user's home directory, and the list from the last run
+ * is used until the background thread finishes. If the fonts have not been
+ * listed even once yet, the logical fonts that Java always has are used.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class FontCatalogue {
+
+	/** Told when the list of families changes, on the event dispatch thread */
+	public interface Listener {
+		public void familiesChanged(List<String> families);
+	}
+
+	/** The logical fonts that every Java runtime has */
+	public static final List<String> LOGICAL_FAMILIES = Collections
+			.unmodifiableList(Arrays.asList(Font.DIALOG, Font.DIALOG_INPUT,
+					Font.MONOSPACED, Font.SANS_SERIF, Font.SERIF));
+
+	private static FontCatalogue instance_;
+
+	private File familiesFile_;
+	private volatile List<String> families_;
+	private Thread loader_;
+
+	private List<Listener> listeners_ = new CopyOnWriteArrayList<Listener>();
+
+	private Map<String, Font> fonts_ = new HashMap<String, Font>();
+	private Map<Font, FontMetrics> metrics_ = new HashMap<Font, FontMetrics>();
+	private Graphics2D metricsGraphics_;
+
+	public static synchronized FontCatalogue getInstance() {
+		if (instance_ == null)
+			instance_ = new FontCatalogue(new File(System
+					.getProperty("user.home"), ".experiment-builder"
+					+ File.separator + "font-families.txt"));
+		return instance_;
+	}
+
+	/**
+	 * @param familiesFile
+	 *            where the family list is kept between runs, or null to not
+	 *            keep it
+	 */
+	public FontCatalogue(File familiesFile) {
+		familiesFile_ = familiesFile;
+
+		List<String> saved = readFamilies();
+		families_ = saved.isEmpty() ? LOGICAL_FAMILIES : saved;
+	}
+
+	/**
+	 * Starts listing the installed font families on a background thread, if
+	 * that has not been started already
+	 */
+	public synchronized void loadInBackground() {
+		if (loader_ != null)
+			return;
+
+		loader_ = new Thread(new Runnable() {
+			public void run() {
+				long start = System.nanoTime();
+				String[] names = GraphicsEnvironment
+						.getLocalGraphicsEnvironment()
+						.getAvailableFontFamilyNames();
+				setFamilies(Arrays.asList(names));
+				System.out.println("Listed " + names.length
+						+ " font families in "
+						+ (System.nanoTime() - start) / 1000000 + "ms");
+			}
+		}, "font-catalogue");
+		loader_.setDaemon(true);
+		loader_.setPriority(Thread.MIN_PRIORITY);
+		loader_.start();
+	}
+
+	/**
+	 * @return the font families, which may be from the last run if the
+	 *         background thread has not finished yet
+	 */
+	public List<String> getFamilies() {
+		return families_;
+	}
+
+	public void addListener(Listener l) {
+		listeners_.add(l);
+	}
+
+	public void removeListener(Listener l) {
+		listeners_.remove(l);
+	}
+
+	/**
+	 * @param style
+	 *            as in {@link Font#Font(String, int, int)}
+	 * @return a shared {@link Font}, created the first time it is asked for
+	 */
+	public synchronized Font getFont(String family, int style, int size) {
+		String key = family + "-" + style + "-" + size;
+		Font f = fonts_.get(key);
+		if (f == null) {
+			f = new Font(family, style, size);
+			fonts_.put(key, f);
+		}
+		return f;
+	}
+
+	/**
+	 * @return the shared {@link FontMetrics} of a {@link Font}, measured the
+	 *         first time they are asked for
+	 */
+	public synchronized FontMetrics getMetrics(Font f) {
+		FontMetrics m = metrics_.get(f);
+		if (m == null) {
+			if (metricsGraphics_ == null)
+				metricsGraphics_ = new BufferedImage(1, 1,
+						BufferedImage.TYPE_INT_ARGB).createGraphics();
+			m = metricsGraphics_.getFontMetrics(f);
+			metrics_.put(f, m);
+		}
+		return m;
+	}
+
+	void setFamilies(List<String> families) {
+		final List<String> list = Collections
+				.unmodifiableList(new ArrayList<String>(families));
+		boolean changed = list.equals(families_) == false;
+		families_ = list;
+
+		if (changed == false)
+			return;
+
+		writeFamilies(list);
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				for (Listener l : listeners_)
+					l.familiesChanged(list);
+			}
+		});
+	}
+
+	private List<String> readFamilies() {
+		List<String> families = new ArrayList<String>();
+		if (familiesFile_ == null || familiesFile_.exists() == false)
+			return families;
+
+		try {
+			BufferedReader in = new BufferedReader(
+					new FileReader(familiesFile_));
+			try {
+				String line;
+				while ((line = in.readLine()) != null)
+					if (line.length() > 0)
+						families.add(line);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			families.clear();
+		}
+
+		return Collections.unmodifiableList(families);
+	}
+
+	private void writeFamilies(List<String> families) {
+		if (familiesFile_ == null)
+			return;
+
+		try {
+			familiesFile_.getParentFile().mkdirs();
+			PrintWriter out = new PrintWriter(new FileWriter(familiesFile_));
+			try {
+				for (String family : families)
+					out.println(family);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			// The families are just listed again next time
+			e.printStackTrace();
+		}
+	}
+}
@@ -21,22 +21,27 @@ package edu.vanderbilt.psychology.controller.toolbarActions.util;
 
 import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.Font;
-import java.awt.GraphicsEnvironment;
+import java.awt.Graphics;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.util.List;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JColorChooser;
+import javax.swing.DefaultComboBoxModel;
+import javax.swing.DefaultListCellRenderer;
 import javax.swing.JComboBox;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
+import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JTextArea;
 import javax.swing.colorchooser.ColorSelectionModel;
@@ -59,8 +64,21 @@ public class FontChooser extends JDialog {
 
 	private Result result_ = Result.CANCEL;
 
-	private JComboBox fontNamesCombo_ = new JComboBox(GraphicsEnvironment
-			.getLocalGraphicsEnvironment().getAvailableFontFamilyNames());
+	/** Used to size the font name box */
+	private static final String FONT_NAME_PROTOTYPE = "Lucida Sans Typewriter";
+
+	private JComboBox fontNamesCombo_ = new JComboBox(FontCatalogue
+			.getInstance().getFamilies().toArray());
+
+	private FontCatalogue.Listener familiesListener_ = new FontCatalogue.Listener() {
+		public void familiesChanged(List<String> families) {
+			Object selected = fontNamesCombo_.getSelectedItem();
+			fontNamesCombo_.setModel(new DefaultComboBoxModel(families
+					.toArray()));
+			if (selected != null && families.contains(selected))
+				fontNamesCombo_.setSelectedItem(selected);
+		}
+	};
 
 	private static final String[] possibleFontSizes = new String[] { "8", "9",
 			"10", "12", "14", "16", "18", "20", "22", "24", "26", "28", "36",
@@ -83,6 +101,9 @@ public class FontChooser extends JDialog {
 		super((JFrame) null, "Font Chooser", true);
 		fontSizesCombo_.setEditable(true);
 
+		fontNamesCombo_.setPrototypeDisplayValue(FONT_NAME_PROTOTYPE);
+		fontNamesCombo_.setRenderer(new FontNameRenderer());
+
 		// TODO Removed the ability to hit return until the TextElement can
 		// display multi-line text
 		// TODO An error message would be nice
@@ -118,7 +139,10 @@ public class FontChooser extends JDialog {
 
 		updateFontFromDialog();
 
+		// The families may still be being listed in the background
+		FontCatalogue.getInstance().addListener(familiesListener_);
 		setVisible(true);
+		FontCatalogue.getInstance().removeListener(familiesListener_);
 	}
 
 	public String getText() {
@@ -257,6 +281,45 @@ public class FontChooser extends JDialog {
 		previewLabel_.setForeground(newColor);
 	}
 
+	/**
+	 * Shows each font name in its own font, or in the list's font if the font
+	 * cannot show its own name (such as a symbol font). The {@link Font}s come
+	 * from the {@link FontCatalogue}
+	 * 
+	 * <p>
+	 * The list measures every name with the renderer, so the name's font is
+	 * only switched to when the name is painted. Otherwise opening the list
+	 * would load every installed font
+	 * </p>
+	 */
+	private static final class FontNameRenderer extends DefaultListCellRenderer {
+		private static final long serialVersionUID = 2760935126218738014L;
+
+		private String family_;
+
+		@Override
+		public Component getListCellRendererComponent(JList list, Object value,
+				int index, boolean isSelected, boolean cellHasFocus) {
+			super.getListCellRendererComponent(list, value, index, isSelected,
+					cellHasFocus);
+
+			family_ = index >= 0 && value instanceof String ? (String) value
+					: null;
+			return this;
+		}
+
+		@Override
+		protected void paintComponent(Graphics g) {
+			if (family_ != null) {
+				Font f = FontCatalogue.getInstance().getFont(family_,
+						Font.PLAIN, getFont().getSize());
+				if (f.canDisplayUpTo(family_) == -1)
+					setFont(f);
+			}
+			super.paintComponent(g);
+		}
+	}
+
 	private final class PreviewLabelUpdateListener implements ActionListener {
 		public void actionPerformed(ActionEvent evt) {
 			updatePreviewLabel();
@@ -15,6 +15,7 @@ import javax.swing.JFileChooser;
  */
 public class DialogManager {
 	private static JDialog mActionDialog;
+	private static JDialog mFindDialog;
 
 	public static void showActionDialog() {
 		if (mActionDialog == null)
@@ -26,4 +27,15 @@ public class DialogManager {
 		mActionDialog.setVisible(true);
 		mActionDialog.requestFocus();
 	}
+
+	public static void showFindDialog() {
+		if (mFindDialog == null)
+			mFindDialog = new FindDialog();
+
+		if (mFindDialog.isShowing() && mFindDialog.isActive())
+			return;
+
+		mFindDialog.setVisible(true);
+		mFindDialog.requestFocus();
+	}
 }
@@ -0,0 +1,163 @@
+package edu.vanderbilt.psychology.gui.dialogs;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+
+import javax.swing.BorderFactory;
+import javax.swing.DefaultListModel;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+
+import edu.vanderbilt.psychology.controller.SelectionManager;
+import edu.vanderbilt.psychology.model.BuilderState;
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.ExperimentIndex;
+import edu.vanderbilt.psychology.model.ListDatabase;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.ExperimentIndex.Hit;
+
+/**
+ * Searches the {@link Experiment} for elements using some text, file, list,
+ * font or action (see {@link ExperimentIndex#find(String)}), and shows the
+ * {@link Slide} of a result when it is double clicked. Also renames lists,
+ * telling the user how many {@link Slide}s use the list first.
+ *
+ * @author hamiltont
+ *
+ */
+@SuppressWarnings("serial")
+public class FindDialog extends JDialog {
+
+	private JTextField query_;
+	private DefaultListModel results_ = new DefaultListModel();
+	private JLabel status_ = new JLabel(" ");
+
+	public FindDialog() {
+		super((JFrame) null, "Find", false);
+
+		JPanel ui = new JPanel(new BorderLayout(5, 5));
+		ui.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
+		query_ = new JTextField(25);
+		query_.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				search();
+			}
+		});
+		JButton find = new JButton("Find");
+		find.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				search();
+			}
+		});
+
+		JPanel top = new JPanel(new BorderLayout(5, 5));
+		top.add(query_, BorderLayout.CENTER);
+		top.add(find, BorderLayout.EAST);
+		ui.add(top, BorderLayout.NORTH);
+
+		final JList list = new JList(results_);
+		list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		list.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				if (e.getClickCount() == 2 && list.getSelectedValue() != null)
+					show((Hit) list.getSelectedValue());
+			}
+		});
+		JScrollPane scroll = new JScrollPane(list);
+		scroll.setPreferredSize(new Dimension(350, 250));
+		ui.add(scroll, BorderLayout.CENTER);
+
+		JButton rename = new JButton("Rename List...");
+		rename.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				renameList();
+			}
+		});
+
+		JPanel bottom = new JPanel(new BorderLayout());
+		bottom.add(status_, BorderLayout.CENTER);
+		JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		buttons.add(rename);
+		bottom.add(buttons, BorderLayout.EAST);
+		ui.add(bottom, BorderLayout.SOUTH);
+
+		setContentPane(ui);
+		pack();
+	}
+
+	private void search() {
+		BuilderState state = BuilderState.getInstance();
+		state.saveCurrentSlide();
+
+		long start = System.nanoTime();
+		List<Hit> hits = state.getExperiment().getIndex().find(
+				query_.getText());
+		long took = (System.nanoTime() - start) / 1000000;
+
+		results_.clear();
+		for (Hit h : hits)
+			results_.addElement(h);
+		status_.setText(hits.size() + " found in " + took + "ms");
+	}
+
+	private void show(Hit hit) {
+		BuilderState state = BuilderState.getInstance();
+		int position = state.getExperiment().getPositionOfSlide(
+				hit.getSlideId());
+		if (position < 0 || position == state.getCurrentSlidePosition())
+			return;
+
+		state.saveCurrentSlide();
+		SelectionManager.getInstance().clearSelection();
+		state.setCurrentSlide(position);
+	}
+
+	private void renameList() {
+		Experiment experiment = BuilderState.getInstance().getExperiment();
+		List<String> names = ListDatabase.getInstance().getNames();
+		if (names.isEmpty()) {
+			JOptionPane.showMessageDialog(this, "There are no lists yet");
+			return;
+		}
+
+		JComboBox choice = new JComboBox(names.toArray());
+		int ok = JOptionPane.showConfirmDialog(this, choice, "Rename List",
+				JOptionPane.OK_CANCEL_OPTION);
+		if (ok != JOptionPane.OK_OPTION)
+			return;
+
+		String oldName = (String) choice.getSelectedItem();
+		BuilderState.getInstance().saveCurrentSlide();
+		int uses = experiment.getIndex().getSlidesUsingList(oldName).size();
+
+		String newName = JOptionPane.showInputDialog(this, "New name for \""
+				+ oldName + "\" (used on " + uses + " slides)", oldName);
+		if (newName == null || newName.trim().length() == 0)
+			return;
+
+		try {
+			uses = experiment.renameList(oldName, newName.trim()).size();
+			status_.setText("Renamed " + oldName + " on " + uses + " slides");
+		} catch (IllegalArgumentException ex) {
+			JOptionPane.showMessageDialog(this, ex.getMessage(),
+					"Rename List", JOptionPane.ERROR_MESSAGE);
+		}
+	}
+}
@@ -3,22 +3,9 @@ package edu.vanderbilt.psychology.gui.main;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.FlowLayout;
-import java.awt.Graphics;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
-import java.awt.image.BufferedImage;
 
 import javax.swing.BorderFactory;
-import javax.swing.BoxLayout;
-import javax.swing.ImageIcon;
-import javax.swing.JButton;
-import javax.swing.JLabel;
-import javax.swing.JLayeredPane;
 import javax.swing.JPanel;
-import javax.swing.JScrollPane;
 import javax.swing.JToolBar;
 import javax.swing.border.BevelBorder;
 
@@ -29,12 +16,13 @@ import edu.vanderbilt.psychology.controller.toolbarActions.AddSoundAction;
 import edu.vanderbilt.psychology.controller.toolbarActions.AddTextAction;
 import edu.vanderbilt.psychology.controller.toolbarActions.AddVideoAction;
 import edu.vanderbilt.psychology.controller.toolbarActions.CreateListAction;
+import edu.vanderbilt.psychology.controller.toolbarActions.FindAction;
 import edu.vanderbilt.psychology.controller.toolbarActions.OpenExperimentAction;
 import edu.vanderbilt.psychology.controller.toolbarActions.SaveExperimentAction;
 import edu.vanderbilt.psychology.gui.sideBar.PreviewPanel;
 import edu.vanderbilt.psychology.gui.sideBar.SectionedPanel;
+import edu.vanderbilt.psychology.gui.slideSwitcher.SlideSwitcher;
 import edu.vanderbilt.psychology.gui.toolBar.ToolbarButton;
-import edu.vanderbilt.psychology.model.BuilderState;
 import edu.vanderbilt.psychology.model.Experiment;
 import edu.vanderbilt.psychology.model.Slide;
 
@@ -69,7 +57,7 @@ public class Builder {
 	/**
 	 * Sets the height in pixels of the slide switcher component at the bottom
 	 */
-	private static final int SLIDE_SWITCHER_HEIGHT = 100;
+	private static final int SLIDE_SWITCHER_HEIGHT = 115;
 
 	public static final int SLIDE_THUMBNAIL_WIDTH = 140;
 
@@ -112,6 +100,7 @@ public class Builder {
 		final AddVideoAction addVideoAction = new AddVideoAction(stage);
 		final AddImageAction addImageAction = new AddImageAction(stage);
 		final CreateListAction createListAction = new CreateListAction();
+		final FindAction findAction = new FindAction();
 
 		// Create Toolbar buttons
 		// TODO Replace icon for Open button.
@@ -131,6 +120,9 @@ public class Builder {
 				"images/picture_add.png", "Add Image");
 		final ToolbarButton createList = new ToolbarButton(createListAction,
 				"images/picture_add.png", "Create List");
+		// There is no find icon, so the button only has its text
+		final ToolbarButton find = new ToolbarButton(findAction, null, "Find",
+				"Find");
 
 		// Disable the buttons we have not implemented
 		addVid.setEnabled(false);
@@ -150,6 +142,7 @@ public class Builder {
 		toolbar.add(open);
 		toolbar.add(export);
 		toolbar.add(createList);
+		toolbar.add(find);
 		// add(nextButton);
 		// add(prevButton);
 		toolbar.addSeparator(TOOLBAR_SEPARATOR_DIMENSION);
@@ -242,280 +235,7 @@ public class Builder {
 	 * 
 	 * @return
 	 */
-	// TODO - Make the scrollbar a bit prettier
-	protected static JScrollPane buildSlideSwitcher() {
-
-		final JPanel switcher = new JPanel();
-		switcher.setLayout(new FlowLayout(FlowLayout.LEFT));
-		switcher.setPreferredSize(new Dimension(10000, SLIDE_SWITCHER_HEIGHT));
-
-		JLayeredPane slide = createSlideThumbnail();
-		switcher.add(slide);
-
-		final JPanel newSlide = new JPanel();
-		newSlide.setPreferredSize(new Dimension(SLIDE_THUMBNAIL_WIDTH,
-				SLIDE_THUMBNAIL_HEIGHT));
-		newSlide.setBorder(BorderFactory.createLineBorder(Color.BLACK));
-		newSlide.setLayout(new BorderLayout());
-		JButton plus = new JButton("+");
-		plus.addActionListener(new ActionListener() {
-			public void actionPerformed(ActionEvent evt) {
-				// The createSlideThumbnail references the BuilderState, so we
-				// need to update it to point to the newly created slide
-				BuilderState.getInstance().getNextSlide();
-
-				// Remove the new slide, add the thumbnail, and re-add the
-				// slide. This ensures that the newSlide stays to the far right
-				switcher.remove(newSlide);
-				switcher.add(createSlideThumbnail());
-				switcher.add(newSlide);
-				switcher.revalidate();
-			}
-		});
-
-		newSlide.add(plus, BorderLayout.CENTER);
-		JLabel newSlideText = new JLabel("         New Slide");
-		newSlide.add(newSlideText, BorderLayout.SOUTH);
-
-		switcher.add(newSlide);
-
-		JScrollPane s = new JScrollPane(switcher);
-		s
-				.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
-		s.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_NEVER);
-		s.setPreferredSize(new Dimension(1, SLIDE_SWITCHER_HEIGHT));
-
-		return s;
-	}
-
-	/**
-	 * Creates a new slide thumbnail.
-	 * 
-	 * <p>
-	 * Implemented into the switcher, this method adds a new slide thumbnail to
-	 * the switcher when a new slide is created. The thumbnail also contains the
-	 * dropdown menu, containing the "Make Copy", "Repeat x times", and "Repeat
-	 * Until ..." buttons.
-	 * </p>
-	 * 
-	 * <p>
-	 * TODO - At some point, the slide thumbnail should probably take a handle
-	 * to the slide of which it is a thumbnail so that it can be updated, etc.
-	 * </p>
-	 * 
-	 * @return
-	 */
-	// TODO The SlideThumbnail deserves to be a new class
-	private static JLayeredPane createSlideThumbnail() {
-		// Build the JLayeredPane to hold the slide's thumbnail
-		final JLayeredPane slide = new JLayeredPane();
-		slide.setPreferredSize(new Dimension(SLIDE_THUMBNAIL_WIDTH,
-				SLIDE_THUMBNAIL_HEIGHT));
-		slide.setBorder(BorderFactory.createLineBorder(Color.BLACK));
-
-		// Associate the Slide and the thumbnail
-		BuilderState.getInstance().getCurrentSlide().setSlideThumbnail(slide);
-
-		// Make the thumbnail clickable
-		slide.addMouseListener(new MouseListener() {
-
-			@Override
-			public void mouseReleased(MouseEvent e) {
-
-			}
-
-			@Override
-			public void mousePressed(MouseEvent e) {
-
-			}
-
-			@Override
-			public void mouseExited(MouseEvent e) {
-
-			}
-
-			@Override
-			public void mouseEntered(MouseEvent e) {
-
-			}
-
-			@Override
-			public void mouseClicked(MouseEvent e) {
-				BuilderState.getInstance().saveCurrentSlide();
-				BuilderState.getInstance().setCurrentSlide(slide);
-			}
-		});
-
-		// Build a blank background image for now
-		BufferedImage backgroundImage = new BufferedImage(
-				SLIDE_THUMBNAIL_WIDTH, SLIDE_THUMBNAIL_HEIGHT,
-				BufferedImage.TYPE_INT_RGB);
-		Graphics g = backgroundImage.getGraphics();
-		g.setColor(Color.LIGHT_GRAY);
-		g.fillRect(0, 0, SLIDE_THUMBNAIL_WIDTH, SLIDE_THUMBNAIL_HEIGHT);
-		
-		// Create the background image layer
-		ImageIcon backgroundIcon = new ImageIcon(backgroundImage);
-		backgroundIcon.setDescription("background image");
-		JLabel slideThumbnail = new JLabel(backgroundIcon);
-		slideThumbnail.setBounds(0, 0, SLIDE_THUMBNAIL_WIDTH,
-				SLIDE_THUMBNAIL_HEIGHT);
-		slide.add(slideThumbnail, JLayeredPane.DEFAULT_LAYER);
-
-		// Create the menu
-		final JPanel menu = new JPanel();
-		menu.setLayout(new BoxLayout(menu, BoxLayout.PAGE_AXIS));
-		// TODO - Fix the "Repeat Until ..." button to make it the same length
-		// as the other two.
-		final JLabel makeCopy = new JLabel("       Make Copy       ");
-		makeCopy.setBorder(BorderFactory.createRaisedBevelBorder());
-		makeCopy.addMouseListener(new MouseListener() {
-
-			@Override
-			public void mouseClicked(MouseEvent e) {
-
-			}
-
-			@Override
-			public void mouseEntered(MouseEvent e) {
-
-			}
-
-			@Override
-			public void mouseExited(MouseEvent e) {
-
-			}
-
-			@Override
-			public void mousePressed(MouseEvent e) {
-				makeCopy.setBorder(BorderFactory.createLoweredBevelBorder());
-				makeCopy.setOpaque(true);
-				makeCopy.setBackground(Color.LIGHT_GRAY);
-			}
-
-			@Override
-			public void mouseReleased(MouseEvent e) {
-				makeCopy.setBorder(BorderFactory.createRaisedBevelBorder());
-				makeCopy.setOpaque(false);
-			}
-
-		});
-		final JLabel repeat = new JLabel("    Repeat x times    ");
-		repeat.setBorder(BorderFactory.createRaisedBevelBorder());
-		repeat.addMouseListener(new MouseListener() {
-
-			@Override
-			public void mouseClicked(MouseEvent arg0) {
-
-			}
-
-			@Override
-			public void mouseEntered(MouseEvent arg0) {
-
-			}
-
-			@Override
-			public void mouseExited(MouseEvent arg0) {
-
-			}
-
-			@Override
-			public void mousePressed(MouseEvent arg0) {
-				repeat.setBorder(BorderFactory.createLoweredBevelBorder());
-				repeat.setOpaque(true);
-				repeat.setBackground(Color.LIGHT_GRAY);
-			}
-
-			@Override
-			public void mouseReleased(MouseEvent arg0) {
-				repeat.setBorder(BorderFactory.createRaisedBevelBorder());
-				repeat.setOpaque(false);
-			}
-
-		});
-		final JLabel repeatUntil = new JLabel("    Repeat Until ...    ");
-		repeatUntil.setBorder(BorderFactory.createRaisedBevelBorder());
-		repeatUntil.addMouseListener(new MouseListener() {
-
-			@Override
-			public void mouseClicked(MouseEvent e) {
-
-			}
-
-			@Override
-			public void mouseEntered(MouseEvent e) {
-
-			}
-
-			@Override
-			public void mouseExited(MouseEvent e) {
-
-			}
-
-			@Override
-			public void mousePressed(MouseEvent e) {
-				repeatUntil.setBorder(BorderFactory.createLoweredBevelBorder());
-				repeatUntil.setOpaque(true);
-				repeatUntil.setBackground(Color.LIGHT_GRAY);
-			}
-
-			@Override
-			public void mouseReleased(MouseEvent e) {
-				repeatUntil.setBorder(BorderFactory.createRaisedBevelBorder());
-				repeatUntil.setOpaque(false);
-			}
-
-		});
-		menu.add(makeCopy);
-		menu.add(repeat);
-		menu.add(repeatUntil);
-		menu.setVisible(false);
-		menu.setBounds(0, 0, SLIDE_THUMBNAIL_WIDTH - 11,
-				SLIDE_THUMBNAIL_HEIGHT - 13);
-		slide.add(menu, JLayeredPane.PALETTE_LAYER);
-
-		// Create the menu button
-		// I chose not to use a JButton b/c I can't seem to control the LAF on a
-		// per-component basis
-		final JLabel menuButton = new JLabel("v");
-		menuButton.setBorder(BorderFactory.createRaisedBevelBorder());
-		menuButton.addMouseListener(new MouseListener() {
-
-			@Override
-			public void mouseClicked(MouseEvent arg0) {
-				if (menu.isVisible())
-					menu.setVisible(false);
-				else
-					menu.setVisible(true);
-			}
-
-			@Override
-			public void mouseEntered(MouseEvent arg0) {
-
-			}
-
-			@Override
-			public void mouseExited(MouseEvent arg0) {
-
-			}
-
-			@Override
-			public void mousePressed(MouseEvent arg0) {
-				menuButton.setBorder(BorderFactory.createLoweredBevelBorder());
-				menuButton.setOpaque(true);
-				menuButton.setBackground(Color.LIGHT_GRAY);
-			}
-
-			@Override
-			public void mouseReleased(MouseEvent arg0) {
-				menuButton.setBorder(BorderFactory.createRaisedBevelBorder());
-				menuButton.setOpaque(false);
-			}
-		});
-		int width = 11;
-		int height = 13;
-		menuButton.setBounds(SLIDE_THUMBNAIL_WIDTH - width, 0, width, height);
-		slide.add(menuButton, JLayeredPane.PALETTE_LAYER);
-		return slide;
+	protected static SlideSwitcher buildSlideSwitcher() {
+		return new SlideSwitcher(SLIDE_SWITCHER_HEIGHT);
 	}
 }
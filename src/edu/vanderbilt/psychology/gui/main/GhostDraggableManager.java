@@ -0,0 +1,143 @@
+package edu.vanderbilt.psychology.gui.main;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ContainerEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.image.BufferedImage;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.MouseInputAdapter;
+
+import net.java.swingfx.jdraggable.DefaultDraggableManager;
+import net.java.swingfx.jdraggable.DraggableListener;
+import edu.vanderbilt.psychology.gui.slideElements.SlideElement;
+
+/**
+ * A {@link DefaultDraggableManager} for the {@link StageWrapper} that does not
+ * move the dragged component on every mouse event. Instead, a translucent
+ * ghost of the component follows the mouse (see
+ * {@link StageWrapper#showGhost(BufferedImage, Rectangle)}), and the component
+ * itself is moved once when the mouse is released. This way only the area the
+ * ghost moves across is repainted while dragging, and the components
+ * underneath are drawn from their cached appearance.
+ *
+ * <p>
+ * The {@link DraggableListener} that {@link DefaultDraggableManager} uses is
+ * added again every time a component is re-added to the container, so a
+ * component that has been removed and re-added (such as when the
+ * {@link SlideViewCache} puts a {@link SlideElement} back) would get more than
+ * one. This manager only ever adds its listener to a component once.
+ * </p>
+ *
+ * <p>
+ * While dragging, the ghost snaps to the edges of nearby elements (see
+ * {@link StageWrapper#snap(Rectangle, Component)}) unless shift is held.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class GhostDraggableManager extends DefaultDraggableManager {
+
+	private GhostDragListener mListener = new GhostDragListener();
+
+	@Override
+	public void componentAdded(ContainerEvent e) {
+		Component c = e.getChild();
+		for (MouseListener l : c.getMouseListeners())
+			if (l == mListener)
+				return;
+
+		c.addMouseListener(mListener);
+		c.addMouseMotionListener(mListener);
+	}
+
+	@Override
+	public void componentRemoved(ContainerEvent e) {
+		// The listener is left in place, in case the component is re-added
+	}
+
+	private class GhostDragListener extends MouseInputAdapter {
+		private Component mDragged;
+		private int mOffsetX;
+		private int mOffsetY;
+		private Rectangle mGhostBounds;
+		private BufferedImage mGhost;
+
+		@Override
+		public void mousePressed(MouseEvent e) {
+			mGhostBounds = null;
+			mGhost = null;
+			mDragged = null;
+			if (startDrag(e.getComponent()) == false)
+				return;
+
+			mDragged = e.getComponent();
+			mOffsetX = e.getX();
+			mOffsetY = e.getY();
+		}
+
+		@Override
+		public void mouseDragged(MouseEvent e) {
+			if (mDragged == null || dragging() == false)
+				return;
+
+			Container container = getDraggableContainer();
+			Point p = SwingUtilities.convertPoint(mDragged, e.getX(), e.getY(),
+					container);
+
+			// Keep the component inside of the container
+			int width = mDragged.getWidth(), height = mDragged.getHeight();
+			int x = Math.max(0, Math.min(p.x - mOffsetX, container.getWidth()
+					- width));
+			int y = Math.max(0, Math.min(p.y - mOffsetY, container.getHeight()
+					- height));
+			mGhostBounds = new Rectangle(x, y, width, height);
+
+			if (container instanceof StageWrapper) {
+				if (mGhost == null)
+					mGhost = getImage(mDragged);
+
+				// Holding shift turns snapping off
+				StageWrapper stage = (StageWrapper) container;
+				if (e.isShiftDown() == false)
+					mGhostBounds = stage.snap(mGhostBounds, mDragged);
+				stage.showGhost(mGhost, mGhostBounds);
+			} else
+				mDragged.setLocation(x, y);
+		}
+
+		@Override
+		public void mouseReleased(MouseEvent e) {
+			if (mDragged != null && mGhostBounds != null) {
+				mDragged.setLocation(mGhostBounds.getLocation());
+
+				Container container = getDraggableContainer();
+				if (container instanceof StageWrapper)
+					((StageWrapper) container).hideGhost();
+			}
+
+			stopDrag();
+			mDragged = null;
+			mGhostBounds = null;
+			mGhost = null;
+		}
+
+		private BufferedImage getImage(Component c) {
+			if (c instanceof SlideElement)
+				return ((SlideElement) c).getAppearance();
+
+			BufferedImage image = new BufferedImage(Math.max(1, c.getWidth()),
+					Math.max(1, c.getHeight()), BufferedImage.TYPE_INT_ARGB);
+			Graphics g = image.getGraphics();
+			c.paint(g);
+			g.dispose();
+			return image;
+		}
+	}
+}
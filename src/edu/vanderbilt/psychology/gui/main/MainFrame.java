@@ -34,16 +34,23 @@ package edu.vanderbilt.psychology.gui.main;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.Toolkit;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 
+import javax.swing.InputMap;
+import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
-import javax.swing.JScrollPane;
 import javax.swing.JToolBar;
+import javax.swing.KeyStroke;
 
-import net.java.swingfx.jdraggable.DefaultDraggableManager;
 import net.java.swingfx.jdraggable.DragPolicy;
 import net.java.swingfx.jdraggable.Draggable;
 import net.java.swingfx.jdraggable.DraggableManager;
+import edu.vanderbilt.psychology.controller.toolbarActions.UndoAction;
+import edu.vanderbilt.psychology.controller.toolbarActions.util.FontCatalogue;
+import edu.vanderbilt.psychology.gui.resources.ResourceManager;
+import edu.vanderbilt.psychology.gui.slideSwitcher.SlideSwitcher;
 import edu.vanderbilt.psychology.model.BuilderState;
 
 /**
@@ -78,10 +85,17 @@ import edu.vanderbilt.psychology.model.BuilderState;
 public class MainFrame extends JFrame {
 
 	public static void main(String[] args) {
+		// Listing the installed fonts is slow, so start it before anything else
+		FontCatalogue.getInstance().loadInBackground();
+
 		// Schedule a job for the event-dispatching thread:
 		// creating and showing this application's GUI.
 		javax.swing.SwingUtilities.invokeLater(new Runnable() {
 			public void run() {
+				// Load every icon at once, from the icon atlas if possible
+				ResourceManager.getInstance().preload(
+						ResourceManager.GUI_IMAGES);
+
 				// Make sure we have nice window decorations.
 				JFrame.setDefaultLookAndFeelDecorated(true);
 
@@ -137,7 +151,7 @@ public class MainFrame extends JFrame {
 		// Setup stage as a Draggable Container, allowing us to place Draggable
 		// components inside of it
 		StageWrapper stageWrapper = new StageWrapper(this);
-		DraggableManager manager = new DefaultDraggableManager();
+		DraggableManager manager = new GhostDraggableManager();
 		manager.registerDraggableContainer(stageWrapper);
 		manager.setDragPolicy(DragPolicy.STRICT);
 
@@ -151,11 +165,32 @@ public class MainFrame extends JFrame {
 
 		// Initialize the model
 		new BuilderState(stageWrapper);
+
+		bindUndoKeys(stageWrapper);
 		
-		JScrollPane slideSwitcher = Builder.buildSlideSwitcher();
+		SlideSwitcher slideSwitcher = Builder.buildSlideSwitcher();
 		add(slideSwitcher, BorderLayout.SOUTH);
 	}
 
+	/**
+	 * Binds the platform's undo and redo shortcuts (such as Ctrl+Z and Ctrl+Y,
+	 * or Ctrl+Shift+Z) anywhere in the window
+	 */
+	private void bindUndoKeys(StageWrapper stageWrapper) {
+		int mask = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
+		InputMap keys = getRootPane().getInputMap(
+				JComponent.WHEN_IN_FOCUSED_WINDOW);
+		keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, mask), "undo");
+		keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, mask), "redo");
+		keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, mask
+				| InputEvent.SHIFT_MASK), "redo");
+
+		getRootPane().getActionMap().put("undo",
+				new UndoAction(stageWrapper, UndoAction.UNDO));
+		getRootPane().getActionMap().put("redo",
+				new UndoAction(stageWrapper, UndoAction.REDO));
+	}
+
 	/** Provide a Universal ID for serialization */
 	private static final long serialVersionUID = -1261510591458713599L;
 }
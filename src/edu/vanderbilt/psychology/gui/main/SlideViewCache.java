@@ -0,0 +1,293 @@
+package edu.vanderbilt.psychology.gui.main;
+
+import java.awt.Component;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.vanderbilt.psychology.gui.slideElements.SlideElement;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.elements.ModelElement;
+
+/**
+ * Keeps the {@link SlideElement}s of recently visited {@link Slide}s after they
+ * are taken off of the {@link StageWrapper}, so that going back to one of those
+ * {@link Slide}s re-attaches the existing components instead of building new
+ * ones from the model.
+ *
+ * <p>
+ * The cache is bounded three ways. It holds at most a fixed number of
+ * {@link Slide}s, and the estimated size of the cached components (mostly the
+ * pixels they show) must stay within a byte budget. The least recently
+ * visited {@link Slide}s are dropped first. Each entry is also only softly
+ * referenced, so the garbage collector can clear entries if memory runs low
+ * before the budget is reached, and the cache shrinks to a single entry when
+ * less than a tenth of the heap is free.
+ * </p>
+ *
+ * <p>
+ * Each entry remembers the {@link Slide#getContentHash()} of the {@link Slide}
+ * it was taken from. If the {@link Slide} has been changed some other way
+ * since, the entry is thrown away and the {@link Slide} is built from the model
+ * as usual.
+ * </p>
+ *
+ * <p>
+ * The default budget is set by the system property
+ * <code>eb.slideViewCache.mb</code> (64MB if not set), but is never more than
+ * an eighth of the maximum heap. Setting it to 0 turns the cache off.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class SlideViewCache {
+
+	public static final String BUDGET_PROPERTY = "eb.slideViewCache.mb";
+	private static final int DEFAULT_BUDGET_MB = 64;
+
+	public static final int DEFAULT_MAX_SLIDES = 12;
+
+	/** A rough guess at the size of a component, not counting its pixels */
+	private static final int ELEMENT_OVERHEAD_BYTES = 4 * 1024;
+
+	private static final class View {
+		List<SlideElement> elements;
+		List<Integer> layers;
+	}
+
+	private static final class Entry {
+		long contentHash;
+		long bytes;
+		SoftReference<View> view;
+	}
+
+	/** From {@link Slide#getId()}, least to most recently used */
+	private LinkedHashMap<Long, Entry> mEntries = new LinkedHashMap<Long, Entry>(
+			16, 0.75f, true);
+
+	private long mBudget;
+	private int mMaxSlides;
+	private long mUsedBytes = 0;
+
+	private int mHits = 0;
+	private int mMisses = 0;
+	private int mEvictions = 0;
+
+	public SlideViewCache() {
+		this(getDefaultBudget(), DEFAULT_MAX_SLIDES);
+	}
+
+	public SlideViewCache(long budget, int maxSlides) {
+		mBudget = budget;
+		mMaxSlides = maxSlides;
+	}
+
+	public static long getDefaultBudget() {
+		long budget = Integer.getInteger(BUDGET_PROPERTY, DEFAULT_BUDGET_MB)
+				* 1024L * 1024L;
+		return Math.max(0, Math.min(budget,
+				Runtime.getRuntime().maxMemory() / 8));
+	}
+
+	/**
+	 * Takes every {@link SlideElement} off of the {@link StageWrapper}, and
+	 * keeps them for the given {@link Slide}. The {@link Slide} should have
+	 * just been saved from the {@link StageWrapper}, so that its content hash
+	 * matches what was on the stage
+	 *
+	 * @param s
+	 *            the {@link Slide} that was on the stage, or null to just clear
+	 *            the stage
+	 */
+	public void detach(Slide s, StageWrapper stageWrapper) {
+		View view = new View();
+		view.elements = new ArrayList<SlideElement>();
+		view.layers = new ArrayList<Integer>();
+
+		long bytes = 0;
+		for (Component c : stageWrapper.getComponents()) {
+			if ((c instanceof SlideElement) == false)
+				continue;
+
+			view.elements.add((SlideElement) c);
+			view.layers.add(stageWrapper.getLayer(c));
+			bytes += ELEMENT_OVERHEAD_BYTES + 4L * c.getWidth()
+					* c.getHeight();
+
+			stageWrapper.remove(c);
+		}
+
+		stageWrapper.validate();
+		stageWrapper.repaint();
+
+		if (s == null || s.getId() == 0)
+			return;
+
+		remove(s.getId());
+		if (bytes > mBudget)
+			return;
+
+		Entry e = new Entry();
+		e.contentHash = s.getContentHash();
+		e.bytes = bytes;
+		e.view = new SoftReference<View>(view);
+
+		mEntries.put(s.getId(), e);
+		mUsedBytes += bytes;
+		trim();
+	}
+
+	/**
+	 * Puts the cached {@link SlideElement}s for a {@link Slide} back onto the
+	 * {@link StageWrapper}. The entry is removed from the cache, as the
+	 * components now belong to the stage again
+	 *
+	 * @return false if nothing usable was cached for the {@link Slide}, in
+	 *         which case the stage is left untouched
+	 */
+	public boolean attach(Slide s, StageWrapper stageWrapper) {
+		Entry e = mEntries.remove(s.getId());
+		if (e == null) {
+			mMisses++;
+			return false;
+		}
+		mUsedBytes -= e.bytes;
+
+		View view = e.view.get();
+		if (view == null || e.contentHash != s.getContentHash()) {
+			mMisses++;
+			return false;
+		}
+
+		for (int i = 0; i < view.elements.size(); i++)
+			stageWrapper.add(view.elements.get(i), view.layers.get(i));
+
+		stageWrapper.validate();
+		stageWrapper.repaint();
+
+		mHits++;
+		return true;
+	}
+
+	/**
+	 * Brings the cached {@link SlideElement}s of a {@link Slide} in line with
+	 * the {@link Slide}, after the {@link Slide} was changed somewhere other
+	 * than on the stage (such as by an undo). Each {@link SlideElement} is
+	 * moved to where its {@link ModelElement} now says it is and updated (see
+	 * {@link SlideElement#updateFromModel()}), and
+	 * {@link SlideElement}s whose {@link ModelElement} is no longer on the
+	 * {@link Slide} are dropped. If the {@link Slide} has a
+	 * {@link ModelElement} that is not cached, the entry is thrown away
+	 */
+	public void update(Slide s) {
+		Entry e = mEntries.get(s.getId());
+		if (e == null)
+			return;
+
+		View view = e.view.get();
+		if (view == null) {
+			remove(s.getId());
+			return;
+		}
+
+		Map<ModelElement, Integer> positions = new IdentityHashMap<ModelElement, Integer>();
+		for (int i = 0; i < view.elements.size(); i++)
+			positions.put(view.elements.get(i).getModel(), i);
+
+		View updated = new View();
+		updated.elements = new ArrayList<SlideElement>();
+		updated.layers = new ArrayList<Integer>();
+		for (ModelElement me : s.getModelElements()) {
+			Integer i = positions.get(me);
+			if (i == null) {
+				remove(s.getId());
+				return;
+			}
+
+			SlideElement se = view.elements.get(i);
+			if (me.getLocation() != null)
+				se.setLocation(me.getLocation());
+			se.updateFromModel();
+			updated.elements.add(se);
+			updated.layers.add(me.getLayer() == null ? view.layers.get(i)
+					: me.getLayer());
+		}
+
+		e.view = new SoftReference<View>(updated);
+		e.contentHash = s.getContentHash();
+	}
+
+	public void remove(long slideId) {
+		Entry e = mEntries.remove(slideId);
+		if (e != null)
+			mUsedBytes -= e.bytes;
+	}
+
+	public void clear() {
+		mEntries.clear();
+		mUsedBytes = 0;
+	}
+
+	public int size() {
+		return mEntries.size();
+	}
+
+	public long getUsedBytes() {
+		return mUsedBytes;
+	}
+
+	public int getHitCount() {
+		return mHits;
+	}
+
+	public int getMissCount() {
+		return mMisses;
+	}
+
+	public int getEvictionCount() {
+		return mEvictions;
+	}
+
+	@Override
+	public String toString() {
+		return "SlideViewCache[" + mEntries.size() + " slides, "
+				+ (mUsedBytes / 1024) + "KB of " + (mBudget / 1024) + "KB, "
+				+ mHits + " hits, " + mMisses + " misses]";
+	}
+
+	/**
+	 * Drops cleared entries, and then the least recently used ones until the
+	 * cache is within its limits
+	 */
+	private void trim() {
+		Iterator<Map.Entry<Long, Entry>> it = mEntries.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry e = it.next().getValue();
+			if (e.view.get() == null) {
+				it.remove();
+				mUsedBytes -= e.bytes;
+			}
+		}
+
+		int maxSlides = isMemoryLow() ? 1 : mMaxSlides;
+		it = mEntries.entrySet().iterator();
+		while (it.hasNext()
+				&& (mEntries.size() > maxSlides || mUsedBytes > mBudget)) {
+			Entry e = it.next().getValue();
+			it.remove();
+			mUsedBytes -= e.bytes;
+			mEvictions++;
+		}
+	}
+
+	private static boolean isMemoryLow() {
+		Runtime rt = Runtime.getRuntime();
+		long used = rt.totalMemory() - rt.freeMemory();
+		return rt.maxMemory() - used < rt.maxMemory() / 10;
+	}
+}
@@ -0,0 +1,263 @@
+package edu.vanderbilt.psychology.gui.main;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform grid over a 2D area, used to find which items are at a point or
+ * inside of a rectangle without looking at every item. Each item is filed
+ * under every cell its bounds touch, so a query only has to look at the items
+ * in the cells it touches. As long as items are not much larger than a cell,
+ * that is a small, fixed number of items no matter how many there are in
+ * total.
+ *
+ * <p>
+ * Items are compared by identity. The grid is not thread safe, and is meant
+ * to be used on the event dispatch thread only.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class SpatialGrid<T> {
+
+	public static final int DEFAULT_CELL_SIZE = 64;
+
+	private int mCellSize;
+
+	/** From a cell's key (see {@link #key(int, int)}) to the items touching it */
+	private Map<Long, List<T>> mCells = new HashMap<Long, List<T>>();
+	private Map<T, Rectangle> mBounds = new IdentityHashMap<T, Rectangle>();
+
+	public SpatialGrid() {
+		this(DEFAULT_CELL_SIZE);
+	}
+
+	public SpatialGrid(int cellSize) {
+		if (cellSize < 1)
+			throw new IllegalArgumentException("cellSize must be at least one");
+
+		mCellSize = cellSize;
+	}
+
+	/**
+	 * Adds an item, or moves it if it is already in the grid
+	 */
+	public void put(T item, Rectangle bounds) {
+		Rectangle old = mBounds.get(item);
+		if (old != null) {
+			if (old.equals(bounds))
+				return;
+			unfile(item, old);
+		}
+
+		Rectangle copy = new Rectangle(bounds);
+		mBounds.put(item, copy);
+		file(item, copy);
+	}
+
+	public void remove(T item) {
+		Rectangle old = mBounds.remove(item);
+		if (old != null)
+			unfile(item, old);
+	}
+
+	public void clear() {
+		mCells.clear();
+		mBounds.clear();
+	}
+
+	public int size() {
+		return mBounds.size();
+	}
+
+	public boolean contains(T item) {
+		return mBounds.containsKey(item);
+	}
+
+	/** @return a copy of the bounds of an item, or null if it is not here */
+	public Rectangle getBounds(T item) {
+		Rectangle r = mBounds.get(item);
+		return r == null ? null : new Rectangle(r);
+	}
+
+	/**
+	 * @return every item whose bounds contain the point, in no particular
+	 *         order
+	 */
+	public List<T> getAt(int x, int y) {
+		List<T> cell = mCells.get(key(floorDiv(x), floorDiv(y)));
+		if (cell == null)
+			return Collections.emptyList();
+
+		List<T> result = new ArrayList<T>();
+		for (T item : cell)
+			if (mBounds.get(item).contains(x, y))
+				result.add(item);
+		return result;
+	}
+
+	/**
+	 * @return every item whose bounds intersect the rectangle, in no
+	 *         particular order
+	 */
+	public List<T> getIntersecting(Rectangle area) {
+		return query(area, false);
+	}
+
+	/**
+	 * @return every item whose bounds are entirely inside of the rectangle, in
+	 *         no particular order
+	 */
+	public List<T> getContained(Rectangle area) {
+		return query(area, true);
+	}
+
+	/**
+	 * @return every other item whose bounds intersect the given item's bounds
+	 */
+	public List<T> getOverlapping(T item) {
+		Rectangle r = mBounds.get(item);
+		if (r == null)
+			return Collections.emptyList();
+
+		List<T> result = getIntersecting(r);
+		result.remove(item);
+		return result;
+	}
+
+	/**
+	 * Looks for items whose left, centre or right edge (or top, middle or
+	 * bottom edge) is within a distance of the same edges of a rectangle, such
+	 * as one being dragged
+	 *
+	 * @param bounds
+	 *            the rectangle to snap
+	 * @param distance
+	 *            how close an edge must be to snap to it
+	 * @param ignore
+	 *            an item not to snap to, such as the one being dragged. May be
+	 *            null
+	 * @return how far to move the rectangle so that it lines up with the
+	 *         nearest edges, or (0, 0) if nothing is close enough. A direction
+	 *         with nothing close enough to snap to is 0
+	 */
+	public Point getSnapOffset(Rectangle bounds, int distance, T ignore) {
+		Rectangle area = new Rectangle(bounds);
+		area.grow(distance, distance);
+
+		int bestX = distance + 1, bestY = distance + 1;
+		for (T item : getIntersecting(area)) {
+			if (item == ignore)
+				continue;
+
+			Rectangle other = mBounds.get(item);
+			bestX = closest(bestX, edges(bounds.x, bounds.width), edges(
+					other.x, other.width));
+			bestY = closest(bestY, edges(bounds.y, bounds.height), edges(
+					other.y, other.height));
+		}
+
+		return new Point(Math.abs(bestX) <= distance ? bestX : 0, Math
+				.abs(bestY) <= distance ? bestY : 0);
+	}
+
+	private static int[] edges(int start, int length) {
+		return new int[] { start, start + length / 2, start + length };
+	}
+
+	/** @return whichever of best and the offsets between edges is smallest */
+	private static int closest(int best, int[] moving, int[] other) {
+		for (int m : moving)
+			for (int o : other)
+				if (Math.abs(o - m) < Math.abs(best))
+					best = o - m;
+		return best;
+	}
+
+	private List<T> query(Rectangle area, boolean contained) {
+		List<T> result = new ArrayList<T>();
+		if (area.isEmpty())
+			return result;
+
+		// An item filed under more than one cell is only added once
+		Map<T, Boolean> seen = new IdentityHashMap<T, Boolean>();
+
+		int[] cells = getCells(area);
+		for (int cx = cells[0]; cx <= cells[2]; cx++)
+			for (int cy = cells[1]; cy <= cells[3]; cy++) {
+				List<T> cell = mCells.get(key(cx, cy));
+				if (cell == null)
+					continue;
+
+				for (T item : cell) {
+					if (seen.put(item, Boolean.TRUE) != null)
+						continue;
+
+					Rectangle r = mBounds.get(item);
+					if (contained ? area.contains(r) : area.intersects(r))
+						result.add(item);
+				}
+			}
+
+		return result;
+	}
+
+	private void file(T item, Rectangle bounds) {
+		int[] cells = getCells(bounds);
+		for (int cx = cells[0]; cx <= cells[2]; cx++)
+			for (int cy = cells[1]; cy <= cells[3]; cy++) {
+				List<T> cell = mCells.get(key(cx, cy));
+				if (cell == null) {
+					cell = new ArrayList<T>(4);
+					mCells.put(key(cx, cy), cell);
+				}
+				cell.add(item);
+			}
+	}
+
+	private void unfile(T item, Rectangle bounds) {
+		int[] cells = getCells(bounds);
+		for (int cx = cells[0]; cx <= cells[2]; cx++)
+			for (int cy = cells[1]; cy <= cells[3]; cy++) {
+				Long key = key(cx, cy);
+				List<T> cell = mCells.get(key);
+				if (cell == null)
+					continue;
+
+				for (int i = 0; i < cell.size(); i++)
+					if (cell.get(i) == item) {
+						cell.remove(i);
+						break;
+					}
+				if (cell.isEmpty())
+					mCells.remove(key);
+			}
+	}
+
+	/**
+	 * @return the first and last cell a rectangle touches, as {first column,
+	 *         first row, last column, last row}. Empty rectangles touch the
+	 *         cell their corner is in
+	 */
+	private int[] getCells(Rectangle r) {
+		int x2 = r.x + Math.max(0, r.width - 1);
+		int y2 = r.y + Math.max(0, r.height - 1);
+		return new int[] { floorDiv(r.x), floorDiv(r.y), floorDiv(x2),
+				floorDiv(y2) };
+	}
+
+	private int floorDiv(int v) {
+		return (int) Math.floor(v / (double) mCellSize);
+	}
+
+	private static Long key(int cx, int cy) {
+		return Long.valueOf(((long) cx << 32) | (cy & 0xffffffffL));
+	}
+}
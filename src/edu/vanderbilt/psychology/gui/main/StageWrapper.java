@@ -3,14 +3,31 @@
  */
 package edu.vanderbilt.psychology.gui.main;
 
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.awt.event.ContainerEvent;
+import java.awt.event.ContainerListener;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.BorderFactory;
 import javax.swing.JLayeredPane;
+import javax.swing.SwingUtilities;
+import javax.swing.event.MouseInputAdapter;
 
 import net.java.swingfx.jdraggable.Draggable;
+import edu.vanderbilt.psychology.controller.SelectionManager;
+import edu.vanderbilt.psychology.gui.slideElements.SlideElement;
 import edu.vanderbilt.psychology.gui.stage.Stage;
 
 /**
@@ -24,6 +41,13 @@ import edu.vanderbilt.psychology.gui.stage.Stage;
  * item added to this view will not show up unless the size and location are set
  * explicitly.
  * 
+ * Every {@link SlideElement} on the {@link StageWrapper} is kept in a
+ * {@link SpatialGrid}, which is updated as elements are added, moved, resized
+ * and removed. The grid answers which elements are at a point or inside of a
+ * rectangle without looking at every element, which is used for rubber-band
+ * selection (dragging on the empty stage), snapping dragged elements to the
+ * edges of their neighbours, and finding overlapping elements.
+ * 
  * @author Hamilton Turner
  * 
  */
@@ -44,6 +68,38 @@ public class StageWrapper extends JLayeredPane {
 	private Stage stage_;
 	private static final int stageInset_ = 20;
 
+	private static final float GHOST_ALPHA = 0.6f;
+
+	/** Shown over everything else while an element is dragged or resized */
+	private BufferedImage mGhost;
+	private Rectangle mGhostBounds;
+
+	/** How close, in pixels, an edge must be to a neighbour's to snap to it */
+	public static final int SNAP_DISTANCE = 6;
+
+	private SpatialGrid<SlideElement> mGrid = new SpatialGrid<SlideElement>();
+
+	/** Keeps the grid up to date as elements move and change size */
+	private ComponentAdapter mElementListener = new ComponentAdapter() {
+		@Override
+		public void componentMoved(ComponentEvent e) {
+			mGrid.put((SlideElement) e.getComponent(), e.getComponent()
+					.getBounds());
+		}
+
+		@Override
+		public void componentResized(ComponentEvent e) {
+			mGrid.put((SlideElement) e.getComponent(), e.getComponent()
+					.getBounds());
+		}
+	};
+
+	/** Lines drawn while a dragged element is snapped to its neighbours */
+	private List<Rectangle> mGuides = new ArrayList<Rectangle>();
+
+	/** The rubber-band selection rectangle, or null if not selecting */
+	private Rectangle mMarquee;
+
 	public StageWrapper(MainFrame frame) {
 		super();
 
@@ -68,6 +124,267 @@ public class StageWrapper extends JLayeredPane {
 			}
 		});
 
+		addContainerListener(new ContainerListener() {
+			public void componentAdded(ContainerEvent e) {
+				if ((e.getChild() instanceof SlideElement) == false)
+					return;
+
+				SlideElement se = (SlideElement) e.getChild();
+				mGrid.put(se, se.getBounds());
+				se.addComponentListener(mElementListener);
+			}
+
+			public void componentRemoved(ContainerEvent e) {
+				if ((e.getChild() instanceof SlideElement) == false)
+					return;
+
+				SlideElement se = (SlideElement) e.getChild();
+				mGrid.remove(se);
+				se.removeComponentListener(mElementListener);
+			}
+		});
+
+		MarqueeListener marquee = new MarqueeListener();
+		addMouseListener(marquee);
+		addMouseMotionListener(marquee);
+		stage_.addMouseListener(marquee);
+		stage_.addMouseMotionListener(marquee);
+	}
+
+	@Override
+	public void paint(Graphics g) {
+		super.paint(g);
+
+		paintSelection(g);
+
+		if (mGhost == null)
+			return;
+
+		Graphics2D g2 = (Graphics2D) g.create();
+		g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER,
+				GHOST_ALPHA));
+		g2.drawImage(mGhost, mGhostBounds.x, mGhostBounds.y,
+				mGhostBounds.width, mGhostBounds.height, null);
+		g2.setComposite(AlphaComposite.SrcOver);
+		g2.setColor(Color.DARK_GRAY);
+		g2.drawRect(mGhostBounds.x, mGhostBounds.y, mGhostBounds.width - 1,
+				mGhostBounds.height - 1);
+
+		g2.setColor(Color.MAGENTA);
+		for (Rectangle guide : mGuides)
+			g2.fillRect(guide.x, guide.y, guide.width, guide.height);
+		g2.dispose();
+	}
+
+	/**
+	 * Outlines every element of a multiple selection, and the rubber-band
+	 * rectangle while one is being dragged out
+	 */
+	private void paintSelection(Graphics g) {
+		List<SlideElement> selection = SelectionManager.getInstance()
+				.getSelection();
+		if (selection.size() < 2 && mMarquee == null)
+			return;
+
+		Graphics2D g2 = (Graphics2D) g.create();
+		g2.setColor(Color.BLUE);
+		if (selection.size() > 1)
+			for (SlideElement se : selection)
+				if (se.getParent() == this)
+					g2.drawRect(se.getX() - 1, se.getY() - 1, se.getWidth() + 1,
+							se.getHeight() + 1);
+
+		if (mMarquee != null) {
+			g2.setStroke(new BasicStroke(1, BasicStroke.CAP_BUTT,
+					BasicStroke.JOIN_MITER, 1, new float[] { 4, 4 }, 0));
+			g2.drawRect(mMarquee.x, mMarquee.y, mMarquee.width,
+					mMarquee.height);
+		}
+		g2.dispose();
+	}
+
+	/**
+	 * Shows a translucent image over the stage, or moves it if one is already
+	 * showing. Used to show where an element will end up while it is being
+	 * dragged or resized, without moving the element on every mouse event.
+	 * Only the area the image moved out of and into is repainted
+	 * 
+	 * @param image
+	 *            scaled to fit the bounds
+	 * @param bounds
+	 *            where to draw the image, in this {@link StageWrapper}'s
+	 *            coordinates
+	 */
+	public void showGhost(BufferedImage image, Rectangle bounds) {
+		Rectangle dirty = new Rectangle(bounds);
+		if (mGhostBounds != null)
+			dirty = dirty.union(mGhostBounds);
+
+		mGhost = image;
+		mGhostBounds = new Rectangle(bounds);
+		repaint(dirty);
+	}
+
+	public void hideGhost() {
+		if (mGhostBounds != null)
+			repaint(mGhostBounds);
+		for (Rectangle guide : mGuides)
+			repaint(guide);
+
+		mGhost = null;
+		mGhostBounds = null;
+		mGuides.clear();
+	}
+
+	/**
+	 * Moves a rectangle, such as the bounds of an element being dragged, so
+	 * that its edges or centre line up with those of a nearby element, if any
+	 * are within {@link #SNAP_DISTANCE}. Guide lines along the edges that line
+	 * up are shown with the next ghost (see
+	 * {@link #showGhost(BufferedImage, Rectangle)})
+	 * 
+	 * @param ignore
+	 *            the component being dragged, which is never snapped to
+	 * @return the snapped rectangle
+	 */
+	public Rectangle snap(Rectangle bounds, Component ignore) {
+		SlideElement self = null;
+		if (ignore instanceof SlideElement)
+			self = (SlideElement) ignore;
+
+		Point offset = mGrid.getSnapOffset(bounds, SNAP_DISTANCE, self);
+		Rectangle snapped = new Rectangle(bounds);
+		snapped.translate(offset.x, offset.y);
+
+		for (Rectangle guide : mGuides)
+			repaint(guide);
+		mGuides.clear();
+
+		Rectangle area = new Rectangle(snapped);
+		area.grow(SNAP_DISTANCE, SNAP_DISTANCE);
+		for (SlideElement se : mGrid.getIntersecting(area)) {
+			if (se == self)
+				continue;
+
+			Rectangle other = se.getBounds();
+			int top = Math.min(snapped.y, other.y);
+			int bottom = Math.max(snapped.y + snapped.height, other.y
+					+ other.height);
+			for (int x : lineUp(snapped.x, snapped.width, other.x, other.width))
+				mGuides.add(new Rectangle(x, top, 1, bottom - top));
+
+			int left = Math.min(snapped.x, other.x);
+			int right = Math.max(snapped.x + snapped.width, other.x
+					+ other.width);
+			for (int y : lineUp(snapped.y, snapped.height, other.y,
+					other.height))
+				mGuides.add(new Rectangle(left, y, right - left, 1));
+		}
+
+		for (Rectangle guide : mGuides)
+			repaint(guide);
+
+		return snapped;
+	}
+
+	/** @return every edge or centre coordinate the two spans share */
+	private static List<Integer> lineUp(int start, int length,
+			int otherStart, int otherLength) {
+		List<Integer> shared = new ArrayList<Integer>();
+		int[] edges = { start, start + length / 2, start + length };
+		int[] others = { otherStart, otherStart + otherLength / 2,
+				otherStart + otherLength };
+		for (int e : edges)
+			for (int o : others)
+				if (e == o && shared.contains(e) == false)
+					shared.add(e);
+		return shared;
+	}
+
+	/**
+	 * @return the top-most {@link SlideElement} at a point, or null if there
+	 *         is none
+	 */
+	public SlideElement getElementAt(Point p) {
+		SlideElement top = null;
+		for (SlideElement se : mGrid.getAt(p.x, p.y))
+			if (top == null || isAbove(se, top))
+				top = se;
+		return top;
+	}
+
+	/**
+	 * @return every {@link SlideElement} entirely inside of a rectangle
+	 */
+	public List<SlideElement> getElementsIn(Rectangle area) {
+		return mGrid.getContained(area);
+	}
+
+	/**
+	 * @return every other {@link SlideElement} that overlaps the given one
+	 */
+	public List<SlideElement> getOverlapping(SlideElement se) {
+		return mGrid.getOverlapping(se);
+	}
+
+	private boolean isAbove(Component a, Component b) {
+		int la = getLayer(a), lb = getLayer(b);
+		if (la != lb)
+			return la > lb;
+
+		// Within a layer, lower positions are drawn on top
+		return getPosition(a) < getPosition(b);
+	}
+
+	/**
+	 * Drags out a rubber-band rectangle when the mouse is pressed on the empty
+	 * stage, and selects every element entirely inside of it when released
+	 */
+	private class MarqueeListener extends MouseInputAdapter {
+		private Point mStart;
+
+		@Override
+		public void mousePressed(MouseEvent e) {
+			mStart = SwingUtilities.convertPoint(e.getComponent(), e
+					.getPoint(), StageWrapper.this);
+			mMarquee = new Rectangle(mStart);
+		}
+
+		@Override
+		public void mouseDragged(MouseEvent e) {
+			if (mStart == null)
+				return;
+
+			Point p = SwingUtilities.convertPoint(e.getComponent(), e
+					.getPoint(), StageWrapper.this);
+			Rectangle dirty = new Rectangle(mMarquee);
+
+			mMarquee = new Rectangle(Math.min(mStart.x, p.x), Math.min(
+					mStart.y, p.y), Math.abs(p.x - mStart.x), Math.abs(p.y
+					- mStart.y));
+
+			dirty.add(mMarquee);
+			repaint(dirty.x, dirty.y, dirty.width + 1, dirty.height + 1);
+		}
+
+		@Override
+		public void mouseReleased(MouseEvent e) {
+			if (mStart == null)
+				return;
+
+			List<SlideElement> selected = new ArrayList<SlideElement>();
+			if (mMarquee.width > 0 || mMarquee.height > 0)
+				selected = getElementsIn(mMarquee);
+
+			if (selected.isEmpty())
+				SelectionManager.getInstance().clearSelection();
+			else
+				SelectionManager.getInstance().setSelection(selected);
+
+			mStart = null;
+			mMarquee = null;
+			repaint();
+		}
 	}
 
 	/** Provide a Universal ID for serialization */
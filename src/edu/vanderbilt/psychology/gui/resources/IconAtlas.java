@@ -0,0 +1,173 @@
+package edu.vanderbilt.psychology.gui.resources;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Packs many small images into a single image, so that they can all be decoded
+ * in one pass. An atlas is two files: a PNG holding every image, and an index
+ * that holds where each image is in the PNG, and a stamp of the file it came
+ * from (see {@link ResourceManager#getStamp(String)}). An image whose source
+ * has changed since the atlas was written is not taken from the atlas.
+ *
+ * <p>
+ * Images are packed in rows, tallest first, with rows no wider than
+ * {@link #MAX_WIDTH} unless a single image is wider.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class IconAtlas {
+
+	public static final int MAX_WIDTH = 256;
+
+	/** A gap between images, so that filtering never bleeds across them */
+	private static final int GAP = 1;
+
+	private static final String STAMP_SUFFIX = ".stamp";
+
+	/**
+	 * Reads an atlas
+	 *
+	 * @param stamps
+	 *            the current stamp of each wanted image. Images that are not
+	 *            in here, or whose stamp does not match, are left out
+	 * @return the images from the atlas that are still current, by name. Empty
+	 *         if the atlas does not exist or cannot be read
+	 */
+	public static Map<String, BufferedImage> read(File png, File index,
+			Map<String, String> stamps) {
+		Map<String, BufferedImage> images = new HashMap<String, BufferedImage>();
+		if (png.exists() == false || index.exists() == false)
+			return images;
+
+		try {
+			Properties p = new Properties();
+			InputStream in = new FileInputStream(index);
+			try {
+				p.load(in);
+			} finally {
+				in.close();
+			}
+
+			BufferedImage atlas = ImageIO.read(png);
+			if (atlas == null)
+				return images;
+
+			// PNGs usually decode to a type that is slow to draw
+			if (atlas.getType() != BufferedImage.TYPE_INT_ARGB) {
+				BufferedImage converted = new BufferedImage(atlas.getWidth(),
+						atlas.getHeight(), BufferedImage.TYPE_INT_ARGB);
+				Graphics2D g = converted.createGraphics();
+				g.setComposite(AlphaComposite.Src);
+				g.drawImage(atlas, 0, 0, null);
+				g.dispose();
+				atlas = converted;
+			}
+
+			for (Map.Entry<String, String> e : stamps.entrySet()) {
+				String bounds = p.getProperty(e.getKey());
+				if (bounds == null
+						|| e.getValue().equals(
+								p.getProperty(e.getKey() + STAMP_SUFFIX)) == false)
+					continue;
+
+				String[] parts = bounds.split(",");
+				images.put(e.getKey(), atlas.getSubimage(Integer
+						.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer
+						.parseInt(parts[2]), Integer.parseInt(parts[3])));
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			images.clear();
+		} catch (RuntimeException e) {
+			// A damaged index, the atlas will just be written again
+			e.printStackTrace();
+			images.clear();
+		}
+
+		return images;
+	}
+
+	/**
+	 * Packs images into an atlas and writes it
+	 *
+	 * @param images
+	 *            the images to pack, by name
+	 * @param stamps
+	 *            the stamp of the source of each image
+	 */
+	public static void write(final Map<String, BufferedImage> images,
+			Map<String, String> stamps, File png, File index)
+			throws IOException {
+		List<String> names = new ArrayList<String>(images.keySet());
+		Collections.sort(names, new Comparator<String>() {
+			public int compare(String a, String b) {
+				int diff = images.get(b).getHeight()
+						- images.get(a).getHeight();
+				return diff != 0 ? diff : a.compareTo(b);
+			}
+		});
+
+		// Lay the images out in rows
+		Properties p = new Properties();
+		int x = 0, y = 0, rowHeight = 0, width = 1;
+		for (String name : names) {
+			BufferedImage image = images.get(name);
+			if (x > 0 && x + image.getWidth() > MAX_WIDTH) {
+				x = 0;
+				y += rowHeight + GAP;
+				rowHeight = 0;
+			}
+
+			p.setProperty(name, x + "," + y + "," + image.getWidth() + ","
+					+ image.getHeight());
+			p.setProperty(name + STAMP_SUFFIX, stamps.get(name));
+
+			x += image.getWidth() + GAP;
+			width = Math.max(width, x);
+			rowHeight = Math.max(rowHeight, image.getHeight());
+		}
+		int height = Math.max(1, y + rowHeight);
+
+		BufferedImage atlas = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = atlas.createGraphics();
+		g.setComposite(AlphaComposite.Src);
+		for (String name : names) {
+			String[] parts = p.getProperty(name).split(",");
+			g.drawImage(images.get(name), Integer.parseInt(parts[0]), Integer
+					.parseInt(parts[1]), null);
+		}
+		g.dispose();
+
+		File dir = png.getParentFile();
+		if (dir != null)
+			dir.mkdirs();
+
+		ImageIO.write(atlas, "png", png);
+		OutputStream out = new FileOutputStream(index);
+		try {
+			p.store(out, "Experiment Builder icon atlas");
+		} finally {
+			out.close();
+		}
+	}
+}
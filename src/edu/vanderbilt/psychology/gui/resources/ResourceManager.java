@@ -0,0 +1,241 @@
+package edu.vanderbilt.psychology.gui.resources;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+import edu.vanderbilt.psychology.gui.sideBar.Section;
+import edu.vanderbilt.psychology.gui.toolBar.ToolbarButton;
+
+/**
+ * Loads every image the user interface uses once, and shares the loaded
+ * instances. Images are named by their path, such as
+ * <code>"images/save_icon.png"</code>, and are looked for on the classpath
+ * first, and then relative to the working directory.
+ *
+ * <p>
+ * {@link #preload(String[])} is called at startup with {@link #GUI_IMAGES}. It
+ * takes as many of the images as it can from an {@link IconAtlas} kept in the
+ * user's home directory, which is decoded in one pass. Any image that is not in
+ * the atlas, or whose file has changed, is loaded on its own and the atlas is
+ * written again for the next start. The atlas can be turned off by setting the
+ * system property <code>eb.iconAtlas</code> to false.
+ * </p>
+ *
+ * <p>
+ * Image loading is the main thing that {@link Section}s and
+ * {@link ToolbarButton}s did from disk each time one was built, so after
+ * startup those are built without touching the disk at all.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class ResourceManager {
+
+	public static final String ATLAS_PROPERTY = "eb.iconAtlas";
+
+	/** Every image the builder's user interface shows */
+	public static final String[] GUI_IMAGES = new String[] {
+			"images/arrow_down_mini.png", "images/arrow_right_mini.png",
+			"images/container_add.png", "images/film_add.png",
+			"images/font_add.png", "images/next_slide.png",
+			"images/picture_add.png", "images/prev_slide.png",
+			"images/save_icon.png", "images/sound_add.png" };
+
+	private static ResourceManager instance_;
+
+	private Map<String, BufferedImage> images_ = new HashMap<String, BufferedImage>();
+	private Map<String, ImageIcon> icons_ = new HashMap<String, ImageIcon>();
+
+	private File atlasDirectory_;
+	private long loadTime_ = 0;
+	private int diskReads_ = 0;
+
+	public static synchronized ResourceManager getInstance() {
+		if (instance_ == null)
+			instance_ = new ResourceManager(new File(System
+					.getProperty("user.home"), ".experiment-builder"));
+		return instance_;
+	}
+
+	/**
+	 * @param atlasDirectory
+	 *            where the icon atlas is kept, or null to not use one
+	 */
+	public ResourceManager(File atlasDirectory) {
+		atlasDirectory_ = atlasDirectory;
+	}
+
+	/**
+	 * Loads the given images, using the icon atlas if it is turned on. Prints
+	 * how long loading took
+	 */
+	public synchronized void preload(String[] names) {
+		long start = System.nanoTime();
+
+		Map<String, String> stamps = new LinkedHashMap<String, String>();
+		for (String name : names)
+			if (images_.containsKey(name) == false)
+				stamps.put(name, getStamp(name));
+
+		int fromAtlas = 0;
+		boolean useAtlas = atlasDirectory_ != null
+				&& Boolean.parseBoolean(System.getProperty(ATLAS_PROPERTY,
+						"true"));
+		if (useAtlas) {
+			Map<String, BufferedImage> cached = IconAtlas.read(getAtlasFile(),
+					getAtlasIndexFile(), stamps);
+			images_.putAll(cached);
+			fromAtlas = cached.size();
+		}
+
+		boolean changed = false;
+		for (String name : stamps.keySet())
+			if (images_.containsKey(name) == false) {
+				load(name);
+				changed = true;
+			}
+
+		if (useAtlas && changed) {
+			Map<String, BufferedImage> packed = new HashMap<String, BufferedImage>();
+			for (String name : stamps.keySet())
+				if (images_.get(name) != null)
+					packed.put(name, images_.get(name));
+
+			try {
+				IconAtlas.write(packed, stamps, getAtlasFile(),
+						getAtlasIndexFile());
+			} catch (IOException e) {
+				// Only the next start is slower
+				e.printStackTrace();
+			}
+		}
+
+		loadTime_ += System.nanoTime() - start;
+		System.out.println("Loaded " + stamps.size() + " GUI images ("
+				+ fromAtlas + " from the icon atlas) in "
+				+ (System.nanoTime() - start) / 1000000 + "ms");
+	}
+
+	/**
+	 * @return the image with the given name, loading it if it has not been
+	 *         loaded yet. The same instance is returned every time, so it must
+	 *         not be drawn on. Null if the image could not be found
+	 */
+	public synchronized BufferedImage getImage(String name) {
+		if (images_.containsKey(name) == false) {
+			long start = System.nanoTime();
+			load(name);
+			loadTime_ += System.nanoTime() - start;
+		}
+		return images_.get(name);
+	}
+
+	/**
+	 * @return a shared {@link ImageIcon} of the image with the given name. An
+	 *         empty {@link ImageIcon} if the image could not be found
+	 */
+	public synchronized ImageIcon getIcon(String name) {
+		ImageIcon icon = icons_.get(name);
+		if (icon == null) {
+			BufferedImage image = getImage(name);
+			icon = image == null ? new ImageIcon() : new ImageIcon(image);
+			icons_.put(name, icon);
+		}
+		return icon;
+	}
+
+	/** @return the total time spent loading images, in milliseconds */
+	public synchronized long getLoadTime() {
+		return loadTime_ / 1000000;
+	}
+
+	/** @return how many images were read from their own file */
+	public synchronized int getDiskReadCount() {
+		return diskReads_;
+	}
+
+	public File getAtlasFile() {
+		return new File(atlasDirectory_, "icon-atlas.png");
+	}
+
+	public File getAtlasIndexFile() {
+		return new File(atlasDirectory_, "icon-atlas.properties");
+	}
+
+	private void load(String name) {
+		BufferedImage image = null;
+		try {
+			URL url = getURL(name);
+			if (url != null)
+				image = ImageIO.read(url);
+			diskReads_++;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		if (image == null)
+			System.err.println("Couldn't find image: " + name);
+
+		// Remember missing images too, so they are only looked for once
+		images_.put(name, image);
+	}
+
+	/**
+	 * @return where an image is, on the classpath or else relative to the
+	 *         working directory. Null if it is in neither place
+	 */
+	static URL getURL(String name) {
+		URL url = ResourceManager.class.getResource("/" + name);
+		if (url != null)
+			return url;
+
+		File f = new File(name);
+		if (f.exists() == false)
+			return null;
+
+		try {
+			return f.toURI().toURL();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return a string that changes whenever the image's file changes, made
+	 *         from its modification time and length
+	 */
+	static String getStamp(String name) {
+		URL url = getURL(name);
+		if (url == null)
+			return "missing";
+
+		if ("file".equals(url.getProtocol())) {
+			try {
+				File f = new File(url.toURI());
+				return f.lastModified() + ":" + f.length();
+			} catch (URISyntaxException e) {
+				// Fall through to asking the connection
+			}
+		}
+
+		try {
+			URLConnection c = url.openConnection();
+			String stamp = c.getLastModified() + ":" + c.getContentLength();
+			c.getInputStream().close();
+			return stamp;
+		} catch (IOException e) {
+			return "unknown";
+		}
+	}
+}
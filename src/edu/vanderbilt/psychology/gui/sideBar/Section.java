@@ -7,22 +7,22 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.GradientPaint;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
-import java.awt.font.FontRenderContext;
-import java.awt.font.LineMetrics;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
 
-import javax.imageio.ImageIO;
 import javax.swing.BoxLayout;
 import javax.swing.JPanel;
 
+import edu.vanderbilt.psychology.controller.toolbarActions.util.FontCatalogue;
+import edu.vanderbilt.psychology.gui.resources.ResourceManager;
+import edu.vanderbilt.psychology.model.properties.Property;
+
 /**
  * Defines a standard look and feel for {@link Section}s. All {@link Section}s
  * have a header bar, which contains a title string and is clickable to
@@ -59,11 +59,6 @@ import javax.swing.JPanel;
  * @author Hamilton Turner
  * 
  */
-// TODO If the code base gets to the optimize level, then we should attempt to
-// avoid re-creating all of these Section objects. We are using a Prototype
-// model
-// for the Propertys, so something similar should work here. Do a check to see
-// if something matches the default and avoid creating a new object if it does
 public final class Section extends JPanel {
 	private boolean selected_;
 	private JPanel contentPanel_;
@@ -88,6 +83,14 @@ public final class Section extends JPanel {
 
 	}
 
+	/**
+	 * @return the content panel, so that a {@link Property} can show its
+	 *         values in a {@link Section} it is re-bound to
+	 */
+	public JPanel getContentPanel() {
+		return contentPanel_;
+	}
+
 	public void toggleSelection() {
 		selected_ = !selected_;
 
@@ -154,14 +157,13 @@ public final class Section extends JPanel {
 
 			addMouseListener(this);
 			text_ = text;
-			font = new Font(Font.SERIF, Font.BOLD, 14);
+			font = FontCatalogue.getInstance()
+					.getFont(Font.SERIF, Font.BOLD, 14);
 
-			try {
-				open = ImageIO.read(new File("images/arrow_down_mini.png"));
-				closed = ImageIO.read(new File("images/arrow_right_mini.png"));
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+			open = ResourceManager.getInstance().getImage(
+					"images/arrow_down_mini.png");
+			closed = ResourceManager.getInstance().getImage(
+					"images/arrow_right_mini.png");
 
 		}
 
@@ -192,11 +194,10 @@ public final class Section extends JPanel {
 
 			g2.setFont(font);
 			g2.setPaint(Color.BLACK);
-			FontRenderContext frc = g2.getFontRenderContext();
-			LineMetrics lm = font.getLineMetrics(text_, frc);
-			float height = lm.getAscent() + lm.getDescent();
+			FontMetrics fm = FontCatalogue.getInstance().getMetrics(font);
+			float height = fm.getAscent() + fm.getDescent();
 			float x = OFFSET;
-			float y = (h + height) / 2 - lm.getDescent();
+			float y = (h + height) / 2 - fm.getDescent();
 			g2.drawString(text_, x, y);
 
 			setOpaque(true);
@@ -6,16 +6,17 @@ package edu.vanderbilt.psychology.gui.sideBar;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.GradientPaint;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
-import java.awt.font.FontRenderContext;
-import java.awt.font.LineMetrics;
 
 import javax.swing.BoxLayout;
 import javax.swing.JPanel;
 
+import edu.vanderbilt.psychology.controller.toolbarActions.util.FontCatalogue;
+
 /**
  * Delineates a grouping of {@link Section}s in the sidebar
  * 
@@ -45,7 +46,8 @@ public class SectionDivider extends JPanel {
 	public SectionDivider(String text) {
 		super();
 		text_ = text;
-		font = new Font(Font.SERIF, Font.BOLD, 14);
+		font = FontCatalogue.getInstance()
+				.getFont(Font.SERIF, Font.BOLD, 14);
 		setPreferredSize(PREFERRED_SIZE);
 		setMaximumSize(PREFERRED_SIZE);
 	}
@@ -69,11 +71,10 @@ public class SectionDivider extends JPanel {
 
 		g2.setFont(font);
 		g2.setPaint(Color.BLACK);
-		FontRenderContext frc = g2.getFontRenderContext();
-		LineMetrics lm = font.getLineMetrics(text_, frc);
-		float height = lm.getAscent() + lm.getDescent();
+		FontMetrics fm = FontCatalogue.getInstance().getMetrics(font);
+		float height = fm.getAscent() + fm.getDescent();
 		float x = OFFSET;
-		float y = (h + height) / 2 - lm.getDescent();
+		float y = (h + height) / 2 - fm.getDescent();
 		g2.drawString(text_, x, y);
 
 		setOpaque(true);
@@ -8,7 +8,9 @@ import java.awt.GradientPaint;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
@@ -112,6 +114,13 @@ public class SectionedPanel extends JPanel {
 	 */
 	private List<Section> currentElementPropertySections_ = new ArrayList<Section>();
 
+	/**
+	 * Every {@link Section} that has been built, by the class of the
+	 * {@link Property} that built it. A {@link SlideElement} with more than one
+	 * {@link Property} of a class uses the {@link Section}s in order
+	 */
+	private Map<Class<? extends Property>, List<Section>> sectionPool_ = new HashMap<Class<? extends Property>, List<Section>>();
+
 	/** Any inputs that should always be showing */
 	private List<Section> inputs_;
 
@@ -174,40 +183,87 @@ public class SectionedPanel extends JPanel {
 		setOpaque(true);
 	}
 
+	/**
+	 * Shows the {@link Section}s for the {@link Property}s of a
+	 * {@link SlideElement}. The {@link Section}s are taken from the pool and
+	 * re-bound to the {@link SlideElement}'s {@link Property}s, so selecting a
+	 * {@link SlideElement} with the same kinds of {@link Property}s as the last
+	 * one does not add, remove or lay out anything
+	 * 
+	 * @param element
+	 *            the selected {@link SlideElement}, or null if nothing is
+	 *            selected
+	 */
 	public void updatePropertiesList(SlideElement element) {
+		List<Section> sections = new ArrayList<Section>();
+		List<Property> props = element == null ? null : element
+				.getProperties();
+
+		if (props != null) {
+			Map<Class<? extends Property>, Integer> used = new HashMap<Class<? extends Property>, Integer>();
+			for (Property p : props) {
+				Integer count = used.get(p.getClass());
+				int index = count == null ? 0 : count;
+				used.put(p.getClass(), index + 1);
+
+				sections.add(getPooledSection(p, index));
+			}
+		}
 
-		for (Section s : currentElementPropertySections_)
-			currentElementPropertiesPanel_.remove(s);
-
-		currentElementPropertySections_.clear();
-
-		if (element == null) {
-			validate();
+		if (sections.equals(currentElementPropertySections_))
 			return;
-		}
 
-		List<Property> props = element.getProperties();
+		drawElementPropertyPanels(sections);
+	}
 
-		if (props == null) {
-			validate();
-			return;
+	/**
+	 * @return the index-th pooled {@link Section} for the class of the
+	 *         {@link Property}, re-bound to the {@link Property}. Built by the
+	 *         {@link Property} if there is no such {@link Section} yet
+	 */
+	private Section getPooledSection(Property p, int index) {
+		List<Section> pool = sectionPool_.get(p.getClass());
+		if (pool == null) {
+			pool = new ArrayList<Section>();
+			sectionPool_.put(p.getClass(), pool);
 		}
 
-		for (Property p : props)
-			currentElementPropertySections_.add(p.getSection());
+		if (index < pool.size()) {
+			Section s = pool.get(index);
+			p.bindSection(s);
+			return s;
+		}
 
-		drawElementPropertyPanels();
+		Section s = p.getSection();
+		pool.add(s);
+		return s;
 	}
 
 	/**
-	 * Draws all {@link Section}s currently stored in
-	 * currentElementPropertySections_
+	 * Changes the shown {@link Section}s to the given ones. {@link Section}s
+	 * that are already shown in the right place are left alone, and only the
+	 * element properties panel is laid out again
 	 */
-	private void drawElementPropertyPanels() {
-		for (Section s : currentElementPropertySections_)
-			currentElementPropertiesPanel_.add(s);
+	private void drawElementPropertyPanels(List<Section> sections) {
+		// Remove the Sections that are not wanted any more, or out of order
+		int kept = 0;
+		while (kept < currentElementPropertySections_.size()
+				&& kept < sections.size()
+				&& currentElementPropertySections_.get(kept) == sections
+						.get(kept))
+			kept++;
+
+		for (int i = currentElementPropertySections_.size() - 1; i >= kept; i--)
+			currentElementPropertiesPanel_
+					.remove(currentElementPropertySections_.remove(i));
+
+		for (int i = kept; i < sections.size(); i++) {
+			currentElementPropertiesPanel_.add(sections.get(i));
+			currentElementPropertySections_.add(sections.get(i));
+		}
 
-		validate();
+		currentElementPropertiesPanel_.revalidate();
+		currentElementPropertiesPanel_.repaint();
 	}
 
 	/** Provide a Universal ID for serialization */
@@ -4,31 +4,28 @@
 package edu.vanderbilt.psychology.gui.slideElements;
 
 import java.awt.Color;
-import java.awt.Graphics2D;
-import java.awt.Image;
+import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.awt.RenderingHints;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
 
-import sun.awt.image.ImageFormatException;
-import sun.reflect.generics.reflectiveObjects.NotImplementedException;
-import edu.vanderbilt.psychology.controller.SelectionManager;
+import edu.vanderbilt.psychology.gui.main.StageWrapper;
 import edu.vanderbilt.psychology.model.EBList;
 import edu.vanderbilt.psychology.model.ListDatabase;
 import edu.vanderbilt.psychology.model.elements.ImageElementModel;
 import edu.vanderbilt.psychology.model.elements.ModelElement;
+import edu.vanderbilt.psychology.model.media.ImageImporter;
+import edu.vanderbilt.psychology.model.media.ImagePyramid;
+import edu.vanderbilt.psychology.model.media.ResolvedAsset;
 import edu.vanderbilt.psychology.model.properties.Appearance;
 import edu.vanderbilt.psychology.model.properties.DataSource;
 import edu.vanderbilt.psychology.model.properties.Movement;
@@ -45,18 +42,28 @@ public class ImageElement extends SlideElement {
 	private JLabel bottomRightHandler_;
 	private JLabel imageLabel_;
 	private ImageIcon image_;
+	private ImagePyramid pyramid_;
+	private File file_;
 	private String name_;
 
 	private static final String Handle_Up_Text = "+";
 	private static final String Handle_Pressed_Text = "-";
 	private static final int Handle_Size = 10;
 
-	private ArrayList<Property> properties_;
+	private List<Property> properties_;
 
 	private ImageElementModel mModel;
 
+	/**
+	 * Creates a placeholder of the given size. The image itself is shown once
+	 * {@link #setPreview(BufferedImage, boolean)} is called, which lets the
+	 * file be decoded on a background thread (see {@link ImageImporter})
+	 * 
+	 * @param size
+	 *            the size to show the image at
+	 */
 	@SuppressWarnings("unchecked")
-	public ImageElement(File imageFileSelected) throws ImageFormatException {
+	public ImageElement(File imageFileSelected, Dimension size) {
 		super();
 
 		// Allows resize handles without an entire JLayeredPane
@@ -64,10 +71,11 @@ public class ImageElement extends SlideElement {
 
 		properties_ = new ArrayList<Property>();
 
-		// Add properties
-		properties_.add(new Appearance());
-		properties_.add(new Movement());
-		properties_.add(new Position());
+		// Add properties. These are the shared defaults until changed, see
+		// Property.edit()
+		properties_.add(Property.getDefault(Appearance.class));
+		properties_.add(Property.getDefault(Movement.class));
+		properties_.add(Property.getDefault(Position.class));
 		// properties_.add(new DataSource(imageFileSelected.getAbsolutePath(),
 		// Type.Single_File));
 
@@ -78,32 +86,40 @@ public class ImageElement extends SlideElement {
 		properties_.add(new DataSource(ListDatabase.getInstance().getByName(
 				"mylist"), Type.Multiple_Files));
 
+		file_ = imageFileSelected;
 		name_ = imageFileSelected.getName();
 
-		BufferedImage image = null;
-		try {
-			image = ImageIO.read(imageFileSelected);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		createComponents(size);
 
-		if (image == null) {
-			// TODO - report error to user!
+		mModel = new ImageElementModel(this);
 
-			SelectionManager.getInstance().remove(this);
-			throw new ImageFormatException(
-					"Image file was not readable by any ImageReader contained in this system's "
-							+ "Java Runtime Environment. Please be sure your JRE is up to date, "
-							+ "or convert your image to a different format");
-		}
+	}
+
+	/**
+	 * Rebuilds an element from its model, such as when a saved slide is shown
+	 * again. Starts out as a placeholder, and the image is decoded on a
+	 * background thread
+	 */
+	public ImageElement(ImageElementModel model) {
+		super();
+		setLayout(null);
+		initializeWithModel(model);
+	}
 
-		image_ = new ImageIcon(image);
-		imageLabel_ = new JLabel(image_);
-		imageLabel_.setSize(image_.getIconWidth(), image_.getIconHeight());
+	/**
+	 * Adds the placeholder label and the resize handle, sized for an image of
+	 * the given size
+	 */
+	private void createComponents(Dimension size) {
+		// Shown until the preview has been decoded
+		imageLabel_ = new JLabel("Loading...", JLabel.CENTER);
+		imageLabel_.setOpaque(true);
+		imageLabel_.setBackground(Color.LIGHT_GRAY);
+		imageLabel_.setSize(size);
 
 		// Set the bounds, so the container expands and we can correctly place
 		// handles
-		setBounds(0, 0, image_.getIconWidth(), image_.getIconHeight());
+		setBounds(0, 0, size.width, size.height);
 
 		// Add the handles first, so they display on top of the image
 		bottomRightHandler_ = new JLabel(Handle_Up_Text);
@@ -119,15 +135,71 @@ public class ImageElement extends SlideElement {
 		add(imageLabel_);
 
 		setBackground(Color.RED);
+	}
 
-		mModel = new ImageElementModel(this);
-
+	/**
+	 * Replaces the placeholder with the image
+	 * 
+	 * @param preview
+	 *            the decoded image, at least as large as this element unless
+	 *            the image itself is smaller
+	 * @param subsampled
+	 *            true if the preview is smaller than the image file, in which
+	 *            case the file is decoded in full later if this element is
+	 *            made larger than the preview
+	 */
+	public void setPreview(BufferedImage preview, boolean subsampled) {
+		if (subsampled)
+			pyramid_ = new ImagePyramid(preview, file_);
+		else
+			pyramid_ = new ImagePyramid(preview);
+		pyramid_.buildLevelsLater();
+
+		image_ = new ImageIcon();
+		imageLabel_.setText(null);
+		imageLabel_.setOpaque(false);
+		imageLabel_.setIcon(image_);
+
+		updateLayout();
 	}
 
 	@Override
 	public void initializeWithModel(ModelElement model) {
-		// TODO - implement
-		throw new NotImplementedException();
+		if (!(model instanceof ImageElementModel))
+			throw new IllegalArgumentException(
+					"Attempted to initialize an ImageElement with a model that was not an instance of ImageElementModel");
+
+		ImageElementModel iem = (ImageElementModel) model;
+		DataSource ds = iem.getDataSource();
+		if (ds == null)
+			throw new IllegalStateException(
+					"An ImageElement must have a DataSource");
+
+		properties_ = iem.getProperties();
+		file_ = new File(ds.getCurrentData());
+		name_ = file_.getName();
+
+		Dimension size = iem.getSize();
+		createComponents(size);
+		setLocation(iem.getLocation());
+
+		mModel = iem;
+
+		ImageImporter.decodePreview(file_, size, new ImageImporter.Listener() {
+			public void headerRead(ResolvedAsset header, Dimension size) {
+			}
+
+			public void previewDecoded(BufferedImage preview,
+					boolean subsampled) {
+				setPreview(preview, subsampled);
+			}
+
+			public void failed(String message) {
+				System.out.println("Unable to show " + file_ + ": " + message);
+				imageLabel_.setText("Missing image");
+				invalidateAppearance();
+			}
+		});
 	}
 
 	@Override
@@ -147,6 +219,16 @@ public class ImageElement extends SlideElement {
 		return name_;
 	}
 
+	@Override
+	public void updateFromModel() {
+		Dimension size = mModel.getSize();
+		if (size == null || size.equals(getSize()))
+			return;
+
+		setSize(size);
+		updateLayout();
+	}
+
 	private void updateLayout() {
 
 		int width = getWidth(), height = getHeight();
@@ -157,21 +239,27 @@ public class ImageElement extends SlideElement {
 
 		imageLabel_.setBounds(0, 0, width, height);
 
-		// TODO - re-read the image from the file before scaling
-		image_.setImage(getScaledImage(image_.getImage(), width, height));
-
-		ImageElement.this.repaint();
-	}
+		// Still waiting for the preview
+		if (pyramid_ == null) {
+			invalidateAppearance();
+			return;
+		}
 
-	private Image getScaledImage(Image srcImg, int w, int h) {
-		BufferedImage resizedImg = new BufferedImage(w, h,
-				BufferedImage.TYPE_INT_RGB);
-		Graphics2D g2 = resizedImg.createGraphics();
-		g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-		g2.drawImage(srcImg, 0, 0, w, h, null);
-		g2.dispose();
-		return resizedImg;
+		// Show a quick scale of the nearest pyramid level straight away, and
+		// swap in a better one from the original image once it is ready
+		image_.setImage(pyramid_.getFastScaled(width, height));
+		invalidateAppearance();
+
+		pyramid_.resampleLater(width, height, new ImagePyramid.Listener() {
+			public void resampled(BufferedImage image, int w, int h) {
+				// Ignore it if the element has been resized again since
+				if (w != getWidth() || h != getHeight())
+					return;
+
+				image_.setImage(image);
+				invalidateAppearance();
+			}
+		});
 	}
 
 	private MouseListener genericListener = new MouseListener() {
@@ -181,10 +269,12 @@ public class ImageElement extends SlideElement {
 
 		public void mouseEntered(MouseEvent e) {
 			bottomRightHandler_.setText(Handle_Pressed_Text);
+			invalidateAppearance();
 		}
 
 		public void mouseExited(MouseEvent e) {
 			bottomRightHandler_.setText(Handle_Up_Text);
+			invalidateAppearance();
 		}
 
 		public void mousePressed(MouseEvent e) {
@@ -194,6 +284,7 @@ public class ImageElement extends SlideElement {
 
 		public void mouseReleased(MouseEvent e) {
 			e.getComponent().removeMouseMotionListener(motionListener_);
+			motionListener_.finish();
 			updateLayout();
 		}
 
@@ -215,12 +306,17 @@ public class ImageElement extends SlideElement {
 	 * events, only mouseDrag events (because the mouse will be pressed the
 	 * entire time we are receiving events)
 	 * 
+	 * While dragging, only a ghost of the new size is shown on the
+	 * {@link StageWrapper}. The element itself is resized once, in
+	 * {@link #finish()}
+	 * 
 	 * @author Hamilton Turner
 	 * 
 	 */
 	private class DragMouseMotionListener implements MouseMotionListener {
 		private Point startPoint_;
 		private Rectangle startBounds_;
+		private Rectangle newBounds_;
 
 		/**
 		 * 
@@ -237,17 +333,42 @@ public class ImageElement extends SlideElement {
 		public void setStart(Point startPoint, Rectangle startBounds) {
 			startPoint_ = startPoint;
 			startBounds_ = startBounds;
+			newBounds_ = null;
 		}
 
 		public void mouseDragged(MouseEvent e) {
 			int motionHorizontal = e.getX() - startPoint_.x;
 			int motionVertical = e.getY() - startPoint_.y;
 
-			ImageElement.this.setSize(startBounds_.width + motionHorizontal,
-					startBounds_.height + motionVertical);
+			newBounds_ = new Rectangle(startBounds_.x, startBounds_.y, Math
+					.max(Handle_Size, startBounds_.width + motionHorizontal),
+					Math.max(Handle_Size, startBounds_.height + motionVertical));
+
+			// Use the nearest pyramid level for the ghost, as the current
+			// image might be much smaller than the new size
+			BufferedImage ghost = getAppearance();
+			if (pyramid_ != null)
+				ghost = pyramid_.getLevelFor(newBounds_.width,
+						newBounds_.height);
+
+			if (getParent() instanceof StageWrapper)
+				((StageWrapper) getParent()).showGhost(ghost, newBounds_);
+			else
+				ImageElement.this.setSize(newBounds_.getSize());
+		}
 
-			// TODO - there are some bugs here not allowing this
-			// updateLayout();
+		/**
+		 * Applies the size the element was dragged to, and removes the ghost
+		 */
+		public void finish() {
+			if (newBounds_ == null)
+				return;
+
+			ImageElement.this.setSize(newBounds_.getSize());
+			mModel.setSize(newBounds_.getSize());
+			if (getParent() instanceof StageWrapper)
+				((StageWrapper) getParent()).hideGhost();
+			newBounds_ = null;
 		}
 
 		public void mouseMoved(MouseEvent e) {
@@ -3,10 +3,16 @@
  */
 package edu.vanderbilt.psychology.gui.slideElements;
 
+import java.awt.AlphaComposite;
+import java.awt.Color;
 import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 import java.util.List;
 
 import javax.swing.JPanel;
+import javax.swing.border.Border;
 
 import net.java.swingfx.jdraggable.Draggable;
 import edu.vanderbilt.psychology.controller.SelectionManager;
@@ -48,12 +54,90 @@ import edu.vanderbilt.psychology.model.properties.Property;
 // Perhaps I could add something to the SlideElement ctor and fix this problem
 public abstract class SlideElement extends JPanel implements Draggable {
 
+	/** What this element looks like, drawn once and then re-used */
+	private BufferedImage mAppearance;
+	private boolean mAppearanceValid = false;
+
 	public SlideElement() {
 		super();
 
 		SelectionManager.getInstance().add(this);
 	}
 
+	/**
+	 * Draws the cached appearance rather than painting this element and all of
+	 * its children again. This matters when elements overlap, as Swing
+	 * repaints every overlapping element whenever one of them changes
+	 */
+	@Override
+	public void paint(Graphics g) {
+		if (getWidth() <= 0 || getHeight() <= 0)
+			return;
+
+		g.drawImage(getAppearance(), 0, 0, null);
+	}
+
+	/**
+	 * Paints this element as Swing normally would. Subclasses that draw
+	 * anything extra should override this instead of
+	 * {@link #paint(Graphics)}, so that it ends up in the cached appearance
+	 */
+	protected void paintAppearance(Graphics g) {
+		super.paint(g);
+	}
+
+	/**
+	 * Gets an image of this element, drawing it first if it has changed size
+	 * or {@link #invalidateAppearance()} has been called since it was last
+	 * drawn. The image is re-used, so do not hold on to it
+	 */
+	public BufferedImage getAppearance() {
+		int width = Math.max(1, getWidth());
+		int height = Math.max(1, getHeight());
+
+		if (mAppearance == null || mAppearance.getWidth() != width
+				|| mAppearance.getHeight() != height) {
+			mAppearance = new BufferedImage(width, height,
+					BufferedImage.TYPE_INT_ARGB);
+			mAppearanceValid = false;
+		}
+
+		if (mAppearanceValid == false) {
+			Graphics2D g = mAppearance.createGraphics();
+			g.setComposite(AlphaComposite.Clear);
+			g.fillRect(0, 0, width, height);
+			g.setComposite(AlphaComposite.SrcOver);
+			paintAppearance(g);
+			g.dispose();
+
+			mAppearanceValid = true;
+		}
+
+		return mAppearance;
+	}
+
+	/**
+	 * Must be called whenever this element changes what it shows without
+	 * changing size, such as showing a different image or text. Swing does
+	 * not tell us when a child component has repainted itself
+	 */
+	public void invalidateAppearance() {
+		mAppearanceValid = false;
+		repaint();
+	}
+
+	@Override
+	public void setBorder(Border border) {
+		super.setBorder(border);
+		invalidateAppearance();
+	}
+
+	@Override
+	public void setBackground(Color bg) {
+		super.setBackground(bg);
+		invalidateAppearance();
+	}
+
 	/**
 	 * Given a {@link ModelElement} of the appropriate type, initialize this
 	 * objects values with the values found in that {@link ModelElement}
@@ -88,6 +172,16 @@ public abstract class SlideElement extends JPanel implements Draggable {
 	 */
 	public abstract ModelElement getModel();
 
+	/**
+	 * Brings this {@link SlideElement} in line with its {@link ModelElement}
+	 * after the {@link ModelElement} was changed somewhere other than on the
+	 * stage, such as by an undo. The location is handled by the caller, so
+	 * {@link SlideElement}s that show nothing else from their
+	 * {@link ModelElement} do not need to override this
+	 */
+	public void updateFromModel() {
+	}
+
 	public abstract List<Property> getProperties();
 
 	/** Provide a Universal ID for serialization */
@@ -25,6 +25,8 @@ import edu.vanderbilt.psychology.model.properties.Property;
  * 
  */
 public class TextElement extends SlideElement {
+	private static final Color BORDER_COLOR = new Color(204, 204, 204);
+
 	private JLabel label_;
 
 	private ArrayList<Property> properties_;
@@ -42,11 +44,12 @@ public class TextElement extends SlideElement {
 
 		properties_ = new ArrayList<Property>();
 
-		// Add properties
-		properties_.add(new Appearance());
-		properties_.add(new Movement());
-		properties_.add(new Position());
-		properties_.add(new MouseActions());
+		// Add properties. These are the shared defaults until changed, see
+		// Property.edit()
+		properties_.add(Property.getDefault(Appearance.class));
+		properties_.add(Property.getDefault(Movement.class));
+		properties_.add(Property.getDefault(Position.class));
+		properties_.add(Property.getDefault(MouseActions.class));
 
 		label_ = new JLabel(text);
 		label_.setFont(font);
@@ -81,10 +84,10 @@ public class TextElement extends SlideElement {
 	}
 
 	@Override
-	public void paint(Graphics g) {
-		super.paint(g);
+	protected void paintAppearance(Graphics g) {
+		super.paintAppearance(g);
 
-		g.setColor(new Color(204, 204, 204));
+		g.setColor(BORDER_COLOR);
 		g.drawLine(0, 0, label_.getWidth(), 0);
 		g.drawLine(label_.getWidth() - 1, 0, label_.getWidth() - 1, label_
 				.getHeight());
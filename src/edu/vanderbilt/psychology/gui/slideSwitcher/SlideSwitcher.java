@@ -0,0 +1,571 @@
+package edu.vanderbilt.psychology.gui.slideSwitcher;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.AbstractListModel;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListCellRenderer;
+import javax.swing.ListSelectionModel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import edu.vanderbilt.psychology.controller.SelectionManager;
+import edu.vanderbilt.psychology.gui.main.Builder;
+import edu.vanderbilt.psychology.model.BuilderState;
+import edu.vanderbilt.psychology.model.EBList;
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.ListDatabase;
+import edu.vanderbilt.psychology.model.Loop;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.TrialGenerator;
+
+/**
+ * The strip of {@link Slide} thumbnails along the bottom of the builder.
+ *
+ * <p>
+ * This is a horizontal {@link JList} over the {@link Slide}s of the current
+ * {@link Experiment}, so no Swing components are created per {@link Slide}.
+ * Every cell has the same fixed size, which lets the {@link JList} work out
+ * which cells are visible without asking about any others, and only the
+ * visible cells are ever painted. A cell index is the {@link Slide}'s position
+ * in the {@link Experiment}, so clicking a cell needs no searching. Cells are
+ * painted from the {@link ThumbnailRenderer}'s thumbnails, and a thumbnail
+ * that is not in memory is requested the first time its cell is painted.
+ * </p>
+ *
+ * <p>
+ * Each cell has a small menu (the arrow in its top right corner, or a right
+ * click) containing the "Make Copy", "Make Copies...", "Repeat x times...",
+ * "Repeat For Each Item In...", "Repeat For Each Combination Of...", "Repeat
+ * Until ..." and "Stop Repeating" items.
+ * A {@link Slide} that repeats has its {@link Loop} written across the bottom
+ * of its cell.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+@SuppressWarnings("serial")
+public class SlideSwitcher extends JPanel implements ThumbnailRenderer.Listener {
+
+	/** The space around each thumbnail */
+	private static final int CELL_GAP = 4;
+
+	/** The size of the menu arrow in the top right corner of each cell */
+	private static final int MENU_ARROW_SIZE = 12;
+
+	private SlideListModel mModel;
+	private JList mList;
+	private JPopupMenu mMenu;
+	private JMenuItem mStopRepeating;
+
+	/** The position of the {@link Slide} the menu was last opened for */
+	private int mMenuPosition = -1;
+
+	/**
+	 * The {@link BuilderState} must have been constructed before this is
+	 */
+	public SlideSwitcher(int height) {
+		setLayout(new BorderLayout());
+
+		mModel = new SlideListModel();
+		mList = new JList(mModel);
+		mList.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+		mList.setVisibleRowCount(1);
+		mList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		mList.setFixedCellWidth(Builder.SLIDE_THUMBNAIL_WIDTH + 2 * CELL_GAP);
+		mList.setFixedCellHeight(Builder.SLIDE_THUMBNAIL_HEIGHT + 2 * CELL_GAP);
+		mList.setCellRenderer(new ThumbnailCell());
+		mList.setSelectedIndex(BuilderState.getInstance()
+				.getCurrentSlidePosition());
+		mList.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mousePressed(MouseEvent e) {
+				onPress(e);
+			}
+
+			@Override
+			public void mouseReleased(MouseEvent e) {
+				// Some platforms only report the popup trigger on release
+				if (e.isPopupTrigger())
+					onPress(e);
+			}
+		});
+
+		mMenu = buildMenu();
+
+		JScrollPane s = new JScrollPane(mList);
+		s.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+		s.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_NEVER);
+		s.getHorizontalScrollBar().setUnitIncrement(mList.getFixedCellWidth());
+		add(s, BorderLayout.CENTER);
+
+		add(buildNewSlidePanel(), BorderLayout.EAST);
+
+		setPreferredSize(new Dimension(1, height));
+
+		ThumbnailRenderer.getInstance().addListener(this);
+
+		// An undo or redo can add, remove or reorder any of the slides. While
+		// an experiment is being opened slides are only added to the end, so
+		// the strip is not scrolled back to the current slide every time
+		BuilderState.getInstance().addChangeListener(new ChangeListener() {
+			public void stateChanged(ChangeEvent e) {
+				if (BuilderState.getInstance().isLoading())
+					mModel.fireChanged();
+				else
+					refresh();
+			}
+		});
+	}
+
+	/**
+	 * Call after {@link Slide}s have been added, removed, or moved by anything
+	 * other than this switcher. Re-reads the whole {@link Experiment}, and
+	 * selects the {@link Slide} currently on the stage
+	 */
+	public void refresh() {
+		mModel.fireChanged();
+		showCurrentSlide();
+	}
+
+	public void thumbnailUpdated(Slide slide, BufferedImage thumbnail) {
+		int position = getExperiment().getPositionOfSlide(slide.getId());
+		if (position < 0)
+			return;
+
+		Rectangle r = mList.getCellBounds(position, position);
+		if (r != null)
+			mList.repaint(r);
+	}
+
+	private static Experiment getExperiment() {
+		return BuilderState.getInstance().getExperiment();
+	}
+
+	private void showCurrentSlide() {
+		int current = BuilderState.getInstance().getCurrentSlidePosition();
+		mList.setSelectedIndex(current);
+		mList.ensureIndexIsVisible(current);
+	}
+
+	private void onPress(MouseEvent e) {
+		int index = mList.locationToIndex(e.getPoint());
+		if (index < 0)
+			return;
+
+		// locationToIndex returns the nearest cell, even if the point is
+		// past the end of the list
+		Rectangle bounds = mList.getCellBounds(index, index);
+		if (bounds == null || bounds.contains(e.getPoint()) == false)
+			return;
+
+		if (e.isPopupTrigger() || isOnMenuArrow(bounds, e.getPoint())) {
+			mMenuPosition = index;
+			mStopRepeating.setEnabled(getMenuSlide().getLoop() != null);
+			mMenu.show(mList, e.getX(), e.getY());
+			return;
+		}
+
+		if (e.getButton() != MouseEvent.BUTTON1)
+			return;
+
+		BuilderState state = BuilderState.getInstance();
+		if (index == state.getCurrentSlidePosition())
+			return;
+
+		state.saveCurrentSlide();
+		SelectionManager.getInstance().clearSelection();
+		state.setCurrentSlide(index);
+		showCurrentSlide();
+	}
+
+	private static boolean isOnMenuArrow(Rectangle cell, Point p) {
+		return p.x >= cell.x + cell.width - CELL_GAP - MENU_ARROW_SIZE
+				&& p.y <= cell.y + CELL_GAP + MENU_ARROW_SIZE;
+	}
+
+	private JPopupMenu buildMenu() {
+		JPopupMenu menu = new JPopupMenu();
+
+		JMenuItem copy = new JMenuItem("Make Copy");
+		copy.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				copySlide(1);
+			}
+		});
+		menu.add(copy);
+
+		JMenuItem copies = new JMenuItem("Make Copies...");
+		copies.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				String count = JOptionPane.showInputDialog(mList,
+						"How many copies?", "10");
+				if (count == null)
+					return;
+
+				try {
+					copySlide(Integer.parseInt(count.trim()));
+				} catch (NumberFormatException ex) {
+					JOptionPane.showMessageDialog(mList, "\"" + count
+							+ "\" is not a number");
+				}
+			}
+		});
+		menu.add(copies);
+
+		menu.addSeparator();
+
+		JMenuItem repeat = new JMenuItem("Repeat x times...");
+		repeat.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				Loop loop = getMenuSlide().getLoop();
+				String times = JOptionPane.showInputDialog(mList,
+						"How many times should this slide be shown?",
+						loop == null || loop.getTimes() == 0 ? "10" : Integer
+								.toString(loop.getTimes()));
+				if (times == null)
+					return;
+
+				try {
+					int n = Integer.parseInt(times.trim());
+					if (loop == null)
+						setLoop(new Loop(n, null));
+					else
+						setLoop(new Loop(n, loop.getList(), loop.getDesign(),
+								loop.getUntil()));
+				} catch (NumberFormatException ex) {
+					JOptionPane.showMessageDialog(mList, "\"" + times
+							+ "\" is not a number");
+				} catch (IllegalArgumentException ex) {
+					JOptionPane.showMessageDialog(mList, ex.getMessage());
+				}
+			}
+		});
+		menu.add(repeat);
+
+		JMenuItem forEach = new JMenuItem("Repeat For Each Item In...");
+		forEach.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				EBList<?> list = chooseList("Show this slide once for each item in");
+				if (list == null)
+					return;
+
+				Loop loop = getMenuSlide().getLoop();
+				if (loop == null)
+					setLoop(new Loop(0, list, null));
+				else
+					setLoop(new Loop(loop.getTimes(), list, loop.getUntil()));
+			}
+		});
+		menu.add(forEach);
+
+		JMenuItem combinations = new JMenuItem(
+				"Repeat For Each Combination Of...");
+		combinations.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				TrialGenerator design = chooseDesign();
+				if (design == null)
+					return;
+
+				Loop loop = getMenuSlide().getLoop();
+				if (loop == null)
+					setLoop(new Loop(0, design, null));
+				else
+					setLoop(new Loop(loop.getTimes(), design, loop.getUntil()));
+			}
+		});
+		menu.add(combinations);
+
+		JMenuItem until = new JMenuItem("Repeat Until ...");
+		until.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				Loop.Condition condition = chooseCondition();
+				if (condition == null)
+					return;
+
+				Loop loop = getMenuSlide().getLoop();
+				if (loop == null)
+					setLoop(new Loop(0, condition));
+				else
+					setLoop(new Loop(loop.getTimes(), loop.getList(), loop
+							.getDesign(), condition));
+			}
+		});
+		menu.add(until);
+
+		mStopRepeating = new JMenuItem("Stop Repeating");
+		mStopRepeating.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				setLoop(null);
+			}
+		});
+		menu.add(mStopRepeating);
+
+		return menu;
+	}
+
+	private Slide getMenuSlide() {
+		return getExperiment().getSlide(mMenuPosition);
+	}
+
+	/** Sets the {@link Loop} of the {@link Slide} the menu was opened for */
+	private void setLoop(Loop loop) {
+		if (mMenuPosition < 0)
+			return;
+
+		BuilderState.getInstance().setLoop(mMenuPosition, loop);
+	}
+
+	/**
+	 * Asks the user to pick one of the {@link Experiment}'s lists
+	 * 
+	 * @return the list, or null if there are none or the user cancelled
+	 */
+	private EBList<?> chooseList(String message) {
+		ListDatabase lists = getExperiment().getListDatabase();
+		Object[] names = lists.getNames().toArray();
+		if (names.length == 0) {
+			JOptionPane.showMessageDialog(mList,
+					"This experiment does not have any lists yet");
+			return null;
+		}
+
+		Object name = JOptionPane.showInputDialog(mList, message,
+				"Choose a List", JOptionPane.QUESTION_MESSAGE, null, names,
+				names[0]);
+		if (name == null)
+			return null;
+		return lists.getByName((String) name);
+	}
+
+	/**
+	 * Asks the user which lists to cross, how many times to give each
+	 * combination, and whether to shuffle them
+	 * 
+	 * @return the design, or null if the user cancelled
+	 */
+	private TrialGenerator chooseDesign() {
+		ListDatabase lists = getExperiment().getListDatabase();
+		if (lists.getNames().isEmpty()) {
+			JOptionPane.showMessageDialog(mList,
+					"This experiment does not have any lists yet");
+			return null;
+		}
+
+		JList names = new JList(lists.getNames().toArray());
+		names.setVisibleRowCount(6);
+		JTextField repetitions = new JTextField("1", 4);
+		JCheckBox shuffled = new JCheckBox("Shuffle the combinations", true);
+
+		JPanel panel = new JPanel(new BorderLayout());
+		panel.add(new JLabel("Show this slide once for each combination of"),
+				BorderLayout.NORTH);
+		panel.add(new JScrollPane(names), BorderLayout.CENTER);
+		JPanel options = new JPanel();
+		options.add(new JLabel("Repetitions"));
+		options.add(repetitions);
+		options.add(shuffled);
+		panel.add(options, BorderLayout.SOUTH);
+
+		if (JOptionPane.showConfirmDialog(mList, panel, "Choose Lists",
+				JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION)
+			return null;
+
+		List<EBList<?>> factors = new ArrayList<EBList<?>>();
+		for (Object name : names.getSelectedValues())
+			factors.add(lists.getByName((String) name));
+		if (factors.isEmpty())
+			return null;
+
+		try {
+			return new TrialGenerator(factors, Integer.parseInt(repetitions
+					.getText().trim()), shuffled.isSelected());
+		} catch (NumberFormatException ex) {
+			JOptionPane.showMessageDialog(mList, "\""
+					+ repetitions.getText() + "\" is not a number");
+		} catch (IllegalArgumentException ex) {
+			JOptionPane.showMessageDialog(mList, ex.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Asks the user when a {@link Loop} should stop
+	 * 
+	 * @return the condition, or null if the user cancelled
+	 */
+	private Loop.Condition chooseCondition() {
+		final String time = "A length of time has passed";
+		final String list = "A list has run out";
+		Object kind = JOptionPane.showInputDialog(mList,
+				"Repeat this slide until", "Repeat Until",
+				JOptionPane.QUESTION_MESSAGE, null,
+				new Object[] { time, list }, time);
+
+		if (list.equals(kind)) {
+			EBList<?> chosen = chooseList("Repeat this slide until the end of");
+			return chosen == null ? null : new Loop.ListExhausted(chosen);
+		}
+
+		if (time.equals(kind)) {
+			String seconds = JOptionPane.showInputDialog(mList,
+					"How many seconds?", "60");
+			if (seconds == null)
+				return null;
+
+			try {
+				return new Loop.TimeLimit(Long.parseLong(seconds.trim()) * 1000);
+			} catch (NumberFormatException ex) {
+				JOptionPane.showMessageDialog(mList, "\"" + seconds
+						+ "\" is not a number");
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Inserts copies of the {@link Slide} the menu was opened for right after
+	 * it
+	 */
+	private void copySlide(int count) {
+		if (mMenuPosition < 0 || count < 1)
+			return;
+
+		BuilderState.getInstance().copySlide(mMenuPosition, count);
+		mModel.fireAdded(mMenuPosition + 1, mMenuPosition + count);
+		showCurrentSlide();
+	}
+
+	private JPanel buildNewSlidePanel() {
+		JPanel newSlide = new JPanel();
+		newSlide.setPreferredSize(new Dimension(Builder.SLIDE_THUMBNAIL_WIDTH,
+				Builder.SLIDE_THUMBNAIL_HEIGHT));
+		newSlide.setBorder(BorderFactory.createLineBorder(Color.BLACK));
+		newSlide.setLayout(new BorderLayout());
+
+		JButton plus = new JButton("+");
+		plus.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent evt) {
+				BuilderState.getInstance().addNewSlide();
+
+				int added = getExperiment().getSize() - 1;
+				mModel.fireAdded(added, added);
+				showCurrentSlide();
+			}
+		});
+		newSlide.add(plus, BorderLayout.CENTER);
+
+		JLabel newSlideText = new JLabel("New Slide", JLabel.CENTER);
+		newSlide.add(newSlideText, BorderLayout.SOUTH);
+
+		return newSlide;
+	}
+
+	/**
+	 * A view of the {@link Slide}s in the current {@link Experiment}. Nothing
+	 * is copied, each element is looked up in the {@link Experiment} when the
+	 * {@link JList} asks for it
+	 */
+	private static class SlideListModel extends AbstractListModel {
+
+		public int getSize() {
+			return getExperiment().getSize();
+		}
+
+		public Object getElementAt(int index) {
+			return getExperiment().getSlides().get(index);
+		}
+
+		void fireAdded(int first, int last) {
+			fireIntervalAdded(this, first, last);
+		}
+
+		void fireChanged() {
+			fireContentsChanged(this, 0, Integer.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Paints a single cell. One instance is shared by every cell, as is usual
+	 * for a {@link ListCellRenderer}
+	 */
+	private static class ThumbnailCell extends JComponent implements
+			ListCellRenderer {
+
+		private BufferedImage mThumbnail;
+		private boolean mSelected;
+		private int mPosition;
+		private Loop mLoop;
+
+		public Component getListCellRendererComponent(JList list, Object value,
+				int index, boolean isSelected, boolean cellHasFocus) {
+			Slide s = (Slide) value;
+			mThumbnail = ThumbnailRenderer.getInstance().getThumbnail(s);
+			if (mThumbnail == null)
+				ThumbnailRenderer.getInstance().request(s);
+
+			mSelected = isSelected;
+			mPosition = index;
+			mLoop = s.getLoop();
+			return this;
+		}
+
+		@Override
+		protected void paintComponent(Graphics g) {
+			int x = CELL_GAP, y = CELL_GAP;
+			int w = Builder.SLIDE_THUMBNAIL_WIDTH;
+			int h = Builder.SLIDE_THUMBNAIL_HEIGHT;
+
+			if (mThumbnail != null)
+				g.drawImage(mThumbnail, x, y, w, h, null);
+			else {
+				g.setColor(Color.LIGHT_GRAY);
+				g.fillRect(x, y, w, h);
+			}
+
+			g.setColor(mSelected ? Color.BLUE : Color.BLACK);
+			g.drawRect(x, y, w - 1, h - 1);
+			if (mSelected)
+				g.drawRect(x - 1, y - 1, w + 1, h + 1);
+
+			g.setColor(Color.BLACK);
+			String label = Integer.toString(mPosition + 1);
+			if (mLoop != null)
+				label += "  (repeat " + mLoop + ")";
+			g.drawString(label, x + 4, y + h - 4);
+
+			// The menu arrow
+			int ax = x + w - MENU_ARROW_SIZE - 2;
+			int ay = y + 4;
+			g.fillPolygon(new int[] { ax, ax + MENU_ARROW_SIZE,
+					ax + MENU_ARROW_SIZE / 2 }, new int[] { ay, ay,
+					ay + MENU_ARROW_SIZE / 2 }, 3);
+		}
+	}
+}
@@ -0,0 +1,431 @@
+package edu.vanderbilt.psychology.gui.slideSwitcher;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+import edu.vanderbilt.psychology.gui.main.Builder;
+import edu.vanderbilt.psychology.model.ExperimentSnapshot;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.SlideState;
+import edu.vanderbilt.psychology.model.elements.ImageElementModel;
+import edu.vanderbilt.psychology.model.elements.ModelElement;
+import edu.vanderbilt.psychology.model.elements.TextModelElement;
+import edu.vanderbilt.psychology.model.media.PixelCache;
+import edu.vanderbilt.psychology.model.properties.DataSource;
+
+/**
+ * Draws {@link Slide} thumbnails on a background thread, straight from the
+ * {@link ModelElement}s using Java2D. No Swing components are created, and
+ * nothing is drawn on the event dispatch thread.
+ *
+ * <p>
+ * Every request is tagged with the {@link Slide#getContentHash()} at the time
+ * of the request. If the {@link Slide} already has a thumbnail for that hash,
+ * the request is ignored. Requests for the same {@link Slide} that arrive
+ * within {@link #COALESCE_DELAY_MS} of each other are collapsed, and only the
+ * latest one is drawn.
+ * </p>
+ *
+ * <p>
+ * Every finished thumbnail is written to a cache directory, one PNG per
+ * content hash. Until the experiment is saved this is a temporary directory.
+ * Once saved, the thumbnails are moved to a directory next to the experiment
+ * file (see {@link #getCacheDirectoryFor(File)}), so reopening the experiment
+ * does not draw anything. Only the {@link #MAX_CACHED_THUMBNAILS} most
+ * recently used thumbnails are kept in memory, the rest are loaded back from
+ * the cache directory if they are needed again.
+ * </p>
+ *
+ * <p>
+ * Once a thumbnail is ready any {@link Listener}s are told, on the event
+ * dispatch thread.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class ThumbnailRenderer {
+
+	/** How long to wait for more edits before drawing a thumbnail */
+	public static final int COALESCE_DELAY_MS = 150;
+
+	/** The size of the stage that {@link ModelElement} locations are relative to */
+	public static final int STAGE_WIDTH = 1400;
+	public static final int STAGE_HEIGHT = 900;
+
+	/** How many thumbnails are kept in memory */
+	public static final int MAX_CACHED_THUMBNAILS = 64;
+
+	private static final String CACHE_SUFFIX = ".png";
+
+	/**
+	 * Told whenever a thumbnail has been drawn or loaded. Always called on the
+	 * event dispatch thread
+	 */
+	public interface Listener {
+		public void thumbnailUpdated(Slide slide, BufferedImage thumbnail);
+	}
+
+	private static final class Job {
+		Slide slide;
+		long hash;
+		List<ModelElement> elements;
+	}
+
+	private static ThumbnailRenderer mInstance;
+
+	private ScheduledExecutorService mWorker;
+	private ConcurrentHashMap<Slide, Job> mPending = new ConcurrentHashMap<Slide, Job>();
+
+	/** The content hash of the newest thumbnail of each slide */
+	private Map<Slide, Long> mHashes = Collections
+			.synchronizedMap(new WeakHashMap<Slide, Long>());
+
+	/** The most recently used thumbnails, eldest first */
+	private Map<Slide, BufferedImage> mImages = Collections
+			.synchronizedMap(new LinkedHashMap<Slide, BufferedImage>(16,
+					0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<Slide, BufferedImage> eldest) {
+					return size() > MAX_CACHED_THUMBNAILS;
+				}
+			});
+
+	private CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+	private volatile File mCacheDirectory;
+	private volatile boolean mCacheIsTemporary = false;
+	private volatile int mRenderCount = 0;
+
+	public static synchronized ThumbnailRenderer getInstance() {
+		if (mInstance == null)
+			mInstance = new ThumbnailRenderer();
+		return mInstance;
+	}
+
+	private ThumbnailRenderer() {
+		mWorker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "thumbnail-renderer");
+				t.setDaemon(true);
+				t.setPriority(Thread.MIN_PRIORITY);
+				return t;
+			}
+		});
+	}
+
+	public void addListener(Listener l) {
+		mListeners.add(l);
+	}
+
+	public void removeListener(Listener l) {
+		mListeners.remove(l);
+	}
+
+	/**
+	 * Asks for the thumbnail of a {@link Slide} to be brought up to date. Must
+	 * be called on the thread that edits the {@link Slide} (the event dispatch
+	 * thread), as the list of elements is copied here
+	 */
+	public void request(final Slide s) {
+		long hash = s.getContentHash();
+		if (isCurrent(s, hash))
+			return;
+
+		Job j = new Job();
+		j.slide = s;
+		j.hash = hash;
+		j.elements = new ArrayList<ModelElement>(s.getModelElements());
+
+		// Only schedule a run if one is not already waiting for this slide.
+		// The waiting run will pick up this newer job
+		if (mPending.put(s, j) == null)
+			mWorker.schedule(new Runnable() {
+				public void run() {
+					Job latest = mPending.remove(s);
+					if (latest != null)
+						process(latest);
+				}
+			}, COALESCE_DELAY_MS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return the most recent thumbnail for the {@link Slide}, or null if one
+	 *         has not been drawn yet. The thumbnail may be out of date if a
+	 *         request is still waiting
+	 */
+	public BufferedImage getThumbnail(Slide s) {
+		return mImages.get(s);
+	}
+
+	/**
+	 * @return true if the thumbnail in memory was made from this content hash
+	 */
+	private boolean isCurrent(Slide s, long hash) {
+		Long current = mHashes.get(s);
+		return current != null && current.longValue() == hash
+				&& mImages.containsKey(s);
+	}
+
+	/** @return how many thumbnails have actually been drawn (not loaded) */
+	public int getRenderCount() {
+		return mRenderCount;
+	}
+
+	/**
+	 * @return the directory that thumbnails for the given experiment file are
+	 *         kept in
+	 */
+	public static File getCacheDirectoryFor(File experimentFile) {
+		return new File(experimentFile.getAbsoluteFile().getParentFile(),
+				experimentFile.getName() + ".thumbnails");
+	}
+
+	/**
+	 * Moves the thumbnail of every {@link Slide} in the snapshot into the given
+	 * directory, removes any thumbnails there that none of them use, and then
+	 * uses that directory as the cache from now on. Slides that were not drawn
+	 * this session keep the thumbnails they already had. Runs on the
+	 * background thread after any waiting requests
+	 *
+	 * @param snapshot
+	 *            the experiment as it was saved
+	 */
+	public void saveToCacheDirectory(final File dir,
+			final ExperimentSnapshot snapshot) {
+		mWorker.schedule(new Runnable() {
+			public void run() {
+				if (dir.exists() == false && dir.mkdirs() == false) {
+					System.out.println("Unable to create " + dir);
+					return;
+				}
+
+				File old = mCacheDirectory;
+				Set<String> keep = new HashSet<String>();
+				for (SlideState state : snapshot) {
+					String name = Long.toHexString(state.getContentHash())
+							+ CACHE_SUFFIX;
+					keep.add(name);
+
+					File target = new File(dir, name);
+					if (target.exists() || old == null || old.equals(dir))
+						continue;
+
+					File source = new File(old, name);
+					if (source.exists())
+						copy(source, target);
+				}
+
+				File[] existing = dir.listFiles();
+				if (existing != null)
+					for (File f : existing)
+						if (f.getName().endsWith(CACHE_SUFFIX)
+								&& keep.contains(f.getName()) == false)
+							f.delete();
+
+				mCacheDirectory = dir;
+				mCacheIsTemporary = false;
+			}
+		}, COALESCE_DELAY_MS * 2, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Uses an existing directory of thumbnails (such as the one next to an
+	 * experiment file that was just opened) as the cache
+	 */
+	public void useCacheDirectory(File dir) {
+		mCacheDirectory = dir;
+		mCacheIsTemporary = false;
+	}
+
+	/**
+	 * Gets the current cache directory, creating a temporary one if there is
+	 * none yet. Only called on the background thread
+	 */
+	private File getCacheDirectory() {
+		if (mCacheDirectory == null)
+			try {
+				File temp = File.createTempFile("eb-thumbnails", "");
+				temp.delete();
+				if (temp.mkdirs()) {
+					temp.deleteOnExit();
+					mCacheDirectory = temp;
+					mCacheIsTemporary = true;
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+
+		return mCacheDirectory;
+	}
+
+	private void process(Job j) {
+		if (isCurrent(j.slide, j.hash))
+			return;
+
+		BufferedImage image = null;
+		File dir = getCacheDirectory();
+		File cached = null;
+		if (dir != null) {
+			cached = new File(dir, Long.toHexString(j.hash) + CACHE_SUFFIX);
+			if (cached.exists())
+				try {
+					image = ImageIO.read(cached);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+		}
+
+		if (image == null) {
+			image = render(j.elements);
+			mRenderCount++;
+			if (cached != null) {
+				write(image, cached);
+				if (mCacheIsTemporary)
+					cached.deleteOnExit();
+			}
+		}
+
+		final BufferedImage result = image;
+		final Slide s = j.slide;
+		mHashes.put(s, j.hash);
+		mImages.put(s, image);
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				for (Listener l : mListeners)
+					l.thumbnailUpdated(s, result);
+			}
+		});
+	}
+
+	private static void copy(File source, File target) {
+		try {
+			FileChannel in = new FileInputStream(source).getChannel();
+			try {
+				FileChannel out = new FileOutputStream(target).getChannel();
+				try {
+					in.transferTo(0, in.size(), out);
+				} finally {
+					out.close();
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static void write(BufferedImage image, File f) {
+		try {
+			ImageIO.write(image, "png", f);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Draws a thumbnail of the given elements, in layer order
+	 */
+	public static BufferedImage render(List<ModelElement> elements) {
+		int width = Builder.SLIDE_THUMBNAIL_WIDTH;
+		int height = Builder.SLIDE_THUMBNAIL_HEIGHT;
+
+		BufferedImage thumbnail = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = thumbnail.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+				RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+		g.setColor(Color.LIGHT_GRAY);
+		g.fillRect(0, 0, width, height);
+
+		List<ModelElement> sorted = new ArrayList<ModelElement>(elements);
+		Collections.sort(sorted, new Comparator<ModelElement>() {
+			public int compare(ModelElement a, ModelElement b) {
+				int la = a.getLayer() == null ? 0 : a.getLayer().intValue();
+				int lb = b.getLayer() == null ? 0 : b.getLayer().intValue();
+				return la < lb ? -1 : (la == lb ? 0 : 1);
+			}
+		});
+
+		AffineTransform original = g.getTransform();
+		g.scale(width / (double) STAGE_WIDTH, height / (double) STAGE_HEIGHT);
+		for (ModelElement me : sorted)
+			drawElement(g, me);
+		g.setTransform(original);
+
+		g.setColor(Color.BLACK);
+		g.drawRect(0, 0, width - 1, height - 1);
+		g.dispose();
+
+		return thumbnail;
+	}
+
+	private static void drawElement(Graphics2D g, ModelElement me) {
+		Point p = me.getLocation();
+		if (p == null)
+			return;
+
+		if (me instanceof TextModelElement) {
+			TextModelElement tme = (TextModelElement) me;
+			if (tme.getText() == null)
+				return;
+
+			if (tme.getFont() != null)
+				g.setFont(tme.getFont());
+			g.setColor(tme.getForeGround() == null ? Color.BLACK : tme
+					.getForeGround());
+			FontMetrics fm = g.getFontMetrics();
+			g.drawString(tme.getText(), p.x, p.y + fm.getAscent());
+		} else if (me instanceof ImageElementModel) {
+			ImageElementModel ime = (ImageElementModel) me;
+			DataSource ds = ime.getDataSource();
+			Dimension size = ime.getSize();
+			if (ds == null || size == null)
+				return;
+
+			BufferedImage image = PixelCache.getDefault().getImage(
+					new File(ds.getCurrentData()), size.width, size.height);
+			if (image != null)
+				g.drawImage(image, p.x, p.y, size.width, size.height, null);
+			else {
+				g.setColor(Color.DARK_GRAY);
+				g.drawRect(p.x, p.y, size.width, size.height);
+			}
+		}
+	}
+}
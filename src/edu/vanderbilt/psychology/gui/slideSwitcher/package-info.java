@@ -0,0 +1,8 @@
+/**
+ * Contains the slide switcher shown along the bottom of the builder, and the
+ * code that draws the {@link edu.vanderbilt.psychology.model.Slide} thumbnails
+ * it shows
+ * 
+ * @author hamiltont
+ */
+package edu.vanderbilt.psychology.gui.slideSwitcher;
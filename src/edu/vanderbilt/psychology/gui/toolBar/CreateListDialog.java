@@ -4,6 +4,8 @@ import java.awt.BorderLayout;
 import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.List;
 
 import javax.swing.BoxLayout;
 import javax.swing.ButtonGroup;
@@ -12,14 +14,19 @@ import javax.swing.JButton;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JFileChooser;
 import javax.swing.JList;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JRadioButton;
 import javax.swing.JScrollPane;
 import javax.swing.JTextField;
+import javax.swing.ProgressMonitor;
 
 import edu.vanderbilt.psychology.model.EBList;
 import edu.vanderbilt.psychology.model.ListDatabase;
+import edu.vanderbilt.psychology.model.media.BulkImporter;
+import edu.vanderbilt.psychology.model.media.ResolvedAsset;
 
 /**
  * Builds and displays the create list dialog. Currently also handles building
@@ -36,6 +43,11 @@ public class CreateListDialog extends JDialog {
 	public static final int RESULT_OK = 1 << 0;
 	public static final int RESULT_CANCEL = 1 << 1;
 
+	/** At most this many problem files are named after a folder import */
+	private static final int MAX_PROBLEMS_SHOWN = 10;
+
+	private JRadioButton folder_;
+
 	public CreateListDialog() {
 		super((JFrame) null, "Create List", true);
 
@@ -55,11 +67,13 @@ public class CreateListDialog extends JDialog {
 		ButtonGroup bg = new ButtonGroup();
 		JRadioButton files = new JRadioButton(
 				"Files (Image files, Audio files, etc)");
+		folder_ = new JRadioButton("Every image in a folder");
 		JRadioButton strings = new JRadioButton("Strings");
 		JRadioButton numbers = new JRadioButton("Numbers");
 		JRadioButton lists = new JRadioButton("Other lists");
 
 		bg.add(files);
+		bg.add(folder_);
 		bg.add(strings);
 		bg.add(numbers);
 		bg.add(lists);
@@ -68,6 +82,7 @@ public class CreateListDialog extends JDialog {
 		JPanel buttons = new JPanel();
 		buttons.setLayout(new BoxLayout(buttons, BoxLayout.Y_AXIS));
 		buttons.add(files);
+		buttons.add(folder_);
 		buttons.add(strings);
 		buttons.add(numbers);
 		buttons.add(lists);
@@ -101,6 +116,11 @@ public class CreateListDialog extends JDialog {
 		public void actionPerformed(ActionEvent e) {
 			dispose();
 
+			if (folder_.isSelected()) {
+				importFolder();
+				return;
+			}
+
 			JDialog listDialog = new JDialog();
 
 			JPanel ui = buildTextListUI(listDialog);
@@ -182,4 +202,76 @@ public class CreateListDialog extends JDialog {
 
 		return ui;
 	}
+
+	/**
+	 * Asks for a folder, and builds a list of every image in it and its
+	 * sub-folders. The images are read in the background while a progress
+	 * monitor is shown, and the list is only added to the {@link ListDatabase}
+	 * if the import was not cancelled
+	 */
+	private void importFolder() {
+		JFileChooser chooser = new JFileChooser();
+		chooser.setDialogTitle("Choose a folder of images");
+		chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+		if (chooser.showOpenDialog(null) != JFileChooser.APPROVE_OPTION)
+			return;
+
+		File folder = chooser.getSelectedFile();
+		String name = (String) JOptionPane.showInputDialog(null,
+				"Enter list name", "Create List", JOptionPane.QUESTION_MESSAGE,
+				null, null, folder.getName());
+		if (name == null || name.trim().length() == 0)
+			return;
+
+		final ProgressMonitor monitor = new ProgressMonitor(null,
+				"Reading images in " + folder.getName(), null, 0, 1);
+		monitor.setMillisToDecideToPopup(200);
+
+		final BulkImporter importer = new BulkImporter(folder, name.trim());
+		importer.start(new BulkImporter.Listener() {
+			public void progress(int done, int total) {
+				if (monitor.isCanceled()) {
+					importer.cancel();
+					return;
+				}
+
+				monitor.setMaximum(Math.max(1, total));
+				monitor.setProgress(done);
+				monitor.setNote(done + " of " + total);
+			}
+
+			public void finished(EBList<File> list,
+					List<ResolvedAsset> problems, boolean cancelled) {
+				monitor.close();
+				if (cancelled || monitor.isCanceled())
+					return;
+
+				if (list.size() == 0) {
+					JOptionPane.showMessageDialog(null,
+							"No readable images were found", "Create List",
+							JOptionPane.WARNING_MESSAGE);
+					return;
+				}
+
+				ListDatabase.getInstance().addFileReferenceList(list);
+
+				if (problems.isEmpty())
+					return;
+
+				StringBuilder message = new StringBuilder();
+				message.append("Added " + list.size() + " images to "
+						+ list.getName() + ". These files could not be read:\n");
+				for (int i = 0; i < problems.size() && i < MAX_PROBLEMS_SHOWN; i++)
+					message.append(problems.get(i).getFile().getName()).append(
+							" - ").append(problems.get(i).getMessage()).append(
+							"\n");
+				if (problems.size() > MAX_PROBLEMS_SHOWN)
+					message.append("and " + (problems.size() - MAX_PROBLEMS_SHOWN)
+							+ " more");
+
+				JOptionPane.showMessageDialog(null, message.toString(),
+						"Create List", JOptionPane.WARNING_MESSAGE);
+			}
+		});
+	}
 }
@@ -7,6 +7,8 @@ import javax.swing.AbstractButton;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 
+import edu.vanderbilt.psychology.gui.resources.ResourceManager;
+
 /**
  * Provides a common button look and feel
  * 
@@ -27,12 +29,14 @@ public class ToolbarButton extends JButton {
 	 * 
 	 * @param action
 	 * @param imageIconPath
-	 *            such as "images/export_icon.png"
+	 *            such as "images/export_icon.png". The icon is shared through
+	 *            the {@link ResourceManager}
 	 * @param text
 	 */
 	public ToolbarButton(AbstractAction action, String imageIconPath,
 			String text) {
-		this(action, new ImageIcon(imageIconPath), text, text);
+		this(action, ResourceManager.getInstance().getIcon(imageIconPath),
+				text, text);
 	}
 
 	/**
@@ -6,13 +6,23 @@ package edu.vanderbilt.psychology.model;
 import java.awt.Component;
 import java.awt.Point;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-import javax.swing.JLayeredPane;
+import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 import edu.vanderbilt.psychology.controller.SelectionManager;
+import edu.vanderbilt.psychology.gui.main.SlideViewCache;
 import edu.vanderbilt.psychology.gui.main.StageWrapper;
+import edu.vanderbilt.psychology.gui.slideSwitcher.ThumbnailRenderer;
 import edu.vanderbilt.psychology.gui.slideElements.SlideElement;
 import edu.vanderbilt.psychology.model.elements.ModelElement;
 import edu.vanderbilt.psychology.model.reactor.Reactor;
@@ -43,6 +53,24 @@ public class BuilderState {
 	private Experiment experiment_;
 	private int currentSlidePos_;
 	private StageWrapper stageWrapper_;
+	private SlideViewCache viewCache_ = new SlideViewCache();
+
+	private UndoHistory history_ = new UndoHistory();
+
+	/** The last recorded version, for readers on other threads */
+	private volatile ExperimentSnapshot snapshot_;
+
+	private List<ChangeListener> listeners_ = new ArrayList<ChangeListener>();
+
+	/** How many {@link Slide}s are handed to the GUI at once while opening */
+	private static final int LOAD_BATCH_SIZE = 200;
+
+	/** Reads the rest of the {@link Experiment} being opened, or null */
+	private volatile ExperimentReader loading_ = null;
+	private File loadingFile_ = null;
+
+	/** See {@link #getLoadError()} */
+	private String loadError_ = null;
 
 	public static BuilderState instance_ = null;
 
@@ -51,6 +79,10 @@ public class BuilderState {
 		currentSlidePos_ = 0;
 		stageWrapper_ = stageWrapper;
 
+		// Start the history with the first, empty slide
+		experiment_.getSlide(0);
+		recordVersion();
+
 		instance_ = this;
 	}
 
@@ -62,22 +94,87 @@ public class BuilderState {
 	}
 
 	/**
-	 * Searches for the {@link Slide} that is associated with the passed
-	 * thumbnail and sets that {@link Slide} as the current slide, updating the
-	 * GUI. Does not automatically save the current {@link Slide}
+	 * Sets the {@link Slide} at the given position as the current slide,
+	 * updating the GUI. Does not automatically save the current {@link Slide}
 	 * 
-	 * @param thumbnail
-	 */
-	public void setCurrentSlide(JLayeredPane thumbnail) {		
-		int size = experiment_.getSize();
-		for (int i = 0; i < size; i++)
-			if (experiment_.getSlideExistsAtPosition(i)
-					&& experiment_.getSlide(i).getSlideThumbnail() == thumbnail) {
-				currentSlidePos_ = i;
-				clearStageWrapper(stageWrapper_);
-				writeSlideToStageWrapper(getCurrentSlide(), stageWrapper_);
-				return;
-			}
+	 * @param position
+	 */
+	public void setCurrentSlide(int position) {
+		if (experiment_.getSlideExistsAtPosition(position) == false)
+			return;
+
+		detachStage();
+		currentSlidePos_ = position;
+		showSlide(getCurrentSlide());
+	}
+
+	/**
+	 * @return the position in the {@link Experiment} of the {@link Slide}
+	 *         currently shown on the {@link StageWrapper}
+	 */
+	public int getCurrentSlidePosition() {
+		return currentSlidePos_;
+	}
+
+	public Experiment getExperiment() {
+		return experiment_;
+	}
+
+	/**
+	 * Saves the current {@link Slide}, adds a new empty {@link Slide} to the
+	 * end of the {@link Experiment}, and makes that the current slide. Also
+	 * clears the selection
+	 * 
+	 * @return the new {@link Slide}
+	 */
+	public Slide addNewSlide() {
+		saveCurrentSlide();
+
+		SelectionManager.getInstance().clearSelection();
+
+		detachStage();
+		currentSlidePos_ = experiment_.getSize();
+
+		Slide added = getCurrentSlide();
+		showSlide(added);
+		recordVersion();
+		return added;
+	}
+
+	/**
+	 * Saves the current {@link Slide}, and then inserts copies of the
+	 * {@link Slide} at the given position right after it (see
+	 * {@link Experiment#copySlide(int, int)}). The current {@link Slide} stays
+	 * on the stage
+	 * 
+	 * @return the copies
+	 */
+	public List<Slide> copySlide(int position, int count) {
+		saveCurrentSlide();
+
+		List<Slide> copies = experiment_.copySlide(position, count);
+		if (currentSlidePos_ > position)
+			currentSlidePos_ += copies.size();
+
+		recordVersion();
+		return copies;
+	}
+
+	/**
+	 * Sets how the {@link Slide} at the given position is repeated when the
+	 * {@link Experiment} is played (see {@link Slide#setLoop(Loop)})
+	 *
+	 * @param loop
+	 *            null to show the {@link Slide} just once
+	 */
+	public void setLoop(int position, Loop loop) {
+		saveCurrentSlide();
+
+		Slide s = experiment_.getSlide(position);
+		s.setLoop(loop);
+		experiment_.saveSlide(s, position);
+		recordVersion();
+		fireChanged();
 	}
 
 	/**
@@ -96,11 +193,12 @@ public class BuilderState {
 		
 		SelectionManager.getInstance().clearSelection();
 
+		detachStage();
 		++currentSlidePos_;
 
 		Slide next = getCurrentSlide();
-		clearStageWrapper(stageWrapper_);
-		writeSlideToStageWrapper(next, stageWrapper_);
+		showSlide(next);
+		recordVersion();
 		return next;
 	}
 
@@ -132,12 +230,12 @@ public class BuilderState {
 
 		SelectionManager.getInstance().clearSelection();
 
+		detachStage();
 		if (currentSlidePos_ != 0)
 			--currentSlidePos_;
 
 		Slide prev = getCurrentSlide();
-		clearStageWrapper(stageWrapper_);
-		writeSlideToStageWrapper(prev, stageWrapper_);
+		showSlide(prev);
 		return prev;
 	}
 
@@ -149,7 +247,166 @@ public class BuilderState {
 	// TODO - Should this do something with ensuring all Slides have been saved
 	// to the experiment?
 	public void writeExperimentToDisk(File fileToBeWritten) {
+		if (isLoading() || loadError_ != null)
+			throw new IllegalStateException(
+					"Only part of the experiment has been read");
+
 		experiment_.saveExperimentToDisk(fileToBeWritten);
+
+		// Keep the thumbnails next to the experiment, so they do not have to
+		// be drawn again when it is reopened
+		ThumbnailRenderer.getInstance().saveToCacheDirectory(
+				ThumbnailRenderer.getCacheDirectoryFor(fileToBeWritten),
+				experiment_.snapshot());
+	}
+
+	/**
+	 * Replaces the current {@link Experiment} with the one in the given file.
+	 * Only the lists and the first {@link Slide} are read before this returns,
+	 * and only the first {@link Slide} is put on the {@link StageWrapper}, so
+	 * it can be edited straight away. The rest of the {@link Slide}s are read
+	 * on a background thread and added to the end of the {@link Experiment} in
+	 * batches, telling the change listeners after each batch (see
+	 * {@link #isLoading()}). Thumbnails are taken from the directory saved
+	 * next to the file, if there is one.
+	 * 
+	 * <p>
+	 * Undo and redo do nothing until every {@link Slide} has been read, and
+	 * the history starts over once they have. If the file cannot be read to
+	 * the end, the user is told, and the {@link Slide}s read so far stay open
+	 * but cannot be saved (see {@link #getLoadError()})
+	 * </p>
+	 */
+	public void openExperiment(File file) throws IOException {
+		final ExperimentReader reader = new ExperimentReader(file);
+		Slide first = reader.readSlide();
+		stopLoading();
+
+		SelectionManager.getInstance().clearSelection();
+		viewCache_.clear();
+		clearStageWrapper(stageWrapper_);
+
+		ListDatabase.setInstance(reader.getListDatabase());
+		experiment_ = new Experiment(reader.getListDatabase());
+		if (first != null)
+			experiment_.saveSlide(first, 0);
+		loadError_ = null;
+		loadingFile_ = file;
+
+		ThumbnailRenderer.getInstance().useCacheDirectory(
+				ThumbnailRenderer.getCacheDirectoryFor(file));
+
+		currentSlidePos_ = 0;
+		showSlide(getCurrentSlide());
+		history_.clear();
+		recordVersion();
+
+		fireChanged();
+		loading_ = reader;
+
+		Thread t = new Thread(new Runnable() {
+			public void run() {
+				readRemainingSlides(reader);
+			}
+		}, "experiment-reader");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * @return true while the rest of an {@link Experiment} that was just
+	 *         opened is still being read
+	 */
+	public boolean isLoading() {
+		return loading_ != null;
+	}
+
+	/**
+	 * @return why the {@link Experiment} last opened could only be partly
+	 *         read, or null if it was read in full (or is still being read).
+	 *         An {@link Experiment} that was only partly read must not be
+	 *         saved, as that would throw away the {@link Slide}s that could
+	 *         not be read
+	 */
+	public String getLoadError() {
+		return loadError_;
+	}
+
+	/**
+	 * Runs on the background thread, reading {@link Slide}s and handing them
+	 * to the event dispatch thread in batches
+	 */
+	private void readRemainingSlides(final ExperimentReader reader) {
+		List<Slide> batch = new ArrayList<Slide>(LOAD_BATCH_SIZE);
+		String error = null;
+		try {
+			Slide s;
+			while ((s = reader.readSlide()) != null) {
+				batch.add(s);
+				if (batch.size() == LOAD_BATCH_SIZE) {
+					appendLoadedSlides(reader, batch, false, null);
+					batch = new ArrayList<Slide>(LOAD_BATCH_SIZE);
+				}
+			}
+		} catch (Exception e) {
+			// Also the way a read that was stopped ends, in which case the
+			// slides are thrown away below anyway
+			if (loading_ == reader) {
+				e.printStackTrace();
+				error = e.getMessage() == null ? e.toString() : e.getMessage();
+			}
+		}
+
+		appendLoadedSlides(reader, batch, true, error);
+	}
+
+	/**
+	 * @param error
+	 *            why the rest of the file could not be read, or null
+	 */
+	private void appendLoadedSlides(final ExperimentReader reader,
+			final List<Slide> slides, final boolean last, final String error) {
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				// Another experiment was opened since
+				if (loading_ != reader)
+					return;
+
+				// Appended without saveSlide(), which logs every slide
+				for (Slide s : slides)
+					experiment_.insertSlide(s, experiment_.getSize());
+
+				if (last) {
+					loading_ = null;
+					loadError_ = error;
+					history_.clear();
+					recordVersion();
+					System.out.println("Opened " + experiment_.getSize()
+							+ " slides");
+				}
+
+				fireChanged();
+
+				if (error != null)
+					JOptionPane.showMessageDialog(null, "Only the first "
+							+ experiment_.getSize() + " slides of "
+							+ loadingFile_.getName()
+							+ " could be read, so it cannot be saved.\n"
+							+ error, "Open", JOptionPane.ERROR_MESSAGE);
+			}
+		});
+	}
+
+	private void stopLoading() {
+		if (loading_ == null)
+			return;
+
+		try {
+			loading_.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		loading_ = null;
 	}
 
 	/**
@@ -165,10 +422,150 @@ public class BuilderState {
 			// Just save the GUI info
 			newSlide = writeStageWrapperToSlide(stageWrapper_, false, null);
 
-		newSlide.updateThumbnail();
-		
 		experiment_.saveSlide(newSlide, currentSlidePos_);
+		recordVersion();
+
+		ThumbnailRenderer.getInstance().request(newSlide);
+
+	}
+
+	/**
+	 * Saves the current {@link Slide}, and then changes the {@link Experiment}
+	 * back to the version before the last change. Clears the selection
+	 * 
+	 * @return false if there was nothing to undo
+	 */
+	public boolean undo() {
+		saveCurrentSlide();
+		if (isLoading() || history_.canUndo() == false)
+			return false;
+
+		restore(history_.undo());
+		return true;
+	}
+
+	/**
+	 * Saves the current {@link Slide}, and then re-applies the last change
+	 * that was undone. Clears the selection
+	 * 
+	 * @return false if there was nothing to redo
+	 */
+	public boolean redo() {
+		saveCurrentSlide();
+		if (isLoading() || history_.canRedo() == false)
+			return false;
+
+		restore(history_.redo());
+		return true;
+	}
+
+	public boolean canUndo() {
+		return isLoading() == false && history_.canUndo();
+	}
+
+	public boolean canRedo() {
+		return isLoading() == false && history_.canRedo();
+	}
+
+	/**
+	 * Gets the last saved version of the {@link Experiment}. Unlike the
+	 * {@link Experiment} itself, this can be read from any thread, such as by
+	 * a background save or validation
+	 */
+	public ExperimentSnapshot getSnapshot() {
+		return snapshot_;
+	}
+
+	/**
+	 * Registers a listener that is told when the {@link Experiment} was
+	 * changed by an undo or redo, or replaced or added to by
+	 * {@link #openExperiment(File)}
+	 */
+	public void addChangeListener(ChangeListener l) {
+		listeners_.add(l);
+	}
+
+	public void removeChangeListener(ChangeListener l) {
+		listeners_.remove(l);
+	}
+
+	private void recordVersion() {
+		snapshot_ = experiment_.snapshot();
+		history_.record(snapshot_);
+	}
+
+	/**
+	 * Puts the {@link Experiment} back to a recorded version. Only the
+	 * {@link Slide}s that differ from the current version have their cached
+	 * components and thumbnails updated
+	 */
+	private void restore(ExperimentSnapshot snapshot) {
+		Map<Long, SlideState> before = new HashMap<Long, SlideState>();
+		for (SlideState state : experiment_.snapshot())
+			before.put(state.getId(), state);
+
+		SelectionManager.getInstance().clearSelection();
+		detachStage();
+
+		experiment_.restore(snapshot);
+		snapshot_ = snapshot;
+
+		Iterator<SlideState> states = snapshot.iterator();
+		for (Slide s : experiment_.getSlides()) {
+			SlideState state = states.next();
+			SlideState old = before.get(s.getId());
+			if (old == null || old == state)
+				continue;
+
+			viewCache_.update(s);
+			ThumbnailRenderer.getInstance().request(s);
+		}
+
+		currentSlidePos_ = Math.max(0, Math.min(currentSlidePos_, experiment_
+				.getSize() - 1));
+		showSlide(getCurrentSlide());
+		fireChanged();
+	}
+
+	private void fireChanged() {
+		ChangeEvent e = new ChangeEvent(this);
+		for (ChangeListener l : new ArrayList<ChangeListener>(listeners_))
+			l.stateChanged(e);
+	}
+
+	/**
+	 * Takes the {@link SlideElement}s of the current {@link Slide} off of the
+	 * {@link StageWrapper}, keeping them in the {@link SlideViewCache} so they
+	 * can be put back if this {@link Slide} is shown again. The current
+	 * {@link Slide} should have just been saved
+	 */
+	private void detachStage() {
+		Slide current = null;
+		if (experiment_.getSlideExistsAtPosition(currentSlidePos_))
+			current = experiment_.getSlide(currentSlidePos_);
+
+		viewCache_.detach(current, stageWrapper_);
+	}
+
+	/**
+	 * Puts a {@link Slide} onto the empty {@link StageWrapper}, re-using its
+	 * {@link SlideElement}s from the {@link SlideViewCache} if they are still
+	 * there, and building new ones from the model if not
+	 */
+	private void showSlide(Slide s) {
+		// The stage changes the elements in place, so a copied slide gets its
+		// own elements first. Nothing cached for it could be for those
+		if (s.isShared()) {
+			s.unshare();
+			viewCache_.remove(s.getId());
+		}
+
+		if (viewCache_.attach(s, stageWrapper_) == false)
+			writeSlideToStageWrapper(s, stageWrapper_);
+	}
 
+	public SlideViewCache getViewCache() {
+		return viewCache_;
 	}
 
 	/**
@@ -3,6 +3,14 @@ package edu.vanderbilt.psychology.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.ConversionException;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.converters.reflection.ReflectionConverter;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+
 /**
  * Builds an Experiment Builder list object, which uses an internal ArrayList
  * to hold elements and expands the features of an ArrayList in that each
@@ -54,6 +62,18 @@ public class EBList<T> {
 	public T get() {
 		return mInternalList.get(mCurrentListPos);
 	}
+
+	/**
+	 * Gets the element at the given index, without moving the current
+	 * position of the list
+	 */
+	public T get(int index) {
+		return mInternalList.get(index);
+	}
+
+	public int size() {
+		return mInternalList.size();
+	}
 	
 	public void reset() {
 		mCurrentListPos = 0;
@@ -67,6 +87,66 @@ public class EBList<T> {
 		mCurrentListPos--;
 	}
 	
+	/**
+	 * Set this key to {@link Boolean#TRUE} in a marshalling context to write
+	 * {@link EBList}s as just their name, such as
+	 * <code>&lt;mListData list="faces"/&gt;</code>. Used by the
+	 * {@link ExperimentWriter}, which writes each {@link Slide} separately and
+	 * so cannot point back at the lists in the {@link ListDatabase} any other
+	 * way
+	 */
+	public static final String BY_NAME = "EBList.byName";
+
+	/**
+	 * Writes an {@link EBList} field by field, or as just its name if
+	 * {@link EBList#BY_NAME} is set. A list written by name is looked up in the
+	 * {@link ListDatabase} that was read earlier in the same file, and a
+	 * {@link ConversionException} is thrown if there is no list of that name
+	 * 
+	 * @author hamiltont
+	 * 
+	 */
+	public static class XStreamConverter extends ReflectionConverter {
+
+		public XStreamConverter(XStream xs) {
+			super(xs.getMapper(), xs.getReflectionProvider());
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean canConvert(Class type) {
+			return type.equals(EBList.class);
+		}
+
+		@Override
+		public void marshal(Object source, HierarchicalStreamWriter writer,
+				MarshallingContext context) {
+			if (Boolean.TRUE.equals(context.get(BY_NAME)))
+				writer.addAttribute("list", ((EBList<?>) source).getName());
+			else
+				super.marshal(source, writer, context);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Object unmarshal(HierarchicalStreamReader reader,
+				UnmarshallingContext context) {
+			String name = reader.getAttribute("list");
+			if (name == null)
+				return super.unmarshal(reader, context);
+
+			ListDatabase lists = (ListDatabase) context.get(ListDatabase.class);
+			if (lists == null)
+				lists = ListDatabase.getInstance();
+
+			// An empty stand-in would quietly change what the slide shows
+			EBList list = lists.getByName(name);
+			if (list == null)
+				throw new ConversionException("No list named " + name);
+			return list;
+		}
+	}
+
 	/** Provide a Universal ID for serialization */
 	private static final long serialVersionUID = 6350624961037204882L;
 }
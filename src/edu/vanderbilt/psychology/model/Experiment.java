@@ -7,6 +7,8 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.thoughtworks.xstream.XStream;
 
@@ -17,6 +19,8 @@ import edu.vanderbilt.psychology.model.properties.DataSource;
 import edu.vanderbilt.psychology.model.properties.MouseActions;
 import edu.vanderbilt.psychology.model.properties.Movement;
 import edu.vanderbilt.psychology.model.properties.Position;
+import edu.vanderbilt.psychology.model.properties.Property;
+import edu.vanderbilt.psychology.model.reactor.Condition;
 import edu.vanderbilt.psychology.model.reactor.Reactor;
 
 /**
@@ -73,27 +77,56 @@ import edu.vanderbilt.psychology.model.reactor.Reactor;
  */
 public class Experiment {
 	private ListDatabase mListDatabase = ListDatabase.getInstance();
-	private Slide[] slides_ = new Slide[5];
-	
+	private SlideSequence slides_ = new SlideSequence();
+
+	/**
+	 * The state of every {@link Slide} as of its last save, kept up to date on
+	 * every change so that {@link #snapshot()} is O(1). Not written to disk,
+	 * and rebuilt from the {@link Slide}s when first needed after loading
+	 */
+	private transient volatile PersistentSequence<SlideState> mState;
+	private transient ExperimentSnapshot mSnapshot;
+	private transient ExperimentIndex mIndex;
+
+	public Experiment() {
+	}
+
+	/**
+	 * Builds an empty {@link Experiment} around lists that were already read,
+	 * such as by an {@link ExperimentReader}
+	 */
+	public Experiment(ListDatabase lists) {
+		mListDatabase = lists;
+	}
 
 	// TODO add some cool checks in here to ensure that if we are saving over a
 	// slide, then that is the same slide we are already pointing to. There
 	// should very very infrequently be a case where we save a completely new
 	// slide over an old one. Normally we will just modify the old one
+	/**
+	 * Saves a {@link Slide} at the given position, replacing any
+	 * {@link Slide} already there. Saving at position {@link #getSize()}
+	 * appends the {@link Slide}. Slides are always contiguous, so saving any
+	 * further past the end is not allowed
+	 * 
+	 * @param s
+	 * @param position
+	 *            zero-indexed position of the slide within the experiment
+	 */
 	public void saveSlide(Slide s, int position) {
 		if (position < 0)
 			throw new IllegalArgumentException("position must be positive");
 
-		if (position > (slides_.length - 1)) {
-			Slide[] bigger = new Slide[position + 1];
-			int i = 0;
-			for (Slide oldSlide : slides_)
-				bigger[i++] = oldSlide;
-
-			slides_ = bigger;
+		PersistentSequence<SlideState> state = getState();
+		if (position == slides_.size()) {
+			slides_.add(s);
+			mState = state.add(SlideState.capture(s, null));
+		} else {
+			slides_.set(position, s);
+			mState = state.set(position, SlideState.capture(s, state
+					.get(position)));
 		}
 
-		slides_[position] = s;
 		System.out.println("Saved a slide!");
 	}
 
@@ -113,17 +146,178 @@ public class Experiment {
 			System.out.println("No slide at position " + position);
 			System.out.println("Returning new slide");
 
-			slides_[position] = new Slide();
+			saveSlide(new Slide(), position);
 		}
 
-		return slides_[position];
+		return slides_.get(position);
 	}
 
 	public boolean getSlideExistsAtPosition(int position) {
-		if ((position > (slides_.length - 1)) || (slides_[position] == null))
-			return false;
+		return position >= 0 && position < slides_.size();
+	}
 
-		return true;
+	/**
+	 * Inserts a {@link Slide} at the given position, shifting any later
+	 * {@link Slide}s back by one
+	 */
+	public void insertSlide(Slide s, int position) {
+		PersistentSequence<SlideState> state = getState();
+		slides_.insert(position, s);
+		mState = state.insert(position, SlideState.capture(s, null));
+	}
+
+	/**
+	 * Inserts copies of the {@link Slide} at the given position right after
+	 * it. Every copy after the first shares everything with the first (see
+	 * {@link Slide#copy(int)}), and also shares its recorded state, so each
+	 * extra copy only costs a few small objects
+	 * 
+	 * @return the copies, in order
+	 */
+	public List<Slide> copySlide(int position, int count) {
+		Slide original = getSlide(position);
+		List<Slide> copies = original.copy(count);
+
+		PersistentSequence<SlideState> state = getState();
+		SlideState shared = null;
+		for (int i = 0; i < copies.size(); i++) {
+			Slide copy = copies.get(i);
+			slides_.insert(position + 1 + i, copy);
+			if (shared == null)
+				shared = SlideState.capture(copy, null);
+			state = state.insert(position + 1 + i, i == 0 ? shared : shared
+					.withId(copy.getId()));
+		}
+
+		mState = state;
+		return copies;
+	}
+
+	/**
+	 * Removes the {@link Slide} at the given position, shifting any later
+	 * {@link Slide}s forward by one
+	 * 
+	 * @return the removed {@link Slide}
+	 */
+	public Slide removeSlide(int position) {
+		PersistentSequence<SlideState> state = getState();
+		Slide removed = slides_.remove(position);
+		mState = state.remove(position);
+		return removed;
+	}
+
+	/**
+	 * Moves a {@link Slide} from one position to another. The {@link Slide}
+	 * keeps its id, so anything referencing it by id is unaffected
+	 */
+	public void moveSlide(int from, int to) {
+		PersistentSequence<SlideState> state = getState();
+		slides_.move(from, to);
+		mState = state.move(from, to);
+	}
+
+	/**
+	 * Takes an immutable snapshot of every {@link Slide} as of its last save.
+	 * This is O(1), and taking another snapshot without changing anything in
+	 * between returns the same one
+	 * 
+	 * @see ExperimentSnapshot
+	 */
+	public ExperimentSnapshot snapshot() {
+		PersistentSequence<SlideState> state = getState();
+		if (mSnapshot == null || mSnapshot.getSlides() != state)
+			mSnapshot = new ExperimentSnapshot(state);
+		return mSnapshot;
+	}
+
+	/**
+	 * Changes every {@link Slide} back to how it was in a snapshot of this
+	 * {@link Experiment}. {@link Slide}s that are still here are changed in
+	 * place and keep their ids, and {@link Slide}s that have been removed since
+	 * are created again with their old ids
+	 */
+	public void restore(ExperimentSnapshot snapshot) {
+		List<Slide> slides = new ArrayList<Slide>(snapshot.getSize());
+		for (SlideState state : snapshot) {
+			Slide s = slides_.getById(state.getId());
+			if (s == null)
+				s = new Slide();
+			state.applyTo(s);
+			slides.add(s);
+		}
+
+		slides_.clear();
+		for (Slide s : slides)
+			slides_.add(s);
+
+		mState = snapshot.getSlides();
+		mSnapshot = snapshot;
+	}
+
+	/**
+	 * Gets the index of what this {@link Experiment}'s {@link Slide}s use,
+	 * bringing it up to date with the {@link Slide}s as of their last save
+	 * first. Only {@link Slide}s saved since the last call are indexed again
+	 * 
+	 * @see ExperimentIndex
+	 */
+	public ExperimentIndex getIndex() {
+		if (mIndex == null)
+			mIndex = new ExperimentIndex();
+		mIndex.sync(snapshot());
+		return mIndex;
+	}
+
+	/**
+	 * Renames one of this {@link Experiment}'s lists, refusing to if the new
+	 * name is already taken
+	 * 
+	 * @return the ids of the {@link Slide}s that use the list
+	 * @see ExperimentIndex#renameList(ListDatabase, String, String)
+	 */
+	public List<Long> renameList(String oldName, String newName) {
+		return getIndex().renameList(mListDatabase, oldName, newName);
+	}
+
+	private PersistentSequence<SlideState> getState() {
+		if (mState == null) {
+			PersistentSequence<SlideState> state = PersistentSequence.empty();
+			for (Slide s : slides_)
+				state = state.add(SlideState.capture(s, null));
+			mState = state;
+		}
+		return mState;
+	}
+
+	/**
+	 * @return the {@link Slide} with the given id, or null if there is none
+	 * @see Slide#getId()
+	 */
+	public Slide getSlideById(long id) {
+		return slides_.getById(id);
+	}
+
+	/**
+	 * @return the current position of the {@link Slide} with the given id, or
+	 *         -1 if there is none
+	 */
+	public int getPositionOfSlide(long id) {
+		return slides_.indexOfId(id);
+	}
+
+	/**
+	 * Gets the {@link ListDatabase} that was saved along with this
+	 * {@link Experiment}
+	 */
+	public ListDatabase getListDatabase() {
+		return mListDatabase;
+	}
+
+	/**
+	 * Gets all of the {@link Slide}s in the {@link Experiment}, in order
+	 */
+	public SlideSequence getSlides() {
+		return slides_;
 	}
 
 	/**
@@ -132,7 +326,7 @@ public class Experiment {
 	 * @return
 	 */
 	public int getSize() {
-		return slides_.length;
+		return slides_.size();
 	}
 
 	/**
@@ -180,16 +374,24 @@ public class Experiment {
 	public static void addXStreamAliases(XStream xs) {
 		xs.alias("Experiment", Experiment.class);
 		xs.alias("Slide", Slide.class);
-		xs.omitField(Slide.class, "mSlideThumbnail");
+		xs.alias("Loop", Loop.class);
+		xs.alias("TimeLimit", Loop.TimeLimit.class);
+		xs.alias("ListExhausted", Loop.ListExhausted.class);
+		xs.alias("TrialGenerator", TrialGenerator.class);
+		xs.alias("DifferentLevels", TrialGenerator.DifferentLevels.class);
+		SlideSequence.addXStreamConverter(xs);
+		Property.addXStreamConverter(xs);
+		xs.registerConverter(new EBList.XStreamConverter(xs));
+		xs.registerConverter(new ListDatabase.XStreamConverter(xs));
 		xs.alias("ImageElement", ImageElementModel.class);
 		xs.alias("TextElement", TextModelElement.class);
 		xs.alias("DataSource", DataSource.class);
 		xs.alias("Appearance", Appearance.class);
 		xs.alias("MouseActions", MouseActions.class);
 		xs.alias("Position", Position.class);
-		xs.omitField(Position.class, "section_");
 		xs.alias("Movement", Movement.class);
 		xs.alias("Reactor", Reactor.class);
+		xs.alias("Condition", Condition.class);
 		xs.omitField(Reactor.class, "mSlideElement");
 	}
 }
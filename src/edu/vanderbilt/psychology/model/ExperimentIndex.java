@@ -0,0 +1,470 @@
+package edu.vanderbilt.psychology.model;
+
+import java.awt.Font;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.vanderbilt.psychology.model.SlideState.ElementState;
+import edu.vanderbilt.psychology.model.elements.ModelElement;
+import edu.vanderbilt.psychology.model.elements.TextModelElement;
+import edu.vanderbilt.psychology.model.properties.DataSource;
+import edu.vanderbilt.psychology.model.properties.Property;
+import edu.vanderbilt.psychology.model.reactor.Action;
+import edu.vanderbilt.psychology.model.reactor.ActionType;
+import edu.vanderbilt.psychology.model.reactor.Reactor;
+
+/**
+ * An inverted index of what an {@link Experiment} uses, from list names, media
+ * files, fonts, words of text and action types to the {@link Slide}s that use
+ * them. Questions like "which slides use this list" are answered from the
+ * index, without looking through every {@link Slide}.
+ *
+ * <p>
+ * The index is kept up to date from {@link ExperimentSnapshot}s (see
+ * {@link #sync(ExperimentSnapshot)}). As every unchanged {@link Slide} keeps
+ * the same {@link SlideState} from one snapshot to the next, only the
+ * {@link Slide}s that changed since the last sync have their terms worked out
+ * again, and the rest cost a single lookup each. Queries only look at the
+ * {@link SlideState}s, so no {@link Slide} is ever shown or built to answer
+ * one.
+ * </p>
+ *
+ * <p>
+ * Every term is stored with a prefix that says what kind of term it is, such
+ * as {@link #LIST} or {@link #TEXT}, so that a list called "cat" and the word
+ * "cat" are not confused.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class ExperimentIndex {
+
+	public static final String LIST = "list:";
+	public static final String FILE = "file:";
+	public static final String FONT = "font:";
+	public static final String TEXT = "text:";
+	public static final String ACTION = "action:";
+
+	/** One use of a term, by an element on a {@link Slide} */
+	public static final class Hit {
+		private final long mSlideId;
+		private final int mPosition;
+		private final ModelElement mElement;
+		private final String mTerm;
+
+		private Hit(long slideId, int position, ModelElement element,
+				String term) {
+			mSlideId = slideId;
+			mPosition = position;
+			mElement = element;
+			mTerm = term;
+		}
+
+		public long getSlideId() {
+			return mSlideId;
+		}
+
+		/** @return the position of the {@link Slide} as of the last sync */
+		public int getPosition() {
+			return mPosition;
+		}
+
+		public ModelElement getElement() {
+			return mElement;
+		}
+
+		/** @return the term that matched, including its prefix */
+		public String getTerm() {
+			return mTerm;
+		}
+
+		@Override
+		public String toString() {
+			return "Slide " + (mPosition + 1) + ": " + describe(mElement)
+					+ " (" + mTerm + ")";
+		}
+	}
+
+	/** From a term to the ids of the {@link Slide}s using it */
+	private Map<String, Set<Long>> mPostings = new HashMap<String, Set<Long>>();
+
+	/** The {@link SlideState} each {@link Slide} was last indexed from */
+	private Map<Long, SlideState> mIndexed = new HashMap<Long, SlideState>();
+	private Map<Long, Set<String>> mTermsBySlide = new HashMap<Long, Set<String>>();
+
+	private ExperimentSnapshot mSynced;
+	private Map<Long, Integer> mPositions = new HashMap<Long, Integer>();
+
+	private int mReindexCount = 0;
+
+	/**
+	 * Brings the index up to date with a snapshot. Only {@link Slide}s whose
+	 * {@link SlideState} changed since the last sync are indexed again
+	 *
+	 * @return how many {@link Slide}s were indexed again
+	 */
+	public synchronized int sync(ExperimentSnapshot snapshot) {
+		if (snapshot == mSynced)
+			return 0;
+
+		int reindexed = 0;
+		Map<Long, Integer> positions = new HashMap<Long, Integer>(snapshot
+				.getSize() * 2);
+		int position = 0;
+		for (SlideState state : snapshot) {
+			positions.put(state.getId(), position++);
+
+			SlideState old = mIndexed.get(state.getId());
+			if (old == state)
+				continue;
+
+			if (old != null)
+				unindex(state.getId());
+			index(state);
+			reindexed++;
+		}
+
+		// Drop slides that have been removed since the last sync
+		List<Long> removed = new ArrayList<Long>();
+		for (Long id : mIndexed.keySet())
+			if (positions.containsKey(id) == false)
+				removed.add(id);
+		for (Long id : removed)
+			unindex(id);
+
+		mPositions = positions;
+		mSynced = snapshot;
+		mReindexCount += reindexed;
+		return reindexed;
+	}
+
+	/**
+	 * @return the ids of every {@link Slide} using a term, in slide order.
+	 *         The term must include its prefix, such as
+	 *         <code>"list:mylist"</code>
+	 */
+	public synchronized List<Long> getSlidesUsing(String term) {
+		Set<Long> ids = mPostings.get(term);
+		if (ids == null)
+			return Collections.emptyList();
+
+		List<Long> result = new ArrayList<Long>(ids);
+		Collections.sort(result, mByPosition);
+		return result;
+	}
+
+	public List<Long> getSlidesUsingList(String listName) {
+		return getSlidesUsing(LIST + listName);
+	}
+
+	/**
+	 * Like {@link #getSlidesUsingList(String)}, but leaves out {@link Slide}s
+	 * that use a different list with the same name
+	 */
+	public synchronized List<Long> getSlidesUsingList(EBList<?> list) {
+		List<Long> result = new ArrayList<Long>();
+		for (Long id : getSlidesUsingList(list.getName()))
+			if (usesList(mIndexed.get(id), list))
+				result.add(id);
+		return result;
+	}
+
+	public List<Long> getSlidesUsingFile(File file) {
+		return getSlidesUsing(FILE + file.getAbsolutePath());
+	}
+
+	public List<Long> getSlidesUsingFont(String family) {
+		return getSlidesUsing(FONT + family.toLowerCase());
+	}
+
+	public List<Long> getSlidesUsingAction(ActionType type) {
+		return getSlidesUsing(ACTION + type.getUniqueID());
+	}
+
+	/**
+	 * Finds every element that matches a search. A search matches an element
+	 * if every word in it is used by the element, either as text, as a word in
+	 * the name of one of its files, or as the name of a list, font or action
+	 * type it uses
+	 *
+	 * @return the matching elements, in slide order
+	 */
+	public synchronized List<Hit> find(String query) {
+		List<String> words = tokenize(query);
+		List<Hit> hits = new ArrayList<Hit>();
+		if (words.isEmpty() || mSynced == null)
+			return hits;
+
+		// Only slides that use every word can match
+		Set<Long> candidates = null;
+		for (String word : words) {
+			Set<Long> ids = new HashSet<Long>();
+			for (String prefix : new String[] { TEXT, LIST, FONT, ACTION }) {
+				Set<Long> p = mPostings.get(prefix + word);
+				if (p != null)
+					ids.addAll(p);
+			}
+
+			if (candidates == null)
+				candidates = ids;
+			else
+				candidates.retainAll(ids);
+			if (candidates.isEmpty())
+				return hits;
+		}
+
+		List<Long> ordered = new ArrayList<Long>(candidates);
+		Collections.sort(ordered, mByPosition);
+		for (Long id : ordered) {
+			SlideState state = mIndexed.get(id);
+			Map<ModelElement, Set<String>> terms = getTermsByElement(state);
+			for (Map.Entry<ModelElement, Set<String>> e : terms.entrySet()) {
+				String matched = matchAll(e.getValue(), words);
+				if (matched != null)
+					hits.add(new Hit(id, mPositions.get(id), e.getKey(),
+							matched));
+			}
+		}
+
+		return hits;
+	}
+
+	/**
+	 * Renames a list, refusing to if another list already has the new name.
+	 * {@link DataSource}s hold the list itself rather than its name, so no
+	 * {@link Slide} has to change. The {@link ListDatabase} does not stop two
+	 * lists from having the same name, and it is not possible to tell which of
+	 * them is meant, so such a name cannot be renamed
+	 *
+	 * @return the ids of the {@link Slide}s that use the list
+	 * @throws IllegalArgumentException
+	 *             if there is not exactly one list with the old name, or there
+	 *             is already one with the new name
+	 */
+	public synchronized List<Long> renameList(ListDatabase lists,
+			String oldName, String newName) {
+		EBList<?> list = lists.getByName(oldName);
+		if (list == null)
+			throw new IllegalArgumentException("There is no list named "
+					+ oldName);
+		if (Collections.frequency(lists.getNames(), oldName) > 1)
+			throw new IllegalArgumentException("There is more than one list "
+					+ "named " + oldName);
+		if (oldName.equals(newName))
+			return getSlidesUsingList(list);
+		if (lists.getByName(newName) != null)
+			throw new IllegalArgumentException("There is already a list named "
+					+ newName);
+
+		List<Long> affected = getSlidesUsingList(list);
+		list.setName(newName);
+
+		// The terms are worked out from the list itself, so indexing the
+		// same states again picks up the new name
+		for (Long id : affected) {
+			SlideState state = mIndexed.get(id);
+			unindex(id);
+			index(state);
+		}
+
+		return affected;
+	}
+
+	/** @return how many distinct terms are in the index */
+	public synchronized int getTermCount() {
+		return mPostings.size();
+	}
+
+	/** @return how many {@link Slide}s have been indexed, in total */
+	public synchronized int getReindexCount() {
+		return mReindexCount;
+	}
+
+	private void index(SlideState state) {
+		Set<String> terms = new HashSet<String>();
+		for (Set<String> t : getTermsByElement(state).values())
+			terms.addAll(t);
+
+		for (String term : terms) {
+			Set<Long> ids = mPostings.get(term);
+			if (ids == null) {
+				ids = new HashSet<Long>(4);
+				mPostings.put(term, ids);
+			}
+			ids.add(state.getId());
+		}
+
+		mIndexed.put(state.getId(), state);
+		mTermsBySlide.put(state.getId(), terms);
+	}
+
+	private void unindex(Long id) {
+		Set<String> terms = mTermsBySlide.remove(id);
+		mIndexed.remove(id);
+		if (terms == null)
+			return;
+
+		for (String term : terms) {
+			Set<Long> ids = mPostings.get(term);
+			if (ids == null)
+				continue;
+			ids.remove(id);
+			if (ids.isEmpty())
+				mPostings.remove(term);
+		}
+	}
+
+	/**
+	 * Works out the terms used by each element of a {@link Slide}, in the
+	 * order the elements are on the {@link Slide}. Actions are counted as used
+	 * by the element whose {@link Reactor} fires them
+	 */
+	private static Map<ModelElement, Set<String>> getTermsByElement(
+			SlideState state) {
+		Map<ModelElement, Set<String>> terms = new LinkedHashMap<ModelElement, Set<String>>();
+		for (ElementState es : state.getElements())
+			addElementTerms(es.getContent(), get(terms, es.getElement()));
+
+		for (Reactor r : state.getEventReactors()) {
+			if (r.getModelElement() == null)
+				continue;
+
+			Set<String> t = get(terms, r.getModelElement());
+			for (Action a : r.getActions())
+				t.add(ACTION + a.getType().getUniqueID());
+		}
+
+		return terms;
+	}
+
+	private static Set<String> get(Map<ModelElement, Set<String>> terms,
+			ModelElement me) {
+		Set<String> t = terms.get(me);
+		if (t == null) {
+			t = new LinkedHashSet<String>();
+			terms.put(me, t);
+		}
+		return t;
+	}
+
+	private static boolean usesList(SlideState state, EBList<?> list) {
+		for (ElementState es : state.getElements()) {
+			List<Property> properties = es.getContent().getProperties();
+			if (properties == null)
+				continue;
+
+			for (Property p : properties)
+				if (p instanceof DataSource
+						&& ((DataSource) p).getListData() == list)
+					return true;
+		}
+		return false;
+	}
+
+	private static void addElementTerms(ModelElement me, Set<String> terms) {
+		if (me instanceof TextModelElement) {
+			TextModelElement tme = (TextModelElement) me;
+			for (String word : tokenize(tme.getText()))
+				terms.add(TEXT + word);
+
+			Font font = tme.getFont();
+			if (font != null)
+				terms.add(FONT + font.getFamily().toLowerCase());
+		}
+
+		if (me.getProperties() == null)
+			return;
+
+		for (Property p : me.getProperties()) {
+			if ((p instanceof DataSource) == false)
+				continue;
+
+			DataSource ds = (DataSource) p;
+			if (ds.getListData() != null) {
+				EBList<Object> list = ds.getListData();
+				terms.add(LIST + list.getName());
+				for (String word : tokenize(list.getName()))
+					terms.add(TEXT + word);
+
+				if (ds.getCurrentDataType() == DataSource.Type.Multiple_Files)
+					for (int i = 0; i < list.size(); i++)
+						addFileTerms((File) list.get(i), terms);
+			} else if (ds.getData() != null) {
+				if (ds.getCurrentDataType() == DataSource.Type.Single_File)
+					addFileTerms(new File(ds.getData()), terms);
+				else
+					for (String word : tokenize(ds.getData()))
+						terms.add(TEXT + word);
+			}
+		}
+	}
+
+	private static void addFileTerms(File f, Set<String> terms) {
+		terms.add(FILE + f.getAbsolutePath());
+		for (String word : tokenize(f.getName()))
+			terms.add(TEXT + word);
+	}
+
+	/**
+	 * @return the term that matched the last word, if every word matches one
+	 *         of the terms, otherwise null
+	 */
+	private static String matchAll(Set<String> terms, List<String> words) {
+		String matched = null;
+		for (String word : words) {
+			matched = null;
+			for (String prefix : new String[] { TEXT, LIST, FONT, ACTION })
+				if (terms.contains(prefix + word)) {
+					matched = prefix + word;
+					break;
+				}
+			if (matched == null)
+				return null;
+		}
+		return matched;
+	}
+
+	/**
+	 * Splits text into lower case words of letters and digits
+	 */
+	public static List<String> tokenize(String text) {
+		List<String> words = new ArrayList<String>();
+		if (text == null)
+			return words;
+
+		StringBuilder word = new StringBuilder();
+		for (int i = 0; i <= text.length(); i++) {
+			char c = i < text.length() ? text.charAt(i) : ' ';
+			if (Character.isLetterOrDigit(c))
+				word.append(Character.toLowerCase(c));
+			else if (word.length() > 0) {
+				words.add(word.toString());
+				word.setLength(0);
+			}
+		}
+		return words;
+	}
+
+	private static String describe(ModelElement me) {
+		if (me instanceof TextModelElement)
+			return "Text \"" + ((TextModelElement) me).getText() + "\"";
+		return me.getClass().getSimpleName().replace("Model", "");
+	}
+
+	private Comparator<Long> mByPosition = new Comparator<Long>() {
+		public int compare(Long a, Long b) {
+			Integer pa = mPositions.get(a), pb = mPositions.get(b);
+			return (pa == null ? -1 : pa) - (pb == null ? -1 : pb);
+		}
+	};
+}
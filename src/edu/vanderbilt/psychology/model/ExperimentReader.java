@@ -0,0 +1,149 @@
+package edu.vanderbilt.psychology.model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.core.ReferenceByXPathUnmarshaller;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.xml.XppDriver;
+
+/**
+ * Reads an {@link Experiment} file one {@link Slide} at a time, so that the
+ * first {@link Slide} can be shown while the rest are still being read. The
+ * counterpart of {@link ExperimentWriter}, and reads files written by it or by
+ * {@link Experiment#saveExperimentToDisk(File)}.
+ *
+ * <pre>
+ * ExperimentReader in = new ExperimentReader(file);
+ * Experiment e = new Experiment(in.getListDatabase());
+ * Slide s;
+ * while ((s = in.readSlide()) != null)
+ * 	e.saveSlide(s, e.getSize());
+ * in.close();
+ * </pre>
+ *
+ * <p>
+ * The {@link ListDatabase} is read when the {@link ExperimentReader} is
+ * created, so it must come before the {@link Slide}s in the file (it always
+ * does in files written by EB). A single unmarshaller is used for the whole
+ * file, so {@link Slide}s may reference anything written before them, as
+ * usual. An {@link ExperimentReader} may be used from any one thread.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class ExperimentReader {
+
+	private Reader mIn;
+	private HierarchicalStreamReader mReader;
+	private SlideUnmarshaller mUnmarshaller;
+
+	private ListDatabase mLists = null;
+
+	/** True once the reader has moved down into the slides */
+	private boolean mInSlides = false;
+	private volatile boolean mClosed = false;
+	private int mSlideCount = 0;
+
+	/**
+	 * Opens the file and reads everything that comes before the first
+	 * {@link Slide}
+	 */
+	public ExperimentReader(File file) throws IOException {
+		XStream xs = new XStream();
+		Experiment.addXStreamAliases(xs);
+
+		mIn = new BufferedReader(new FileReader(file));
+		mUnmarshaller = new SlideUnmarshaller(new XppDriver().createReader(mIn),
+				xs);
+		mReader = mUnmarshaller.getReader();
+
+		while (mReader.hasMoreChildren()) {
+			mReader.moveDown();
+			if ("mListDatabase".equals(mReader.getNodeName())) {
+				mLists = (ListDatabase) mUnmarshaller.convertAnother(null,
+						ListDatabase.class);
+			} else if ("slides_".equals(mReader.getNodeName())) {
+				mInSlides = true;
+				break;
+			}
+			mReader.moveUp();
+		}
+
+		if (mLists == null)
+			mLists = new ListDatabase();
+	}
+
+	/**
+	 * @return the lists saved along with the {@link Experiment}. Every
+	 *         {@link Slide} read refers to these lists
+	 */
+	public ListDatabase getListDatabase() {
+		return mLists;
+	}
+
+	/**
+	 * Reads the next {@link Slide}
+	 *
+	 * @return the {@link Slide}, or null once there are no more (after which
+	 *         the file is closed)
+	 */
+	public Slide readSlide() throws IOException {
+		if (mClosed || mInSlides == false) {
+			close();
+			return null;
+		}
+
+		while (mReader.hasMoreChildren()) {
+			mReader.moveDown();
+			Slide s = null;
+			if (false == "null".equals(mReader.getNodeName()))
+				s = (Slide) mUnmarshaller.convertAnother(null, Slide.class);
+			mReader.moveUp();
+
+			if (s != null) {
+				mSlideCount++;
+				return s;
+			}
+		}
+
+		close();
+		return null;
+	}
+
+	/** @return how many {@link Slide}s have been read so far */
+	public int getSlideCount() {
+		return mSlideCount;
+	}
+
+	/**
+	 * Closes the file. Safe to call more than once, and from another thread to
+	 * stop a read that is no longer wanted
+	 */
+	public synchronized void close() throws IOException {
+		if (mClosed)
+			return;
+		mClosed = true;
+		mIn.close();
+	}
+
+	/**
+	 * Lets the {@link ExperimentReader} walk the file itself, through the same
+	 * path tracking reader the unmarshaller uses to resolve references
+	 */
+	private static class SlideUnmarshaller extends ReferenceByXPathUnmarshaller {
+
+		public SlideUnmarshaller(HierarchicalStreamReader reader, XStream xs) {
+			super(null, reader, xs.getConverterLookup(), xs.getMapper());
+		}
+
+		public HierarchicalStreamReader getReader() {
+			return reader;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package edu.vanderbilt.psychology.model;
+
+import java.util.Iterator;
+
+/**
+ * An immutable version of an {@link Experiment}'s {@link Slide}s, taken with
+ * {@link Experiment#snapshot()}. Taking one is O(1), as the {@link Experiment}
+ * keeps its {@link SlideState}s in a {@link PersistentSequence} as it is
+ * edited, and a snapshot just holds on to the current version of that
+ * sequence.
+ *
+ * <p>
+ * Snapshots can be read from any thread without locking, which lets background
+ * work such as saving, validating or drawing thumbnails see a consistent
+ * {@link Experiment} while the user keeps editing. They are also what
+ * {@link UndoHistory} keeps.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public final class ExperimentSnapshot implements Iterable<SlideState> {
+
+	private final PersistentSequence<SlideState> mSlides;
+
+	ExperimentSnapshot(PersistentSequence<SlideState> slides) {
+		mSlides = slides;
+	}
+
+	public int getSize() {
+		return mSlides.size();
+	}
+
+	/**
+	 * @param position
+	 *            zero-indexed position of the slide within the experiment
+	 */
+	public SlideState getSlide(int position) {
+		return mSlides.get(position);
+	}
+
+	/**
+	 * @return the state of the {@link Slide} with the given id, or null if
+	 *         there was none. This is O(n)
+	 */
+	public SlideState getSlideById(long id) {
+		for (SlideState s : mSlides)
+			if (s.getId() == id)
+				return s;
+		return null;
+	}
+
+	public Iterator<SlideState> iterator() {
+		return mSlides.iterator();
+	}
+
+	PersistentSequence<SlideState> getSlides() {
+		return mSlides;
+	}
+
+	@Override
+	public String toString() {
+		return "ExperimentSnapshot[" + mSlides.size() + " slides]";
+	}
+}
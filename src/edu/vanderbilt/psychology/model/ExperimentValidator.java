@@ -0,0 +1,583 @@
+package edu.vanderbilt.psychology.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import edu.vanderbilt.psychology.model.elements.ModelElement;
+import edu.vanderbilt.psychology.model.media.MediaResolver;
+import edu.vanderbilt.psychology.model.media.ResolvedAsset;
+import edu.vanderbilt.psychology.model.properties.DataSource;
+import edu.vanderbilt.psychology.model.properties.Property;
+import edu.vanderbilt.psychology.model.reactor.Action;
+import edu.vanderbilt.psychology.model.reactor.ActionType;
+import edu.vanderbilt.psychology.model.reactor.Condition;
+import edu.vanderbilt.psychology.model.reactor.Reactor;
+
+/**
+ * Checks a whole {@link Experiment} for problems that would otherwise only show
+ * up in the middle of a session. The problems found are:
+ * <ul>
+ * <li>{@link Reactor}s and {@link Action}s that point at a
+ * {@link ModelElement} that is not on their {@link Slide}</li>
+ * <li>List {@link Action}s and {@link DataSource}s that name a list that is
+ * not in the {@link ListDatabase}</li>
+ * <li>Lists that are read after their position has been moved past either end</li>
+ * <li>Media files that are missing or cannot be decoded (see
+ * {@link MediaResolver})</li>
+ * <li>{@link Slide}s that can never be reached, because an earlier
+ * {@link Slide} has no way to advance</li>
+ * <li>{@link Reactor} {@link Condition}s that cannot be compiled, or name a
+ * list that is not in the {@link ListDatabase}</li>
+ * </ul>
+ *
+ * <p>
+ * Each {@link Slide} is first checked on its own, spread over a thread pool,
+ * while the media files are checked by a {@link MediaResolver}. A single pass
+ * over the per-{@link Slide} results then works out which {@link Slide}s can
+ * be reached and where each list's position will be. Everything is linear in
+ * the size of the {@link Experiment}. The {@link Experiment} must not be
+ * changed while it is being validated.
+ * </p>
+ *
+ * <p>
+ * The player can only move forward one {@link Slide} at a time, so list
+ * positions are worked out by assuming that every {@link Reactor} on a
+ * {@link Slide} fires once while that {@link Slide} is shown, after the
+ * {@link Slide}'s elements have read their lists. A {@link Slide} with a
+ * {@link Loop} is followed through each of its passes when the number of
+ * passes is fixed, and is otherwise treated as being shown once. The factors
+ * of a {@link TrialGenerator} are not checked after its {@link Slide}, as
+ * their positions depend on the trial order.
+ * </p>
+ *
+ * <p>
+ * Can be run without a display, such as before deploying an experiment:
+ * <code>java edu.vanderbilt.psychology.model.ExperimentValidator experiment.xml</code>
+ * . The exit code is 1 if any problems were found.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class ExperimentValidator {
+
+	/**
+	 * A single problem, on the {@link Slide} where it would be noticed
+	 */
+	public static class Problem {
+
+		public enum Kind {
+			/** A reference to a {@link ModelElement} not on the {@link Slide} */
+			DANGLING_REFERENCE,
+			/** A list name or list that is not in the {@link ListDatabase} */
+			UNKNOWN_LIST,
+			/** A list is read when its position is past either end */
+			LIST_OUT_OF_RANGE,
+			/** A media file is missing, unreadable or undecodable */
+			BAD_MEDIA,
+			/** No earlier {@link Slide} can advance to this {@link Slide} */
+			UNREACHABLE_SLIDE,
+			/** A {@link Reactor}'s {@link Condition} cannot be compiled */
+			BAD_CONDITION,
+			/** A {@link Loop}'s {@link TrialGenerator} gives no trials */
+			NO_TRIALS
+		};
+
+		private Kind mKind;
+		private int mPosition;
+		private long mSlideId;
+		private String mMessage;
+
+		Problem(Kind kind, int position, long slideId, String message) {
+			mKind = kind;
+			mPosition = position;
+			mSlideId = slideId;
+			mMessage = message;
+		}
+
+		public Kind getKind() {
+			return mKind;
+		}
+
+		/** @return the position of the {@link Slide}, or -1 if there is none */
+		public int getPosition() {
+			return mPosition;
+		}
+
+		public long getSlideId() {
+			return mSlideId;
+		}
+
+		public String getMessage() {
+			return mMessage;
+		}
+
+		@Override
+		public String toString() {
+			if (mPosition < 0)
+				return mKind + ": " + mMessage;
+			return "Slide " + (mPosition + 1) + " " + mKind + ": " + mMessage;
+		}
+	}
+
+	/** What was found on one {@link Slide} by {@link #checkSlide(Slide, int)} */
+	private static class SlideReport {
+		List<Problem> problems = new ArrayList<Problem>();
+		/** The lists the elements of the {@link Slide} read from */
+		Set<EBList<Object>> reads = new LinkedHashSet<EBList<Object>>();
+		/** How far the {@link Slide}'s {@link Action}s move each list */
+		Map<EBList<Object>, Integer> moves = new LinkedHashMap<EBList<Object>, Integer>();
+		Set<File> files = new LinkedHashSet<File>();
+		boolean canAdvance = false;
+		/** The list the {@link Slide}'s {@link Loop} makes a pass per item of */
+		EBList<Object> loopList = null;
+		/**
+		 * The factors of the {@link Slide}'s {@link TrialGenerator}, whose
+		 * positions are not known after the {@link Slide}
+		 */
+		Set<EBList<Object>> designFactors = new LinkedHashSet<EBList<Object>>();
+		/**
+		 * How many times the {@link Slide} is shown, or 1 if that is not known
+		 * until it is played
+		 */
+		int passes = 1;
+	}
+
+	/** How many {@link Slide}s each task checks */
+	private static final int SLIDES_PER_TASK = 256;
+
+	private int mThreadCount;
+	private MediaResolver mResolver;
+
+	private ListDatabase mListDatabase;
+	private Map<String, EBList<Object>> mListsByName;
+	private Set<EBList<Object>> mLists;
+
+	private long mLastValidateMillis = 0;
+
+	public ExperimentValidator() {
+		this(Runtime.getRuntime().availableProcessors(), new MediaResolver());
+	}
+
+	/**
+	 * @param threadCount
+	 *            the number of {@link Slide}s that may be checked at once
+	 * @param resolver
+	 *            checks the media files, or null to not check them
+	 */
+	public ExperimentValidator(int threadCount, MediaResolver resolver) {
+		if (threadCount < 1)
+			throw new IllegalArgumentException(
+					"threadCount must be at least one");
+		mThreadCount = threadCount;
+		mResolver = resolver;
+	}
+
+	/**
+	 * Checks the whole {@link Experiment}. Blocks until done
+	 *
+	 * @return every problem found, in {@link Slide} order. Empty if there are
+	 *         none
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Problem> validate(Experiment e) throws InterruptedException {
+		long start = System.currentTimeMillis();
+
+		mListsByName = new HashMap<String, EBList<Object>>();
+		mLists = Collections
+				.newSetFromMap(new IdentityHashMap<EBList<Object>, Boolean>());
+		ListDatabase db = e.getListDatabase();
+		mListDatabase = db;
+		if (db != null) {
+			for (EBList list : db.getStringLists())
+				addList(list);
+			for (EBList list : db.getFileReferenceLists())
+				addList(list);
+		}
+
+		final List<Slide> slides = new ArrayList<Slide>(e.getSize());
+		for (Slide s : e.getSlides())
+			slides.add(s);
+
+		ExecutorService pool = Executors.newFixedThreadPool(mThreadCount,
+				new ThreadFactory() {
+					private int mCount = 0;
+
+					public synchronized Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "experiment-validator-"
+								+ (++mCount));
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		try {
+			List<Future<List<SlideReport>>> tasks = new ArrayList<Future<List<SlideReport>>>();
+			for (int first = 0; first < slides.size(); first += SLIDES_PER_TASK) {
+				final int from = first;
+				final int to = Math.min(slides.size(), first + SLIDES_PER_TASK);
+				tasks.add(pool.submit(new Callable<List<SlideReport>>() {
+					public List<SlideReport> call() {
+						List<SlideReport> reports = new ArrayList<SlideReport>(
+								to - from);
+						for (int i = from; i < to; i++)
+							reports.add(checkSlide(slides.get(i), i));
+						return reports;
+					}
+				}));
+			}
+
+			// The media files are checked on the resolver's own pool, while
+			// the slides are being checked on this one
+			Set<File> files = MediaResolver.collectReferencedFiles(e);
+			Map<String, ResolvedAsset> assets = null;
+			if (mResolver != null)
+				assets = mResolver.resolve(files);
+
+			List<SlideReport> reports = new ArrayList<SlideReport>(slides
+					.size());
+			for (Future<List<SlideReport>> f : tasks)
+				try {
+					reports.addAll(f.get());
+				} catch (ExecutionException ex) {
+					throw new RuntimeException(ex.getCause());
+				}
+
+			List<Problem> problems = new ArrayList<Problem>();
+			for (SlideReport r : reports)
+				problems.addAll(r.problems);
+			checkReachable(slides, reports, problems);
+			checkListPositions(slides, reports, problems);
+			if (assets != null)
+				checkMedia(slides, reports, assets, problems);
+
+			Collections.sort(problems, new Comparator<Problem>() {
+				public int compare(Problem a, Problem b) {
+					if (a.getPosition() != b.getPosition())
+						return a.getPosition() < b.getPosition() ? -1 : 1;
+					return a.getKind().compareTo(b.getKind());
+				}
+			});
+			return problems;
+		} finally {
+			pool.shutdownNow();
+			mLastValidateMillis = System.currentTimeMillis() - start;
+		}
+	}
+
+	/**
+	 * @return how long the most recent call to validate took, in milliseconds
+	 */
+	public long getLastValidateTime() {
+		return mLastValidateMillis;
+	}
+
+	private void addList(EBList<Object> list) {
+		mLists.add(list);
+
+		// Lists are added in the order ListDatabase.getByName() looks at
+		// them, and like it the first list with a name wins
+		if (list.getName() != null
+				&& mListsByName.containsKey(list.getName()) == false)
+			mListsByName.put(list.getName(), list);
+	}
+
+	/**
+	 * Checks everything that can be checked by looking at a single
+	 * {@link Slide}. Runs on the pool, so only reads the {@link Slide} and the
+	 * list tables
+	 */
+	private SlideReport checkSlide(Slide s, int position) {
+		SlideReport report = new SlideReport();
+
+		Set<ModelElement> onSlide = Collections
+				.newSetFromMap(new IdentityHashMap<ModelElement, Boolean>());
+		onSlide.addAll(s.getModelElements());
+
+		for (ModelElement me : s.getModelElements()) {
+			if (me.getProperties() == null)
+				continue;
+
+			for (Property p : me.getProperties()) {
+				if ((p instanceof DataSource) == false)
+					continue;
+
+				EBList<Object> list = ((DataSource) p).getListData();
+				if (list == null)
+					continue;
+
+				if (mLists.contains(list))
+					report.reads.add(list);
+				else
+					report.problems.add(new Problem(
+							Problem.Kind.UNKNOWN_LIST, position, s.getId(),
+							"An element shows the list \"" + list.getName()
+									+ "\", which is not in the list database"));
+			}
+		}
+		MediaResolver.collectReferencedFiles(s, report.files);
+
+		if (s.getLoop() != null)
+			checkLoop(s, position, report);
+
+		for (Reactor r : s.getEventReactors()) {
+			// A reactor on an element that is not on the slide never fires
+			if (r.getModelElement() == null
+					|| onSlide.contains(r.getModelElement()) == false) {
+				report.problems.add(new Problem(
+						Problem.Kind.DANGLING_REFERENCE, position, s.getId(),
+						"A reactor listens to an element that is not on this slide"));
+				continue;
+			}
+
+			if (r.getCondition() != null)
+				try {
+					Condition.check(r.getCondition().getSource(), mListDatabase);
+				} catch (IllegalArgumentException ex) {
+					report.problems.add(new Problem(Problem.Kind.BAD_CONDITION,
+							position, s.getId(), ex.getMessage()));
+				}
+
+			for (Action a : r.getActions())
+				checkAction(a, s, position, onSlide, report);
+		}
+
+		return report;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void checkLoop(Slide s, int position, SlideReport report) {
+		Loop loop = s.getLoop();
+
+		EBList<Object> list = (EBList<Object>) loop.getList();
+		if (list != null && mLists.contains(list) == false) {
+			report.problems.add(new Problem(Problem.Kind.UNKNOWN_LIST,
+					position, s.getId(), "The slide repeats for each item in \""
+							+ list.getName()
+							+ "\", which is not in the list database"));
+			list = null;
+		}
+		report.loopList = list;
+
+		if (loop.getDesign() != null)
+			for (EBList<?> factor : loop.getDesign().getFactors()) {
+				if (mLists.contains(factor))
+					report.designFactors.add((EBList<Object>) factor);
+				else
+					report.problems.add(new Problem(Problem.Kind.UNKNOWN_LIST,
+							position, s.getId(), "The slide repeats for the list \""
+									+ factor.getName()
+									+ "\", which is not in the list database"));
+			}
+
+		if (loop.getDesign() != null && loop.getDesign().isEmpty())
+			report.problems.add(new Problem(Problem.Kind.NO_TRIALS, position,
+					s.getId(), "The slide repeats for " + loop.getDesign()
+							+ ", but the fraction or constraints leave out "
+							+ "every trial"));
+
+		if (loop.getUntil() instanceof Loop.ListExhausted) {
+			EBList<?> until = ((Loop.ListExhausted) loop.getUntil()).getList();
+			if (mLists.contains(until) == false)
+				report.problems.add(new Problem(Problem.Kind.UNKNOWN_LIST,
+						position, s.getId(), "The slide repeats until the end of \""
+								+ until.getName()
+								+ "\", which is not in the list database"));
+		}
+
+		// Only a loop that stops after a fixed number of passes can be
+		// followed. Otherwise each reactor is assumed to fire once, as for any
+		// other slide
+		if (loop.getUntil() == null && loop.getDesign() == null) {
+			int passes = Integer.MAX_VALUE;
+			if (loop.getTimes() > 0)
+				passes = loop.getTimes();
+			if (loop.getList() != null)
+				passes = Math.min(passes, loop.getList().size());
+			report.passes = passes;
+		}
+	}
+
+	private void checkAction(Action a, Slide s, int position,
+			Set<ModelElement> onSlide, SlideReport report) {
+		if (a.getModel() != null && onSlide.contains(a.getModel()) == false)
+			report.problems.add(new Problem(Problem.Kind.DANGLING_REFERENCE,
+					position, s.getId(),
+					"An action refers to an element that is not on this slide"));
+
+		if (ActionType.TYPE_SLIDE_EVENTS.equals(a.getType())
+				&& a.getActionCode() == Slide.ACTION_ADVANCE_TO_NEXT_SLIDE)
+			report.canAdvance = true;
+
+		if (ActionType.TYPE_LIST_EVENTS.equals(a.getType()) == false)
+			return;
+
+		EBList<Object> list = null;
+		if (a.getData() instanceof String)
+			list = mListsByName.get(a.getData());
+		if (list == null) {
+			report.problems.add(new Problem(Problem.Kind.UNKNOWN_LIST,
+					position, s.getId(), "An action moves the list \""
+							+ a.getData()
+							+ "\", which is not in the list database"));
+			return;
+		}
+
+		int move = 0;
+		if (a.getActionCode() == ListDatabase.ACTION_ADVANCE_LIST_POSITION_ONE)
+			move = 1;
+		else if (a.getActionCode() == ListDatabase.ACTION_REWIND_LIST_POSITION_ONE)
+			move = -1;
+
+		Integer old = report.moves.get(list);
+		report.moves.put(list, (old == null ? 0 : old.intValue()) + move);
+	}
+
+	/**
+	 * Every {@link Slide} after the first one that cannot advance is
+	 * unreachable
+	 */
+	private static void checkReachable(List<Slide> slides,
+			List<SlideReport> reports, List<Problem> problems) {
+		int stuck = -1;
+		for (int i = 0; i < reports.size() - 1 && stuck < 0; i++)
+			if (reports.get(i).canAdvance == false)
+				stuck = i;
+
+		if (stuck < 0)
+			return;
+
+		for (int i = stuck + 1; i < slides.size(); i++)
+			problems.add(new Problem(Problem.Kind.UNREACHABLE_SLIDE, i, slides
+					.get(i).getId(), "Slide " + (stuck + 1)
+					+ " has no way to advance to the next slide"));
+	}
+
+	/**
+	 * Follows the position of every list through the {@link Slide}s in order,
+	 * flagging each {@link Slide} that reads a list while its position is past
+	 * either end
+	 */
+	private void checkListPositions(List<Slide> slides,
+			List<SlideReport> reports, List<Problem> problems) {
+		Map<EBList<Object>, Integer> positions = new IdentityHashMap<EBList<Object>, Integer>();
+		for (EBList<Object> list : mLists)
+			positions.put(list, list.getLocation());
+
+		for (int i = 0; i < reports.size(); i++) {
+			SlideReport r = reports.get(i);
+			if (r.passes == 0)
+				continue;
+
+			for (EBList<Object> list : r.reads) {
+				// The loop moves its lists to each item in turn, and a list
+				// with no known position cannot be checked
+				if (list == r.loopList || r.designFactors.contains(list)
+						|| positions.containsKey(list) == false)
+					continue;
+
+				// Each pass moves the list by the same amount, so only the
+				// first and last pass can be out of range
+				int first = positions.get(list);
+				Integer move = r.moves.get(list);
+				long last = first + (move == null ? 0L : move.longValue())
+						* (r.passes - 1);
+				long at = first < 0 || first >= list.size() ? first : last;
+				if (at < 0 || at >= list.size())
+					problems.add(new Problem(Problem.Kind.LIST_OUT_OF_RANGE, i,
+							slides.get(i).getId(), "The list \""
+									+ list.getName() + "\" is read at position "
+									+ at + ", but only has " + list.size()
+									+ " items"));
+			}
+
+			if (r.loopList != null)
+				positions.put(r.loopList, r.loopList.size() - 1);
+			for (EBList<Object> factor : r.designFactors)
+				positions.remove(factor);
+			for (Map.Entry<EBList<Object>, Integer> move : r.moves.entrySet()) {
+				if (positions.containsKey(move.getKey()) == false)
+					continue;
+				int passes = move.getKey() == r.loopList ? 1 : r.passes;
+				long moved = positions.get(move.getKey()) + (long) move.getValue()
+						* passes;
+				positions.put(move.getKey(), (int) Math.max(Integer.MIN_VALUE,
+						Math.min(Integer.MAX_VALUE, moved)));
+			}
+		}
+	}
+
+	/**
+	 * Reports each bad media file once, on the first {@link Slide} that uses
+	 * it. Files only used by lists are reported without a {@link Slide}
+	 */
+	private static void checkMedia(List<Slide> slides,
+			List<SlideReport> reports, Map<String, ResolvedAsset> assets,
+			List<Problem> problems) {
+		Map<String, ResolvedAsset> bad = new LinkedHashMap<String, ResolvedAsset>();
+		for (ResolvedAsset a : MediaResolver.getProblems(assets))
+			bad.put(a.getFile().getAbsolutePath(), a);
+
+		for (int i = 0; i < reports.size() && bad.isEmpty() == false; i++)
+			for (File f : reports.get(i).files) {
+				ResolvedAsset a = bad.remove(f.getAbsolutePath());
+				if (a != null)
+					problems.add(new Problem(Problem.Kind.BAD_MEDIA, i, slides
+							.get(i).getId(), a.toString()));
+			}
+
+		for (ResolvedAsset a : bad.values())
+			problems.add(new Problem(Problem.Kind.BAD_MEDIA, -1, 0, a
+					.toString()));
+	}
+
+	/**
+	 * Validates the experiment file given as the only argument, printing every
+	 * problem found. Exits with 1 if there were any problems, and 2 if the file
+	 * could not be read
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		if (args.length != 1) {
+			System.out.println("Usage: ExperimentValidator <experiment file>");
+			System.exit(2);
+		}
+
+		Experiment e;
+		try {
+			ExperimentReader in = new ExperimentReader(new File(args[0]));
+			e = new Experiment(in.getListDatabase());
+			Slide s;
+			while ((s = in.readSlide()) != null)
+				e.insertSlide(s, e.getSize());
+		} catch (IOException ex) {
+			ex.printStackTrace();
+			System.exit(2);
+			return;
+		}
+
+		ExperimentValidator validator = new ExperimentValidator();
+		List<Problem> problems = validator.validate(e);
+		for (Problem p : problems)
+			System.out.println(p);
+
+		System.out.println("Checked " + e.getSize() + " slides in "
+				+ validator.getLastValidateTime() + "ms, " + problems.size()
+				+ " problem(s) found");
+		System.exit(problems.isEmpty() ? 0 : 1);
+	}
+}
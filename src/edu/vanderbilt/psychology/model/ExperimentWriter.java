@@ -0,0 +1,187 @@
+package edu.vanderbilt.psychology.model;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.core.ReferenceByXPathMarshaller;
+import com.thoughtworks.xstream.core.ReferenceByXPathMarshallingStrategy;
+import com.thoughtworks.xstream.core.TreeMarshaller;
+import com.thoughtworks.xstream.io.xml.PrettyPrintWriter;
+
+import edu.vanderbilt.psychology.model.elements.ImageElementModel;
+import edu.vanderbilt.psychology.model.elements.ModelElement;
+import edu.vanderbilt.psychology.model.elements.TextModelElement;
+import edu.vanderbilt.psychology.model.properties.DataSource;
+import edu.vanderbilt.psychology.model.properties.Property;
+import edu.vanderbilt.psychology.model.reactor.Reactor;
+
+/**
+ * Writes an {@link Experiment} to disk one {@link Slide} at a time, without
+ * ever holding the whole {@link Experiment} in memory, and without any of the
+ * builder's GUI. Meant for generating large {@link Experiment}s from a script,
+ * such as one trial per row of a design spreadsheet:
+ *
+ * <pre>
+ * ExperimentWriter out = new ExperimentWriter(file);
+ * out.addFileReferenceList(faces);
+ * for (Row row : design) {
+ * 	Slide s = new Slide();
+ * 	TextModelElement prompt = new TextModelElement(row.prompt, font, color);
+ * 	prompt.addGuiProperties(1, new Point(100, 100));
+ * 	s.saveElement(prompt);
+ * 	out.writeSlide(s);
+ * }
+ * out.close();
+ * </pre>
+ *
+ * {@link Slide}s are built from {@link TextModelElement}s,
+ * {@link ImageElementModel}s and {@link Reactor}s using their model-only
+ * constructors. The file written is read by
+ * {@link Experiment#loadExperiment(File)} like any other.
+ *
+ * <p>
+ * Each {@link Slide} is written on its own as soon as it is given to
+ * {@link #writeSlide(Slide)}, so nothing is kept of it afterwards. Lists are
+ * written once, before the first {@link Slide}, and {@link Slide}s refer to
+ * them by name (see {@link EBList#BY_NAME}). All lists must therefore be added
+ * before the first {@link Slide} is written.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class ExperimentWriter {
+
+	private XStream mXStream = new XStream();
+	private Writer mOut;
+	private PrettyPrintWriter mWriter;
+
+	private ListDatabase mLists = new ListDatabase();
+	private boolean mStarted = false;
+	private int mSlideCount = 0;
+
+	public ExperimentWriter(File file) throws IOException {
+		Experiment.addXStreamAliases(mXStream);
+
+		// The same encoding Experiment.loadExperiment() reads with
+		mOut = new BufferedWriter(new FileWriter(file));
+		mWriter = new PrettyPrintWriter(mOut);
+	}
+
+	public void addStringList(EBList<String> list) {
+		checkNotStarted();
+		mLists.addStringList(list);
+	}
+
+	public void addFileReferenceList(EBList<File> list) {
+		checkNotStarted();
+		mLists.addFileReferenceList(list);
+	}
+
+	/**
+	 * Writes a {@link Slide} to the end of the file. The {@link Slide} is
+	 * given the next id if it does not have one yet, and is not needed
+	 * afterwards
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the {@link Slide} uses a list that was not added to this
+	 *             writer, as it could not be read back. Nothing is written
+	 */
+	public void writeSlide(Slide s) throws IOException {
+		checkListsAdded(s);
+		start();
+
+		if (s.getId() == 0)
+			s.setId(mSlideCount + 1);
+
+		mWriter.startNode("Slide");
+		TreeMarshaller m = createMarshaller();
+		m.put(EBList.BY_NAME, Boolean.TRUE);
+		m.convertAnother(s);
+		mWriter.endNode();
+
+		mSlideCount++;
+	}
+
+	/** @return how many {@link Slide}s have been written so far */
+	public int getSlideCount() {
+		return mSlideCount;
+	}
+
+	/**
+	 * Finishes the file. An {@link Experiment} with no {@link Slide}s can be
+	 * written, but is not much use
+	 */
+	public void close() throws IOException {
+		start();
+
+		mWriter.endNode();
+		mWriter.endNode();
+		mWriter.flush();
+		mOut.close();
+	}
+
+	/**
+	 * Writes everything that comes before the first {@link Slide}, the first
+	 * time it is called
+	 */
+	private void start() {
+		if (mStarted)
+			return;
+		mStarted = true;
+
+		mWriter.startNode("Experiment");
+		mWriter.startNode("mListDatabase");
+		createMarshaller().convertAnother(mLists);
+		mWriter.endNode();
+		mWriter.startNode("slides_");
+	}
+
+	/**
+	 * A new marshaller for each {@link Slide}, so that the objects seen while
+	 * writing one {@link Slide} are let go of before the next
+	 */
+	private TreeMarshaller createMarshaller() {
+		return new ReferenceByXPathMarshaller(mWriter, mXStream
+				.getConverterLookup(), mXStream.getMapper(),
+				ReferenceByXPathMarshallingStrategy.RELATIVE);
+	}
+
+	private void checkListsAdded(Slide s) {
+		for (ModelElement me : s.getModelElements()) {
+			if (me.getProperties() == null)
+				continue;
+
+			for (Property p : me.getProperties())
+				if (p instanceof DataSource)
+					checkListAdded(((DataSource) p).getListData());
+		}
+
+		Loop loop = s.getLoop();
+		if (loop == null)
+			return;
+
+		checkListAdded(loop.getList());
+		if (loop.getDesign() != null)
+			for (EBList<?> factor : loop.getDesign().getFactors())
+				checkListAdded(factor);
+		if (loop.getUntil() instanceof Loop.ListExhausted)
+			checkListAdded(((Loop.ListExhausted) loop.getUntil()).getList());
+	}
+
+	private void checkListAdded(EBList<?> list) {
+		if (list != null && mLists.getByName(list.getName()) != list)
+			throw new IllegalArgumentException("The list " + list.getName()
+					+ " must be added before a slide that uses it is written");
+	}
+
+	private void checkNotStarted() {
+		if (mStarted)
+			throw new IllegalStateException(
+					"Lists must be added before the first slide is written");
+	}
+}
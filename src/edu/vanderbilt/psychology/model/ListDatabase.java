@@ -6,6 +6,11 @@ import java.util.List;
 
 import sun.security.action.GetLongAction;
 
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.converters.reflection.ReflectionConverter;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+
 import edu.vanderbilt.psychology.model.reactor.Action;
 import edu.vanderbilt.psychology.model.reactor.ActionListener;
 
@@ -34,6 +39,15 @@ public class ListDatabase implements ActionListener {
 		return instance_;
 	}
 
+	/**
+	 * Makes the given {@link ListDatabase} the one returned by
+	 * {@link #getInstance()}, such as when an {@link Experiment} is opened
+	 * along with its lists
+	 */
+	public static void setInstance(ListDatabase lists) {
+		instance_ = lists;
+	}
+
 	/**
 	 * Searches all list types for an {@link EBList} that has the given name.
 	 * 
@@ -68,6 +82,14 @@ public class ListDatabase implements ActionListener {
 		return listOfNames;
 	}
 
+	public List<EBList<File>> getFileReferenceLists() {
+		return fileReferenceLists_;
+	}
+
+	public List<EBList<String>> getStringLists() {
+		return stringLists_;
+	}
+
 	public void addStringList(EBList<String> list) {
 		stringLists_.add(list);
 	}
@@ -82,6 +104,11 @@ public class ListDatabase implements ActionListener {
 		if (e.getData() != null && e.getData() instanceof String) {
 			String listName = (String) e.getData();
 			EBList<Object> list = getByName(listName);
+			if (list == null) {
+				System.out.println("No list named " + listName);
+				return;
+			}
+
 			switch (e.getActionCode()) {
 			case ACTION_ADVANCE_LIST_POSITION_ONE:
 				list.incrementPosition();
@@ -93,4 +120,33 @@ public class ListDatabase implements ActionListener {
 		}
 
 	}
+
+	/**
+	 * Reads a {@link ListDatabase} as usual, and then remembers it for the
+	 * rest of the file, so that {@link EBList}s written by name (see
+	 * {@link EBList#BY_NAME}) can be found in it
+	 * 
+	 * @author hamiltont
+	 * 
+	 */
+	public static class XStreamConverter extends ReflectionConverter {
+
+		public XStreamConverter(XStream xs) {
+			super(xs.getMapper(), xs.getReflectionProvider());
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean canConvert(Class type) {
+			return type.equals(ListDatabase.class);
+		}
+
+		@Override
+		public Object unmarshal(HierarchicalStreamReader reader,
+				UnmarshallingContext context) {
+			Object lists = super.unmarshal(reader, context);
+			context.put(ListDatabase.class, lists);
+			return lists;
+		}
+	}
 }
@@ -0,0 +1,258 @@
+package edu.vanderbilt.psychology.model;
+
+import java.util.Iterator;
+
+/**
+ * Says that a {@link Slide} is shown more than once in a row, such as once per
+ * trial. The {@link Slide} is used as a template: each pass shows a fresh copy
+ * of it (see {@link Slide#copy(int)}), so the {@link Experiment} only ever
+ * holds the one {@link Slide}, and the player only ever holds the copy for the
+ * current pass, however many passes there are.
+ *
+ * <p>
+ * A {@link Loop} can stop after a number of passes, after one pass per item of
+ * an {@link EBList}, after one pass per trial of a {@link TrialGenerator}, or
+ * once a {@link Condition} is met. When more than one of
+ * these is given, the {@link Loop} stops as soon as any of them says to. When
+ * bound to a list, the list is moved to the next item before each pass, so
+ * anything on the {@link Slide} that shows the list's current item shows a
+ * different one every time. When given a {@link TrialGenerator}, each of its
+ * factors is moved to the trial's item before each pass instead, and the
+ * trials are generated as they are needed. The {@link Condition} is checked after each pass,
+ * so there is always at least one.
+ * </p>
+ *
+ * <p>
+ * A {@link Loop} never changes once made, so it can be shared between the
+ * versions of a {@link Slide} kept for undo.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public final class Loop {
+
+	/**
+	 * Decides whether a {@link Loop} should stop, checked after every pass
+	 */
+	public interface Condition {
+		/**
+		 * @return true if no more passes should be made
+		 */
+		public boolean isMet(Run run);
+	}
+
+	/** Met once the {@link Loop} has been running for a length of time */
+	public static final class TimeLimit implements Condition {
+		private final long mMillis;
+
+		public TimeLimit(long millis) {
+			mMillis = millis;
+		}
+
+		public long getMillis() {
+			return mMillis;
+		}
+
+		public boolean isMet(Run run) {
+			return run.getElapsedMillis() >= mMillis;
+		}
+
+		@Override
+		public String toString() {
+			return "for " + (mMillis / 1000) + " seconds";
+		}
+	}
+
+	/**
+	 * Met once an {@link EBList} has been moved past its last item, such as by
+	 * list {@link edu.vanderbilt.psychology.model.reactor.Action}s fired on
+	 * the {@link Slide}
+	 */
+	public static final class ListExhausted implements Condition {
+		private final EBList<?> mList;
+
+		public ListExhausted(EBList<?> list) {
+			mList = list;
+		}
+
+		public EBList<?> getList() {
+			return mList;
+		}
+
+		public boolean isMet(Run run) {
+			return mList.getLocation() >= mList.size();
+		}
+
+		@Override
+		public String toString() {
+			return "until the end of " + mList.getName();
+		}
+	}
+
+	private final int mTimes;
+	private final EBList<?> mList;
+	private final TrialGenerator mDesign;
+	private final Condition mUntil;
+
+	/**
+	 * @param times
+	 *            the most passes to make, or 0 for no limit
+	 * @param until
+	 *            checked after every pass, or null
+	 */
+	public Loop(int times, Condition until) {
+		this(times, null, null, until);
+	}
+
+	/**
+	 * @param times
+	 *            the most passes to make, or 0 for no limit
+	 * @param list
+	 *            the list to make one pass per item of, or null
+	 * @param until
+	 *            checked after every pass, or null
+	 */
+	public Loop(int times, EBList<?> list, Condition until) {
+		this(times, list, null, until);
+	}
+
+	/**
+	 * @param times
+	 *            the most passes to make, or 0 for no limit
+	 * @param design
+	 *            the trials to make one pass per trial of, or null
+	 * @param until
+	 *            checked after every pass, or null
+	 */
+	public Loop(int times, TrialGenerator design, Condition until) {
+		this(times, null, design, until);
+	}
+
+	/**
+	 * Everything at once, such as for a copy of another {@link Loop} with one
+	 * thing changed. The list and the design should not both be given
+	 */
+	public Loop(int times, EBList<?> list, TrialGenerator design,
+			Condition until) {
+		if (times < 0)
+			throw new IllegalArgumentException("times cannot be negative");
+		if (times == 0 && list == null && design == null && until == null)
+			throw new IllegalArgumentException(
+					"A loop needs a count, a list or a condition to stop it");
+
+		mTimes = times;
+		mList = list;
+		mDesign = design;
+		mUntil = until;
+	}
+
+	/** @return the most passes to make, or 0 for no limit */
+	public int getTimes() {
+		return mTimes;
+	}
+
+	/** @return the list to make one pass per item of, or null */
+	public EBList<?> getList() {
+		return mList;
+	}
+
+	/** @return the trials to make one pass per trial of, or null */
+	public TrialGenerator getDesign() {
+		return mDesign;
+	}
+
+	/** @return the condition checked after every pass, or null */
+	public Condition getUntil() {
+		return mUntil;
+	}
+
+	/**
+	 * Starts running this {@link Loop}, such as when the player reaches its
+	 * {@link Slide}
+	 */
+	public Run start() {
+		return new Run();
+	}
+
+	/**
+	 * @return a short description, such as "x 20" or "each of faces"
+	 */
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		if (mList != null)
+			s.append("each of ").append(mList.getName());
+		if (mDesign != null)
+			s.append(mDesign);
+		if (mTimes > 0)
+			s.append(s.length() == 0 ? "" : ", ").append("x ").append(mTimes);
+		if (mUntil != null)
+			s.append(s.length() == 0 ? "" : ", ").append(mUntil);
+		return s.toString();
+	}
+
+	/**
+	 * One run of a {@link Loop}, from its first pass to its last
+	 */
+	public final class Run {
+		private int mPass = 0;
+		private long mStarted = System.currentTimeMillis();
+
+		/** The trials left, or null if there is no {@link TrialGenerator} */
+		private Iterator<int[]> mTrials;
+
+		private Run() {
+			if (mDesign != null)
+				mTrials = mDesign.iterator();
+		}
+
+		/**
+		 * @return true if another pass should be made
+		 */
+		public boolean hasNext() {
+			if (mTimes > 0 && mPass >= mTimes)
+				return false;
+			if (mList != null && mPass >= mList.size())
+				return false;
+			if (mTrials != null && mTrials.hasNext() == false)
+				return false;
+			if (mUntil != null && mPass > 0 && mUntil.isMet(this))
+				return false;
+			return true;
+		}
+
+		/**
+		 * Starts the next pass, moving the list (if any) to its item for the
+		 * pass, or each factor of the {@link TrialGenerator} (if any) to its
+		 * item for the next trial
+		 *
+		 * @return a fresh copy of the template for the pass to show
+		 */
+		public Slide next(Slide template) {
+			if (mList != null)
+				mList.setLocation(mPass);
+			if (mTrials != null)
+				mDesign.apply(mTrials.next());
+			mPass++;
+
+			return template.copy(1).get(0);
+		}
+
+		/**
+		 * @return how many passes have been started, which is the number of the
+		 *         current pass counting from 1
+		 */
+		public int getPass() {
+			return mPass;
+		}
+
+		public long getElapsedMillis() {
+			return System.currentTimeMillis() - mStarted;
+		}
+
+		public Loop getLoop() {
+			return Loop.this;
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package edu.vanderbilt.psychology.model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * An immutable, ordered sequence of values. Every change returns a new
+ * {@link PersistentSequence} and leaves the old one untouched, so any version
+ * can be kept around and read from any thread without locking.
+ *
+ * <p>
+ * Like the {@link SlideSequence}, this is an implicit treap, but its nodes are
+ * never modified. A change copies only the O(log n) nodes on the path from the
+ * root to the changed position, and the new version shares every other node
+ * with the old one. Keeping many versions therefore costs memory in proportion
+ * to the number of changes, not to the number of versions times their size.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public final class PersistentSequence<T> implements Iterable<T> {
+
+	private static final class Node<T> {
+		final T value;
+		final int priority;
+		final int size;
+		final Node<T> left, right;
+
+		Node(T value, int priority, Node<T> left, Node<T> right) {
+			this.value = value;
+			this.priority = priority;
+			this.left = left;
+			this.right = right;
+			size = 1 + size(left) + size(right);
+		}
+
+		Node<T> with(Node<T> l, Node<T> r) {
+			return new Node<T>(value, priority, l, r);
+		}
+	}
+
+	private static final Random mRandom = new Random();
+
+	@SuppressWarnings("unchecked")
+	private static final PersistentSequence EMPTY = new PersistentSequence(null);
+
+	private final Node<T> mRoot;
+
+	private PersistentSequence(Node<T> root) {
+		mRoot = root;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> PersistentSequence<T> empty() {
+		return EMPTY;
+	}
+
+	/** @return a sequence holding the given values, in order */
+	public static <T> PersistentSequence<T> of(Iterable<T> values) {
+		PersistentSequence<T> s = empty();
+		for (T value : values)
+			s = s.add(value);
+		return s;
+	}
+
+	public int size() {
+		return size(mRoot);
+	}
+
+	public boolean isEmpty() {
+		return mRoot == null;
+	}
+
+	/**
+	 * @throws IndexOutOfBoundsException
+	 *             if there is no value at that position
+	 */
+	public T get(int position) {
+		checkPosition(position, false);
+
+		Node<T> n = mRoot;
+		while (true) {
+			int leftSize = size(n.left);
+			if (position < leftSize)
+				n = n.left;
+			else if (position == leftSize)
+				return n.value;
+			else {
+				position -= leftSize + 1;
+				n = n.right;
+			}
+		}
+	}
+
+	/** @return a new sequence with the value at the given position replaced */
+	public PersistentSequence<T> set(int position, T value) {
+		checkPosition(position, false);
+		if (get(position) == value)
+			return this;
+
+		return new PersistentSequence<T>(set(mRoot, position, value));
+	}
+
+	/** @return a new sequence with the value appended */
+	public PersistentSequence<T> add(T value) {
+		return insert(size(), value);
+	}
+
+	/**
+	 * @param position
+	 *            between 0 and {@link #size()}, inclusive
+	 * @return a new sequence with the value inserted at the given position
+	 */
+	public PersistentSequence<T> insert(int position, T value) {
+		checkPosition(position, true);
+
+		Node<T> n = new Node<T>(value, mRandom.nextInt(), null, null);
+		Node<T>[] halves = split(mRoot, position);
+		return new PersistentSequence<T>(merge(merge(halves[0], n), halves[1]));
+	}
+
+	/** @return a new sequence with the value at the given position removed */
+	public PersistentSequence<T> remove(int position) {
+		checkPosition(position, false);
+
+		Node<T>[] first = split(mRoot, position);
+		Node<T>[] second = split(first[1], 1);
+		return new PersistentSequence<T>(merge(first[0], second[1]));
+	}
+
+	/** @return a new sequence with one value moved to another position */
+	public PersistentSequence<T> move(int from, int to) {
+		checkPosition(to, false);
+		if (from == to)
+			return this;
+
+		T value = get(from);
+		return remove(from).insert(to, value);
+	}
+
+	/** Iterates the values in order */
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private ArrayList<Node<T>> stack_ = new ArrayList<Node<T>>();
+			{
+				pushLeft(mRoot);
+			}
+
+			private void pushLeft(Node<T> n) {
+				for (; n != null; n = n.left)
+					stack_.add(n);
+			}
+
+			public boolean hasNext() {
+				return stack_.isEmpty() == false;
+			}
+
+			public T next() {
+				if (stack_.isEmpty())
+					throw new NoSuchElementException();
+
+				Node<T> n = stack_.remove(stack_.size() - 1);
+				pushLeft(n.right);
+				return n.value;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/** @return a new mutable list holding the values, in order */
+	public List<T> toList() {
+		List<T> list = new ArrayList<T>(size());
+		for (T value : this)
+			list.add(value);
+		return list;
+	}
+
+	/**
+	 * @param end
+	 *            true if the position just past the last value is allowed
+	 */
+	private void checkPosition(int position, boolean end) {
+		int size = size();
+		if (position < 0 || position > size || (position == size && !end))
+			throw new IndexOutOfBoundsException("No position " + position
+					+ ". Sequence size is " + size);
+	}
+
+	private static int size(Node<?> n) {
+		return n == null ? 0 : n.size;
+	}
+
+	private static <T> Node<T> set(Node<T> n, int position, T value) {
+		int leftSize = size(n.left);
+		if (position < leftSize)
+			return n.with(set(n.left, position, value), n.right);
+		if (position > leftSize)
+			return n.with(n.left, set(n.right, position - leftSize - 1, value));
+		return new Node<T>(value, n.priority, n.left, n.right);
+	}
+
+	/**
+	 * Splits a tree so that the first <code>count</code> nodes are in the left
+	 * result and the rest are in the right result. Only the nodes along the
+	 * split path are copied
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> Node<T>[] split(Node<T> n, int count) {
+		if (n == null)
+			return new Node[] { null, null };
+
+		int leftSize = size(n.left);
+		if (count <= leftSize) {
+			Node<T>[] halves = split(n.left, count);
+			return new Node[] { halves[0], n.with(halves[1], n.right) };
+		}
+
+		Node<T>[] halves = split(n.right, count - leftSize - 1);
+		return new Node[] { n.with(n.left, halves[0]), halves[1] };
+	}
+
+	private static <T> Node<T> merge(Node<T> a, Node<T> b) {
+		if (a == null)
+			return b;
+		if (b == null)
+			return a;
+
+		if (a.priority > b.priority)
+			return a.with(a.left, merge(a.right, b));
+		return b.with(merge(a, b.left), b.right);
+	}
+}
@@ -3,27 +3,18 @@
  */
 package edu.vanderbilt.psychology.model;
 
-import java.awt.Color;
-import java.awt.Component;
-import java.awt.Graphics;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-import javax.imageio.ImageIO;
-import javax.swing.ImageIcon;
 import javax.swing.JComponent;
-import javax.swing.JLabel;
 import javax.swing.JLayeredPane;
-import javax.swing.JPanel;
 
 import com.sun.tools.javac.util.Pair;
 
-import edu.vanderbilt.psychology.gui.main.Builder;
 import edu.vanderbilt.psychology.gui.slideElements.SlideElement;
 import edu.vanderbilt.psychology.model.elements.ModelElement;
 import edu.vanderbilt.psychology.model.inputs.Input;
@@ -58,16 +49,136 @@ public class Slide {
 	Set<ModelElement> elements_ = new HashSet<ModelElement>();
 	List<Reactor> reactors_ = new ArrayList<Reactor>();
 
-	private JLayeredPane mSlideThumbnail;
+	/**
+	 * Assigned by the {@link SlideSequence} this {@link Slide} is placed into.
+	 * Zero until then
+	 */
+	private long mId = 0;
+
+	/**
+	 * True if the elements and reactors of this {@link Slide} may be shared
+	 * with other {@link Slide}s (see {@link #copy()}). Written to disk, as the
+	 * sharing is too
+	 */
+	boolean mShared = false;
+
+	/**
+	 * If set, this {@link Slide} is a template the player shows once per pass
+	 * of the {@link Loop}, rather than just once
+	 */
+	private Loop mLoop = null;
+
+	/**
+	 * @return an id that stays the same even when this {@link Slide} is moved
+	 *         within its {@link Experiment}, or 0 if this {@link Slide} has
+	 *         not been added to an {@link Experiment} yet
+	 */
+	public long getId() {
+		return mId;
+	}
+
+	void setId(long id) {
+		mId = id;
+	}
+
+	/** @return the {@link Loop} this {@link Slide} is repeated by, or null */
+	public Loop getLoop() {
+		return mLoop;
+	}
+
+	/**
+	 * @param loop
+	 *            how to repeat this {@link Slide} when played, or null to show
+	 *            it once
+	 */
+	public void setLoop(Loop loop) {
+		mLoop = loop;
+	}
 
 	public void saveElement(ModelElement me) {
+		unshare();
 		elements_.add(me);
 	}
 
 	public void addEventReactor(Reactor reactor) {
+		unshare();
 		reactors_.add(reactor);
 	}
 
+	/**
+	 * Makes copies of this {@link Slide}. The first copy gets its own copy of
+	 * everything on this {@link Slide}, and the rest share its
+	 * {@link ModelElement}s and {@link Reactor}s, so each copy after the first
+	 * takes the same small, fixed amount of memory no matter how much is on
+	 * the {@link Slide}. The copies are marked as shared, and whichever is
+	 * changed first gets its own copy of everything then (see
+	 * {@link #unshare()}). This {@link Slide} shares nothing with the copies,
+	 * so it may stay on the stage. The copies have no id until they are added
+	 * to an {@link Experiment}, and share this {@link Slide}'s {@link Loop}
+	 */
+	public List<Slide> copy(int count) {
+		List<Slide> copies = new ArrayList<Slide>(Math.max(0, count));
+		if (count < 1)
+			return copies;
+
+		Slide first = new Slide();
+		first.elements_ = elements_;
+		first.reactors_ = reactors_;
+		first.mShared = true;
+		first.mLoop = mLoop;
+		first.unshare();
+		copies.add(first);
+
+		for (int i = 1; i < count; i++) {
+			Slide copy = new Slide();
+			copy.elements_ = first.elements_;
+			copy.reactors_ = first.reactors_;
+			copy.mShared = true;
+			copy.mLoop = mLoop;
+			copies.add(copy);
+		}
+		first.mShared = count > 1;
+
+		return copies;
+	}
+
+	/**
+	 * @return true if this {@link Slide} may share its elements with another
+	 *         {@link Slide}, and so must be unshared before they are changed
+	 */
+	public boolean isShared() {
+		return mShared;
+	}
+
+	/**
+	 * Gives this {@link Slide} its own copy of each of its {@link ModelElement}s
+	 * and {@link Reactor}s, if it may be sharing them with another
+	 * {@link Slide}. Must be called before changing any of the
+	 * {@link ModelElement}s in place, such as by putting them on the stage.
+	 * The {@link Property}s are copied along with the {@link ModelElement}s,
+	 * but the lists and media files they refer to are not
+	 */
+	public void unshare() {
+		if (mShared == false)
+			return;
+
+		Map<ModelElement, ModelElement> copies = new IdentityHashMap<ModelElement, ModelElement>();
+		HashSet<ModelElement> elements = new HashSet<ModelElement>();
+		for (ModelElement me : elements_) {
+			ModelElement copy = me.copy();
+			copies.put(me, copy);
+			elements.add(copy);
+		}
+
+		List<Reactor> reactors = new ArrayList<Reactor>(reactors_.size());
+		for (Reactor r : reactors_)
+			reactors.add(r.copy(copies));
+
+		elements_ = elements;
+		reactors_ = reactors;
+		mShared = false;
+	}
+
 	public List<Reactor> getEventReactors() {
 		return reactors_;
 	}
@@ -102,9 +213,14 @@ public class Slide {
 	}
 
 	public void clearElements() {
+		unshare();
 		elements_.clear();
 	}
 
+	/**
+	 * Gets the {@link ModelElement}s on this {@link Slide}. These may be shared
+	 * with other {@link Slide}s, so the set must not be changed directly
+	 */
 	public Set<ModelElement> getModelElements() {
 		return elements_;
 	}
@@ -144,72 +260,20 @@ public class Slide {
 		return components;
 	}
 
-	public void setSlideThumbnail(JLayeredPane thumbnail) {
-		mSlideThumbnail = thumbnail;
-
-		updateThumbnail();
-	}
-
-	public void updateThumbnail() {
-		if (mSlideThumbnail == null)
-			return;
-
-		for (Component c : mSlideThumbnail.getComponents()) {
-			if (false == c instanceof JLabel)
-				continue;
-
-			JLabel label = (JLabel) c;
-			if (label.getIcon() == null)
-				continue;
-
-			BufferedImage backgroundImage = new BufferedImage(
-					Builder.SLIDE_THUMBNAIL_WIDTH,
-					Builder.SLIDE_THUMBNAIL_HEIGHT, BufferedImage.TYPE_INT_RGB);
-
-			List<Pair<JComponent, MutableInt>> components = new ArrayList<Pair<JComponent, MutableInt>>();
-			for (ModelElement me : elements_) {
-				MutableInt mi = new MutableInt();
-				JComponent foo = me.getJComponent(mi);
-				Pair p = new Pair<JComponent, MutableInt>(foo, mi);
-				components.add(p);
-			}
-
-			BufferedImage bgImage = new BufferedImage(1400, 900,
-					BufferedImage.TYPE_INT_RGB);
-			Graphics g = bgImage.getGraphics();
-
-			// You cannot just print each component, because it's location is
-			// not relative to anything, so all the components will show up in
-			// the top left with default alignments (typically left-aligned
-			// horizontally and center-aligned vertically within their bounds).
-			// To make sure all the components are drawn at the correct
-			// locations we add them to a JPanel first
-			JPanel renderPanel = new JPanel(null, false);
-			renderPanel.setSize(1400, 900);
-			renderPanel.setBackground(Color.LIGHT_GRAY);
-			for (Pair<JComponent, MutableInt> pair : components)
-			// TODO respect layer ordering
-			{
-				renderPanel.add(pair.fst);
-			}
-
-			// Now print the JPanel
-			renderPanel.print(g);
-
-			// Draw a border
-			g.setColor(Color.black);
-			g.drawRect(1, 1, 1400 - 1, 900 - 1);
-
-			backgroundImage.getGraphics().drawImage(bgImage, 0, 0,
-					Builder.SLIDE_THUMBNAIL_WIDTH,
-					Builder.SLIDE_THUMBNAIL_WIDTH, 0, 0, 1400, 900, null);
-
-			ImageIcon newIcon = new ImageIcon(backgroundImage);
-			label.setIcon(newIcon);
+	/**
+	 * Gets a hash of everything that changes how this {@link Slide} looks. If
+	 * this value has not changed, then neither has the {@link Slide}'s
+	 * thumbnail. The order the {@link ModelElement}s are stored in does not
+	 * affect the result
+	 */
+	public long getContentHash() {
+		long hash = 0;
+		for (ModelElement me : elements_) {
+			// Spread the bits out a bit before summing, so that two elements
+			// swapping a property does not cancel out
+			long h = me.getContentHash() * 0x9E3779B97F4A7C15L;
+			hash += h ^ (h >>> 29);
 		}
-	}
-
-	public JLayeredPane getSlideThumbnail() {
-		return mSlideThumbnail;
+		return hash * 31 + elements_.size();
 	}
 }
@@ -0,0 +1,406 @@
+/**
+ *
+ */
+package edu.vanderbilt.psychology.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+
+/**
+ * Holds the ordered list of {@link Slide}s inside of an {@link Experiment}.
+ *
+ * <p>
+ * Internally this is an implicit treap (a randomly balanced binary tree where
+ * each node is keyed by the size of the subtree to its left rather than by a
+ * stored key). This allows inserting, removing and moving a {@link Slide} by
+ * position in O(log n) time, without ever copying the whole sequence. There
+ * are never any empty positions, so iterating the sequence only ever visits
+ * real {@link Slide}s.
+ * </p>
+ *
+ * <p>
+ * Every {@link Slide} added to a {@link SlideSequence} is given an id that is
+ * unique within the sequence and never changes, even if the {@link Slide} is
+ * moved. Anything that needs to remember a {@link Slide} across a reorder
+ * (thumbnails, reactors, etc) should hold on to the id rather than the
+ * position. Each node keeps a pointer to its parent, so the current position
+ * of an id can be recovered in O(log n) by walking up to the root.
+ * </p>
+ *
+ * <p>
+ * The tree itself is never written to disk. The {@link XStreamConverter} writes
+ * the {@link Slide}s out in order, and rebuilds the tree when loading.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class SlideSequence implements Iterable<Slide> {
+
+	private static final class Node {
+		Slide slide;
+		int priority;
+		int size = 1;
+		Node left, right, parent;
+
+		Node(Slide s, int p) {
+			slide = s;
+			priority = p;
+		}
+	}
+
+	private Node root_ = null;
+	private HashMap<Long, Node> nodesById_ = new HashMap<Long, Node>();
+	private long nextId_ = 1;
+	private Random random_ = new Random();
+
+	/**
+	 * @return the number of {@link Slide}s in this sequence
+	 */
+	public int size() {
+		return size(root_);
+	}
+
+	public boolean isEmpty() {
+		return root_ == null;
+	}
+
+	/**
+	 * Gets the {@link Slide} at the given zero-indexed position
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if there is no {@link Slide} at that position
+	 */
+	public Slide get(int position) {
+		return nodeAt(position).slide;
+	}
+
+	/**
+	 * Gets the {@link Slide} with the given id, or null if no {@link Slide}
+	 * in this sequence has that id
+	 */
+	public Slide getById(long id) {
+		Node n = nodesById_.get(id);
+		if (n == null)
+			return null;
+		return n.slide;
+	}
+
+	/**
+	 * Appends a {@link Slide} to the end of the sequence
+	 */
+	public void add(Slide s) {
+		insert(size(), s);
+	}
+
+	/**
+	 * Inserts a {@link Slide} so that it will be found at the given position.
+	 * Any {@link Slide}s at or after that position are shifted back by one.
+	 * If the {@link Slide} does not have an id yet, one is assigned
+	 *
+	 * @param position
+	 *            between 0 and {@link #size()}, inclusive
+	 */
+	public void insert(int position, Slide s) {
+		if (position < 0 || position > size())
+			throw new IndexOutOfBoundsException("Unable to insert at "
+					+ position + ". Sequence size is " + size());
+
+		Node n = new Node(s, random_.nextInt());
+		register(n);
+
+		Node[] halves = split(root_, position);
+		root_ = merge(merge(halves[0], n), halves[1]);
+		root_.parent = null;
+	}
+
+	/**
+	 * Removes the {@link Slide} at the given position. Any {@link Slide}s
+	 * after that position are shifted forward by one
+	 *
+	 * @return the removed {@link Slide}
+	 */
+	public Slide remove(int position) {
+		Node n = detach(position);
+		nodesById_.remove(n.slide.getId());
+		return n.slide;
+	}
+
+	/**
+	 * Replaces the {@link Slide} at the given position
+	 *
+	 * @return the {@link Slide} that was previously at that position
+	 */
+	public Slide set(int position, Slide s) {
+		Node n = nodeAt(position);
+		if (n.slide == s)
+			return s;
+
+		// Check before anything is changed, so a failed set leaves the
+		// sequence as it was
+		Slide old = n.slide;
+		if (s.getId() != 0 && s.getId() != old.getId()
+				&& nodesById_.containsKey(s.getId()))
+			throw new IllegalArgumentException("A slide with id " + s.getId()
+					+ " is already in this sequence");
+
+		nodesById_.remove(old.getId());
+		n.slide = s;
+		register(n);
+		return old;
+	}
+
+	/**
+	 * Removes every {@link Slide}. Ids are never handed out again, so
+	 * {@link Slide}s that are added back keep the ids they had
+	 */
+	public void clear() {
+		root_ = null;
+		nodesById_.clear();
+	}
+
+	/**
+	 * Moves the {@link Slide} at position <code>from</code> so that it ends up
+	 * at position <code>to</code>. The {@link Slide} keeps its id
+	 */
+	public void move(int from, int to) {
+		if (to < 0 || to >= size())
+			throw new IndexOutOfBoundsException("Unable to move to " + to
+					+ ". Sequence size is " + size());
+		if (from == to)
+			return;
+
+		Node n = detach(from);
+		Node[] halves = split(root_, to);
+		root_ = merge(merge(halves[0], n), halves[1]);
+		root_.parent = null;
+	}
+
+	/**
+	 * @return the current position of the {@link Slide} with the given id, or
+	 *         -1 if it is not in this sequence
+	 */
+	public int indexOfId(long id) {
+		Node n = nodesById_.get(id);
+		if (n == null)
+			return -1;
+
+		int position = size(n.left);
+		while (n.parent != null) {
+			if (n == n.parent.right)
+				position += size(n.parent.left) + 1;
+			n = n.parent;
+		}
+
+		return position;
+	}
+
+	/**
+	 * @return the current position of the {@link Slide}, or -1 if it is not
+	 *         in this sequence
+	 */
+	public int indexOf(Slide s) {
+		Node n = nodesById_.get(s.getId());
+		if (n == null || n.slide != s)
+			return -1;
+		return indexOfId(s.getId());
+	}
+
+	/**
+	 * Iterates the {@link Slide}s in order. Each step is amortized O(1)
+	 */
+	public Iterator<Slide> iterator() {
+		return new Iterator<Slide>() {
+			private Node next_ = leftmost(root_);
+
+			public boolean hasNext() {
+				return next_ != null;
+			}
+
+			public Slide next() {
+				if (next_ == null)
+					throw new NoSuchElementException();
+				Slide s = next_.slide;
+				next_ = successor(next_);
+				return s;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private void register(Node n) {
+		Slide s = n.slide;
+		if (s.getId() == 0)
+			s.setId(nextId_++);
+		else if (s.getId() >= nextId_)
+			nextId_ = s.getId() + 1;
+
+		if (nodesById_.containsKey(s.getId()))
+			throw new IllegalArgumentException("A slide with id " + s.getId()
+					+ " is already in this sequence");
+
+		nodesById_.put(s.getId(), n);
+	}
+
+	private Node detach(int position) {
+		if (position < 0 || position >= size())
+			throw new IndexOutOfBoundsException("No slide at " + position
+					+ ". Sequence size is " + size());
+
+		Node[] first = split(root_, position);
+		Node[] second = split(first[1], 1);
+		root_ = merge(first[0], second[1]);
+		if (root_ != null)
+			root_.parent = null;
+
+		Node n = second[0];
+		n.parent = null;
+		return n;
+	}
+
+	private Node nodeAt(int position) {
+		if (position < 0 || position >= size())
+			throw new IndexOutOfBoundsException("No slide at " + position
+					+ ". Sequence size is " + size());
+
+		Node n = root_;
+		while (true) {
+			int leftSize = size(n.left);
+			if (position < leftSize)
+				n = n.left;
+			else if (position == leftSize)
+				return n;
+			else {
+				position -= leftSize + 1;
+				n = n.right;
+			}
+		}
+	}
+
+	private static int size(Node n) {
+		return n == null ? 0 : n.size;
+	}
+
+	private static void update(Node n) {
+		n.size = 1 + size(n.left) + size(n.right);
+		if (n.left != null)
+			n.left.parent = n;
+		if (n.right != null)
+			n.right.parent = n;
+	}
+
+	/**
+	 * Splits the tree so that the first <code>count</code> nodes are in the
+	 * left result and the rest are in the right result
+	 */
+	private static Node[] split(Node n, int count) {
+		if (n == null)
+			return new Node[] { null, null };
+
+		if (size(n.left) >= count) {
+			Node[] halves = split(n.left, count);
+			n.left = halves[1];
+			update(n);
+			return new Node[] { halves[0], n };
+		}
+
+		Node[] halves = split(n.right, count - size(n.left) - 1);
+		n.right = halves[0];
+		update(n);
+		return new Node[] { n, halves[1] };
+	}
+
+	/** Joins two trees, placing every node of a before every node of b */
+	private static Node merge(Node a, Node b) {
+		if (a == null)
+			return b;
+		if (b == null)
+			return a;
+
+		if (a.priority > b.priority) {
+			a.right = merge(a.right, b);
+			update(a);
+			return a;
+		}
+
+		b.left = merge(a, b.left);
+		update(b);
+		return b;
+	}
+
+	private static Node leftmost(Node n) {
+		if (n == null)
+			return null;
+		while (n.left != null)
+			n = n.left;
+		return n;
+	}
+
+	private static Node successor(Node n) {
+		if (n.right != null)
+			return leftmost(n.right);
+
+		while (n.parent != null && n == n.parent.right)
+			n = n.parent;
+		return n.parent;
+	}
+
+	/**
+	 * Writes a {@link SlideSequence} as a flat, ordered list of {@link Slide}s
+	 * and rebuilds the tree on load. Any <code>&lt;null/&gt;</code> entries
+	 * (written by older versions that stored slides in a padded array) are
+	 * skipped
+	 *
+	 * @author hamiltont
+	 *
+	 */
+	public static class XStreamConverter implements Converter {
+
+		@SuppressWarnings("unchecked")
+		public boolean canConvert(Class type) {
+			return type.equals(SlideSequence.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter writer,
+				MarshallingContext context) {
+			for (Slide s : (SlideSequence) source) {
+				writer.startNode("Slide");
+				context.convertAnother(s);
+				writer.endNode();
+			}
+		}
+
+		public Object unmarshal(HierarchicalStreamReader reader,
+				UnmarshallingContext context) {
+			SlideSequence sequence = new SlideSequence();
+			while (reader.hasMoreChildren()) {
+				reader.moveDown();
+				if (false == "null".equals(reader.getNodeName()))
+					sequence.add((Slide) context.convertAnother(sequence,
+							Slide.class));
+				reader.moveUp();
+			}
+
+			return sequence;
+		}
+	}
+
+	/**
+	 * Registers the {@link XStreamConverter} with the given {@link XStream}
+	 */
+	public static void addXStreamConverter(XStream xs) {
+		xs.registerConverter(new XStreamConverter());
+	}
+}
@@ -0,0 +1,250 @@
+package edu.vanderbilt.psychology.model;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.vanderbilt.psychology.model.elements.ModelElement;
+import edu.vanderbilt.psychology.model.properties.Property;
+import edu.vanderbilt.psychology.model.reactor.Reactor;
+
+/**
+ * An immutable record of a {@link Slide} as it was at one moment. The
+ * {@link Slide} itself keeps changing as the user edits it, but a
+ * {@link SlideState} never does, so it can be read from any thread and kept for
+ * undo.
+ *
+ * <p>
+ * Each {@link ModelElement} is recorded by identity, so that {@link Reactor}s
+ * and the builder's components still point at it, along with a private
+ * {@link ModelElement#copy()} of its contents at the time (see
+ * {@link ElementState}). Undoing puts those contents back into the same
+ * {@link ModelElement}. The {@link Reactor}s are not copied.
+ * </p>
+ *
+ * <p>
+ * Capturing a {@link Slide} that has not changed since its last
+ * {@link SlideState} returns that same {@link SlideState}, so versions of an
+ * {@link Experiment} share the states of every {@link Slide} that was not
+ * edited between them.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public final class SlideState {
+
+	/** What one {@link ModelElement} on the {@link Slide} was like */
+	public static final class ElementState {
+		private final ModelElement mElement;
+		private final ModelElement mContent;
+		private final Point mLocation;
+		private final Integer mLayer;
+		private final int mContentHash;
+		private final int mPropertiesHash;
+
+		ElementState(ModelElement me) {
+			mElement = me;
+			mContent = me.copy();
+			Point p = me.getLocation();
+			mLocation = p == null ? null : new Point(p);
+			mLayer = me.getLayer();
+			mContentHash = me.getContentHash();
+			mPropertiesHash = hashProperties(me);
+		}
+
+		/**
+		 * @return the {@link ModelElement} itself, which is still being
+		 *         edited. Use it to tell elements apart, and
+		 *         {@link #getContent()} to read what it held
+		 */
+		public ModelElement getElement() {
+			return mElement;
+		}
+
+		/**
+		 * @return a copy of the {@link ModelElement} as it was, which is
+		 *         never changed and is safe to read from any thread. It must
+		 *         not be changed either
+		 */
+		public ModelElement getContent() {
+			return mContent;
+		}
+
+		/**
+		 * @return a copy of the location the element was at, or null if it had
+		 *         not been placed yet
+		 */
+		public Point getLocation() {
+			return mLocation == null ? null : new Point(mLocation);
+		}
+
+		public Integer getLayer() {
+			return mLayer;
+		}
+
+		public int getContentHash() {
+			return mContentHash;
+		}
+
+		/** @return true if the element is still in this state */
+		boolean matches(ModelElement me) {
+			return mElement == me && equal(mLocation, me.getLocation())
+					&& equal(mLayer, me.getLayer())
+					&& mContentHash == me.getContentHash()
+					&& mPropertiesHash == hashProperties(me);
+		}
+
+		/** Puts the element back the way it was */
+		void apply() {
+			mElement.restore(mContent);
+		}
+
+		private static int hashProperties(ModelElement me) {
+			List<Property> properties = me.getProperties();
+			if (properties == null)
+				return 0;
+
+			int hash = 1;
+			for (Property p : properties)
+				hash = 31 * hash + p.getContentHash();
+			return hash;
+		}
+	}
+
+	private final long mId;
+	private final List<ElementState> mElements;
+	private final List<Reactor> mReactors;
+	private final boolean mShared;
+	private final Loop mLoop;
+
+	private SlideState(long id, List<ElementState> elements,
+			List<Reactor> reactors, boolean shared, Loop loop) {
+		mId = id;
+		mElements = elements;
+		mReactors = reactors;
+		mShared = shared;
+		mLoop = loop;
+	}
+
+	/**
+	 * Records the current state of a {@link Slide}
+	 * 
+	 * @param previous
+	 *            the last state recorded for this {@link Slide}, or null. If
+	 *            the {@link Slide} has not changed since, this is returned
+	 */
+	public static SlideState capture(Slide s, SlideState previous) {
+		if (previous != null && previous.matches(s))
+			return previous;
+
+		List<ElementState> elements = new ArrayList<ElementState>(s
+				.getModelElements().size());
+		for (ModelElement me : s.getModelElements())
+			elements.add(new ElementState(me));
+
+		return new SlideState(s.getId(), Collections
+				.unmodifiableList(elements), Collections
+				.unmodifiableList(new ArrayList<Reactor>(s.getEventReactors())),
+				s.isShared(), s.getLoop());
+	}
+
+	/**
+	 * Records the state of a {@link Slide} that shares everything with the
+	 * {@link Slide} this state was recorded from (see {@link Slide#copy(int)}
+	 * ). Nothing is copied, the two states share their lists
+	 */
+	SlideState withId(long id) {
+		return new SlideState(id, mElements, mReactors, true, mLoop);
+	}
+
+	/** @see Slide#getId() */
+	public long getId() {
+		return mId;
+	}
+
+	public List<ElementState> getElements() {
+		return mElements;
+	}
+
+	public List<Reactor> getEventReactors() {
+		return mReactors;
+	}
+
+	/** @see Slide#getLoop() */
+	public Loop getLoop() {
+		return mLoop;
+	}
+
+	/**
+	 * The same hash {@link Slide#getContentHash()} gave when this state was
+	 * recorded
+	 */
+	public long getContentHash() {
+		long hash = 0;
+		for (ElementState e : mElements) {
+			long h = e.getContentHash() * 0x9E3779B97F4A7C15L;
+			hash += h ^ (h >>> 29);
+		}
+		return hash * 31 + mElements.size();
+	}
+
+	/**
+	 * @return true if the {@link Slide} is still exactly as recorded
+	 */
+	public boolean matches(Slide s) {
+		if (s.getId() != mId || s.isShared() != mShared
+				|| s.getLoop() != mLoop
+				|| s.getModelElements().size() != mElements.size()
+				|| s.getEventReactors().equals(mReactors) == false)
+			return false;
+
+		Map<ModelElement, ElementState> byElement = new IdentityHashMap<ModelElement, ElementState>();
+		for (ElementState e : mElements)
+			byElement.put(e.getElement(), e);
+
+		for (ModelElement me : s.getModelElements()) {
+			ElementState e = byElement.get(me);
+			if (e == null || e.matches(me) == false)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Changes a {@link Slide} back to this state. The {@link Slide} is given
+	 * this state's id if it does not have one yet
+	 */
+	void applyTo(Slide s) {
+		if (s.getId() == 0)
+			s.setId(mId);
+
+		HashSet<ModelElement> elements = new HashSet<ModelElement>();
+		for (ElementState e : mElements) {
+			e.apply();
+			elements.add(e.getElement());
+		}
+
+		s.elements_ = elements;
+		s.reactors_ = new ArrayList<Reactor>(mReactors);
+
+		// If the elements were shared then, they may still be shared with
+		// another slide now
+		s.mShared = mShared;
+		s.setLoop(mLoop);
+	}
+
+	@Override
+	public String toString() {
+		return "SlideState[id " + mId + ", " + mElements.size()
+				+ " elements, " + mReactors.size() + " reactors]";
+	}
+
+	private static boolean equal(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
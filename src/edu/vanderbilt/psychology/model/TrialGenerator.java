@@ -0,0 +1,378 @@
+package edu.vanderbilt.psychology.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Crosses several {@link EBList}s (the factors) into a factorial design, and
+ * hands out its trials one at a time. Each trial is a cell of the design,
+ * given as an index into each factor, in the order the factors were given.
+ *
+ * <p>
+ * Nothing is ever built up front, so a design with millions of cells takes no
+ * more memory than one with four. Trial <i>t</i> is decoded straight into its
+ * cell, and when the trials are shuffled <i>t</i> is first passed through a
+ * random permutation of all the trials that is worked out as it is needed
+ * (a small Feistel network, see {@link #permute(long, int, long[])}), so the
+ * order is random but no trial is ever given twice.
+ * </p>
+ *
+ * <p>
+ * The trials can be narrowed down:
+ * <ul>
+ * <li>Every cell can be given more than once (repetitions). When not shuffled,
+ * each repetition is a block that goes through every cell once</li>
+ * <li>Only a fraction of the cells can be kept: with a fraction of <i>f</i>,
+ * only cells whose indices add up to a multiple of <i>f</i> are kept. For two
+ * level factors and <i>f</i> = 2 this is the usual half fraction</li>
+ * <li>Cells can be left out by {@link Constraint}s, such as
+ * {@link DifferentLevels}</li>
+ * </ul>
+ * Cells that are left out are skipped as the trials are handed out. So that a
+ * design that leaves out (nearly) every cell cannot stall whoever asks for the
+ * next trial, the trials are taken to have run out once {@link #MAX_SKIPPED}
+ * cells in a row have been left out. {@link #isEmpty()} checks for a design
+ * that gives no trials at all before it is run.
+ * </p>
+ *
+ * <p>
+ * A {@link TrialGenerator} never changes once made, so it can be shared by the
+ * versions of a {@link Loop} kept for undo. Give it to a
+ * {@link Loop#Loop(int, TrialGenerator, Loop.Condition)} to show a
+ * {@link Slide} once per trial, or use {@link #iterator()} directly, such as
+ * to write a {@link Slide} per trial with an {@link ExperimentWriter}.
+ * {@link Constraint}s must be named classes to be saved with an
+ * {@link Experiment}.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public final class TrialGenerator implements Iterable<int[]> {
+
+	/** Leaves cells out of the design */
+	public interface Constraint {
+		/**
+		 * @param cell
+		 *            an index into each factor. Must not be changed
+		 * @return true if the cell may be given as a trial
+		 */
+		public boolean allows(int[] cell);
+	}
+
+	/**
+	 * Leaves out the cells where two factors are at the same index, such as a
+	 * prime and a target that must not be the same word
+	 */
+	public static final class DifferentLevels implements Constraint {
+		private final int mFirst;
+		private final int mSecond;
+
+		/**
+		 * @param first
+		 *            the position of a factor in the design
+		 * @param second
+		 *            the position of another
+		 */
+		public DifferentLevels(int first, int second) {
+			mFirst = first;
+			mSecond = second;
+		}
+
+		public boolean allows(int[] cell) {
+			return cell[mFirst] != cell[mSecond];
+		}
+	}
+
+	/** The number of rounds of the Feistel network used to shuffle */
+	private static final int ROUNDS = 4;
+
+	/**
+	 * The most cells in a row that are left out before the trials are taken
+	 * to have run out
+	 */
+	public static final int MAX_SKIPPED = 1 << 20;
+
+	private final List<EBList<?>> mFactors;
+	private final int mRepetitions;
+	private final int mFraction;
+	private final List<Constraint> mConstraints;
+	private final boolean mShuffled;
+	private final long mSeed;
+
+	/**
+	 * The full factorial design
+	 *
+	 * @param shuffled
+	 *            true to give the trials in a different random order each
+	 *            time
+	 */
+	public TrialGenerator(List<? extends EBList<?>> factors, int repetitions,
+			boolean shuffled) {
+		this(factors, repetitions, shuffled, 1, null, 0);
+	}
+
+	/**
+	 * @param factors
+	 *            the lists to cross, at least one
+	 * @param repetitions
+	 *            how many times each cell is given, at least one
+	 * @param shuffled
+	 *            true to give the trials in a random order
+	 * @param fraction
+	 *            1 for every cell, or <i>f</i> to keep only the cells whose
+	 *            indices add up to a multiple of <i>f</i>
+	 * @param constraints
+	 *            cells to leave out, or null
+	 * @param seed
+	 *            the seed for the random order, or 0 for a different order
+	 *            each time
+	 */
+	public TrialGenerator(List<? extends EBList<?>> factors, int repetitions,
+			boolean shuffled, int fraction, List<Constraint> constraints,
+			long seed) {
+		if (factors.isEmpty())
+			throw new IllegalArgumentException("A design needs a factor");
+		if (repetitions < 1)
+			throw new IllegalArgumentException(
+					"repetitions must be at least one");
+		if (fraction < 1)
+			throw new IllegalArgumentException("fraction must be at least one");
+
+		mFactors = Collections.unmodifiableList(new ArrayList<EBList<?>>(
+				factors));
+		mRepetitions = repetitions;
+		mShuffled = shuffled;
+		mFraction = fraction;
+		mConstraints = constraints == null ? Collections
+				.<Constraint> emptyList() : Collections
+				.unmodifiableList(new ArrayList<Constraint>(constraints));
+		mSeed = seed;
+	}
+
+	public List<EBList<?>> getFactors() {
+		return mFactors;
+	}
+
+	public int getRepetitions() {
+		return mRepetitions;
+	}
+
+	public boolean isShuffled() {
+		return mShuffled;
+	}
+
+	/**
+	 * @return the number of cells in the full design, which is the product of
+	 *         the sizes of the factors
+	 */
+	public long getCellCount() {
+		long cells = 1;
+		for (EBList<?> factor : mFactors) {
+			if (factor.size() > 0 && cells > Long.MAX_VALUE / factor.size())
+				throw new IllegalStateException("The design is too large");
+			cells *= factor.size();
+		}
+		return cells;
+	}
+
+	/**
+	 * @return the most trials that will be given. Fewer are given if some
+	 *         cells are left out by the fraction or the constraints
+	 */
+	public long getTrialCount() {
+		long cells = getCellCount();
+		if (cells > Long.MAX_VALUE / mRepetitions)
+			throw new IllegalStateException("The design is too large");
+		return cells * mRepetitions;
+	}
+
+	/**
+	 * @return true if the fraction and constraints leave out every cell, so
+	 *         that not even one trial is given. Looks at no more than
+	 *         {@link #MAX_SKIPPED} cells
+	 */
+	public boolean isEmpty() {
+		return iterator().hasNext() == false;
+	}
+
+	/**
+	 * Moves each factor to its index in the cell, so that anything showing the
+	 * factors' current items shows this trial
+	 */
+	public void apply(int[] cell) {
+		for (int i = 0; i < cell.length; i++)
+			mFactors.get(i).setLocation(cell[i]);
+	}
+
+	/**
+	 * @return the trials in order, as an index into each factor. The sizes of
+	 *         the factors are read now, and must not change while the
+	 *         {@link Iterator} is in use. Each cell returned is a new array
+	 */
+	public Iterator<int[]> iterator() {
+		return new Trials();
+	}
+
+	/**
+	 * @return a short description, such as "each of faces x words"
+	 */
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder("each of ");
+		for (int i = 0; i < mFactors.size(); i++)
+			s.append(i == 0 ? "" : " x ").append(mFactors.get(i).getName());
+		if (mRepetitions > 1)
+			s.append(", x ").append(mRepetitions);
+		if (mFraction > 1)
+			s.append(", 1/").append(mFraction);
+		if (mShuffled)
+			s.append(", shuffled");
+		return s.toString();
+	}
+
+	/**
+	 * Walks the trials, skipping the cells that are left out. Finds the next
+	 * trial in advance, so {@link #hasNext()} is exact
+	 */
+	private class Trials implements Iterator<int[]> {
+		private final int[] mSizes;
+		private final long mCells;
+		private final long mTrials;
+
+		/** The Feistel network's keys, or null if not shuffled */
+		private final long[] mKeys;
+		/** Half the bits of the smallest power of four at least mTrials */
+		private final int mHalfBits;
+
+		private long mNext = 0;
+		private int[] mCell;
+
+		Trials() {
+			mSizes = new int[mFactors.size()];
+			for (int i = 0; i < mSizes.length; i++)
+				mSizes[i] = mFactors.get(i).size();
+			mCells = getCellCount();
+			mTrials = getTrialCount();
+
+			if (mShuffled) {
+				Random random = mSeed == 0 ? new Random() : new Random(mSeed);
+				mKeys = new long[ROUNDS];
+				for (int i = 0; i < ROUNDS; i++)
+					mKeys[i] = random.nextLong();
+
+				int bits = 64 - Long.numberOfLeadingZeros(Math.max(1,
+						mTrials - 1));
+				mHalfBits = (bits + 1) / 2;
+			} else {
+				mKeys = null;
+				mHalfBits = 0;
+			}
+
+			mCell = find();
+		}
+
+		public boolean hasNext() {
+			return mCell != null;
+		}
+
+		public int[] next() {
+			if (mCell == null)
+				throw new NoSuchElementException();
+
+			int[] cell = mCell;
+			mCell = find();
+			return cell;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * @return the next cell not left out, or null if there are none or
+		 *         {@link #MAX_SKIPPED} cells in a row were left out
+		 */
+		private int[] find() {
+			int skipped = 0;
+			while (mNext < mTrials) {
+				long trial = mNext++;
+				if (mKeys != null)
+					trial = shuffle(trial);
+
+				int[] cell = decode(trial % mCells);
+				if (allows(cell))
+					return cell;
+
+				if (++skipped >= MAX_SKIPPED) {
+					System.out.println("Stopped giving trials of "
+							+ TrialGenerator.this + " after " + skipped
+							+ " cells in a row were left out");
+					mNext = mTrials;
+					break;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * The Feistel network permutes the smallest power of four that holds
+		 * every trial, so trials past the end are passed through again until
+		 * one lands inside. That domain is less than four times the number of
+		 * trials, so this takes few passes
+		 */
+		private long shuffle(long trial) {
+			do {
+				trial = permute(trial, mHalfBits, mKeys);
+			} while (trial >= mTrials);
+			return trial;
+		}
+
+		/** Splits a cell number into an index per factor, last one fastest */
+		private int[] decode(long cell) {
+			int[] indices = new int[mSizes.length];
+			for (int i = mSizes.length - 1; i >= 0; i--) {
+				indices[i] = (int) (cell % mSizes[i]);
+				cell /= mSizes[i];
+			}
+			return indices;
+		}
+
+		private boolean allows(int[] cell) {
+			if (mFraction > 1) {
+				long sum = 0;
+				for (int index : cell)
+					sum += index;
+				if (sum % mFraction != 0)
+					return false;
+			}
+
+			for (Constraint c : mConstraints)
+				if (c.allows(cell) == false)
+					return false;
+			return true;
+		}
+	}
+
+	/**
+	 * A balanced Feistel network over the numbers with 2 * halfBits bits. Any
+	 * such network is a permutation, whatever its round function
+	 */
+	static long permute(long x, int halfBits, long[] keys) {
+		long mask = (1L << halfBits) - 1;
+		long left = (x >>> halfBits) & mask;
+		long right = x & mask;
+		for (long key : keys) {
+			long mixed = (right ^ key) * 0x9E3779B97F4A7C15L;
+			mixed ^= mixed >>> 29;
+			long next = left ^ (mixed & mask);
+			left = right;
+			right = next;
+		}
+		return (left << halfBits) | right;
+	}
+}
@@ -0,0 +1,89 @@
+package edu.vanderbilt.psychology.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A linear undo and redo history of {@link ExperimentSnapshot}s. There is no
+ * limit on the number of versions kept, as each version shares all of its
+ * unchanged {@link SlideState}s with the versions before it, and so costs
+ * memory in proportion to what changed rather than to the size of the
+ * {@link Experiment}.
+ *
+ * @author hamiltont
+ *
+ */
+public class UndoHistory {
+
+	private List<ExperimentSnapshot> mVersions = new ArrayList<ExperimentSnapshot>();
+
+	/** The position of the current version in mVersions */
+	private int mCurrent = -1;
+
+	/**
+	 * Adds a new version after the current one, dropping any versions that
+	 * could have been redone
+	 * 
+	 * @return false if the snapshot holds the same version as the current one,
+	 *         in which case nothing is added
+	 */
+	public boolean record(ExperimentSnapshot snapshot) {
+		if (mCurrent >= 0
+				&& mVersions.get(mCurrent).getSlides() == snapshot.getSlides())
+			return false;
+
+		while (mVersions.size() > mCurrent + 1)
+			mVersions.remove(mVersions.size() - 1);
+
+		mVersions.add(snapshot);
+		mCurrent++;
+		return true;
+	}
+
+	public boolean canUndo() {
+		return mCurrent > 0;
+	}
+
+	public boolean canRedo() {
+		return mCurrent + 1 < mVersions.size();
+	}
+
+	/**
+	 * @return the version before the current one, which becomes the current
+	 *         one
+	 * @throws IllegalStateException
+	 *             if there is nothing to undo
+	 */
+	public ExperimentSnapshot undo() {
+		if (canUndo() == false)
+			throw new IllegalStateException("Nothing to undo");
+		return mVersions.get(--mCurrent);
+	}
+
+	/**
+	 * @return the version after the current one, which becomes the current one
+	 * @throws IllegalStateException
+	 *             if there is nothing to redo
+	 */
+	public ExperimentSnapshot redo() {
+		if (canRedo() == false)
+			throw new IllegalStateException("Nothing to redo");
+		return mVersions.get(++mCurrent);
+	}
+
+	/** @return the current version, or null if nothing was recorded yet */
+	public ExperimentSnapshot getCurrent() {
+		return mCurrent < 0 ? null : mVersions.get(mCurrent);
+	}
+
+	/** Forgets every version */
+	public void clear() {
+		mVersions.clear();
+		mCurrent = -1;
+	}
+
+	/** @return how many versions are kept, including the current one */
+	public int size() {
+		return mVersions.size();
+	}
+}
@@ -4,17 +4,26 @@
 package edu.vanderbilt.psychology.model.elements;
 
 import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.ImageIcon;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 
-import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 import edu.vanderbilt.psychology.gui.slideElements.ImageElement;
 import edu.vanderbilt.psychology.gui.slideElements.SlideElement;
+import edu.vanderbilt.psychology.model.Experiment;
 import edu.vanderbilt.psychology.model.MutableInt;
+import edu.vanderbilt.psychology.model.media.PixelCache;
+import edu.vanderbilt.psychology.model.media.PooledImageComponent;
+import edu.vanderbilt.psychology.model.media.StimulusPool;
+import edu.vanderbilt.psychology.model.properties.Appearance;
 import edu.vanderbilt.psychology.model.properties.DataSource;
+import edu.vanderbilt.psychology.model.properties.Movement;
+import edu.vanderbilt.psychology.model.properties.Position;
 import edu.vanderbilt.psychology.model.properties.Property;
 
 /**
@@ -31,27 +40,126 @@ public class ImageElementModel extends ModelElement {
 		mSize = imageElement.getSize();
 	}
 
+	/**
+	 * Builds an {@link ImageElementModel} without an {@link ImageElement},
+	 * such as when generating an {@link Experiment} from a script. It starts
+	 * out with the same default {@link Property}s a new {@link ImageElement}
+	 * has. Use {@link #addGuiProperties(int, java.awt.Point)} to place it
+	 * 
+	 * @param source
+	 *            says which image file to show
+	 * @param size
+	 *            the size to show the image at
+	 */
+	public ImageElementModel(DataSource source, Dimension size) {
+		mSize = new Dimension(size);
+
+		properties_ = new ArrayList<Property>();
+		properties_.add(Property.getDefault(Appearance.class));
+		properties_.add(Property.getDefault(Movement.class));
+		properties_.add(Property.getDefault(Position.class));
+		properties_.add(source);
+	}
+
+	public Dimension getSize() {
+		return mSize;
+	}
+
+	/**
+	 * Called by the {@link ImageElement} when it is resized
+	 */
+	public void setSize(Dimension size) {
+		mSize = new Dimension(size);
+		mComponent = null;
+	}
+
+	/**
+	 * @return the {@link DataSource} that says which image file to show, or
+	 *         null if there is none
+	 */
+	public DataSource getDataSource() {
+		for (Property p : properties_)
+			if (p instanceof DataSource)
+				return (DataSource) p;
+		return null;
+	}
+
+	@Override
+	public int getContentHash() {
+		int hash = super.getContentHash();
+		hash = 31 * hash + (mSize == null ? 0 : mSize.hashCode());
+
+		DataSource ds = getDataSource();
+		if (ds != null) {
+			String filename = ds.getCurrentData();
+			hash = 31 * hash + filename.hashCode();
+			hash = 31 * hash + (int) new File(filename).lastModified();
+		}
+		return hash;
+	}
+
 	@Override
 	public SlideElement getInitializedSlideElement() {
-		// TODO Auto-generated method stub
-		throw new NotImplementedException();
+		return new ImageElement(this);
+	}
+
+	@Override
+	public ImageElementModel copy() {
+		ImageElementModel copy = (ImageElementModel) super.copy();
+		copy.properties_ = copyProperties(properties_);
+		if (mSize != null)
+			copy.mSize = new Dimension(mSize);
+		copy.mComponent = null;
+		return copy;
+	}
+
+	@Override
+	public void restore(ModelElement saved) {
+		super.restore(saved);
+
+		ImageElementModel image = (ImageElementModel) saved;
+		restoreProperties(properties_, image.properties_);
+		mSize = image.mSize == null ? null : new Dimension(image.mSize);
+		mComponent = null;
+	}
+
+	@Override
+	public List<Property> getProperties() {
+		return properties_;
 	}
 
 	@Override
 	public JComponent getJComponent(MutableInt outputLayer) {
 		if (mComponent == null) {
-			DataSource ds = null;
-			for (Property p : properties_)
-				if (p instanceof DataSource) {
-					ds = (DataSource) p;
-					break;
-				}
+			DataSource ds = getDataSource();
 			if (ds == null)
 				throw new IllegalStateException(
 						"An ImageElement must have a DataSource");
 
 			String filename = ds.getCurrentData();
-			JLabel image = new JLabel(new ImageIcon(filename));
+			File file = new File(filename);
+			JComponent image = null;
+
+			// Keep the pixels off of the heap if we can
+			StimulusPool pool = StimulusPool.getDefault();
+			if (pool != null) {
+				PooledImageComponent pooled = new PooledImageComponent(pool,
+						file, mSize.width, mSize.height);
+				if (pooled.isLoaded())
+					image = pooled;
+			}
+
+			// Otherwise use the pre-decoded pixels if they are on disk, so
+			// the player does not have to decode every stimulus at startup
+			if (image == null) {
+				BufferedImage pixels = PixelCache.getDefault().getImage(file,
+						mSize.width, mSize.height);
+				if (pixels != null)
+					image = new JLabel(new ImageIcon(pixels));
+				else
+					image = new JLabel(new ImageIcon(filename));
+			}
+
 			image.setLocation(getLocation());
 			image.setSize(mSize);
 			
@@ -4,12 +4,15 @@
 package edu.vanderbilt.psychology.model.elements;
 
 import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.JComponent;
 import javax.swing.JLayeredPane;
 
 import edu.vanderbilt.psychology.gui.slideElements.SlideElement;
 import edu.vanderbilt.psychology.model.MutableInt;
+import edu.vanderbilt.psychology.model.properties.Property;
 
 /**
  * Not really useful for anything right now but allowing the
@@ -26,7 +29,7 @@ import edu.vanderbilt.psychology.model.MutableInt;
 // TODO Does it really make sense for the model to have methods to generate the
 // slide element (a gui component for the builder) and a JComponent (a gui
 // element to be used in the player). Should I have a controller interface here?
-public abstract class ModelElement {
+public abstract class ModelElement implements Cloneable {
 	private Point location_;
 	private Integer layer_;
 
@@ -43,6 +46,78 @@ public abstract class ModelElement {
 		layer_ = layer;
 	}
 
+	/**
+	 * Gets a hash of everything that affects how this {@link ModelElement}
+	 * looks. Two {@link ModelElement}s that would be drawn the same way should
+	 * return the same value. Subclasses should add in any of their own state
+	 * that changes their appearance
+	 */
+	public int getContentHash() {
+		int hash = getClass().getName().hashCode();
+		hash = 31 * hash + (location_ == null ? 0 : location_.hashCode());
+		hash = 31 * hash + (layer_ == null ? 0 : layer_.intValue());
+		return hash;
+	}
+
+	/**
+	 * Makes a copy of this {@link ModelElement} that can be changed without
+	 * changing this one, such as for a copied {@link Slide}. Subclasses must
+	 * give the copy its own list of {@link Property}s (see
+	 * {@link #copyProperties(List)}) and anything else that is changed in
+	 * place
+	 */
+	public ModelElement copy() {
+		try {
+			ModelElement copy = (ModelElement) super.clone();
+			if (location_ != null)
+				copy.location_ = new Point(location_);
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			// Cannot happen, as ModelElement is Cloneable
+			throw new InternalError(e.toString());
+		}
+	}
+
+	/**
+	 * Puts this {@link ModelElement} back the way it was when the given
+	 * {@link #copy()} of it was made, such as for an undo. The copy itself is
+	 * neither changed nor kept. Subclasses must restore everything they copy
+	 * in {@link #copy()}, changing lists in place as a {@link SlideElement}
+	 * may share them (see {@link #restoreProperties(List, List)})
+	 */
+	public void restore(ModelElement saved) {
+		location_ = saved.location_ == null ? null : new Point(saved.location_);
+		layer_ = saved.layer_;
+	}
+
+	/**
+	 * Copies a list of {@link Property}s for {@link #copy()}. The shared
+	 * default {@link Property}s cannot be changed, so they are kept as they are
+	 */
+	protected static List<Property> copyProperties(List<Property> properties) {
+		if (properties == null)
+			return null;
+
+		List<Property> copy = new ArrayList<Property>(properties.size());
+		for (Property p : properties)
+			copy.add(p.isShared() ? p : p.clone());
+		return copy;
+	}
+
+	/**
+	 * Replaces the contents of a list of {@link Property}s with copies of
+	 * saved ones, for {@link #restore(ModelElement)}. The list stays the same
+	 * object, and the saved list is left as it is
+	 */
+	protected static void restoreProperties(List<Property> properties,
+			List<Property> saved) {
+		if (properties == null || saved == null)
+			return;
+
+		properties.clear();
+		properties.addAll(copyProperties(saved));
+	}
+
 	/**
 	 * Gets a {@link SlideElement} that is ready for use in the builder
 	 * 
@@ -63,4 +138,10 @@ public abstract class ModelElement {
 	 */
 	public abstract JComponent getJComponent(MutableInt outputLayer);
 
+	/**
+	 * Gets the {@link Property}s that were saved into this
+	 * {@link ModelElement}
+	 */
+	public abstract List<Property> getProperties();
+
 }
@@ -5,6 +5,7 @@ package edu.vanderbilt.psychology.model.elements;
 
 import java.awt.Color;
 import java.awt.Font;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.JComponent;
@@ -12,7 +13,12 @@ import javax.swing.JLabel;
 
 import edu.vanderbilt.psychology.gui.slideElements.SlideElement;
 import edu.vanderbilt.psychology.gui.slideElements.TextElement;
+import edu.vanderbilt.psychology.model.Experiment;
 import edu.vanderbilt.psychology.model.MutableInt;
+import edu.vanderbilt.psychology.model.properties.Appearance;
+import edu.vanderbilt.psychology.model.properties.MouseActions;
+import edu.vanderbilt.psychology.model.properties.Movement;
+import edu.vanderbilt.psychology.model.properties.Position;
 import edu.vanderbilt.psychology.model.properties.Property;
 
 /**
@@ -34,6 +40,24 @@ public class TextModelElement extends ModelElement {
 		properties_ = textElement.getProperties();
 	}
 
+	/**
+	 * Builds a {@link TextModelElement} without a {@link TextElement}, such as
+	 * when generating an {@link Experiment} from a script. It starts out with
+	 * the same default {@link Property}s a new {@link TextElement} has. Use
+	 * {@link #addGuiProperties(int, java.awt.Point)} to place it
+	 */
+	public TextModelElement(String text, Font font, Color foreGround) {
+		text_ = text;
+		font_ = font;
+		foreGround_ = foreGround;
+
+		properties_ = new ArrayList<Property>();
+		properties_.add(Property.getDefault(Appearance.class));
+		properties_.add(Property.getDefault(Movement.class));
+		properties_.add(Property.getDefault(Position.class));
+		properties_.add(Property.getDefault(MouseActions.class));
+	}
+
 	public String getText() {
 		return text_;
 	}
@@ -46,10 +70,41 @@ public class TextModelElement extends ModelElement {
 		return foreGround_;
 	}
 
+	@Override
+	public TextModelElement copy() {
+		TextModelElement copy = (TextModelElement) super.copy();
+		copy.properties_ = copyProperties(properties_);
+		copy.mComponent = null;
+		return copy;
+	}
+
+	@Override
+	public void restore(ModelElement saved) {
+		super.restore(saved);
+
+		// Strings, fonts and colors cannot be changed, so need no copy
+		TextModelElement text = (TextModelElement) saved;
+		text_ = text.text_;
+		font_ = text.font_;
+		foreGround_ = text.foreGround_;
+		restoreProperties(properties_, text.properties_);
+		mComponent = null;
+	}
+
+	@Override
 	public List<Property> getProperties() {
 		return properties_;
 	}
 
+	@Override
+	public int getContentHash() {
+		int hash = super.getContentHash();
+		hash = 31 * hash + (text_ == null ? 0 : text_.hashCode());
+		hash = 31 * hash + (font_ == null ? 0 : font_.hashCode());
+		hash = 31 * hash + (foreGround_ == null ? 0 : foreGround_.hashCode());
+		return hash;
+	}
+
 	@Override
 	public SlideElement getInitializedSlideElement() {
 		TextElement te = new TextElement(this);
@@ -0,0 +1,284 @@
+package edu.vanderbilt.psychology.model.media;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+import edu.vanderbilt.psychology.model.EBList;
+import edu.vanderbilt.psychology.model.ListDatabase;
+
+/**
+ * Builds an {@link EBList} of image files from a whole directory tree at once.
+ *
+ * <p>
+ * Every image file under the directory (any file whose suffix one of the
+ * JRE's {@link javax.imageio.ImageReader}s understands) has its header read,
+ * and a small thumbnail generated into the {@link PixelCache}, using one
+ * thread per core. Files that cannot be decoded are left out of the list and
+ * reported as problems. The list keeps the order of the directory walk, with
+ * names sorted within each directory, no matter which thread finished first.
+ * </p>
+ *
+ * <p>
+ * The result is not added to the {@link ListDatabase}, as that must happen on
+ * the event dispatch thread. An import can be cancelled at any time, in which
+ * case the files still waiting are skipped.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class BulkImporter {
+
+	/** Thumbnails fit inside a square of this size */
+	public static final int THUMBNAIL_SIZE = 128;
+
+	/** Progress is reported at most this often */
+	private static final long PROGRESS_INTERVAL_MS = 100;
+
+	/**
+	 * Told about the progress of an import started with
+	 * {@link BulkImporter#start(Listener)}. Always called on the event dispatch
+	 * thread
+	 */
+	public interface Listener {
+		public void progress(int done, int total);
+
+		/**
+		 * @param list
+		 *            every file that was read successfully. Incomplete if the
+		 *            import was cancelled
+		 * @param problems
+		 *            every file that could not be read
+		 */
+		public void finished(EBList<File> list, List<ResolvedAsset> problems,
+				boolean cancelled);
+	}
+
+	private File mRoot;
+	private String mListName;
+	private int mThreadCount;
+	private boolean mMakeThumbnails = true;
+
+	private volatile boolean mCancelled = false;
+	private AtomicInteger mDone = new AtomicInteger();
+	private volatile int mTotal = 0;
+	private List<ResolvedAsset> mProblems = new ArrayList<ResolvedAsset>();
+
+	public BulkImporter(File root, String listName) {
+		this(root, listName, Runtime.getRuntime().availableProcessors());
+	}
+
+	public BulkImporter(File root, String listName, int threadCount) {
+		if (threadCount < 1)
+			throw new IllegalArgumentException(
+					"threadCount must be at least one");
+
+		mRoot = root;
+		mListName = listName;
+		mThreadCount = threadCount;
+	}
+
+	/** Turns thumbnail generation off, so that only headers are read */
+	public void setMakeThumbnails(boolean makeThumbnails) {
+		mMakeThumbnails = makeThumbnails;
+	}
+
+	/**
+	 * Runs the import on a background thread
+	 */
+	public void start(final Listener listener) {
+		final AtomicLong lastReport = new AtomicLong();
+		final Runnable reportProgress = new Runnable() {
+			public void run() {
+				listener.progress(mDone.get(), mTotal);
+			}
+		};
+
+		Thread t = new Thread(new Runnable() {
+			public void run() {
+				final EBList<File> list = BulkImporter.this.run(new Runnable() {
+					public void run() {
+						long now = System.currentTimeMillis();
+						long last = lastReport.get();
+						if (now - last >= PROGRESS_INTERVAL_MS
+								&& lastReport.compareAndSet(last, now))
+							SwingUtilities.invokeLater(reportProgress);
+					}
+				});
+
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						listener.progress(mDone.get(), mTotal);
+						listener.finished(list, getProblems(), mCancelled);
+					}
+				});
+			}
+		}, "bulk-importer");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * Runs the import on the calling thread
+	 *
+	 * @param onProgress
+	 *            run on a worker thread after each file, may be null
+	 * @return every file that was read successfully. Any other file, including
+	 *         one whose reading failed with an exception, is reported by
+	 *         {@link #getProblems()}
+	 */
+	public EBList<File> run(final Runnable onProgress) {
+		List<File> files = findImages(mRoot);
+		mTotal = files.size();
+
+		ExecutorService pool = Executors.newFixedThreadPool(mThreadCount,
+				new MediaResolver.DaemonThreadFactory("bulk-importer"));
+		List<Future<ResolvedAsset>> results = new ArrayList<Future<ResolvedAsset>>(
+				files.size());
+		for (final File f : files)
+			results.add(pool.submit(new Callable<ResolvedAsset>() {
+				public ResolvedAsset call() {
+					if (mCancelled)
+						return null;
+
+					ResolvedAsset asset = read(f);
+					mDone.incrementAndGet();
+					if (onProgress != null)
+						onProgress.run();
+					return asset;
+				}
+			}));
+		pool.shutdown();
+
+		EBList<File> list = new EBList<File>(mListName);
+		try {
+			for (int i = 0; i < results.size(); i++) {
+				ResolvedAsset asset;
+				try {
+					asset = results.get(i).get();
+				} catch (ExecutionException e) {
+					// Only this file is lost, such as to a decoder that ran
+					// out of memory or threw on a corrupt file
+					e.printStackTrace();
+					Throwable cause = e.getCause() == null ? e : e.getCause();
+					asset = new ResolvedAsset(files.get(i),
+							ResolvedAsset.Status.UNREADABLE, cause.toString());
+				}
+				if (asset == null)
+					continue;
+
+				if (asset.isOk())
+					list.add(asset.getFile());
+				else
+					synchronized (mProblems) {
+						mProblems.add(asset);
+					}
+			}
+		} catch (InterruptedException e) {
+			mCancelled = true;
+			pool.shutdownNow();
+		}
+
+		return list;
+	}
+
+	/**
+	 * Stops the import. Files that are being read right now are finished, the
+	 * rest are skipped
+	 */
+	public void cancel() {
+		mCancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return mCancelled;
+	}
+
+	/** @return how many files have been read so far */
+	public int getDoneCount() {
+		return mDone.get();
+	}
+
+	/** @return how many image files were found, or 0 if still looking */
+	public int getTotalCount() {
+		return mTotal;
+	}
+
+	public List<ResolvedAsset> getProblems() {
+		synchronized (mProblems) {
+			return new ArrayList<ResolvedAsset>(mProblems);
+		}
+	}
+
+	private ResolvedAsset read(File f) {
+		ResolvedAsset asset = MediaResolver.probe(f);
+		if (asset.isOk() == false || mMakeThumbnails == false)
+			return asset;
+
+		Dimension size = ImageImporter.fit(asset.getWidth(),
+				asset.getHeight(), THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+		if (PixelCache.getDefault().getThumbnail(f, size.width,
+				size.height) == null)
+			return new ResolvedAsset(f, ResolvedAsset.Status.UNDECODABLE,
+					"Unable to decode the image");
+
+		return asset;
+	}
+
+	/**
+	 * Walks a directory tree and returns every file that looks like an image,
+	 * judging by its suffix. Names are sorted within each directory, and files
+	 * come before sub-directories
+	 */
+	public static List<File> findImages(File root) {
+		Set<String> suffixes = new HashSet<String>();
+		for (String suffix : ImageIO.getReaderFileSuffixes())
+			suffixes.add(suffix.toLowerCase());
+
+		List<File> images = new ArrayList<File>();
+		walk(root, suffixes, images);
+		return images;
+	}
+
+	private static void walk(File dir, Set<String> suffixes, List<File> images) {
+		File[] children = dir.listFiles();
+		if (children == null)
+			return;
+		Arrays.sort(children);
+
+		List<File> subdirectories = new ArrayList<File>();
+		for (File f : children) {
+			if (f.isHidden())
+				continue;
+
+			if (f.isDirectory()) {
+				subdirectories.add(f);
+				continue;
+			}
+
+			String name = f.getName();
+			int dot = name.lastIndexOf('.');
+			if (dot > 0
+					&& suffixes.contains(name.substring(dot + 1).toLowerCase()))
+				images.add(f);
+		}
+
+		for (File d : subdirectories)
+			walk(d, suffixes, images);
+	}
+}
@@ -0,0 +1,225 @@
+package edu.vanderbilt.psychology.model.media;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.SwingUtilities;
+
+/**
+ * Brings an image file into the builder without blocking the event dispatch
+ * thread. Importing happens in two steps on a background thread:
+ *
+ * <ol>
+ * <li>The header is read (see {@link MediaResolver#probe(File)}), which is
+ * enough to know the image's size, so a correctly sized placeholder can be
+ * shown straight away</li>
+ * <li>A preview is decoded at roughly the size it will be shown at, by asking
+ * the {@link ImageReader} to only decode every n-th pixel (see
+ * {@link ImageReadParam#setSourceSubsampling(int, int, int, int)}). A large
+ * photo shown at a fraction of its size is decoded many times faster this
+ * way</li>
+ * </ol>
+ *
+ * The full image is not decoded here at all. {@link ImagePyramid} decodes it
+ * later, and only if it is needed.
+ *
+ * @author hamiltont
+ *
+ */
+public class ImageImporter {
+
+	/**
+	 * Told about the progress of an import. Always called on the event
+	 * dispatch thread
+	 */
+	public interface Listener {
+		/**
+		 * @param header
+		 *            the file's header information
+		 * @param size
+		 *            the size the image should be shown at, which is the
+		 *            image's own size fitted inside the maximum size
+		 */
+		public void headerRead(ResolvedAsset header, Dimension size);
+
+		/**
+		 * @param preview
+		 *            at least as large as the size given to
+		 *            {@link #headerRead(ResolvedAsset, Dimension)}, unless the
+		 *            image itself is smaller
+		 * @param subsampled
+		 *            true if the preview is smaller than the image
+		 */
+		public void previewDecoded(BufferedImage preview, boolean subsampled);
+
+		public void failed(String message);
+	}
+
+	private static ExecutorService mWorkers;
+
+	/**
+	 * Starts importing an image on a background thread
+	 *
+	 * @param maxSize
+	 *            the largest size the image will be shown at, such as the size
+	 *            of the stage
+	 */
+	public static void importImage(final File file, final Dimension maxSize,
+			final Listener listener) {
+		getWorkers().execute(new Runnable() {
+			public void run() {
+				final ResolvedAsset header = MediaResolver.probe(file);
+				if (header.isOk() == false) {
+					fail(listener, header.getMessage());
+					return;
+				}
+
+				final Dimension size = fit(header.getWidth(), header
+						.getHeight(), maxSize.width, maxSize.height);
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						listener.headerRead(header, size);
+					}
+				});
+
+				decodePreview(file, header, size, listener);
+			}
+		});
+	}
+
+	/**
+	 * Decodes a preview of an image that is already on a slide, on a
+	 * background thread. The size is already known, so only
+	 * {@link Listener#previewDecoded(BufferedImage, boolean)} or
+	 * {@link Listener#failed(String)} is called
+	 *
+	 * @param size
+	 *            the size the image is shown at
+	 */
+	public static void decodePreview(final File file, final Dimension size,
+			final Listener listener) {
+		getWorkers().execute(new Runnable() {
+			public void run() {
+				ResolvedAsset header = MediaResolver.probe(file);
+				if (header.isOk() == false) {
+					fail(listener, header.getMessage());
+					return;
+				}
+
+				decodePreview(file, header, size, listener);
+			}
+		});
+	}
+
+	/**
+	 * The second step of an import. Runs on a worker thread
+	 */
+	private static void decodePreview(File file, ResolvedAsset header,
+			Dimension size, final Listener listener) {
+		final BufferedImage preview;
+		try {
+			preview = decodeSubsampled(file, size.width, size.height);
+		} catch (IOException e) {
+			e.printStackTrace();
+			fail(listener, e.getMessage());
+			return;
+		}
+
+		if (preview == null) {
+			fail(listener, "Image file was not readable by any "
+					+ "ImageReader contained in this system's Java "
+					+ "Runtime Environment");
+			return;
+		}
+
+		final boolean subsampled = preview.getWidth() < header.getWidth();
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				listener.previewDecoded(preview, subsampled);
+			}
+		});
+	}
+
+	private static void fail(final Listener listener, final String message) {
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				listener.failed(message);
+			}
+		});
+	}
+
+	/**
+	 * Shrinks a size to fit inside a maximum size, keeping its aspect ratio.
+	 * Sizes that already fit are returned as they are
+	 */
+	public static Dimension fit(int width, int height, int maxWidth,
+			int maxHeight) {
+		if (maxWidth <= 0 || maxHeight <= 0
+				|| (width <= maxWidth && height <= maxHeight))
+			return new Dimension(width, height);
+
+		double scale = Math.min(maxWidth / (double) width, maxHeight
+				/ (double) height);
+		return new Dimension(Math.max(1, (int) (width * scale)), Math.max(1,
+				(int) (height * scale)));
+	}
+
+	/**
+	 * Decodes an image, skipping as many pixels as possible while keeping the
+	 * result at least as large as the given size
+	 *
+	 * @return the decoded image, or null if no {@link ImageReader} understands
+	 *         the file
+	 */
+	public static BufferedImage decodeSubsampled(File file, int width,
+			int height) throws IOException {
+		ImageInputStream iis = ImageIO.createImageInputStream(file);
+		if (iis == null)
+			return null;
+
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+			if (readers.hasNext() == false)
+				return null;
+
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(iis, true, true);
+
+				int step = Math.max(1, Math.min(reader.getWidth(0)
+						/ Math.max(1, width), reader.getHeight(0)
+						/ Math.max(1, height)));
+
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceSubsampling(step, step, 0, 0);
+				return reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			iis.close();
+		}
+	}
+
+	private static synchronized ExecutorService getWorkers() {
+		if (mWorkers == null)
+			mWorkers = Executors.newFixedThreadPool(2, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "image-importer");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		return mWorkers;
+	}
+}
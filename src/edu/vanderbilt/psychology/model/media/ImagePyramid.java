@@ -0,0 +1,275 @@
+package edu.vanderbilt.psychology.model.media;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+/**
+ * A mip pyramid of an image: the original, then copies at a half, a quarter,
+ * and so on down to a single pixel. Each level is built from the one above it
+ * using a 2x2 average, either by {@link #buildLevelsLater()} as soon as the
+ * image is loaded, or the first time it is needed.
+ *
+ * <p>
+ * Scaling always starts from the original or from a level built from it, never
+ * from an image that was already scaled to some other size, so resizing an
+ * image many times does not make it any worse. {@link #getFastScaled(int, int)}
+ * starts from the smallest level that is still at least as large as the
+ * target, which keeps it fast enough to call while the user is dragging.
+ * {@link #resampleLater(int, int, Listener)} does a slower, better resample
+ * from the original on a background thread.
+ * </p>
+ *
+ * <p>
+ * A pyramid can also be built over a smaller preview of an image (see
+ * {@link ImageImporter}). The levels then come from the preview, and the full
+ * image file is only decoded the first time a background resample needs it.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class ImagePyramid {
+
+	/** Told when a background resample is ready, on the event dispatch thread */
+	public interface Listener {
+		public void resampled(BufferedImage image, int width, int height);
+	}
+
+	private static ExecutorService mResampler;
+
+	/** Level 0 is the original or preview. Levels not built yet are null */
+	private List<BufferedImage> mLevels = new ArrayList<BufferedImage>();
+
+	/** Decoded on first use if this pyramid was built over a preview */
+	private BufferedImage mOriginal;
+	private File mOriginalFile;
+	private final Object mOriginalLock = new Object();
+
+	/**
+	 * The last background resample, kept in case the same size is asked for.
+	 * Set on the resampler thread and read on the event dispatch thread
+	 */
+	private volatile BufferedImage mLastResample;
+
+	public ImagePyramid(BufferedImage original) {
+		this(original, null);
+		mOriginal = original;
+	}
+
+	/**
+	 * @param preview
+	 *            a smaller copy of the image, used for all of the levels
+	 * @param originalFile
+	 *            the full image, decoded only when a background resample
+	 *            needs it
+	 */
+	public ImagePyramid(BufferedImage preview, File originalFile) {
+		mOriginalFile = originalFile;
+		mLevels.add(preview);
+
+		int w = preview.getWidth(), h = preview.getHeight();
+		while (w > 1 || h > 1) {
+			w = Math.max(1, w / 2);
+			h = Math.max(1, h / 2);
+			mLevels.add(null);
+		}
+	}
+
+	/**
+	 * Gets the full image, decoding it first if this pyramid was built over a
+	 * preview. This can take a long time for large images, so avoid calling it
+	 * on the event dispatch thread
+	 */
+	public BufferedImage getOriginal() {
+		// Not locked on this, so that building levels on the event dispatch
+		// thread does not wait on a slow decode
+		synchronized (mOriginalLock) {
+			if (mOriginal == null) {
+				try {
+					mOriginal = ImageIO.read(mOriginalFile);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+
+				// Fall back to the preview rather than failing
+				if (mOriginal == null)
+					mOriginal = mLevels.get(0);
+			}
+			return mOriginal;
+		}
+	}
+
+	/** @return the width of the top level */
+	public int getWidth() {
+		return mLevels.get(0).getWidth();
+	}
+
+	/** @return the height of the top level */
+	public int getHeight() {
+		return mLevels.get(0).getHeight();
+	}
+
+	/** @return how many levels this pyramid has, built or not */
+	public int getLevelCount() {
+		return mLevels.size();
+	}
+
+	/**
+	 * Gets a level, building it and any levels above it that are missing
+	 */
+	public synchronized BufferedImage getLevel(int level) {
+		BufferedImage image = mLevels.get(level);
+		if (image != null)
+			return image;
+
+		BufferedImage above = getLevel(level - 1);
+		int w = Math.max(1, above.getWidth() / 2);
+		int h = Math.max(1, above.getHeight() / 2);
+		image = scale(above, w, h, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		mLevels.set(level, image);
+		return image;
+	}
+
+	/**
+	 * Builds every level on the background thread, so that the first drag
+	 * does not have to build them on the event dispatch thread. One level is
+	 * built at a time, so {@link #getLevel(int)} is never kept waiting for
+	 * more than one
+	 */
+	public void buildLevelsLater() {
+		getResampler().execute(new Runnable() {
+			public void run() {
+				for (int level = 1; level < getLevelCount(); level++)
+					getLevel(level);
+			}
+		});
+	}
+
+	/**
+	 * @return the smallest level that is at least as large as the given size in
+	 *         both directions, or the original if the size is larger than it
+	 */
+	public BufferedImage getLevelFor(int width, int height) {
+		int level = 0;
+		int w = getWidth(), h = getHeight();
+		while (level + 1 < mLevels.size() && w / 2 >= width
+				&& h / 2 >= height) {
+			w /= 2;
+			h /= 2;
+			level++;
+		}
+		return getLevel(level);
+	}
+
+	/**
+	 * Scales the nearest level to the given size with a single bilinear pass.
+	 * Fast, but not as good as {@link #resampleLater(int, int, Listener)}
+	 */
+	public BufferedImage getFastScaled(int width, int height) {
+		BufferedImage level = getLevelFor(width, height);
+		if (level.getWidth() == width && level.getHeight() == height)
+			return level;
+
+		return scale(level, width, height,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+	}
+
+	/**
+	 * Resamples the original to the given size on a background thread, and
+	 * then tells the listener. If the last resample was to the same size, the
+	 * listener is told straight away. If this pyramid was built over a preview
+	 * that is at least as large as the given size, the preview is resampled
+	 * instead, so the full image is not decoded until it is really needed
+	 */
+	public void resampleLater(final int width, final int height,
+			final Listener listener) {
+		BufferedImage last = mLastResample;
+		if (last != null && last.getWidth() == width
+				&& last.getHeight() == height) {
+			listener.resampled(last, width, height);
+			return;
+		}
+
+		getResampler().execute(new Runnable() {
+			public void run() {
+				BufferedImage source = mLevels.get(0);
+				if (width > source.getWidth() || height > source.getHeight())
+					source = getOriginal();
+
+				final BufferedImage result = resample(source, width, height);
+				mLastResample = result;
+
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						listener.resampled(result, width, height);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * A high quality resample. When shrinking, the image is halved with
+	 * bilinear filtering until it is within a factor of two of the target, and
+	 * then a final bicubic pass is made. Shrinking in one big bilinear step
+	 * skips most of the source pixels and looks grainy
+	 */
+	public static BufferedImage resample(BufferedImage source, int width,
+			int height) {
+		BufferedImage current = source;
+		int w = source.getWidth(), h = source.getHeight();
+		while (w / 2 >= width && h / 2 >= height) {
+			w /= 2;
+			h /= 2;
+			current = scale(current, w, h,
+					RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		}
+
+		if (w == width && h == height && current != source)
+			return current;
+
+		return scale(current, width, height,
+				RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+	}
+
+	private static BufferedImage scale(BufferedImage source, int width,
+			int height, Object interpolation) {
+		int type = BufferedImage.TYPE_INT_RGB;
+		if (source.getColorModel().hasAlpha())
+			type = BufferedImage.TYPE_INT_ARGB;
+		BufferedImage result = new BufferedImage(width, height, type);
+
+		Graphics2D g = result.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+		g.setRenderingHint(RenderingHints.KEY_RENDERING,
+				RenderingHints.VALUE_RENDER_QUALITY);
+		g.drawImage(source, 0, 0, width, height, null);
+		g.dispose();
+
+		return result;
+	}
+
+	private static synchronized ExecutorService getResampler() {
+		if (mResampler == null)
+			mResampler = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "image-resampler");
+					t.setDaemon(true);
+					t.setPriority(Thread.MIN_PRIORITY);
+					return t;
+				}
+			});
+		return mResampler;
+	}
+}
@@ -0,0 +1,265 @@
+package edu.vanderbilt.psychology.model.media;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import edu.vanderbilt.psychology.model.EBList;
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.ListDatabase;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.elements.ModelElement;
+import edu.vanderbilt.psychology.model.properties.DataSource;
+import edu.vanderbilt.psychology.model.properties.Property;
+
+/**
+ * Finds every media file an {@link Experiment} refers to and checks that each
+ * one exists and can be decoded, before the experiment is run. This looks at
+ * the {@link DataSource} of every element on every {@link Slide}, as well as
+ * every file reference {@link EBList} in the {@link ListDatabase}.
+ *
+ * <p>
+ * Each file is checked on a thread pool. Only the header of each file is read
+ * (enough to get the format and the dimensions), so this is mostly bound by
+ * the time it takes the file system to answer. Stimulus folders are often on
+ * network mounts, so the default pool is larger than the number of cores.
+ * </p>
+ *
+ * <p>
+ * The result is a table from absolute path to {@link ResolvedAsset}, in the
+ * order the files were first referenced.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class MediaResolver {
+
+	private int mThreadCount;
+	private long mLastResolveMillis = 0;
+
+	public MediaResolver() {
+		this(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+	}
+
+	/**
+	 * @param threadCount
+	 *            the number of files that may be checked at once
+	 */
+	public MediaResolver(int threadCount) {
+		if (threadCount < 1)
+			throw new IllegalArgumentException(
+					"threadCount must be at least one");
+		mThreadCount = threadCount;
+	}
+
+	/**
+	 * Finds and checks every media file referenced by the {@link Experiment}
+	 */
+	public Map<String, ResolvedAsset> resolve(Experiment e)
+			throws InterruptedException {
+		return resolve(collectReferencedFiles(e));
+	}
+
+	/**
+	 * Checks every file in parallel. Blocks until all files have been checked
+	 *
+	 * @return a table from absolute path to {@link ResolvedAsset}, in the same
+	 *         order as the given files. Duplicate files are only checked once
+	 */
+	public Map<String, ResolvedAsset> resolve(Collection<File> files)
+			throws InterruptedException {
+		long start = System.currentTimeMillis();
+
+		LinkedHashMap<String, Future<ResolvedAsset>> pending = new LinkedHashMap<String, Future<ResolvedAsset>>();
+		ExecutorService pool = Executors.newFixedThreadPool(mThreadCount,
+				new DaemonThreadFactory("media-resolver"));
+		try {
+			for (final File f : files) {
+				String key = f.getAbsolutePath();
+				if (pending.containsKey(key))
+					continue;
+
+				pending.put(key, pool.submit(new Callable<ResolvedAsset>() {
+					public ResolvedAsset call() {
+						return probe(f);
+					}
+				}));
+			}
+
+			LinkedHashMap<String, ResolvedAsset> table = new LinkedHashMap<String, ResolvedAsset>(
+					pending.size() * 2);
+			for (Map.Entry<String, Future<ResolvedAsset>> entry : pending
+					.entrySet()) {
+				try {
+					table.put(entry.getKey(), entry.getValue().get());
+				} catch (ExecutionException ex) {
+					table.put(entry.getKey(), new ResolvedAsset(new File(
+							entry.getKey()), ResolvedAsset.Status.UNREADABLE,
+							String.valueOf(ex.getCause())));
+				}
+			}
+
+			return table;
+		} finally {
+			pool.shutdownNow();
+			mLastResolveMillis = System.currentTimeMillis() - start;
+		}
+	}
+
+	/**
+	 * @return how long the most recent call to resolve took, in milliseconds
+	 */
+	public long getLastResolveTime() {
+		return mLastResolveMillis;
+	}
+
+	/**
+	 * Checks a single file. Reads only the image header
+	 */
+	public static ResolvedAsset probe(File f) {
+		if (f.exists() == false || f.isDirectory())
+			return new ResolvedAsset(f, ResolvedAsset.Status.MISSING,
+					"File not found");
+
+		if (f.canRead() == false)
+			return new ResolvedAsset(f, ResolvedAsset.Status.UNREADABLE,
+					"File is not readable");
+
+		long length = f.length();
+		long lastModified = f.lastModified();
+
+		ImageInputStream iis = null;
+		try {
+			iis = ImageIO.createImageInputStream(f);
+			if (iis == null)
+				return new ResolvedAsset(f, ResolvedAsset.Status.UNREADABLE,
+						"Unable to open file");
+
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+			if (readers.hasNext() == false)
+				return new ResolvedAsset(f, ResolvedAsset.Status.UNDECODABLE,
+						"No ImageReader in this JRE understands this file");
+
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(iis, true, true);
+				return new ResolvedAsset(f, reader.getFormatName()
+						.toLowerCase(), reader.getWidth(0),
+						reader.getHeight(0), length, lastModified);
+			} finally {
+				reader.dispose();
+			}
+		} catch (IOException e) {
+			return new ResolvedAsset(f, ResolvedAsset.Status.UNDECODABLE, e
+					.getMessage());
+		} finally {
+			if (iis != null)
+				try {
+					iis.close();
+				} catch (IOException e) {
+					// Nothing useful to do here
+				}
+		}
+	}
+
+	/**
+	 * @return every {@link ResolvedAsset} in the table that is not
+	 *         {@link ResolvedAsset.Status#OK}
+	 */
+	public static List<ResolvedAsset> getProblems(
+			Map<String, ResolvedAsset> table) {
+		ArrayList<ResolvedAsset> problems = new ArrayList<ResolvedAsset>();
+		for (ResolvedAsset a : table.values())
+			if (a.isOk() == false)
+				problems.add(a);
+		return problems;
+	}
+
+	/**
+	 * Walks the {@link Experiment} and returns every file it refers to, in the
+	 * order they are first referenced
+	 */
+	public static Set<File> collectReferencedFiles(Experiment e) {
+		LinkedHashSet<File> files = new LinkedHashSet<File>();
+
+		for (Slide s : e.getSlides())
+			collectReferencedFiles(s, files);
+
+		ListDatabase db = e.getListDatabase();
+		if (db != null)
+			for (EBList<File> list : db.getFileReferenceLists())
+				for (int i = 0; i < list.size(); i++)
+					files.add(list.get(i));
+
+		return files;
+	}
+
+	/**
+	 * Adds every file the elements of a single {@link Slide} refer to
+	 */
+	public static void collectReferencedFiles(Slide s, Set<File> files) {
+		for (ModelElement me : s.getModelElements()) {
+			if (me.getProperties() == null)
+				continue;
+
+			for (Property p : me.getProperties())
+				if (p instanceof DataSource)
+					addFiles((DataSource) p, files);
+		}
+	}
+
+	static void addFiles(DataSource ds, Set<File> files) {
+		switch (ds.getCurrentDataType()) {
+		case Single_File:
+			if (ds.getData() != null)
+				files.add(new File(ds.getData()));
+			break;
+		case Multiple_Files:
+			EBList<Object> list = ds.getListData();
+			if (list == null)
+				break;
+			for (int i = 0; i < list.size(); i++)
+				if (list.get(i) instanceof File)
+					files.add((File) list.get(i));
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Names the pool threads, and keeps them from holding the JVM open
+	 */
+	static class DaemonThreadFactory implements ThreadFactory {
+		private String mName;
+		private int mCount = 0;
+
+		DaemonThreadFactory(String name) {
+			mName = name;
+		}
+
+		public synchronized Thread newThread(Runnable r) {
+			Thread t = new Thread(r, mName + "-" + (++mCount));
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
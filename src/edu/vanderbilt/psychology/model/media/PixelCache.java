@@ -0,0 +1,421 @@
+package edu.vanderbilt.psychology.model.media;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.elements.ImageElementModel;
+import edu.vanderbilt.psychology.model.elements.ModelElement;
+import edu.vanderbilt.psychology.model.properties.DataSource;
+
+/**
+ * A cache on disk of images that have already been decoded and scaled to the
+ * size they are shown at. The first time an image is requested it is decoded
+ * with {@link ImageIO}, scaled, and written to the cache directory as raw ARGB
+ * pixels behind a small header. Every later request (including on later runs
+ * of the player) memory-maps that file and copies the pixels straight into a
+ * {@link BufferedImage#TYPE_INT_ARGB} image, so there is no decode step at all.
+ * {@link #preload(Experiment)} fills the cache for a whole experiment before
+ * it is run.
+ *
+ * <p>
+ * Cache files are named using a hash of the absolute path of the source file
+ * and the target size. The header records the length and modification time of
+ * the source file when the entry was written. If either of those has changed
+ * the entry is thrown away and rebuilt, so editing a stimulus file is picked
+ * up automatically.
+ * </p>
+ *
+ * <h4>Cache file layout</h4>
+ * <ul>
+ * <li>int magic number</li>
+ * <li>int format version</li>
+ * <li>int width, int height</li>
+ * <li>long source file length</li>
+ * <li>long source file modification time</li>
+ * <li>width * height ints of packed ARGB pixels</li>
+ * </ul>
+ *
+ * @author hamiltont
+ *
+ */
+public class PixelCache {
+
+	private static final int MAGIC = 0x45425058; // "EBPX"
+	private static final int VERSION = 2;
+	static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8 + 8;
+
+	private static PixelCache mDefault;
+
+	private File mDirectory;
+
+	public static synchronized PixelCache getDefault() {
+		if (mDefault == null)
+			mDefault = new PixelCache(new File(System.getProperty("user.home"),
+					".experiment-builder" + File.separator + "pixel-cache"));
+		return mDefault;
+	}
+
+	/**
+	 * @param directory
+	 *            where cache entries are kept. Created if it does not exist
+	 */
+	public PixelCache(File directory) {
+		mDirectory = directory;
+	}
+
+	public File getDirectory() {
+		return mDirectory;
+	}
+
+	/**
+	 * Gets an image scaled to the given size. Uses the cached pixels if they
+	 * are present and still match the source file, otherwise decodes the
+	 * source and fills the cache
+	 *
+	 * @param width
+	 *            the target width, or -1 to use the source width
+	 * @param height
+	 *            the target height, or -1 to use the source height
+	 * @return the image, or null if the source could not be decoded
+	 */
+	public BufferedImage getImage(File source, int width, int height) {
+		return getImage(source, width, height, false);
+	}
+
+	/**
+	 * Like {@link #getImage(File, int, int)}, but only decodes every n-th
+	 * pixel of a large source (see {@link ImageImporter#decodeSubsampled}).
+	 * That is much faster, but fine detail aliases, so this is only for
+	 * thumbnails and previews and never for what the player shows. Kept apart
+	 * from the full quality entries of the same size
+	 */
+	public BufferedImage getThumbnail(File source, int width, int height) {
+		return getImage(source, width, height, true);
+	}
+
+	private BufferedImage getImage(File source, int width, int height,
+			boolean subsample) {
+		File entry = getEntryFile(source, width, height, subsample);
+
+		try {
+			BufferedImage cached = map(entry, source);
+			if (cached != null)
+				return cached;
+		} catch (IOException e) {
+			e.printStackTrace();
+			entry.delete();
+		} catch (RuntimeException e) {
+			// A damaged entry must never cost the caller the image
+			e.printStackTrace();
+			entry.delete();
+		}
+
+		BufferedImage decoded = decode(source, width, height, subsample);
+		if (decoded == null)
+			return null;
+
+		try {
+			write(entry, source, decoded);
+		} catch (IOException e) {
+			// The image is still usable, we just could not cache it
+			e.printStackTrace();
+		}
+
+		return decoded;
+	}
+
+	/**
+	 * Makes sure that every image the {@link Experiment} shows has a valid
+	 * entry at the size it is shown at. Missing entries are decoded in
+	 * parallel, one thread per processor. The player calls this before the
+	 * first slide, so that no stimulus has to be decoded once it is running.
+	 * Blocks until every image is done
+	 *
+	 * @return how many of the images are now in the cache
+	 */
+	public int preload(Experiment e) throws InterruptedException {
+		List<Callable<Boolean>> jobs = new ArrayList<Callable<Boolean>>();
+		HashSet<File> entries = new HashSet<File>();
+
+		for (Slide s : e.getSlides())
+			for (ModelElement me : s.getModelElements()) {
+				if (me instanceof ImageElementModel == false)
+					continue;
+
+				ImageElementModel image = (ImageElementModel) me;
+				DataSource ds = image.getDataSource();
+				if (ds == null || image.getSize() == null)
+					continue;
+
+				Set<File> files = new LinkedHashSet<File>();
+				MediaResolver.addFiles(ds, files);
+				for (File f : files) {
+					final File source = f;
+					final int width = image.getSize().width;
+					final int height = image.getSize().height;
+
+					// The same stimulus is often shown on many slides
+					if (entries.add(getEntryFile(source, width, height, false)))
+						jobs.add(new Callable<Boolean>() {
+							public Boolean call() {
+								if (isCached(source, width, height))
+									return true;
+								return getImage(source, width, height) != null;
+							}
+						});
+				}
+			}
+
+		if (jobs.isEmpty())
+			return 0;
+
+		int threads = Math.min(jobs.size(), Runtime.getRuntime()
+				.availableProcessors());
+		ExecutorService pool = Executors.newFixedThreadPool(threads,
+				new MediaResolver.DaemonThreadFactory("pixel-cache"));
+		int cached = 0;
+		try {
+			for (Future<Boolean> f : pool.invokeAll(jobs))
+				try {
+					if (f.get())
+						cached++;
+				} catch (ExecutionException ee) {
+					ee.getCause().printStackTrace();
+				}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		return cached;
+	}
+
+	/**
+	 * @return true if there is a cache entry for this source and size that is
+	 *         still valid
+	 */
+	public boolean isCached(File source, int width, int height) {
+		File entry = getEntryFile(source, width, height, false);
+		if (entry.exists() == false)
+			return false;
+
+		try {
+			RandomAccessFile raf = new RandomAccessFile(entry, "r");
+			try {
+				return readHeader(raf.getChannel(), source) != null;
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Deletes every entry in the cache
+	 */
+	public void clear() {
+		File[] entries = mDirectory.listFiles();
+		if (entries == null)
+			return;
+
+		for (File f : entries)
+			if (f.getName().endsWith(".argb"))
+				f.delete();
+	}
+
+	File getEntryFile(File source, int width, int height, boolean subsample) {
+		String key = source.getAbsolutePath() + "|" + width + "x" + height;
+		if (subsample)
+			key += "|thumbnail";
+		return new File(mDirectory, hash(key) + ".argb");
+	}
+
+	/**
+	 * Memory-maps a cache entry, and copies its pixels into a new image. The
+	 * copy is one bulk move of memory, and leaves an ordinary
+	 * {@link DataBufferInt} that Java2D draws quickly
+	 *
+	 * @return the cached image, or null if there is no valid entry
+	 */
+	private BufferedImage map(File entry, File source) throws IOException {
+		if (entry.exists() == false)
+			return null;
+
+		RandomAccessFile raf = new RandomAccessFile(entry, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			int[] size = readHeader(channel, source);
+			if (size == null) {
+				raf.close();
+				entry.delete();
+				return null;
+			}
+
+			long pixelBytes = (long) size[0] * size[1] * 4;
+			if (channel.size() < HEADER_SIZE + pixelBytes)
+				throw new IOException("Cache entry " + entry + " is truncated");
+
+			// The mapping stays valid after the channel is closed
+			MappedByteBuffer mapped = channel.map(
+					FileChannel.MapMode.READ_ONLY, HEADER_SIZE, pixelBytes);
+			IntBuffer pixels = mapped.asIntBuffer();
+
+			BufferedImage image = new BufferedImage(size[0], size[1],
+					BufferedImage.TYPE_INT_ARGB);
+			pixels.get(((DataBufferInt) image.getRaster().getDataBuffer())
+					.getData());
+			return image;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * @return {width, height} if the header is valid and matches the source
+	 *         file, otherwise null
+	 */
+	private static int[] readHeader(FileChannel channel, File source)
+			throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		channel.read(header, 0);
+		if (header.position() < HEADER_SIZE)
+			return null;
+		header.flip();
+
+		if (header.getInt() != MAGIC || header.getInt() != VERSION)
+			return null;
+
+		int width = header.getInt();
+		int height = header.getInt();
+		long length = header.getLong();
+		long lastModified = header.getLong();
+
+		if (length != source.length() || lastModified != source.lastModified())
+			return null;
+
+		return new int[] { width, height };
+	}
+
+	private void write(File entry, File source, BufferedImage image)
+			throws IOException {
+		if (mDirectory.exists() == false && mDirectory.mkdirs() == false)
+			throw new IOException("Unable to create cache directory "
+					+ mDirectory);
+
+		int width = image.getWidth(), height = image.getHeight();
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer())
+				.getData();
+
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + pixels.length
+				* 4);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(width);
+		buffer.putInt(height);
+		buffer.putLong(source.length());
+		buffer.putLong(source.lastModified());
+		buffer.asIntBuffer().put(pixels);
+		buffer.rewind();
+
+		// Write to a temporary file and then rename, so that a reader never
+		// sees a half-written entry
+		File temp = File.createTempFile("pixels", ".tmp", mDirectory);
+		RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		} finally {
+			raf.close();
+		}
+
+		entry.delete();
+		if (temp.renameTo(entry) == false) {
+			temp.delete();
+			throw new IOException("Unable to move " + temp + " to " + entry);
+		}
+	}
+
+	/**
+	 * Decodes the source file and scales it to the target size
+	 *
+	 * @param subsample
+	 *            if true and the target size is known, only decode every n-th
+	 *            pixel, which is much faster for thumbnails of large images
+	 *            but aliases fine detail
+	 * @return a {@link BufferedImage#TYPE_INT_ARGB} image, or null if the file
+	 *         could not be decoded
+	 */
+	static BufferedImage decode(File source, int width, int height,
+			boolean subsample) {
+		BufferedImage original;
+		try {
+			if (subsample && width > 0 && height > 0)
+				original = ImageImporter.decodeSubsampled(source, width, height);
+			else
+				original = ImageIO.read(source);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+
+		if (original == null)
+			return null;
+
+		if (width <= 0)
+			width = original.getWidth();
+		if (height <= 0)
+			height = original.getHeight();
+
+		BufferedImage result = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = result.createGraphics();
+		g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g2.drawImage(original, 0, 0, width, height, null);
+		g2.dispose();
+
+		return result;
+	}
+
+	private static String hash(String key) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			byte[] digest = md.digest(key.getBytes("UTF-8"));
+			StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (byte b : digest)
+				hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(
+						Character.forDigit(b & 0xf, 16));
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package edu.vanderbilt.psychology.model.media;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+/**
+ * Shows an image that lives in a {@link StimulusPool}. The pixels are never
+ * held by this component, only the key to find them. If the image has been
+ * evicted by the time this is painted, it is loaded back into the pool on a
+ * background thread and painted again once it is there. An image that could
+ * not be loaded is not tried again
+ *
+ * @author hamiltont
+ *
+ */
+@SuppressWarnings("serial")
+public class PooledImageComponent extends JComponent {
+
+	/** Reloads evicted images, so that paintComponent never decodes */
+	private static final ExecutorService mLoader = Executors
+			.newSingleThreadExecutor(new MediaResolver.DaemonThreadFactory(
+					"stimulus-loader"));
+
+	private StimulusPool mPool;
+	private File mSource;
+	private int mImageWidth;
+	private int mImageHeight;
+	private String mKey;
+
+	/** Only touched on the event dispatch thread once constructed */
+	private boolean mFailed = false;
+	private boolean mReloading = false;
+
+	/**
+	 * Loads the image into the pool straight away, so that it is resident
+	 * before it is first shown
+	 */
+	public PooledImageComponent(StimulusPool pool, File source, int width,
+			int height) {
+		mPool = pool;
+		mSource = source;
+		mImageWidth = width;
+		mImageHeight = height;
+		mKey = pool.load(source, width, height);
+		mFailed = mKey == null;
+
+		setPreferredSize(new Dimension(width, height));
+		setSize(width, height);
+	}
+
+	/**
+	 * @return false if the image could not be loaded into the pool
+	 */
+	public boolean isLoaded() {
+		return mKey != null;
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		super.paintComponent(g);
+
+		if (mKey != null
+				&& mPool.draw(g, mKey, 0, 0, getWidth(), getHeight(), this))
+			return;
+
+		if (mFailed == false && mReloading == false)
+			reload();
+	}
+
+	/**
+	 * Loads the image back into the pool off of the event dispatch thread, and
+	 * repaints once it is resident
+	 */
+	private void reload() {
+		mReloading = true;
+		mLoader.execute(new Runnable() {
+			public void run() {
+				final String key = mPool.load(mSource, mImageWidth,
+						mImageHeight);
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						mKey = key;
+						mFailed = key == null;
+						mReloading = false;
+						repaint();
+					}
+				});
+			}
+		});
+	}
+}
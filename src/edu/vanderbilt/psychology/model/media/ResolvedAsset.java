@@ -0,0 +1,104 @@
+package edu.vanderbilt.psychology.model.media;
+
+import java.io.File;
+
+/**
+ * The result of checking a single media file referenced by an experiment.
+ * Created by {@link MediaResolver#probe(File)}. Only the header of the file is
+ * read, so the width, height and format are known without decoding any pixels
+ *
+ * @author hamiltont
+ *
+ */
+public class ResolvedAsset {
+
+	public enum Status {
+		/** The file exists and its header was understood */
+		OK,
+		/** The file does not exist, or is a directory */
+		MISSING,
+		/** The file exists but could not be opened for reading */
+		UNREADABLE,
+		/** The file was read, but no installed ImageReader understands it */
+		UNDECODABLE
+	};
+
+	private File mFile;
+	private Status mStatus;
+	private String mFormat;
+	private int mWidth = -1;
+	private int mHeight = -1;
+	private long mLength;
+	private long mLastModified;
+	private String mMessage;
+
+	ResolvedAsset(File file, Status status, String message) {
+		mFile = file;
+		mStatus = status;
+		mMessage = message;
+	}
+
+	ResolvedAsset(File file, String format, int width, int height,
+			long length, long lastModified) {
+		mFile = file;
+		mStatus = Status.OK;
+		mFormat = format;
+		mWidth = width;
+		mHeight = height;
+		mLength = length;
+		mLastModified = lastModified;
+	}
+
+	public File getFile() {
+		return mFile;
+	}
+
+	public Status getStatus() {
+		return mStatus;
+	}
+
+	public boolean isOk() {
+		return mStatus == Status.OK;
+	}
+
+	/**
+	 * @return the format name reported by the ImageReader, such as "png", or
+	 *         null if the file could not be decoded
+	 */
+	public String getFormat() {
+		return mFormat;
+	}
+
+	/** @return the image width in pixels, or -1 if unknown */
+	public int getWidth() {
+		return mWidth;
+	}
+
+	/** @return the image height in pixels, or -1 if unknown */
+	public int getHeight() {
+		return mHeight;
+	}
+
+	/** @return the file size in bytes at the time it was checked */
+	public long getLength() {
+		return mLength;
+	}
+
+	/** @return the modification time of the file when it was checked */
+	public long getLastModified() {
+		return mLastModified;
+	}
+
+	/** @return a short description of the problem, or null if there is none */
+	public String getMessage() {
+		return mMessage;
+	}
+
+	@Override
+	public String toString() {
+		if (isOk())
+			return mFile.getPath() + " (" + mFormat + ", " + mWidth + "x"
+					+ mHeight + ")";
+		return mFile.getPath() + ": " + mStatus + " - " + mMessage;
+	}
+}
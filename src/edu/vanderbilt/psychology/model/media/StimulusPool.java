@@ -0,0 +1,403 @@
+package edu.vanderbilt.psychology.model.media;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.ImageObserver;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps decoded stimulus images outside of the Java heap, so that a whole
+ * stimulus set can stay resident without making the heap (and therefore GC
+ * pauses) any larger.
+ *
+ * <p>
+ * The pool owns a single arena of a fixed size (the byte budget), which is
+ * either a direct {@link ByteBuffer} or a memory-mapped temporary file. Each
+ * image is copied into a block of the arena as packed ARGB ints. Free space is
+ * tracked as a sorted map of free blocks, allocated first-fit and merged with
+ * its neighbours when a block is released. When there is no block large enough
+ * for a new image, the least recently drawn images are evicted until there is.
+ * </p>
+ *
+ * <p>
+ * To be drawn (see
+ * {@link #draw(Graphics, String, int, int, int, int, ImageObserver)}), an image
+ * is copied into a single scratch {@link BufferedImage} on the heap that is
+ * reused by every draw. That keeps Java2D on its fast path for packed ARGB,
+ * and means the block underneath can be evicted and reused the moment the
+ * copy is done.
+ * </p>
+ *
+ * <p>
+ * The default pool is sized by the system property
+ * <code>eb.stimulusPool.mb</code> (256MB if not set). Setting it to 0 turns the
+ * pool off.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class StimulusPool {
+
+	public static final String BUDGET_PROPERTY = "eb.stimulusPool.mb";
+	private static final int DEFAULT_BUDGET_MB = 256;
+
+	private static StimulusPool mDefault;
+	private static boolean mDefaultCreated = false;
+
+	private static final class Entry {
+		int offset;
+		int bytes;
+		int width;
+		int height;
+	}
+
+	private ByteBuffer mArena;
+
+	/** Free blocks, from offset to length */
+	private TreeMap<Integer, Integer> mFreeBlocks = new TreeMap<Integer, Integer>();
+
+	/** Resident images, in least to most recently used order */
+	private LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<String, Entry>(
+			16, 0.75f, true);
+
+	private int mUsedBytes = 0;
+	private long mEvictions = 0;
+
+	/**
+	 * Where draw() copies an image to. It grows to the largest image drawn so
+	 * far. Guarded by mScratchLock rather than the pool, so that the pool is
+	 * not locked while Java2D draws
+	 */
+	private BufferedImage mScratch;
+	private final Object mScratchLock = new Object();
+
+	/**
+	 * Gets the pool shared by the player, creating it the first time this is
+	 * called
+	 *
+	 * @return the shared pool, or null if the pool is turned off or could not
+	 *         be created
+	 */
+	public static synchronized StimulusPool getDefault() {
+		if (mDefaultCreated)
+			return mDefault;
+		mDefaultCreated = true;
+
+		int megabytes = Integer.getInteger(BUDGET_PROPERTY, DEFAULT_BUDGET_MB);
+		if (megabytes <= 0)
+			return null;
+
+		try {
+			mDefault = mapTempFile((int) Math.min(Integer.MAX_VALUE,
+					megabytes * 1024L * 1024L));
+		} catch (IOException e) {
+			System.out.println("Unable to create the stimulus pool");
+			e.printStackTrace();
+		}
+
+		return mDefault;
+	}
+
+	/**
+	 * Creates a pool backed by a direct {@link ByteBuffer}. Note that direct
+	 * memory is limited by -XX:MaxDirectMemorySize
+	 */
+	public static StimulusPool allocateDirect(int budget) {
+		return new StimulusPool(ByteBuffer.allocateDirect(budget));
+	}
+
+	/**
+	 * Creates a pool backed by a memory-mapped temporary file. The operating
+	 * system pages this in and out, and it does not count against the heap or
+	 * the direct memory limit
+	 */
+	public static StimulusPool mapTempFile(int budget) throws IOException {
+		File backing = File.createTempFile("eb-stimulus-pool", ".bin");
+		backing.deleteOnExit();
+
+		RandomAccessFile raf = new RandomAccessFile(backing, "rw");
+		try {
+			raf.setLength(budget);
+			return new StimulusPool(raf.getChannel().map(
+					FileChannel.MapMode.READ_WRITE, 0, budget));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * @param arena
+	 *            the memory to place images into. Its capacity is the budget
+	 */
+	public StimulusPool(ByteBuffer arena) {
+		mArena = arena;
+		if (arena.capacity() > 0)
+			mFreeBlocks.put(0, arena.capacity());
+	}
+
+	public static String keyFor(File source, int width, int height) {
+		return source.getAbsolutePath() + "|" + width + "x" + height;
+	}
+
+	/**
+	 * Makes sure an image is resident, loading it through the
+	 * {@link PixelCache} if it is not
+	 *
+	 * @return the key of the resident image, or null if it could not be
+	 *         decoded or is larger than the whole pool
+	 */
+	public String load(File source, int width, int height) {
+		String key = keyFor(source, width, height);
+		if (contains(key))
+			return key;
+
+		BufferedImage image = PixelCache.getDefault().getImage(source, width,
+				height);
+		if (image == null || put(key, image) == false)
+			return null;
+
+		return key;
+	}
+
+	/**
+	 * Copies an image into the pool, evicting older images if needed. The
+	 * image is converted to packed ARGB if it is not already
+	 *
+	 * @return false if the image is larger than the whole pool
+	 */
+	public synchronized boolean put(String key, BufferedImage image) {
+		remove(key);
+
+		int width = image.getWidth(), height = image.getHeight();
+		long bytes = (long) width * height * 4;
+		if (bytes > mArena.capacity())
+			return false;
+
+		int offset = allocate((int) bytes);
+		while (offset < 0 && mEntries.isEmpty() == false) {
+			evictEldest();
+			offset = allocate((int) bytes);
+		}
+		if (offset < 0)
+			return false;
+
+		Entry e = new Entry();
+		e.offset = offset;
+		e.bytes = (int) bytes;
+		e.width = width;
+		e.height = height;
+
+		IntBuffer target = slice(e);
+		DataBuffer source = image.getRaster().getDataBuffer();
+		if (image.getType() == BufferedImage.TYPE_INT_ARGB
+				&& source instanceof DataBufferInt)
+			target.put(((DataBufferInt) source).getData(), 0, width * height);
+		else {
+			int[] row = new int[width];
+			for (int y = 0; y < height; y++) {
+				image.getRGB(0, y, width, 1, row, 0, width);
+				target.put(row);
+			}
+		}
+
+		mEntries.put(key, e);
+		mUsedBytes += e.bytes;
+		return true;
+	}
+
+	public synchronized boolean contains(String key) {
+		return mEntries.containsKey(key);
+	}
+
+	/**
+	 * Draws a resident image. The pool is only locked while the pixels are
+	 * copied into the scratch image, not while they are drawn
+	 *
+	 * @return false if the image is not resident
+	 */
+	public boolean draw(Graphics g, String key, int x, int y, int width,
+			int height, ImageObserver observer) {
+		synchronized (mScratchLock) {
+			int imageWidth, imageHeight;
+			synchronized (this) {
+				Entry e = mEntries.get(key);
+				if (e == null)
+					return false;
+
+				imageWidth = e.width;
+				imageHeight = e.height;
+				copyToScratch(e);
+			}
+
+			g.drawImage(mScratch, x, y, x + width, y + height, 0, 0,
+					imageWidth, imageHeight, observer);
+			return true;
+		}
+	}
+
+	public synchronized void remove(String key) {
+		Entry e = mEntries.remove(key);
+		if (e != null)
+			release(e);
+	}
+
+	public synchronized void clear() {
+		mEntries.clear();
+		mFreeBlocks.clear();
+		if (mArena.capacity() > 0)
+			mFreeBlocks.put(0, mArena.capacity());
+		mUsedBytes = 0;
+	}
+
+	/** @return the size of the arena in bytes */
+	public int getBudget() {
+		return mArena.capacity();
+	}
+
+	public synchronized int getUsedBytes() {
+		return mUsedBytes;
+	}
+
+	public synchronized int getEntryCount() {
+		return mEntries.size();
+	}
+
+	public synchronized long getEvictionCount() {
+		return mEvictions;
+	}
+
+	/** @return the fraction of the budget holding images, from 0 to 1 */
+	public synchronized double getOccupancy() {
+		if (mArena.capacity() == 0)
+			return 0;
+		return mUsedBytes / (double) mArena.capacity();
+	}
+
+	public synchronized int getLargestFreeBlock() {
+		int largest = 0;
+		for (int length : mFreeBlocks.values())
+			largest = Math.max(largest, length);
+		return largest;
+	}
+
+	/**
+	 * @return how broken up the free space is, from 0 (all free space is in one
+	 *         block) to nearly 1 (free space is scattered in many small blocks).
+	 *         Calculated as 1 - largest free block / total free bytes
+	 */
+	public synchronized double getFragmentation() {
+		int free = mArena.capacity() - mUsedBytes;
+		if (free == 0)
+			return 0;
+		return 1.0 - getLargestFreeBlock() / (double) free;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "StimulusPool[" + mEntries.size() + " images, "
+				+ (mUsedBytes / 1024) + "KB of " + (mArena.capacity() / 1024)
+				+ "KB, fragmentation "
+				+ Math.round(getFragmentation() * 100) + "%]";
+	}
+
+	private IntBuffer slice(Entry e) {
+		ByteBuffer view = mArena.duplicate();
+		view.limit(e.offset + e.bytes);
+		view.position(e.offset);
+		return view.slice().asIntBuffer();
+	}
+
+	/**
+	 * Copies an entry into the top left corner of the scratch image, growing
+	 * the scratch image first if the entry does not fit
+	 */
+	private void copyToScratch(Entry e) {
+		if (mScratch == null || mScratch.getWidth() < e.width
+				|| mScratch.getHeight() < e.height) {
+			int width = e.width, height = e.height;
+			if (mScratch != null) {
+				width = Math.max(width, mScratch.getWidth());
+				height = Math.max(height, mScratch.getHeight());
+			}
+			mScratch = new BufferedImage(width, height,
+					BufferedImage.TYPE_INT_ARGB);
+		}
+
+		int[] pixels = ((DataBufferInt) mScratch.getRaster().getDataBuffer())
+				.getData();
+		int stride = mScratch.getWidth();
+		IntBuffer source = slice(e);
+		if (stride == e.width)
+			source.get(pixels, 0, e.width * e.height);
+		else
+			for (int y = 0; y < e.height; y++)
+				source.get(pixels, y * stride, e.width);
+	}
+
+	/**
+	 * First-fit allocation from the free list
+	 *
+	 * @return the offset of the block, or -1 if no free block is large enough
+	 */
+	private int allocate(int bytes) {
+		for (Map.Entry<Integer, Integer> block : mFreeBlocks.entrySet()) {
+			if (block.getValue() < bytes)
+				continue;
+
+			int offset = block.getKey();
+			int remaining = block.getValue() - bytes;
+			mFreeBlocks.remove(offset);
+			if (remaining > 0)
+				mFreeBlocks.put(offset + bytes, remaining);
+			return offset;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns a block to the free list, merging it with the free blocks on
+	 * either side
+	 */
+	private void release(Entry e) {
+		mUsedBytes -= e.bytes;
+
+		int offset = e.offset;
+		int length = e.bytes;
+
+		Map.Entry<Integer, Integer> before = mFreeBlocks.floorEntry(offset);
+		if (before != null && before.getKey() + before.getValue() == offset) {
+			offset = before.getKey();
+			length += before.getValue();
+			mFreeBlocks.remove(before.getKey());
+		}
+
+		Integer afterLength = mFreeBlocks.get(offset + length);
+		if (afterLength != null) {
+			mFreeBlocks.remove(offset + length);
+			length += afterLength;
+		}
+
+		mFreeBlocks.put(offset, length);
+	}
+
+	private void evictEldest() {
+		Iterator<Entry> eldest = mEntries.values().iterator();
+		Entry e = eldest.next();
+		eldest.remove();
+		release(e);
+		mEvictions++;
+	}
+}
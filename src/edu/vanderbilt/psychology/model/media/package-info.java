@@ -0,0 +1,9 @@
+/**
+ * Contains the code that finds, checks and loads the media files (images,
+ * sounds, etc) that an {@link edu.vanderbilt.psychology.model.Experiment}
+ * refers to. Nothing in here depends on the builder or the player GUI, so it
+ * can be used by either one
+ * 
+ * @author hamiltont
+ */
+package edu.vanderbilt.psychology.model.media;
@@ -61,15 +61,33 @@ public class DataSource extends Property {
 	}
 
 	public void setDataSource(String data, Type dataType) {
+		checkNotShared();
 		mData = data;
 		type_ = dataType;
 	}
 
 	public void setDataSource(EBList<Object> listData, Type dataType) {
+		checkNotShared();
 		mListData = listData;
 		type_ = dataType;
 	}
 	
+	/**
+	 * @return the single file path or string, or null if this
+	 *         {@link DataSource} is backed by an {@link EBList}
+	 */
+	public String getData() {
+		return mData;
+	}
+
+	/**
+	 * @return the backing {@link EBList}, or null if this {@link DataSource}
+	 *         holds a single file path or string
+	 */
+	public EBList<Object> getListData() {
+		return mListData;
+	}
+
 	public Type getCurrentDataType() {
 		return type_;
 	}
@@ -86,6 +104,16 @@ public class DataSource extends Property {
 					"Unknown data type in the data source");
 	}
 
+	@Override
+	public int getContentHash() {
+		int hash = super.getContentHash();
+		hash = 31 * hash + (type_ == null ? 0 : type_.ordinal() + 1);
+		hash = 31 * hash + (mData == null ? 0 : mData.hashCode());
+		// Lists belong to the ListDatabase, only which one is used matters
+		hash = 31 * hash + System.identityHashCode(mListData);
+		return hash;
+	}
+
 	@Override
 	public Section getSection() {
 		JPanel poo = new JPanel();
@@ -1,11 +1,16 @@
 package edu.vanderbilt.psychology.model.properties;
 
 import java.awt.event.ActionEvent;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.AbstractAction;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JTextField;
 
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 import edu.vanderbilt.psychology.controller.SelectionManager;
@@ -14,22 +19,92 @@ import edu.vanderbilt.psychology.gui.sideBar.Section;
 import edu.vanderbilt.psychology.gui.slideElements.SlideElement;
 import edu.vanderbilt.psychology.model.BuilderState;
 import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.elements.ModelElement;
 import edu.vanderbilt.psychology.model.reactor.Action;
+import edu.vanderbilt.psychology.model.reactor.Condition;
+import edu.vanderbilt.psychology.model.reactor.ConditionContext;
 import edu.vanderbilt.psychology.model.reactor.Reactor;
 import edu.vanderbilt.psychology.model.reactor.ActionType;
 import edu.vanderbilt.psychology.model.reactor.Sleeper;
 
 public class MouseActions extends Property {
 
+	/** What a mouse action can also record, see {@link #createRecordAction} */
+	public static final int RECORD_NOTHING = 0;
+	public static final int RECORD_CORRECT = 1;
+	public static final int RECORD_INCORRECT = 2;
+	public static final int RECORD_INCREMENT_COUNTER = 3;
+	public static final int RECORD_DECREMENT_COUNTER = 4;
+	public static final int RECORD_RESET_COUNTER = 5;
+
+	/** Shown for each RECORD_ constant, in order */
+	private static final String[] RECORD_NAMES = { "nothing else",
+			"a correct response", "an incorrect response", "one more for",
+			"one less for", "a reset of" };
+
+	private static final String DEFAULT_COUNTER = "streak";
+
+	/**
+	 * The content of the {@link Section}, which keeps hold of its fields so
+	 * that {@link MouseActions#bindSection(Section)} can clear them
+	 */
+	@SuppressWarnings("serial")
+	private static final class MouseActionsPanel extends JPanel {
+		// Such as: correct && counter("streak") >= 3. See Condition
+		final JTextField condition = new JTextField(12);
+
+		// Such as counting a streak of correct responses, for the conditions
+		// of later reactors
+		final JComboBox record = new JComboBox(RECORD_NAMES);
+		final JTextField counter = new JTextField(DEFAULT_COUNTER, 6);
+
+		MouseActionsPanel() {
+			condition.setToolTipText("Only fire if this is true. Leave blank to always fire");
+			counter.setToolTipText("The counter to change");
+		}
+
+		/** Goes back to what a new {@link Section} starts out with */
+		void reset() {
+			condition.setText("");
+			record.setSelectedIndex(RECORD_NOTHING);
+			counter.setText(DEFAULT_COUNTER);
+		}
+	}
+
 	@SuppressWarnings("serial")
 	@Override
 	public Section getSection() {
-		JPanel panel = new JPanel();
+		MouseActionsPanel panel = new MouseActionsPanel();
 		panel.add(new JLabel("On Mouse Click do "));
+
+		final JTextField condition = panel.condition;
+		final JComboBox record = panel.record;
+		final JTextField counter = panel.counter;
+
 		panel.add(new JButton(new AbstractAction("Select Action") {
 
 			@Override
 			public void actionPerformed(ActionEvent e) {
+				String onlyIf = condition.getText().trim();
+				if (onlyIf.length() > 0)
+					try {
+						Condition.check(onlyIf, BuilderState.getInstance()
+								.getExperiment().getListDatabase());
+					} catch (IllegalArgumentException ex) {
+						JOptionPane.showMessageDialog(condition, ex
+								.getMessage());
+						return;
+					}
+
+				int recordChoice = record.getSelectedIndex();
+				String counterName = counter.getText().trim();
+				if (recordChoice >= RECORD_INCREMENT_COUNTER
+						&& counterName.length() == 0) {
+					JOptionPane.showMessageDialog(counter,
+							"Enter the name of the counter to change");
+					return;
+				}
+
 				// TODO do something with the dialog return value
 				DialogManager.showActionDialog();
 
@@ -47,8 +122,21 @@ public class MouseActions extends Property {
 						Slide.ACTION_ADVANCE_TO_NEXT_SLIDE, selection
 								.getModel(), null);
 
+				// Recorded first, so the actions after it already see it
+				List<Action> actions = new ArrayList<Action>();
+				Action recorded = createRecordAction(recordChoice,
+						counterName, selection.getModel());
+				if (recorded != null)
+					actions.add(recorded);
+				actions.add(ev1);
+				actions.add(ev2);
+				actions.add(ev3);
+
 				Reactor er = new Reactor(selection,
-						Reactor.TRIGGER_ON_MOUSE_ENTER, ev1, ev2, ev3);
+						Reactor.TRIGGER_ON_MOUSE_ENTER, actions
+								.toArray(new Action[actions.size()]));
+				if (onlyIf.length() > 0)
+					er.setCondition(new Condition(onlyIf));
 
 				// Add it to the current slide
 				BuilderState.getInstance().getCurrentSlide()
@@ -56,9 +144,59 @@ public class MouseActions extends Property {
 
 			}
 		}));
+		panel.add(new JLabel(" only if "));
+		panel.add(condition);
+		panel.add(new JLabel(" and record "));
+		panel.add(record);
+		panel.add(counter);
 		return new Section("Mouse Actions", panel);
 	}
 
+	/**
+	 * The fields describe the next {@link Reactor} to add rather than anything
+	 * this {@link MouseActions} holds, so they are cleared for each element,
+	 * rather than showing what was typed for the last one
+	 */
+	@Override
+	public void bindSection(Section section) {
+		if (section.getContentPanel() instanceof MouseActionsPanel)
+			((MouseActionsPanel) section.getContentPanel()).reset();
+	}
+
+	/**
+	 * Builds an {@link Action} that records a response or changes a counter,
+	 * for {@link Condition}s to ask about when the experiment is played (see
+	 * {@link ConditionContext})
+	 * 
+	 * @param choice
+	 *            one of the RECORD_ constants
+	 * @param counter
+	 *            the name of the counter, used only by the counter choices
+	 * @return the {@link Action}, or null for {@link #RECORD_NOTHING}
+	 */
+	public static Action createRecordAction(int choice, String counter,
+			ModelElement source) {
+		switch (choice) {
+		case RECORD_CORRECT:
+			return new Action(ActionType.TYPE_RESPONSE_EVENTS,
+					ConditionContext.ACTION_MARK_CORRECT, source, null);
+		case RECORD_INCORRECT:
+			return new Action(ActionType.TYPE_RESPONSE_EVENTS,
+					ConditionContext.ACTION_MARK_INCORRECT, source, null);
+		case RECORD_INCREMENT_COUNTER:
+			return new Action(ActionType.TYPE_COUNTER_EVENTS,
+					ConditionContext.ACTION_INCREMENT_COUNTER, source, counter);
+		case RECORD_DECREMENT_COUNTER:
+			return new Action(ActionType.TYPE_COUNTER_EVENTS,
+					ConditionContext.ACTION_DECREMENT_COUNTER, source, counter);
+		case RECORD_RESET_COUNTER:
+			return new Action(ActionType.TYPE_COUNTER_EVENTS,
+					ConditionContext.ACTION_RESET_COUNTER, source, counter);
+		default:
+			return null;
+		}
+	}
+
 	@Override
 	public void receiveAction(Action e) {
 		// TODO Auto-generated method stub
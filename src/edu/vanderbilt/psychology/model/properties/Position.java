@@ -40,31 +40,33 @@ public class Position extends Property {
 	private static final String sectionTitle_ = "Position";
 	private static final String[] options = {"Move To", "Choose Between"}; 
 	
-	private JPanel section_;
-
 	public Position() {
-		section_ = new JPanel();
-		section_.setLayout(new BoxLayout(section_, BoxLayout.PAGE_AXIS));
-		
+	}
+
+	/**
+	 * Built here rather than in the constructor, as the {@link Section} is
+	 * shared by all {@link Position}s
+	 */
+	@Override
+	public Section getSection() {
+		JPanel section = new JPanel();
+		section.setLayout(new BoxLayout(section, BoxLayout.PAGE_AXIS));
+
 		JButton addTriggerBtn = new JButton("Add Trigger");
 		addTriggerBtn.setToolTipText("Add Trigger");
 		addTriggerBtn.setAlignmentX(Component.CENTER_ALIGNMENT);
-		section_.add(addTriggerBtn);
-		
+		section.add(addTriggerBtn);
+
 		JComboBox type = new JComboBox(options);
 		type.setAlignmentX(Component.CENTER_ALIGNMENT);
-		section_.add(type);
-		
+		section.add(type);
+
 		JButton chooseLocBtn = new JButton("Choose Location");
 		chooseLocBtn.setToolTipText("Choose Location");
 		chooseLocBtn.setAlignmentX(Component.CENTER_ALIGNMENT);
-		section_.add(chooseLocBtn);
-		
-	}
-	
-	@Override
-	public Section getSection() {
-		return new Section(sectionTitle_, section_);
+		section.add(chooseLocBtn);
+
+		return new Section(sectionTitle_, section);
 	}
 
 	@Override
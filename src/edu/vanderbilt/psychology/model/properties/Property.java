@@ -3,9 +3,21 @@
  */
 package edu.vanderbilt.psychology.model.properties;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import javax.swing.JComponent;
 
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.converters.reflection.ReflectionConverter;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+
 import edu.vanderbilt.psychology.gui.sideBar.Section;
+import edu.vanderbilt.psychology.gui.sideBar.SectionedPanel;
 import edu.vanderbilt.psychology.gui.slideElements.SlideElement;
 import edu.vanderbilt.psychology.model.DataCapture;
 import edu.vanderbilt.psychology.model.reactor.ActionListener;
@@ -61,9 +73,15 @@ import edu.vanderbilt.psychology.model.reactor.ActionListener;
  * "data senders" must have a getName() method
  * </p>
  * 
- * <h5>Note</h5> If a {@link Property} takes up a lot of memory, then it would
- * be useful to make that property have an internal model that can be shared
- * amongst multiple instances of a {@link Property} class
+ * <h5>Shared defaults</h5> {@link SlideElement}s start out pointing at the
+ * shared default instance of each {@link Property} class (see
+ * {@link #getDefault(Class)}), rather than each holding their own copy. A
+ * shared default must never be changed. Code that wants to change a
+ * {@link Property} of one {@link SlideElement} calls
+ * {@link #edit(List, Property)} first, which swaps in a private copy if the
+ * {@link Property} is still shared. Shared defaults are written to disk as a
+ * marker (and as a reference after the first time), and are read back as the
+ * shared default again
  * 
  * <br>
  * <br>
@@ -76,6 +94,111 @@ import edu.vanderbilt.psychology.model.reactor.ActionListener;
 // for the player
 public abstract class Property implements ActionListener, Cloneable {
 
+	private static final Map<Class<? extends Property>, Property> defaults_ = new HashMap<Class<? extends Property>, Property>();
+
+	/** True for the shared default instances only. Never written to disk */
+	private transient boolean shared_ = false;
+
+	/**
+	 * Gets the shared default instance of a {@link Property} class, creating
+	 * it with the class's no-argument constructor the first time
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the class has no public no-argument constructor
+	 */
+	public static synchronized <P extends Property> P getDefault(Class<P> type) {
+		Property p = defaults_.get(type);
+		if (p == null) {
+			try {
+				p = type.newInstance();
+			} catch (InstantiationException e) {
+				throw new IllegalArgumentException(type.getName()
+						+ " has no default instance", e);
+			} catch (IllegalAccessException e) {
+				throw new IllegalArgumentException(type.getName()
+						+ " has no default instance", e);
+			}
+			p.shared_ = true;
+			defaults_.put(type, p);
+		}
+
+		return type.cast(p);
+	}
+
+	/**
+	 * Gets a {@link Property} that can be changed without affecting any other
+	 * {@link SlideElement}. If the {@link Property} is a shared default, it is
+	 * replaced in the list by a private copy, and the copy is returned.
+	 * Otherwise the {@link Property} is returned as it is
+	 * 
+	 * @param properties
+	 *            the list of {@link Property}s that holds the
+	 *            {@link Property}, such as
+	 *            {@link SlideElement#getProperties()}
+	 */
+	@SuppressWarnings("unchecked")
+	public static <P extends Property> P edit(List<Property> properties,
+			P property) {
+		if (property.isShared() == false)
+			return property;
+
+		P copy = (P) property.clone();
+		for (int i = 0; i < properties.size(); i++)
+			if (properties.get(i) == property) {
+				properties.set(i, copy);
+				break;
+			}
+
+		return copy;
+	}
+
+	/**
+	 * @return true if this is the shared default instance of its class, and
+	 *         therefore must not be changed
+	 */
+	public final boolean isShared() {
+		return shared_;
+	}
+
+	/**
+	 * Gets a hash of this {@link Property}'s values, so that a saved state of
+	 * a {@link SlideElement} can tell if it was edited since. Subclasses should
+	 * add in any values they hold
+	 */
+	public int getContentHash() {
+		return getClass().getName().hashCode();
+	}
+
+	/**
+	 * Subclasses call this at the start of every method that changes their
+	 * values
+	 * 
+	 * @throws IllegalStateException
+	 *             if this is a shared default
+	 */
+	protected final void checkNotShared() {
+		if (shared_)
+			throw new IllegalStateException("The shared default "
+					+ getClass().getSimpleName()
+					+ " cannot be changed, use Property.edit() first");
+	}
+
+	/**
+	 * @return a shallow copy of this {@link Property}, which is never shared.
+	 *         Subclasses holding mutable objects should copy them as well
+	 */
+	@Override
+	public Property clone() {
+		try {
+			Property copy = (Property) super.clone();
+			copy.shared_ = false;
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			// Cannot happen, as Property is Cloneable
+			throw new InternalError(e.toString());
+		}
+	}
+
 	/**
 	 * Will be used in the logging. This returns the value that will go into the
 	 * log field 'type'
@@ -94,6 +217,72 @@ public abstract class Property implements ActionListener, Cloneable {
 	 * such as mouse clicks that originate from this {@link Section}. This
 	 * allows each {@link Property} to create and react to it's own part of the
 	 * user interface.
+	 * 
+	 * <p>
+	 * The {@link SectionedPanel} only calls this the first time a
+	 * {@link Property} of this class is shown. After that, the {@link Section}
+	 * is reused for every {@link Property} of the same class, and is handed to
+	 * {@link #bindSection(Section)} instead. The {@link Section} should
+	 * therefore not hold on to this {@link Property}
+	 * </p>
 	 */
 	public abstract Section getSection();
+
+	/**
+	 * Shows this {@link Property}'s values in a {@link Section} that was built
+	 * by {@link #getSection()} on another {@link Property} of the same class.
+	 * {@link Property}s whose {@link Section}s do not show any per-instance
+	 * values do not need to override this
+	 */
+	public void bindSection(Section section) {
+	}
+
+	/**
+	 * Writes shared defaults as an empty element with a
+	 * <code>default="true"</code> attribute, and reads them back as the shared
+	 * default, so that loading an experiment does not create a copy of the
+	 * default for every element. All other {@link Property}s are written field
+	 * by field as usual
+	 * 
+	 * @author hamiltont
+	 * 
+	 */
+	public static class XStreamConverter extends ReflectionConverter {
+
+		public XStreamConverter(XStream xs) {
+			super(xs.getMapper(), xs.getReflectionProvider());
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean canConvert(Class type) {
+			return Property.class.isAssignableFrom(type);
+		}
+
+		@Override
+		public void marshal(Object source, HierarchicalStreamWriter writer,
+				MarshallingContext context) {
+			if (((Property) source).isShared())
+				writer.addAttribute("default", "true");
+			else
+				super.marshal(source, writer, context);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Object unmarshal(HierarchicalStreamReader reader,
+				UnmarshallingContext context) {
+			if ("true".equals(reader.getAttribute("default")))
+				return getDefault(context.getRequiredType());
+
+			return super.unmarshal(reader, context);
+		}
+	}
+
+	/**
+	 * Registers the {@link XStreamConverter} with the given {@link XStream}
+	 */
+	public static void addXStreamConverter(XStream xs) {
+		xs.registerConverter(new XStreamConverter(xs));
+	}
 }
@@ -47,6 +47,14 @@ public class Action {
 		return mData;
 	}
 
+	/**
+	 * @return the {@link ModelElement} this {@link Action} came from, which
+	 *         may be null
+	 */
+	public ModelElement getModel() {
+		return mModel;
+	}
+
 	public JComponent getSource() {
 		return mModel.getJComponent(new MutableInt());
 	}
@@ -15,6 +15,10 @@ public class ActionType {
 	public static final ActionType TYPE_APPEARANCE_EVENTS = new ActionType(
 			"appearance");
 	public static final ActionType TYPE_LIST_EVENTS = new ActionType("list");
+	public static final ActionType TYPE_COUNTER_EVENTS = new ActionType(
+			"counter");
+	public static final ActionType TYPE_RESPONSE_EVENTS = new ActionType(
+			"response");
 
 	private String mUniqueId;
 
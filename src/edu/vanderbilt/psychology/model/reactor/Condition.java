@@ -0,0 +1,531 @@
+package edu.vanderbilt.psychology.model.reactor;
+
+import edu.vanderbilt.psychology.model.EBList;
+import edu.vanderbilt.psychology.model.ListDatabase;
+
+/**
+ * A test a {@link Reactor} makes before firing its {@link Action}s, such as
+ * <code>correct &amp;&amp; counter("streak") &gt;= 3</code>. Written as a
+ * small expression over:
+ * <ul>
+ * <li><code>item("name")</code> - the current item of a list</li>
+ * <li><code>position("name")</code> - the current position of a list</li>
+ * <li><code>counter("name")</code> - a counter (see {@link ConditionContext})</li>
+ * <li><code>correct</code> - true if the last response was marked correct</li>
+ * <li><code>elapsed</code> - milliseconds since the slide was shown</li>
+ * <li><code>pass</code> - the pass of the slide's loop, counting from 1</li>
+ * <li>numbers, <code>"text"</code>, <code>true</code> and <code>false</code></li>
+ * </ul>
+ * combined with <code>+ - * / %</code>, <code>== != &lt; &lt;= &gt; &gt;=</code>,
+ * <code>&amp;&amp; || !</code> and parentheses, with the usual precedence.
+ * Items are compared as text, and only with <code>==</code> and
+ * <code>!=</code>.
+ *
+ * <p>
+ * Only the text is saved. It is compiled once, by {@link #compile()}, into a
+ * tree of small objects that each do one step and already hold the list or
+ * counter they read, so {@link #isMet()} never parses, looks anything up by
+ * name, or allocates. The player compiles every {@link Condition} as the
+ * experiment loads, so a mistake is found then rather than on the trial that
+ * uses it, and nothing is parsed on the event dispatch thread while a trial is
+ * running.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public final class Condition {
+
+	private final String mSource;
+
+	/** Built from mSource by {@link #compile()}. Not saved */
+	private transient Bool mCompiled = null;
+
+	public Condition(String source) {
+		if (source == null)
+			throw new IllegalArgumentException("A condition needs some text");
+		mSource = source;
+	}
+
+	/** @return the text of this {@link Condition} */
+	public String getSource() {
+		return mSource;
+	}
+
+	/**
+	 * Parses this {@link Condition} and binds it to the lists and counters of
+	 * {@link ConditionContext#getInstance()}. Every call parses again, so that
+	 * after {@link ConditionContext#reset()} the {@link Condition} reads the
+	 * new counters rather than the ones from before
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the text is not a valid condition, or names a list that
+	 *             does not exist
+	 */
+	public void compile() {
+		mCompiled = new Parser(mSource, ConditionContext.getInstance(),
+				ConditionContext.getInstance().getLists()).parse();
+	}
+
+	/**
+	 * Checks a {@link Condition} without binding it to anything, such as
+	 * while it is being typed in
+	 *
+	 * @param lists
+	 *            the lists it may name, or null to only check the syntax
+	 * @throws IllegalArgumentException
+	 *             if the text is not a valid condition
+	 */
+	public static void check(String source, ListDatabase lists) {
+		new Parser(source, null, lists).parse();
+	}
+
+	/**
+	 * @return true if the {@link Reactor} should fire. Compiles this
+	 *         {@link Condition} first if it has not been already
+	 */
+	public boolean isMet() {
+		if (mCompiled == null)
+			compile();
+		return mCompiled.bool();
+	}
+
+	@Override
+	public String toString() {
+		return mSource;
+	}
+
+	/*
+	 * The compiled tree. Each node has a fixed type, checked while parsing, so
+	 * no node ever needs to look at the type of its children again
+	 */
+
+	private static abstract class Node {
+	}
+
+	private static abstract class Num extends Node {
+		abstract double num();
+	}
+
+	private static abstract class Bool extends Node {
+		abstract boolean bool();
+	}
+
+	private static abstract class Text extends Node {
+		/** @return the value, which may be null if a list is out of range */
+		abstract Object text();
+	}
+
+	/**
+	 * A recursive descent parser that builds the tree as it goes
+	 *
+	 * <pre>
+	 * or      := and ('||' and)*
+	 * and     := not ('&amp;&amp;' not)*
+	 * not     := '!' not | compare
+	 * compare := sum (('==' | '!=' | '&lt;' | '&lt;=' | '&gt;' | '&gt;=') sum)?
+	 * sum     := product (('+' | '-') product)*
+	 * product := unary (('*' | '/' | '%') unary)*
+	 * unary   := '-' unary | atom
+	 * atom    := number | string | 'true' | 'false' | 'correct' | 'elapsed'
+	 *          | 'pass' | name '(' string ')' | '(' or ')'
+	 * </pre>
+	 */
+	private static class Parser {
+		private final String mText;
+		private final ConditionContext mContext;
+		private final ListDatabase mLists;
+		private int mPos = 0;
+
+		/**
+		 * @param context
+		 *            what to bind to, or null to only check the condition
+		 * @param lists
+		 *            where to look up lists, or null to not look them up
+		 */
+		Parser(String text, ConditionContext context, ListDatabase lists) {
+			mText = text;
+			mContext = context;
+			mLists = lists;
+		}
+
+		Bool parse() {
+			Node n = or();
+			skipSpace();
+			if (mPos < mText.length())
+				throw error("Unexpected \"" + mText.charAt(mPos) + "\"");
+			return asBool(n);
+		}
+
+		private Node or() {
+			Node left = and();
+			while (accept("||")) {
+				final Bool a = asBool(left), b = asBool(and());
+				left = new Bool() {
+					boolean bool() {
+						return a.bool() || b.bool();
+					}
+				};
+			}
+			return left;
+		}
+
+		private Node and() {
+			Node left = not();
+			while (accept("&&")) {
+				final Bool a = asBool(left), b = asBool(not());
+				left = new Bool() {
+					boolean bool() {
+						return a.bool() && b.bool();
+					}
+				};
+			}
+			return left;
+		}
+
+		private Node not() {
+			if (peek("!") && peek("!=") == false) {
+				accept("!");
+				final Bool a = asBool(not());
+				return new Bool() {
+					boolean bool() {
+						return a.bool() == false;
+					}
+				};
+			}
+			return compare();
+		}
+
+		private Node compare() {
+			Node left = sum();
+			String[] ops = { "==", "!=", "<=", ">=", "<", ">" };
+			for (String op : ops)
+				if (accept(op))
+					return compare(op, left, sum());
+			return left;
+		}
+
+		private Node compare(String op, Node left, Node right) {
+			if (left instanceof Text || right instanceof Text) {
+				if ((left instanceof Text) == false
+						|| (right instanceof Text) == false)
+					throw error("Text can only be compared with text");
+				final Text a = (Text) left, b = (Text) right;
+				final boolean equal = op.equals("==");
+				if (equal == false && op.equals("!=") == false)
+					throw error("Text can only be compared with == or !=");
+				return new Bool() {
+					boolean bool() {
+						return textEquals(a.text(), b.text()) == equal;
+					}
+				};
+			}
+
+			if (left instanceof Bool && right instanceof Bool) {
+				final Bool a = (Bool) left, b = (Bool) right;
+				final boolean equal = op.equals("==");
+				if (equal == false && op.equals("!=") == false)
+					throw error("true and false can only be compared with == or !=");
+				return new Bool() {
+					boolean bool() {
+						return (a.bool() == b.bool()) == equal;
+					}
+				};
+			}
+
+			final Num a = asNum(left), b = asNum(right);
+			if (op.equals("=="))
+				return new Bool() {
+					boolean bool() {
+						return a.num() == b.num();
+					}
+				};
+			if (op.equals("!="))
+				return new Bool() {
+					boolean bool() {
+						return a.num() != b.num();
+					}
+				};
+			if (op.equals("<"))
+				return new Bool() {
+					boolean bool() {
+						return a.num() < b.num();
+					}
+				};
+			if (op.equals("<="))
+				return new Bool() {
+					boolean bool() {
+						return a.num() <= b.num();
+					}
+				};
+			if (op.equals(">"))
+				return new Bool() {
+					boolean bool() {
+						return a.num() > b.num();
+					}
+				};
+			return new Bool() {
+				boolean bool() {
+					return a.num() >= b.num();
+				}
+			};
+		}
+
+		private Node sum() {
+			Node left = product();
+			while (true) {
+				if (accept("+")) {
+					final Num a = asNum(left), b = asNum(product());
+					left = new Num() {
+						double num() {
+							return a.num() + b.num();
+						}
+					};
+				} else if (accept("-")) {
+					final Num a = asNum(left), b = asNum(product());
+					left = new Num() {
+						double num() {
+							return a.num() - b.num();
+						}
+					};
+				} else
+					return left;
+			}
+		}
+
+		private Node product() {
+			Node left = unary();
+			while (true) {
+				if (accept("*")) {
+					final Num a = asNum(left), b = asNum(unary());
+					left = new Num() {
+						double num() {
+							return a.num() * b.num();
+						}
+					};
+				} else if (accept("/")) {
+					final Num a = asNum(left), b = asNum(unary());
+					left = new Num() {
+						double num() {
+							return a.num() / b.num();
+						}
+					};
+				} else if (accept("%")) {
+					final Num a = asNum(left), b = asNum(unary());
+					left = new Num() {
+						double num() {
+							return a.num() % b.num();
+						}
+					};
+				} else
+					return left;
+			}
+		}
+
+		private Node unary() {
+			if (accept("-")) {
+				final Num a = asNum(unary());
+				return new Num() {
+					double num() {
+						return -a.num();
+					}
+				};
+			}
+			return atom();
+		}
+
+		private Node atom() {
+			skipSpace();
+			if (mPos >= mText.length())
+				throw error("The condition ends too soon");
+
+			char c = mText.charAt(mPos);
+			if (accept("(")) {
+				Node n = or();
+				expect(")");
+				return n;
+			}
+			if (c == '"') {
+				final String s = string();
+				return new Text() {
+					Object text() {
+						return s;
+					}
+				};
+			}
+			if (Character.isDigit(c) || c == '.')
+				return number();
+			if (Character.isLetter(c))
+				return name();
+
+			throw error("Unexpected \"" + c + "\"");
+		}
+
+		private Node number() {
+			int start = mPos;
+			while (mPos < mText.length()
+					&& (Character.isDigit(mText.charAt(mPos)) || mText
+							.charAt(mPos) == '.'))
+				mPos++;
+
+			final double value;
+			try {
+				value = Double.parseDouble(mText.substring(start, mPos));
+			} catch (NumberFormatException e) {
+				throw error("\"" + mText.substring(start, mPos)
+						+ "\" is not a number");
+			}
+			return new Num() {
+				double num() {
+					return value;
+				}
+			};
+		}
+
+		private Node name() {
+			int start = mPos;
+			while (mPos < mText.length()
+					&& Character.isLetterOrDigit(mText.charAt(mPos)))
+				mPos++;
+			String name = mText.substring(start, mPos);
+
+			if (name.equals("true") || name.equals("false")) {
+				final boolean value = name.equals("true");
+				return new Bool() {
+					boolean bool() {
+						return value;
+					}
+				};
+			}
+
+			final ConditionContext context = mContext;
+			if (name.equals("correct"))
+				return new Bool() {
+					boolean bool() {
+						return context.isLastResponseCorrect();
+					}
+				};
+			if (name.equals("elapsed"))
+				return new Num() {
+					double num() {
+						return context.getElapsedMillis();
+					}
+				};
+			if (name.equals("pass"))
+				return new Num() {
+					double num() {
+						return context.getPass();
+					}
+				};
+
+			if (name.equals("item") == false
+					&& name.equals("position") == false
+					&& name.equals("counter") == false)
+				throw error("Unknown name \"" + name + "\"");
+
+			expect("(");
+			skipSpace();
+			if (mPos >= mText.length() || mText.charAt(mPos) != '"')
+				throw error(name + "() needs a name in quotes");
+			String argument = string();
+			expect(")");
+
+			if (name.equals("counter")) {
+				final ConditionContext.Counter counter = context == null ? null
+						: context.getCounter(argument);
+				return new Num() {
+					double num() {
+						return counter.getValue();
+					}
+				};
+			}
+
+			EBList<?> found = null;
+			if (mLists != null) {
+				found = mLists.getByName(argument);
+				if (found == null)
+					throw error("There is no list named \"" + argument + "\"");
+			}
+			final EBList<?> list = found;
+
+			if (name.equals("position"))
+				return new Num() {
+					double num() {
+						return list.getLocation();
+					}
+				};
+			return new Text() {
+				Object text() {
+					int at = list.getLocation();
+					return at < 0 || at >= list.size() ? null : list.get(at);
+				}
+			};
+		}
+
+		/** Reads a string literal, where \" and \\ stand for " and \ */
+		private String string() {
+			int start = mPos;
+			mPos++;
+			StringBuilder s = new StringBuilder();
+			while (mPos < mText.length()) {
+				char c = mText.charAt(mPos++);
+				if (c == '"')
+					return s.toString();
+				if (c == '\\' && mPos < mText.length())
+					c = mText.charAt(mPos++);
+				s.append(c);
+			}
+			mPos = start;
+			throw error("The text is missing its closing quote");
+		}
+
+		private void skipSpace() {
+			while (mPos < mText.length()
+					&& Character.isWhitespace(mText.charAt(mPos)))
+				mPos++;
+		}
+
+		private boolean peek(String token) {
+			skipSpace();
+			return mText.startsWith(token, mPos);
+		}
+
+		private boolean accept(String token) {
+			if (peek(token) == false)
+				return false;
+			mPos += token.length();
+			return true;
+		}
+
+		private void expect(String token) {
+			if (accept(token) == false)
+				throw error("Expected \"" + token + "\"");
+		}
+
+		private Num asNum(Node n) {
+			if (n instanceof Num)
+				return (Num) n;
+			throw error("Expected a number");
+		}
+
+		private Bool asBool(Node n) {
+			if (n instanceof Bool)
+				return (Bool) n;
+			throw error("Expected something true or false");
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at character "
+					+ (mPos + 1) + " of the condition: " + mText);
+		}
+	}
+
+	/** Items are compared by their text, so a file matches its path */
+	private static boolean textEquals(Object a, Object b) {
+		if (a == null || b == null)
+			return a == b;
+		if (a instanceof String && b instanceof String)
+			return a.equals(b);
+		return a.toString().equals(b.toString());
+	}
+}
@@ -0,0 +1,170 @@
+package edu.vanderbilt.psychology.model.reactor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.vanderbilt.psychology.model.ListDatabase;
+import edu.vanderbilt.psychology.model.Loop;
+
+/**
+ * Everything a {@link Condition} can ask about while an experiment is being
+ * played: the lists, named counters, whether the last response was correct,
+ * how long the current {@link edu.vanderbilt.psychology.model.Slide} has been
+ * shown, and which pass of its {@link Loop} it is on.
+ *
+ * <p>
+ * Counters and correctness are changed by {@link Action}s, so register this
+ * for {@link ActionType#TYPE_COUNTER_EVENTS} and
+ * {@link ActionType#TYPE_RESPONSE_EVENTS}. A counter {@link Action}'s data is
+ * the counter's name. Counters are created the first time they are named,
+ * starting at zero. The builder creates these {@link Action}s with
+ * {@link edu.vanderbilt.psychology.model.properties.MouseActions#createRecordAction}.
+ * </p>
+ *
+ * <p>
+ * Accessed with {@link #getInstance()}, like the {@link ListDatabase}. Only
+ * used from the event dispatch thread.
+ * </p>
+ *
+ * @author hamiltont
+ *
+ */
+public class ConditionContext implements ActionListener {
+
+	public static final int ACTION_INCREMENT_COUNTER = 0;
+	public static final int ACTION_DECREMENT_COUNTER = 1;
+	public static final int ACTION_RESET_COUNTER = 2;
+
+	public static final int ACTION_MARK_CORRECT = 0;
+	public static final int ACTION_MARK_INCORRECT = 1;
+
+	/** A named whole number, kept so compiled conditions can hold on to it */
+	public static final class Counter {
+		private int mValue = 0;
+
+		public int getValue() {
+			return mValue;
+		}
+
+		public void setValue(int value) {
+			mValue = value;
+		}
+	}
+
+	private static ConditionContext mInstance;
+
+	private ListDatabase mLists = null;
+	private Map<String, Counter> mCounters = new HashMap<String, Counter>();
+	private boolean mLastCorrect = false;
+	private long mSlideShownNanos = System.nanoTime();
+	private int mPass = 1;
+
+	public static ConditionContext getInstance() {
+		if (mInstance == null)
+			mInstance = new ConditionContext();
+		return mInstance;
+	}
+
+	/**
+	 * Forgets everything from the last experiment played: the lists, every
+	 * counter and the last response. {@link Condition}s compiled before this
+	 * must be compiled again
+	 */
+	public void reset() {
+		mLists = null;
+		mCounters = new HashMap<String, Counter>();
+		mLastCorrect = false;
+		slideShown(1);
+	}
+
+	/**
+	 * @return the lists conditions refer to, which are those of
+	 *         {@link ListDatabase#getInstance()} unless set otherwise
+	 */
+	public ListDatabase getLists() {
+		return mLists == null ? ListDatabase.getInstance() : mLists;
+	}
+
+	/**
+	 * Sets the lists conditions refer to, such as the ones loaded with the
+	 * experiment being played. Must be called before any {@link Condition} is
+	 * compiled
+	 */
+	public void setLists(ListDatabase lists) {
+		mLists = lists;
+	}
+
+	/**
+	 * @return the counter with this name, created if there is none yet
+	 */
+	public Counter getCounter(String name) {
+		Counter c = mCounters.get(name);
+		if (c == null) {
+			c = new Counter();
+			mCounters.put(name, c);
+		}
+		return c;
+	}
+
+	public boolean isLastResponseCorrect() {
+		return mLastCorrect;
+	}
+
+	public void setLastResponseCorrect(boolean correct) {
+		mLastCorrect = correct;
+	}
+
+	/**
+	 * Call as each {@link edu.vanderbilt.psychology.model.Slide} is shown, to
+	 * restart the time {@link #getElapsedMillis()} counts from
+	 *
+	 * @param pass
+	 *            which pass of the {@link Loop} this is, counting from 1, or 1
+	 *            if the slide is not repeated
+	 */
+	public void slideShown(int pass) {
+		mSlideShownNanos = System.nanoTime();
+		mPass = pass;
+	}
+
+	/** @return the milliseconds since the current slide was shown */
+	public long getElapsedMillis() {
+		return (System.nanoTime() - mSlideShownNanos) / 1000000L;
+	}
+
+	/** @see Loop.Run#getPass() */
+	public int getPass() {
+		return mPass;
+	}
+
+	@Override
+	public void receiveAction(Action e) {
+		if (ActionType.TYPE_RESPONSE_EVENTS.equals(e.getType())) {
+			switch (e.getActionCode()) {
+			case ACTION_MARK_CORRECT:
+				mLastCorrect = true;
+				break;
+			case ACTION_MARK_INCORRECT:
+				mLastCorrect = false;
+				break;
+			}
+			return;
+		}
+
+		if (e.getData() == null || (e.getData() instanceof String) == false)
+			return;
+
+		Counter c = getCounter((String) e.getData());
+		switch (e.getActionCode()) {
+		case ACTION_INCREMENT_COUNTER:
+			c.mValue++;
+			break;
+		case ACTION_DECREMENT_COUNTER:
+			c.mValue--;
+			break;
+		case ACTION_RESET_COUNTER:
+			c.mValue = 0;
+			break;
+		}
+	}
+}
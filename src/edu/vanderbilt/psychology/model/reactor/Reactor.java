@@ -3,11 +3,14 @@ package edu.vanderbilt.psychology.model.reactor;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.JComponent;
 
 import edu.vanderbilt.psychology.gui.slideElements.SlideElement;
+import edu.vanderbilt.psychology.model.Experiment;
 import edu.vanderbilt.psychology.model.elements.ModelElement;
 import edu.vanderbilt.psychology.player.EventManager;
 
@@ -26,10 +29,13 @@ import edu.vanderbilt.psychology.player.EventManager;
  * deserialized, the {@link ModelElement} reference contained in this object can
  * be used to link this with the appropriately created {@link JComponent}.
  * 
+ * A {@link Reactor} may have a {@link Condition}, in which case its
+ * {@link Action}s are only fired when the {@link Condition} is met at the time
+ * of the trigger.
+ * 
  * @author hamiltont
  * 
  */
-// TODO - add in conditions. See issue #7
 public class Reactor implements ActionListener {
 
 	public static final int TRIGGER_ON_MOUSE_ENTER = 1 << 0;
@@ -40,8 +46,21 @@ public class Reactor implements ActionListener {
 	private List<Action> mEventsToFire;
 	private int mTrigger;
 
+	/** Must be met for the {@link Action}s to fire, or null to always fire */
+	private Condition mCondition = null;
+
 	public Reactor(SlideElement element, int triggerOfInterest, Action... eventToFire) {
+		this(element.getModel(), triggerOfInterest, eventToFire);
 		mSlideElement = element;
+	}
+
+	/**
+	 * Builds a {@link Reactor} straight from a {@link ModelElement}, without a
+	 * {@link SlideElement}, such as when generating an {@link Experiment} from
+	 * a script
+	 */
+	public Reactor(ModelElement element, int triggerOfInterest,
+			Action... eventToFire) {
 		mEventsToFire = new ArrayList<Action>(eventToFire.length);
 		for (Action e : eventToFire)
 			mEventsToFire.add(e);
@@ -52,8 +71,7 @@ public class Reactor implements ActionListener {
 					"The provided trigger does not exist");
 
 		mTrigger = triggerOfInterest;
-		mModelElement = element.getModel();
-
+		mModelElement = element;
 	}
 
 	/**
@@ -90,8 +108,7 @@ public class Reactor implements ActionListener {
 
 				@Override
 				public void mouseEntered(MouseEvent arg0) {
-					for (Action e : mEventsToFire)
-						EventManager.getInstance().sendEvent(e);
+					fire();
 				}
 
 				@Override
@@ -108,10 +125,70 @@ public class Reactor implements ActionListener {
 		return true;
 	}
 
+	/**
+	 * Sends each {@link Action} to the {@link EventManager}, if the
+	 * {@link Condition} (if any) is met
+	 */
+	private void fire() {
+		if (mCondition != null && mCondition.isMet() == false)
+			return;
+
+		for (Action e : mEventsToFire)
+			EventManager.getInstance().sendEvent(e);
+	}
+
+	/**
+	 * Makes a copy of this {@link Reactor} for a copied {@link Slide}, pointing
+	 * at the copies of the {@link ModelElement}s instead of the originals
+	 * 
+	 * @param copies
+	 *            from each original {@link ModelElement} to its copy. Anything
+	 *            not in here is kept as it is
+	 */
+	public Reactor copy(Map<ModelElement, ModelElement> copies) {
+		Action[] actions = new Action[mEventsToFire.size()];
+		for (int i = 0; i < actions.length; i++) {
+			Action a = mEventsToFire.get(i);
+			actions[i] = new Action(a.getType(), a.getActionCode(), copyOf(
+					a.getModel(), copies), a.getData());
+		}
+
+		// A condition never changes, so the copy can share it
+		Reactor copy = new Reactor(copyOf(mModelElement, copies), mTrigger,
+				actions);
+		copy.mCondition = mCondition;
+		return copy;
+	}
+
+	private static ModelElement copyOf(ModelElement me,
+			Map<ModelElement, ModelElement> copies) {
+		ModelElement copy = copies.get(me);
+		return copy == null ? me : copy;
+	}
+
 	public SlideElement getSlideElement() {
 		return mSlideElement;
 	}
 
+	/** @return the {@link Action}s fired when this is triggered */
+	public List<Action> getActions() {
+		return Collections.unmodifiableList(mEventsToFire);
+	}
+
+	/** @return the {@link Condition} that must be met to fire, or null */
+	public Condition getCondition() {
+		return mCondition;
+	}
+
+	/**
+	 * @param condition
+	 *            must be met for the {@link Action}s to fire, or null to always
+	 *            fire them
+	 */
+	public void setCondition(Condition condition) {
+		mCondition = condition;
+	}
+
 	public ModelElement getModelElement() {
 		return mModelElement;
 	}
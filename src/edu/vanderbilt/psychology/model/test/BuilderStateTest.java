@@ -0,0 +1,114 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.controller.SelectionManager;
+import edu.vanderbilt.psychology.gui.main.StageWrapper;
+import edu.vanderbilt.psychology.gui.slideElements.ImageElement;
+import edu.vanderbilt.psychology.gui.sideBar.PreviewPanel;
+import edu.vanderbilt.psychology.gui.sideBar.SectionedPanel;
+import edu.vanderbilt.psychology.model.BuilderState;
+import edu.vanderbilt.psychology.model.Loop;
+import edu.vanderbilt.psychology.model.elements.ImageElementModel;
+import edu.vanderbilt.psychology.model.properties.DataSource;
+
+/**
+ *
+ * @author hamiltont
+ *
+ */
+public class BuilderStateTest {
+
+	private StageWrapper stage_;
+	private BuilderState state_;
+
+	@Before
+	public void setUp() {
+		stage_ = new StageWrapper(null);
+		new SelectionManager(new PreviewPanel(stage_), new SectionedPanel());
+		state_ = new BuilderState(stage_);
+	}
+
+	@Test
+	public void testUndoRedo() {
+		assertFalse(state_.canUndo());
+
+		state_.addNewSlide();
+		state_.addNewSlide();
+		assertEquals(3, state_.getExperiment().getSize());
+		assertTrue(state_.canUndo());
+
+		assertTrue(state_.undo());
+		assertEquals(2, state_.getExperiment().getSize());
+		assertTrue(state_.undo());
+		assertEquals(1, state_.getExperiment().getSize());
+		assertFalse(state_.undo());
+
+		assertTrue(state_.redo());
+		assertEquals(2, state_.getExperiment().getSize());
+		assertTrue(state_.canRedo());
+		assertSame(state_.getExperiment().snapshot(), state_.getSnapshot());
+	}
+
+	@Test
+	public void testEditClearsRedo() {
+		state_.addNewSlide();
+		assertTrue(state_.undo());
+		assertTrue(state_.canRedo());
+
+		Loop loop = new Loop(3, null);
+		state_.setLoop(0, loop);
+		assertFalse(state_.canRedo());
+		assertFalse(state_.redo());
+		assertEquals(1, state_.getExperiment().getSize());
+
+		assertTrue(state_.undo());
+		assertNull(state_.getExperiment().getSlide(0).getLoop());
+		assertTrue(state_.redo());
+		assertSame(loop, state_.getExperiment().getSlide(0).getLoop());
+	}
+
+	@Test
+	public void testShowCopiedImageSlide() throws IOException {
+		File source = File.createTempFile("eb-test", ".png");
+		source.deleteOnExit();
+		ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB),
+				"png", source);
+
+		ImageElementModel image = new ImageElementModel(new DataSource(source
+				.getAbsolutePath(), DataSource.Type.Single_File),
+				new Dimension(20, 15));
+		image.addGuiProperties(1, new Point(5, 6));
+		state_.getExperiment().getSlide(0).saveElement(image);
+
+		// Showing the copy unshares it, which rebuilds its elements
+		state_.copySlide(0, 1);
+		state_.setCurrentSlide(1);
+
+		ImageElement shown = null;
+		for (Component c : stage_.getComponents())
+			if (c instanceof ImageElement)
+				shown = (ImageElement) c;
+
+		assertTrue(shown != null);
+		assertEquals(new Point(5, 6), shown.getLocation());
+		assertEquals(new Dimension(20, 15), shown.getSize());
+		assertEquals(source.getName(), shown.getElementName());
+	}
+}
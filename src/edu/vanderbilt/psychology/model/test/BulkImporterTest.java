@@ -0,0 +1,88 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.model.EBList;
+import edu.vanderbilt.psychology.model.media.BulkImporter;
+
+/**
+ *
+ * @author hamiltont
+ *
+ */
+public class BulkImporterTest {
+
+	@Test
+	public void testRun() throws IOException {
+		File root = File.createTempFile("bulk", "");
+		root.delete();
+		root.mkdir();
+		File sub = new File(root, "sub");
+		sub.mkdir();
+
+		File[] images = new File[] { new File(root, "b.png"),
+				new File(root, "c.png"), new File(sub, "a.png") };
+		for (File f : images)
+			ImageIO.write(new BufferedImage(20, 10,
+					BufferedImage.TYPE_INT_RGB), "png", f);
+
+		FileWriter w = new FileWriter(new File(root, "a.png"));
+		w.write("not an image");
+		w.close();
+		new File(root, "notes.txt").createNewFile();
+
+		// Files in a folder come before its sub-folders
+		assertEquals(4, BulkImporter.findImages(root).size());
+		assertEquals(new File(root, "a.png"), BulkImporter.findImages(root)
+				.get(0));
+
+		BulkImporter importer = new BulkImporter(root, "images", 2);
+		importer.setMakeThumbnails(false);
+		EBList<File> list = importer.run(null);
+
+		assertEquals("images", list.getName());
+		assertEquals(3, list.size());
+		for (int i = 0; i < images.length; i++)
+			assertEquals(images[i], list.get(i));
+
+		assertEquals(1, importer.getProblems().size());
+		assertEquals(4, importer.getDoneCount());
+
+		for (File f : images)
+			f.delete();
+		new File(root, "a.png").delete();
+		new File(root, "notes.txt").delete();
+		sub.delete();
+		root.delete();
+	}
+
+	@Test
+	public void testReimport() throws IOException {
+		File root = File.createTempFile("bulk", "");
+		root.delete();
+		root.mkdir();
+		File image = new File(root, "a.png");
+		ImageIO.write(new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB),
+				"png", image);
+
+		// The second import finds the thumbnail in the cache, and must treat
+		// it exactly like a freshly decoded one
+		for (int i = 0; i < 2; i++) {
+			BulkImporter importer = new BulkImporter(root, "images", 1);
+			assertEquals(1, importer.run(null).size());
+			assertEquals(0, importer.getProblems().size());
+		}
+
+		image.delete();
+		root.delete();
+	}
+}
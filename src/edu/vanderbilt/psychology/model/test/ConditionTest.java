@@ -0,0 +1,122 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.model.EBList;
+import edu.vanderbilt.psychology.model.ListDatabase;
+import edu.vanderbilt.psychology.model.properties.MouseActions;
+import edu.vanderbilt.psychology.model.reactor.Action;
+import edu.vanderbilt.psychology.model.reactor.ActionType;
+import edu.vanderbilt.psychology.model.reactor.Condition;
+import edu.vanderbilt.psychology.model.reactor.ConditionContext;
+
+/**
+ *
+ * @author hamiltont
+ *
+ */
+public class ConditionTest {
+
+	@Before
+	public void setUp() {
+		ConditionContext.getInstance().reset();
+	}
+
+	@Test
+	public void testIsMet() {
+		EBList<String> words = new EBList<String>("words");
+		words.add("cat");
+		words.add("dog");
+		ListDatabase lists = new ListDatabase();
+		lists.addStringList(words);
+
+		ConditionContext context = ConditionContext.getInstance();
+		context.setLists(lists);
+		context.slideShown(1);
+
+		Condition streak = new Condition(
+				"correct && counter(\"streak\") >= 2 || item(\"words\") == \"dog\"");
+		Condition math = new Condition("-(position(\"words\") + 1) * 2 % 3 != 1 && !false");
+		streak.compile();
+
+		assertFalse(streak.isMet());
+		context.setLastResponseCorrect(true);
+		context.receiveAction(new Action(ActionType.TYPE_COUNTER_EVENTS,
+				ConditionContext.ACTION_INCREMENT_COUNTER, null, "streak"));
+		assertFalse(streak.isMet());
+		context.receiveAction(new Action(ActionType.TYPE_COUNTER_EVENTS,
+				ConditionContext.ACTION_INCREMENT_COUNTER, null, "streak"));
+		assertTrue(streak.isMet());
+
+		context.receiveAction(new Action(ActionType.TYPE_RESPONSE_EVENTS,
+				ConditionContext.ACTION_MARK_INCORRECT, null, null));
+		assertFalse(streak.isMet());
+		words.incrementPosition();
+		assertTrue(streak.isMet());
+
+		// -(1 + 1) * 2 % 3 is -1
+		assertTrue(math.isMet());
+		assertTrue(new Condition("elapsed >= 0 && pass == 1").isMet());
+	}
+
+	@Test
+	public void testErrors() {
+		ListDatabase lists = new ListDatabase();
+		lists.addStringList(new EBList<String>("words"));
+
+		String[] bad = { "", "1 +", "counter(\"a\")", "item(\"words\") < \"b\"",
+				"item(\"words\") == 1", "(true", "\"open", "true false",
+				"unknown > 1", "item(\"missing\") == \"a\"" };
+		for (String source : bad)
+			try {
+				Condition.check(source, lists);
+				fail("\"" + source + "\" should not compile");
+			} catch (IllegalArgumentException expected) {
+			}
+
+		Condition.check("item(\"missing\") == \"a\"", null);
+		Condition.check("position(\"words\") <= 3 || elapsed > 1.5", lists);
+	}
+
+	@Test
+	public void testRecordActions() {
+		ConditionContext context = ConditionContext.getInstance();
+		Condition streak = new Condition("correct && counter(\"streak\") == 2");
+		streak.compile();
+
+		int[] choices = { MouseActions.RECORD_CORRECT,
+				MouseActions.RECORD_INCREMENT_COUNTER,
+				MouseActions.RECORD_INCREMENT_COUNTER };
+		for (int choice : choices)
+			context.receiveAction(MouseActions.createRecordAction(choice,
+					"streak", null));
+		assertTrue(streak.isMet());
+
+		context.receiveAction(MouseActions.createRecordAction(
+				MouseActions.RECORD_DECREMENT_COUNTER, "streak", null));
+		assertFalse(streak.isMet());
+		assertNull(MouseActions.createRecordAction(
+				MouseActions.RECORD_NOTHING, "streak", null));
+
+		// Nothing is left over for the next experiment
+		context.receiveAction(MouseActions.createRecordAction(
+				MouseActions.RECORD_INCREMENT_COUNTER, "streak", null));
+		context.reset();
+		streak.compile();
+		assertFalse(context.isLastResponseCorrect());
+		assertEquals(0, context.getCounter("streak").getValue());
+		assertFalse(streak.isMet());
+
+		// Compiled again, it reads the new counter rather than the old one
+		context.setLastResponseCorrect(true);
+		context.getCounter("streak").setValue(2);
+		assertTrue(streak.isMet());
+	}
+}
@@ -0,0 +1,151 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.JComponent;
+
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.gui.slideElements.SlideElement;
+import edu.vanderbilt.psychology.model.EBList;
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.ExperimentIndex;
+import edu.vanderbilt.psychology.model.ListDatabase;
+import edu.vanderbilt.psychology.model.MutableInt;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.elements.ModelElement;
+import edu.vanderbilt.psychology.model.properties.DataSource;
+import edu.vanderbilt.psychology.model.properties.Property;
+
+/**
+ * 
+ * @author hamiltont
+ * 
+ */
+public class ExperimentIndexTest {
+
+	/** A {@link ModelElement} with nothing but a {@link DataSource} */
+	private static class DataElement extends ModelElement {
+		private List<Property> properties_ = new ArrayList<Property>();
+
+		public DataElement(DataSource ds) {
+			properties_.add(ds);
+		}
+
+		@Override
+		public SlideElement getInitializedSlideElement() {
+			return null;
+		}
+
+		@Override
+		public JComponent getJComponent(MutableInt outputLayer) {
+			return null;
+		}
+
+		@Override
+		public List<Property> getProperties() {
+			return properties_;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testIncrementalUpdates() {
+		EBList<File> faces = new EBList<File>("indexTestFaces");
+		faces.add(new File("/stimuli/happy_face.png"));
+		ListDatabase.getInstance().addFileReferenceList(faces);
+
+		Experiment e = new Experiment();
+		for (int i = 0; i < 200; i++) {
+			Slide s = new Slide();
+			if (i % 10 == 0)
+				s.saveElement(new DataElement(new DataSource(
+						(EBList) faces, DataSource.Type.Multiple_Files)));
+			else
+				s.saveElement(new DataElement(new DataSource("Press the "
+						+ (i % 2 == 0 ? "red" : "blue") + " button",
+						DataSource.Type.Single_String)));
+			e.saveSlide(s, i);
+		}
+
+		ExperimentIndex index = e.getIndex();
+		assertEquals(200, index.getReindexCount());
+		assertEquals(20, index.getSlidesUsingList("indexTestFaces").size());
+		assertEquals(20, index.getSlidesUsingFile(
+				new File("/stimuli/happy_face.png")).size());
+		assertEquals(80, index.find("red button").size());
+		assertEquals(20, index.find("happy").size());
+		assertEquals(0, index.find("red happy").size());
+
+		// Only the changed slide is indexed again
+		Slide changed = new Slide();
+		changed.saveElement(new DataElement(new DataSource("green",
+				DataSource.Type.Single_String)));
+		long id = e.getSlide(3).getId();
+		e.saveSlide(changed, 3);
+		e.getIndex();
+		assertEquals(201, index.getReindexCount());
+		assertEquals(1, index.find("green").size());
+		assertEquals(3, index.find("green").get(0).getPosition());
+		assertEquals(99, index.find("blue").size());
+
+		e.moveSlide(3, 0);
+		assertEquals(0, e.getIndex().find("green").get(0).getPosition());
+		assertEquals(201, index.getReindexCount());
+
+		e.removeSlide(0);
+		assertEquals(0, e.getIndex().find("green").size());
+		assertEquals(Arrays.asList(), index.getSlidesUsing("text:green"));
+		assertTrue(id != 0);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testRenameList() {
+		EBList<File> list = new EBList<File>("indexTestOld");
+		ListDatabase.getInstance().addFileReferenceList(list);
+		EBList<File> other = new EBList<File>("indexTestTaken");
+		ListDatabase.getInstance().addFileReferenceList(other);
+
+		Experiment e = new Experiment();
+		Slide s = new Slide();
+		s.saveElement(new DataElement(new DataSource((EBList) list,
+				DataSource.Type.Multiple_Files)));
+		e.saveSlide(s, 0);
+
+		try {
+			e.renameList("indexTestOld", "indexTestTaken");
+			assertTrue("Renamed over an existing list", false);
+		} catch (IllegalArgumentException ex) {
+		}
+
+		assertEquals(1, e.renameList("indexTestOld", "indexTestNew").size());
+		assertEquals("indexTestNew", list.getName());
+		assertEquals(0, e.getIndex().getSlidesUsingList("indexTestOld").size());
+		assertEquals(1, e.getIndex().getSlidesUsingList("indexTestNew").size());
+
+		// With two lists of one name there is no telling which is meant
+		EBList<File> twin = new EBList<File>("indexTestNew");
+		ListDatabase.getInstance().addFileReferenceList(twin);
+		Slide t = new Slide();
+		t.saveElement(new DataElement(new DataSource((EBList) twin,
+				DataSource.Type.Multiple_Files)));
+		e.saveSlide(t, 1);
+
+		assertEquals(2, e.getIndex().getSlidesUsingList("indexTestNew").size());
+		assertEquals(1, e.getIndex().getSlidesUsingList(twin).size());
+		try {
+			e.renameList("indexTestNew", "indexTestOther");
+			assertTrue("Renamed an ambiguous list", false);
+		} catch (IllegalArgumentException ex) {
+		}
+		assertEquals("indexTestNew", list.getName());
+		assertEquals("indexTestNew", twin.getName());
+	}
+}
@@ -0,0 +1,70 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.model.EBList;
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.ExperimentReader;
+import edu.vanderbilt.psychology.model.ExperimentWriter;
+import edu.vanderbilt.psychology.model.ListDatabase;
+import edu.vanderbilt.psychology.model.Slide;
+
+/**
+ * 
+ * @author hamiltont
+ * 
+ */
+public class ExperimentReaderTest {
+
+	@Test
+	public void testReadSavedExperiment() throws IOException {
+		File file = File.createTempFile("reader", ".xml");
+		file.deleteOnExit();
+
+		ListDatabase lists = new ListDatabase();
+		EBList<String> words = new EBList<String>("readerTestWords");
+		words.add("apple");
+		lists.addStringList(words);
+
+		Experiment e = new Experiment(lists);
+		for (int i = 0; i < 50; i++)
+			e.saveSlide(new Slide(), i);
+		e.moveSlide(0, 49);
+		e.saveExperimentToDisk(file);
+
+		ExperimentReader in = new ExperimentReader(file);
+		assertEquals("apple", in.getListDatabase().getByName(
+				"readerTestWords").get(0));
+
+		// Slides come back in order, keeping their ids
+		for (int i = 0; i < 50; i++)
+			assertEquals(e.getSlide(i).getId(), in.readSlide().getId());
+		assertNull(in.readSlide());
+		assertEquals(50, in.getSlideCount());
+	}
+
+	@Test
+	public void testReadWrittenExperiment() throws IOException {
+		File file = File.createTempFile("reader", ".xml");
+		file.deleteOnExit();
+
+		ExperimentWriter out = new ExperimentWriter(file);
+		out.addStringList(new EBList<String>("readerTestEmpty"));
+		for (int i = 0; i < 10; i++)
+			out.writeSlide(new Slide());
+		out.close();
+
+		ExperimentReader in = new ExperimentReader(file);
+		assertEquals(1, in.getListDatabase().getNames().size());
+		Slide s;
+		while ((s = in.readSlide()) != null)
+			assertEquals(in.getSlideCount(), s.getId());
+		assertEquals(10, in.getSlideCount());
+	}
+}
@@ -5,8 +5,21 @@ package edu.vanderbilt.psychology.model.test;
 
 import static org.junit.Assert.*;
 
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Point;
+
 import org.junit.Test;
 
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.ExperimentSnapshot;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.elements.ImageElementModel;
+import edu.vanderbilt.psychology.model.elements.TextModelElement;
+import edu.vanderbilt.psychology.model.properties.DataSource;
+import edu.vanderbilt.psychology.model.properties.Property;
+
 /**
  * @author Hamilton Turner
  *
@@ -29,4 +42,89 @@ public class ExperimentTest {
 		fail("Not yet implemented");
 	}
 
+	/**
+	 * Test method for {@link edu.vanderbilt.psychology.model.Experiment#snapshot()}
+	 * and {@link edu.vanderbilt.psychology.model.Experiment#restore(ExperimentSnapshot)}.
+	 */
+	@Test
+	public void testSnapshotAndRestore() {
+		Experiment e = new Experiment();
+		Slide first = e.getSlide(0);
+		ExperimentSnapshot empty = e.snapshot();
+		assertSame(empty, e.snapshot());
+
+		TextModelElement text = new TextModelElement("Hello", new Font(
+				"Dialog", Font.PLAIN, 12), Color.BLACK);
+		text.addGuiProperties(1, new Point(5, 5));
+		first.saveElement(text);
+		e.saveSlide(first, 0);
+		e.saveSlide(new Slide(), 1);
+		ExperimentSnapshot two = e.snapshot();
+		assertNotSame(empty, two);
+		assertEquals(2, two.getSize());
+		assertEquals(1, two.getSlide(0).getElements().size());
+
+		// Only the last save of a slide is in a snapshot
+		first.clearElements();
+		assertEquals(1, e.snapshot().getSlide(0).getElements().size());
+
+		// The slide still here is changed in place and keeps its id
+		e.restore(empty);
+		assertEquals(1, e.getSize());
+		assertSame(first, e.getSlide(0));
+		assertEquals(0, first.getModelElements().size());
+
+		// The removed slide comes back with its old id
+		long secondId = two.getSlide(1).getId();
+		e.restore(two);
+		assertEquals(2, e.getSize());
+		assertSame(first, e.getSlide(0));
+		assertEquals(1, first.getModelElements().size());
+		assertEquals(secondId, e.getSlide(1).getId());
+		assertSame(two, e.snapshot());
+	}
+
+	/**
+	 * Test method for {@link edu.vanderbilt.psychology.model.Experiment#restore(ExperimentSnapshot)}
+	 * after an element was edited in place.
+	 */
+	@Test
+	public void testRestoreElementContents() {
+		Experiment e = new Experiment();
+		Slide s = e.getSlide(0);
+
+		ImageElementModel image = new ImageElementModel(new DataSource(
+				"/tmp/a.png", DataSource.Type.Single_File), new Dimension(20,
+				10));
+		image.addGuiProperties(1, new Point(5, 5));
+		s.saveElement(image);
+		e.saveSlide(s, 0);
+		ExperimentSnapshot before = e.snapshot();
+
+		// Resize the element and point it at another file
+		image.setSize(new Dimension(40, 30));
+		DataSource ds = Property.edit(image.getProperties(), image
+				.getDataSource());
+		ds.setDataSource("/tmp/b.png", DataSource.Type.Single_File);
+		e.saveSlide(s, 0);
+		ExperimentSnapshot after = e.snapshot();
+		assertNotSame(before.getSlide(0), after.getSlide(0));
+
+		// The snapshot kept its own copy of the element
+		ImageElementModel saved = (ImageElementModel) before.getSlide(0)
+				.getElements().get(0).getContent();
+		assertEquals(new Dimension(20, 10), saved.getSize());
+		assertEquals("/tmp/a.png", saved.getDataSource().getData());
+
+		// Undo changes the same element back
+		e.restore(before);
+		assertSame(image, s.getModelElements().iterator().next());
+		assertEquals(new Dimension(20, 10), image.getSize());
+		assertEquals("/tmp/a.png", image.getDataSource().getData());
+
+		e.restore(after);
+		assertEquals(new Dimension(40, 30), image.getSize());
+		assertEquals("/tmp/b.png", image.getDataSource().getData());
+	}
+
 }
@@ -0,0 +1,151 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Point;
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.model.EBList;
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.ExperimentValidator;
+import edu.vanderbilt.psychology.model.ListDatabase;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.ExperimentValidator.Problem;
+import edu.vanderbilt.psychology.model.elements.ImageElementModel;
+import edu.vanderbilt.psychology.model.elements.ModelElement;
+import edu.vanderbilt.psychology.model.elements.TextModelElement;
+import edu.vanderbilt.psychology.model.media.MediaResolver;
+import edu.vanderbilt.psychology.model.properties.DataSource;
+import edu.vanderbilt.psychology.model.reactor.Action;
+import edu.vanderbilt.psychology.model.reactor.ActionType;
+import edu.vanderbilt.psychology.model.reactor.Reactor;
+
+/**
+ * 
+ * @author hamiltont
+ * 
+ */
+public class ExperimentValidatorTest {
+
+	private static final Font FONT = new Font("Dialog", Font.PLAIN, 12);
+
+	/**
+	 * Builds a {@link Slide} with a text element that advances to the next
+	 * {@link Slide}, and also fires the given {@link Action}s
+	 */
+	private static Slide advancing(ModelElement shown, Action... also) {
+		Slide s = new Slide();
+		TextModelElement next = new TextModelElement("Next", FONT, Color.BLACK);
+		next.addGuiProperties(1, new Point(0, 0));
+		s.saveElement(next);
+		if (shown != null)
+			s.saveElement(shown);
+
+		Action[] actions = new Action[also.length + 1];
+		actions[0] = new Action(ActionType.TYPE_SLIDE_EVENTS,
+				Slide.ACTION_ADVANCE_TO_NEXT_SLIDE, next, null);
+		System.arraycopy(also, 0, actions, 1, also.length);
+		s.addEventReactor(new Reactor(next, Reactor.TRIGGER_ON_MOUSE_ENTER,
+				actions));
+		return s;
+	}
+
+	private static List<Problem> validate(Experiment e) throws Exception {
+		return new ExperimentValidator(2, null).validate(e);
+	}
+
+	@Test
+	public void testValidExperiment() throws Exception {
+		Experiment e = new Experiment(new ListDatabase());
+		for (int i = 0; i < 1000; i++)
+			e.saveSlide(advancing(null), i);
+
+		assertTrue(validate(e).isEmpty());
+	}
+
+	@Test
+	public void testDanglingReactorMakesLaterSlidesUnreachable()
+			throws Exception {
+		Experiment e = new Experiment(new ListDatabase());
+		e.saveSlide(advancing(null), 0);
+
+		// Listens to an element that was left on another slide
+		Slide broken = new Slide();
+		broken.addEventReactor(new Reactor(new TextModelElement("Gone", FONT,
+				Color.BLACK), Reactor.TRIGGER_ON_MOUSE_ENTER, new Action(
+				ActionType.TYPE_SLIDE_EVENTS,
+				Slide.ACTION_ADVANCE_TO_NEXT_SLIDE, null, null)));
+		e.saveSlide(broken, 1);
+		e.saveSlide(advancing(null), 2);
+		e.saveSlide(advancing(null), 3);
+
+		List<Problem> problems = validate(e);
+		assertEquals(3, problems.size());
+		assertEquals(Problem.Kind.DANGLING_REFERENCE, problems.get(0).getKind());
+		assertEquals(1, problems.get(0).getPosition());
+		assertEquals(Problem.Kind.UNREACHABLE_SLIDE, problems.get(1).getKind());
+		assertEquals(2, problems.get(1).getPosition());
+		assertEquals(3, problems.get(2).getPosition());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testListPositions() throws Exception {
+		ListDatabase lists = new ListDatabase();
+		EBList<String> words = new EBList<String>("validatorTestWords");
+		words.add("one");
+		words.add("two");
+		lists.addStringList(words);
+
+		// Actions name a list, and the player moves the first one with that
+		// name, never this one
+		EBList<String> twin = new EBList<String>("validatorTestWords");
+		for (int i = 0; i < 5; i++)
+			twin.add("twin " + i);
+		lists.addStringList(twin);
+
+		Experiment e = new Experiment(lists);
+		for (int i = 0; i < 3; i++) {
+			// Shows the current word, then moves on to the next one
+			ImageElementModel shown = new ImageElementModel(new DataSource(
+					(EBList) words, DataSource.Type.Multiple_Strings),
+					new Dimension(10, 10));
+			e.saveSlide(advancing(shown, new Action(
+					ActionType.TYPE_LIST_EVENTS,
+					ListDatabase.ACTION_ADVANCE_LIST_POSITION_ONE, null,
+					"validatorTestWords")), i);
+		}
+		e.saveSlide(advancing(null, new Action(ActionType.TYPE_LIST_EVENTS,
+				ListDatabase.ACTION_ADVANCE_LIST_POSITION_ONE, null,
+				"noSuchList")), 3);
+
+		List<Problem> problems = validate(e);
+		assertEquals(2, problems.size());
+		assertEquals(Problem.Kind.LIST_OUT_OF_RANGE, problems.get(0).getKind());
+		assertEquals(2, problems.get(0).getPosition());
+		assertEquals(Problem.Kind.UNKNOWN_LIST, problems.get(1).getKind());
+		assertEquals(3, problems.get(1).getPosition());
+	}
+
+	@Test
+	public void testMissingMedia() throws Exception {
+		Experiment e = new Experiment(new ListDatabase());
+		e.saveSlide(advancing(null), 0);
+		e.saveSlide(advancing(new ImageElementModel(new DataSource(new File(
+				"/no/such/image.png").getAbsolutePath(),
+				DataSource.Type.Single_File), new Dimension(10, 10))), 1);
+
+		List<Problem> problems = new ExperimentValidator(2,
+				new MediaResolver(2)).validate(e);
+		assertEquals(1, problems.size());
+		assertEquals(Problem.Kind.BAD_MEDIA, problems.get(0).getKind());
+		assertEquals(1, problems.get(0).getPosition());
+	}
+}
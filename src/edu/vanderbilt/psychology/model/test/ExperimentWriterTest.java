@@ -0,0 +1,178 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Point;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.thoughtworks.xstream.converters.ConversionException;
+
+import edu.vanderbilt.psychology.model.EBList;
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.ExperimentReader;
+import edu.vanderbilt.psychology.model.ExperimentWriter;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.elements.ImageElementModel;
+import edu.vanderbilt.psychology.model.elements.ModelElement;
+import edu.vanderbilt.psychology.model.elements.TextModelElement;
+import edu.vanderbilt.psychology.model.properties.DataSource;
+import edu.vanderbilt.psychology.model.reactor.Action;
+import edu.vanderbilt.psychology.model.reactor.ActionType;
+import edu.vanderbilt.psychology.model.reactor.Reactor;
+
+/**
+ * 
+ * @author hamiltont
+ * 
+ */
+public class ExperimentWriterTest {
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testWriteAndLoad() throws IOException {
+		File file = File.createTempFile("writer", ".xml");
+		file.deleteOnExit();
+
+		EBList<File> faces = new EBList<File>("writerTestFaces");
+		faces.add(new File("/stimuli/a.png"));
+		faces.add(new File("/stimuli/b.png"));
+
+		ExperimentWriter out = new ExperimentWriter(file);
+		out.addFileReferenceList(faces);
+
+		Font font = new Font("Serif", Font.PLAIN, 24);
+		for (int i = 0; i < 500; i++) {
+			Slide s = new Slide();
+
+			TextModelElement prompt = new TextModelElement("Trial " + i,
+					font, Color.BLACK);
+			prompt.addGuiProperties(1, new Point(10, 20));
+			s.saveElement(prompt);
+
+			ImageElementModel image = new ImageElementModel(new DataSource(
+					(EBList) faces, DataSource.Type.Multiple_Files),
+					new Dimension(100, 80));
+			image.addGuiProperties(2, new Point(200, 200));
+			s.saveElement(image);
+
+			s.addEventReactor(new Reactor(image,
+					Reactor.TRIGGER_ON_MOUSE_ENTER, new Action(
+							ActionType.TYPE_SLIDE_EVENTS,
+							Slide.ACTION_ADVANCE_TO_NEXT_SLIDE, image, null)));
+
+			out.writeSlide(s);
+		}
+		out.close();
+		assertEquals(500, out.getSlideCount());
+
+		Experiment e = Experiment.loadExperiment(file);
+		assertEquals(500, e.getSize());
+
+		EBList<File> loadedFaces = e.getListDatabase().getByName(
+				"writerTestFaces");
+		assertEquals(2, loadedFaces.size());
+
+		Slide last = e.getSlide(499);
+		assertEquals(500, last.getId());
+		assertEquals(2, last.getModelElements().size());
+		for (ModelElement me : last.getModelElements()) {
+			if (me instanceof TextModelElement)
+				assertEquals("Trial 499", ((TextModelElement) me).getText());
+			else
+				// Every slide points at the one list in the database
+				assertSame(loadedFaces, ((ImageElementModel) me)
+						.getDataSource().getListData());
+		}
+
+		Reactor r = last.getEventReactors().get(0);
+		assertSame(ImageElementModel.class, r.getModelElement().getClass());
+		assertEquals(1, r.getActions().size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testListsMustComeFirst() throws IOException {
+		File file = File.createTempFile("writer", ".xml");
+		file.deleteOnExit();
+
+		ExperimentWriter out = new ExperimentWriter(file);
+		out.writeSlide(new Slide());
+		try {
+			out.addStringList(new EBList<String>("late"));
+		} finally {
+			out.close();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testUnknownList() throws IOException {
+		File file = File.createTempFile("writer", ".xml");
+		file.deleteOnExit();
+
+		EBList<File> added = new EBList<File>("added");
+		added.add(new File("/stimuli/a.png"));
+		EBList<File> forgotten = new EBList<File>("forgotten");
+		forgotten.add(new File("/stimuli/b.png"));
+
+		ExperimentWriter out = new ExperimentWriter(file);
+		out.addFileReferenceList(added);
+
+		Slide s = new Slide();
+		s.saveElement(new ImageElementModel(new DataSource((EBList) forgotten,
+				DataSource.Type.Multiple_Files), new Dimension(100, 80)));
+		try {
+			out.writeSlide(s);
+			fail("A list that was never added must be rejected");
+		} catch (IllegalArgumentException expected) {
+		}
+		assertEquals(0, out.getSlideCount());
+
+		// A file naming a list it does not have cannot be read
+		s = new Slide();
+		s.saveElement(new ImageElementModel(new DataSource((EBList) added,
+				DataSource.Type.Multiple_Files), new Dimension(100, 80)));
+		out.writeSlide(s);
+		out.close();
+
+		String xml = new String(readAll(file), "UTF-8");
+		assertTrue(xml.contains("list=\"added\""));
+		FileOutputStream broken = new FileOutputStream(file);
+		broken.write(xml.replace("list=\"added\"", "list=\"missing\"")
+				.getBytes("UTF-8"));
+		broken.close();
+
+		ExperimentReader in = new ExperimentReader(file);
+		try {
+			in.readSlide();
+			fail("A list that is not in the file must not be made up");
+		} catch (ConversionException expected) {
+			assertTrue(expected.getMessage().contains("missing"));
+		} finally {
+			in.close();
+		}
+	}
+
+	private static byte[] readAll(File f) throws IOException {
+		FileInputStream in = new FileInputStream(f);
+		try {
+			byte[] bytes = new byte[(int) f.length()];
+			int read = 0;
+			while (read < bytes.length)
+				read += in.read(bytes, read, bytes.length - read);
+			return bytes;
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.controller.toolbarActions.util.FontCatalogue;
+
+/**
+ *
+ * @author hamiltont
+ *
+ */
+public class FontCatalogueTest {
+
+	@Test
+	public void testFamilies() throws IOException {
+		File families = File.createTempFile("eb-fonts", ".txt");
+		families.delete();
+
+		// Nothing listed yet, so only the logical fonts
+		FontCatalogue catalogue = new FontCatalogue(families);
+		assertEquals(FontCatalogue.LOGICAL_FAMILIES, catalogue.getFamilies());
+
+		// The list from the last run
+		PrintWriter out = new PrintWriter(families);
+		out.println("Serif");
+		out.println("");
+		out.println("Monospaced");
+		out.close();
+		catalogue = new FontCatalogue(families);
+		assertEquals(Arrays.asList("Serif", "Monospaced"), catalogue
+				.getFamilies());
+
+		families.delete();
+	}
+
+	@Test
+	public void testSharing() {
+		FontCatalogue catalogue = new FontCatalogue(null);
+		Font bold = catalogue.getFont(Font.SERIF, Font.BOLD, 14);
+		assertSame(bold, catalogue.getFont(Font.SERIF, Font.BOLD, 14));
+		assertNotSame(bold, catalogue.getFont(Font.SERIF, Font.PLAIN, 14));
+
+		FontMetrics metrics = catalogue.getMetrics(bold);
+		assertSame(bold, metrics.getFont());
+		assertSame(metrics, catalogue.getMetrics(bold));
+		assertTrue(metrics.getAscent() > 0);
+	}
+}
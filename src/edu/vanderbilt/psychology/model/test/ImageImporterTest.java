@@ -0,0 +1,49 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.model.media.ImageImporter;
+
+/**
+ *
+ * @author hamiltont
+ *
+ */
+public class ImageImporterTest {
+
+	@Test
+	public void testFit() {
+		assertEquals(new Dimension(100, 50), ImageImporter.fit(100, 50, 800,
+				600));
+		assertEquals(new Dimension(800, 400), ImageImporter.fit(1600, 800,
+				800, 600));
+		assertEquals(new Dimension(300, 600), ImageImporter.fit(1000, 2000,
+				800, 600));
+	}
+
+	@Test
+	public void testDecodeSubsampled() throws IOException {
+		File f = File.createTempFile("importer", ".png");
+		f.deleteOnExit();
+		ImageIO.write(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB),
+				"png", f);
+
+		// Every 4th pixel is still at least 90x70
+		BufferedImage preview = ImageImporter.decodeSubsampled(f, 90, 70);
+		assertEquals(100, preview.getWidth());
+		assertEquals(75, preview.getHeight());
+
+		// Larger than the image, so nothing is skipped
+		preview = ImageImporter.decodeSubsampled(f, 800, 600);
+		assertEquals(400, preview.getWidth());
+	}
+}
@@ -0,0 +1,52 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.model.media.ImagePyramid;
+
+/**
+ *
+ * @author hamiltont
+ *
+ */
+public class ImagePyramidTest {
+
+	@Test
+	public void testLevels() {
+		BufferedImage original = new BufferedImage(400, 300,
+				BufferedImage.TYPE_INT_RGB);
+		ImagePyramid pyramid = new ImagePyramid(original);
+
+		// 400x300, 200x150, 100x75, 50x37, 25x18, 12x9, 6x4, 3x2, 1x1
+		assertEquals(9, pyramid.getLevelCount());
+		assertSame(original, pyramid.getLevelFor(1000, 1000));
+		assertSame(original, pyramid.getLevelFor(300, 200));
+
+		BufferedImage level = pyramid.getLevelFor(90, 60);
+		assertEquals(100, level.getWidth());
+		assertEquals(75, level.getHeight());
+		assertSame(level, pyramid.getLevel(2));
+	}
+
+	@Test
+	public void testScaledSizes() {
+		BufferedImage original = new BufferedImage(640, 480,
+				BufferedImage.TYPE_INT_ARGB);
+		original.setRGB(0, 0, 0xff00ff00);
+		ImagePyramid pyramid = new ImagePyramid(original);
+
+		BufferedImage fast = pyramid.getFastScaled(123, 77);
+		assertEquals(123, fast.getWidth());
+		assertEquals(77, fast.getHeight());
+
+		BufferedImage good = ImagePyramid.resample(original, 123, 77);
+		assertEquals(123, good.getWidth());
+		assertEquals(77, good.getHeight());
+		assertEquals(BufferedImage.TYPE_INT_ARGB, good.getType());
+	}
+}
@@ -0,0 +1,113 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Point;
+
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.model.EBList;
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.ExperimentSnapshot;
+import edu.vanderbilt.psychology.model.Loop;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.elements.TextModelElement;
+
+/**
+ *
+ * @author hamiltont
+ *
+ */
+public class LoopTest {
+
+	private static EBList<String> words(int count) {
+		EBList<String> list = new EBList<String>("words");
+		for (int i = 0; i < count; i++)
+			list.add("word " + i);
+		return list;
+	}
+
+	private static Slide template() {
+		Slide s = new Slide();
+		TextModelElement text = new TextModelElement("Trial", new Font(
+				"Dialog", Font.PLAIN, 12), Color.BLACK);
+		text.addGuiProperties(1, new Point(10, 10));
+		s.saveElement(text);
+		return s;
+	}
+
+	@Test
+	public void testPasses() {
+		Slide template = template();
+		EBList<String> list = words(5);
+
+		// The list is shorter than the count, so it decides
+		Loop.Run run = new Loop(20, list, null).start();
+		int passes = 0;
+		while (run.hasNext()) {
+			Slide pass = run.next(template);
+			assertEquals(passes, list.getLocation());
+			assertNotSame(template.getModelElements(), pass
+					.getModelElements());
+			assertEquals(template.getContentHash(), pass.getContentHash());
+			passes++;
+		}
+		assertEquals(5, passes);
+
+		run = new Loop(3, null).start();
+		passes = 0;
+		while (run.hasNext()) {
+			run.next(template);
+			passes++;
+		}
+		assertEquals(3, passes);
+	}
+
+	@Test
+	public void testUntil() {
+		Slide template = template();
+		EBList<String> list = words(4);
+
+		// Moved along by the slide itself, such as by an action, so only the
+		// condition stops it. It always makes the first pass
+		Loop.Run run = new Loop(0, new Loop.ListExhausted(list)).start();
+		int passes = 0;
+		while (run.hasNext()) {
+			run.next(template);
+			list.incrementPosition();
+			passes++;
+		}
+		assertEquals(4, passes);
+
+		run = new Loop(0, new Loop.TimeLimit(0)).start();
+		assertTrue(run.hasNext());
+		run.next(template);
+		assertFalse(run.hasNext());
+	}
+
+	@Test
+	public void testUndo() {
+		Experiment e = new Experiment();
+		Slide s = e.getSlide(0);
+		ExperimentSnapshot before = e.snapshot();
+
+		Loop loop = new Loop(10, null);
+		s.setLoop(loop);
+		e.saveSlide(s, 0);
+		ExperimentSnapshot after = e.snapshot();
+		assertNotSame(before, after);
+		assertSame(loop, after.getSlide(0).getLoop());
+
+		e.restore(before);
+		assertNull(e.getSlide(0).getLoop());
+		e.restore(after);
+		assertSame(loop, e.getSlide(0).getLoop());
+	}
+}
@@ -0,0 +1,65 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.model.media.MediaResolver;
+import edu.vanderbilt.psychology.model.media.ResolvedAsset;
+
+/**
+ *
+ * @author hamiltont
+ *
+ */
+public class MediaResolverTest {
+
+	@Test
+	public void testResolve() throws IOException, InterruptedException {
+		File image = File.createTempFile("eb-test", ".png");
+		image.deleteOnExit();
+		ImageIO.write(new BufferedImage(30, 20, BufferedImage.TYPE_INT_RGB),
+				"png", image);
+
+		File garbage = File.createTempFile("eb-test", ".png");
+		garbage.deleteOnExit();
+		FileWriter fw = new FileWriter(garbage);
+		fw.write("this is not an image");
+		fw.close();
+
+		File missing = new File(image.getParentFile(), "eb-does-not-exist.png");
+
+		List<File> files = new ArrayList<File>();
+		files.add(image);
+		files.add(garbage);
+		files.add(missing);
+		files.add(image);
+
+		Map<String, ResolvedAsset> table = new MediaResolver(2)
+				.resolve(files);
+
+		assertEquals(3, table.size());
+
+		ResolvedAsset ok = table.get(image.getAbsolutePath());
+		assertEquals(ResolvedAsset.Status.OK, ok.getStatus());
+		assertEquals(30, ok.getWidth());
+		assertEquals(20, ok.getHeight());
+		assertEquals("png", ok.getFormat());
+
+		assertEquals(ResolvedAsset.Status.UNDECODABLE, table.get(
+				garbage.getAbsolutePath()).getStatus());
+		assertEquals(ResolvedAsset.Status.MISSING, table.get(
+				missing.getAbsolutePath()).getStatus());
+		assertEquals(2, MediaResolver.getProblems(table).size());
+	}
+}
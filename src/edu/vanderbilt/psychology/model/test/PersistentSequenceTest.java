@@ -0,0 +1,68 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.model.PersistentSequence;
+
+/**
+ * 
+ * @author hamiltont
+ * 
+ */
+public class PersistentSequenceTest {
+
+	@Test
+	public void testOldVersionsUnchanged() {
+		PersistentSequence<String> first = PersistentSequence.of(Arrays
+				.asList("a", "b", "c"));
+		PersistentSequence<String> second = first.insert(1, "x").remove(3)
+				.set(0, "z");
+
+		assertEquals(Arrays.asList("a", "b", "c"), first.toList());
+		assertEquals(Arrays.asList("z", "x", "b"), second.toList());
+		assertSame(second, second.set(1, "x"));
+	}
+
+	@Test
+	public void testAgainstList() {
+		Random r = new Random(7);
+		List<Integer> expected = new ArrayList<Integer>();
+		PersistentSequence<Integer> seq = PersistentSequence.empty();
+
+		for (int i = 0; i < 2000; i++) {
+			int op = r.nextInt(4);
+			if (op == 0 || expected.isEmpty()) {
+				int pos = r.nextInt(expected.size() + 1);
+				expected.add(pos, i);
+				seq = seq.insert(pos, i);
+			} else if (op == 1) {
+				int pos = r.nextInt(expected.size());
+				expected.remove(pos);
+				seq = seq.remove(pos);
+			} else if (op == 2) {
+				int pos = r.nextInt(expected.size());
+				expected.set(pos, -i);
+				seq = seq.set(pos, -i);
+			} else {
+				int from = r.nextInt(expected.size());
+				int to = r.nextInt(expected.size());
+				expected.add(to, expected.remove(from));
+				seq = seq.move(from, to);
+			}
+
+			assertEquals(expected.size(), seq.size());
+		}
+
+		assertEquals(expected, seq.toList());
+		for (int i = 0; i < expected.size(); i++)
+			assertEquals(expected.get(i), seq.get(i));
+	}
+}
@@ -0,0 +1,121 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.elements.ImageElementModel;
+import edu.vanderbilt.psychology.model.media.PixelCache;
+import edu.vanderbilt.psychology.model.properties.DataSource;
+
+/**
+ *
+ * @author hamiltont
+ *
+ */
+public class PixelCacheTest {
+
+	@Test
+	public void testCacheAndInvalidate() throws IOException {
+		File dir = File.createTempFile("eb-pixel-cache", "");
+		dir.delete();
+		PixelCache cache = new PixelCache(dir);
+
+		File source = File.createTempFile("eb-test", ".png");
+		source.deleteOnExit();
+		BufferedImage original = new BufferedImage(8, 6,
+				BufferedImage.TYPE_INT_RGB);
+		original.setRGB(3, 2, 0x123456);
+		ImageIO.write(original, "png", source);
+
+		assertFalse(cache.isCached(source, -1, -1));
+		BufferedImage first = cache.getImage(source, -1, -1);
+		assertTrue(cache.isCached(source, -1, -1));
+
+		BufferedImage second = cache.getImage(source, -1, -1);
+		assertEquals(BufferedImage.TYPE_INT_ARGB, second.getType());
+		assertEquals(8, second.getWidth());
+		assertEquals(6, second.getHeight());
+		assertEquals(first.getRGB(3, 2), second.getRGB(3, 2));
+		assertEquals(0xff123456, second.getRGB(3, 2));
+
+		// Touching the source must invalidate the entry
+		source.setLastModified(source.lastModified() - 10000);
+		assertFalse(cache.isCached(source, -1, -1));
+
+		cache.clear();
+		dir.delete();
+	}
+
+	@Test
+	public void testOnlyThumbnailsSubsample() throws IOException {
+		File dir = File.createTempFile("eb-pixel-cache", "");
+		dir.delete();
+		PixelCache cache = new PixelCache(dir);
+
+		// Black and white columns one pixel wide
+		File source = File.createTempFile("eb-test", ".png");
+		source.deleteOnExit();
+		BufferedImage stripes = new BufferedImage(64, 4,
+				BufferedImage.TYPE_INT_RGB);
+		for (int x = 0; x < 64; x++)
+			for (int y = 0; y < 4; y++)
+				stripes.setRGB(x, y, x % 2 == 0 ? 0x000000 : 0xffffff);
+		ImageIO.write(stripes, "png", source);
+
+		// Skipping every other pixel would only see the black columns
+		BufferedImage thumbnail = cache.getThumbnail(source, 32, 2);
+		assertEquals(0xff000000, thumbnail.getRGB(10, 1));
+
+		BufferedImage full = cache.getImage(source, 32, 2);
+		int gray = full.getRGB(10, 1) & 0xff;
+		assertTrue(gray > 0x40 && gray < 0xc0);
+		assertTrue(cache.isCached(source, 32, 2));
+
+		cache.clear();
+		dir.delete();
+	}
+
+	@Test
+	public void testPreload() throws Exception {
+		File dir = File.createTempFile("eb-pixel-cache", "");
+		dir.delete();
+		PixelCache cache = new PixelCache(dir);
+
+		File source = File.createTempFile("eb-test", ".png");
+		source.deleteOnExit();
+		ImageIO.write(new BufferedImage(20, 20, BufferedImage.TYPE_INT_RGB),
+				"png", source);
+
+		// The same image at the same size on two slides is only one entry
+		Experiment e = new Experiment();
+		for (int i = 0; i < 2; i++) {
+			Slide s = new Slide();
+			ImageElementModel image = new ImageElementModel(new DataSource(
+					source.getAbsolutePath(), DataSource.Type.Single_File),
+					new Dimension(10, 5));
+			image.addGuiProperties(1, new Point(0, 0));
+			s.saveElement(image);
+			e.saveSlide(s, i);
+		}
+
+		assertEquals(1, cache.preload(e));
+		assertTrue(cache.isCached(source, 10, 5));
+		assertFalse(cache.isCached(source, -1, -1));
+
+		cache.clear();
+		dir.delete();
+	}
+}
@@ -0,0 +1,69 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.Point;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.elements.TextModelElement;
+import edu.vanderbilt.psychology.model.reactor.Action;
+import edu.vanderbilt.psychology.model.reactor.ActionType;
+import edu.vanderbilt.psychology.model.reactor.Reactor;
+import edu.vanderbilt.psychology.player.PlayerController;
+
+/**
+ *
+ * @author hamiltont
+ *
+ */
+public class PlayerControllerTest {
+
+	private static void addAdvance(Slide s) {
+		TextModelElement next = new TextModelElement("Next", new Font(
+				"Dialog", Font.PLAIN, 12), Color.BLACK);
+		next.addGuiProperties(1, new Point(0, 0));
+		s.saveElement(next);
+		s.addEventReactor(new Reactor(next, Reactor.TRIGGER_ON_MOUSE_ENTER,
+				new Action(ActionType.TYPE_SLIDE_EVENTS,
+						Slide.ACTION_ADVANCE_TO_NEXT_SLIDE, next, null)));
+	}
+
+	/** Moves the mouse onto the one element of the current slide */
+	private static void enter(PlayerController player) {
+		assertEquals(1, player.getComponentCount());
+		Component c = player.getComponent(0);
+		MouseEvent e = new MouseEvent(c, MouseEvent.MOUSE_ENTERED, 0, 0, 1,
+				1, 0, false);
+		for (MouseListener l : c.getMouseListeners())
+			l.mouseEntered(e);
+	}
+
+	@Test
+	public void testSharedCopiesFireOnce() {
+		Experiment e = new Experiment();
+		addAdvance(e.getSlide(0));
+		e.saveSlide(e.getSlide(0), 0);
+
+		// Slides 1 to 3 share their elements with each other, and each is
+		// shown in turn. Slide 4 keeps the player from reaching the end
+		e.copySlide(0, 3);
+		assertTrue(e.getSlide(2).isShared());
+		addAdvance(e.getSlide(4));
+
+		PlayerController player = new PlayerController(e);
+		for (int i = 0; i < 4; i++) {
+			assertEquals(i, player.getCurrentSlidePosition());
+			enter(player);
+		}
+		assertEquals(4, player.getCurrentSlidePosition());
+	}
+}
@@ -0,0 +1,128 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JComboBox;
+import javax.swing.JTextField;
+
+import org.junit.Test;
+
+import com.thoughtworks.xstream.XStream;
+
+import edu.vanderbilt.psychology.gui.sideBar.Section;
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.properties.Appearance;
+import edu.vanderbilt.psychology.model.properties.MouseActions;
+import edu.vanderbilt.psychology.model.properties.Movement;
+import edu.vanderbilt.psychology.model.properties.Property;
+import edu.vanderbilt.psychology.model.reactor.Action;
+
+/**
+ * 
+ * @author hamiltont
+ * 
+ */
+public class PropertyTest {
+
+	@Test
+	public void testEdit() {
+		List<Property> properties = new ArrayList<Property>();
+		properties.add(Property.getDefault(Appearance.class));
+		properties.add(Property.getDefault(Movement.class));
+
+		Movement m = Property.edit(properties, Property
+				.getDefault(Movement.class));
+		assertFalse(m.isShared());
+		assertSame(m, properties.get(1));
+		assertSame(Property.getDefault(Appearance.class), properties.get(0));
+		assertTrue(Property.getDefault(Movement.class).isShared());
+
+		// Editing a private copy again does not copy it
+		assertSame(m, Property.edit(properties, m));
+	}
+
+	public static class Counter extends Property {
+		private int count_ = 0;
+
+		public void increment() {
+			checkNotShared();
+			count_++;
+		}
+
+		public int getCount() {
+			return count_;
+		}
+
+		@Override
+		public Section getSection() {
+			return null;
+		}
+
+		public void receiveAction(Action e) {
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testSharedIsImmutable() {
+		Property.getDefault(Counter.class).increment();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testSerializeAsReference() {
+		List<Property> properties = new ArrayList<Property>();
+		for (int i = 0; i < 50; i++)
+			properties.add(Property.getDefault(Appearance.class));
+		Counter c = (Counter) Property.getDefault(Counter.class).clone();
+		c.increment();
+		properties.add(c);
+
+		XStream xs = new XStream();
+		Experiment.addXStreamAliases(xs);
+		String xml = xs.toXML(properties);
+
+		List<Property> loaded = (List<Property>) xs.fromXML(xml);
+		assertEquals(51, loaded.size());
+		for (int i = 0; i < 50; i++)
+			assertSame(Property.getDefault(Appearance.class), loaded.get(i));
+
+		Counter loadedCounter = (Counter) loaded.get(50);
+		assertFalse(loadedCounter.isShared());
+		assertEquals(1, loadedCounter.getCount());
+		assertNotSame(c, loadedCounter);
+
+		// The default itself is only written once
+		assertEquals(xml.indexOf("default=\"true\""), xml
+				.lastIndexOf("default=\"true\""));
+	}
+
+	@Test
+	public void testBindSectionClearsMouseActions() {
+		Section section = new MouseActions().getSection();
+		List<JTextField> fields = new ArrayList<JTextField>();
+		JComboBox record = null;
+		for (Component c : section.getContentPanel().getComponents())
+			if (c instanceof JTextField)
+				fields.add((JTextField) c);
+			else if (c instanceof JComboBox)
+				record = (JComboBox) c;
+
+		// What was typed for one element is not shown for the next
+		fields.get(0).setText("correct");
+		record.setSelectedIndex(MouseActions.RECORD_INCREMENT_COUNTER);
+		fields.get(1).setText("misses");
+		new MouseActions().bindSection(section);
+
+		assertEquals("", fields.get(0).getText());
+		assertEquals(MouseActions.RECORD_NOTHING, record.getSelectedIndex());
+		assertEquals("streak", fields.get(1).getText());
+	}
+}
@@ -0,0 +1,129 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.thoughtworks.xstream.XStream;
+
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.SlideSequence;
+
+/**
+ *
+ * @author hamiltont
+ *
+ */
+public class SlideSequenceTest {
+
+	@Test
+	public void testInsertRemoveMove() {
+		SlideSequence seq = new SlideSequence();
+		List<Slide> expected = new ArrayList<Slide>();
+		Random r = new Random(42);
+
+		for (int i = 0; i < 500; i++) {
+			int pos = r.nextInt(expected.size() + 1);
+			Slide s = new Slide();
+			seq.insert(pos, s);
+			expected.add(pos, s);
+		}
+
+		for (int i = 0; i < 200; i++) {
+			int from = r.nextInt(expected.size());
+			int to = r.nextInt(expected.size());
+			seq.move(from, to);
+			expected.add(to, expected.remove(from));
+		}
+
+		for (int i = 0; i < 100; i++) {
+			int pos = r.nextInt(expected.size());
+			assertSame(expected.remove(pos), seq.remove(pos));
+		}
+
+		assertEquals(expected.size(), seq.size());
+		int i = 0;
+		for (Slide s : seq) {
+			assertSame(expected.get(i), s);
+			assertSame(s, seq.get(i));
+			assertEquals(i, seq.indexOfId(s.getId()));
+			assertSame(s, seq.getById(s.getId()));
+			i++;
+		}
+		assertEquals(expected.size(), i);
+	}
+
+	@Test
+	public void testIdsAreStable() {
+		SlideSequence seq = new SlideSequence();
+		Slide a = new Slide(), b = new Slide(), c = new Slide();
+		seq.add(a);
+		seq.add(b);
+		seq.add(c);
+
+		long id = a.getId();
+		seq.move(0, 2);
+		assertEquals(id, a.getId());
+		assertEquals(2, seq.indexOfId(id));
+
+		seq.remove(2);
+		assertEquals(-1, seq.indexOfId(id));
+		assertNull(seq.getById(id));
+
+		try {
+			seq.add(b);
+			fail("The same slide should not be added twice");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+
+		// A failed set must leave the sequence as it was
+		try {
+			seq.set(0, c);
+			fail("The same slide should not be in two places");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		assertSame(b, seq.get(0));
+		assertSame(b, seq.getById(b.getId()));
+		assertEquals(1, seq.indexOfId(c.getId()));
+	}
+
+	@Test
+	public void testPersistence() {
+		Experiment e = new Experiment();
+		e.getSlide(0);
+		e.getSlide(1);
+		e.moveSlide(0, 1);
+		long first = e.getSlide(0).getId();
+
+		XStream xs = new XStream();
+		Experiment.addXStreamAliases(xs);
+		String xml = xs.toXML(e);
+		Experiment loaded = (Experiment) xs.fromXML(xml);
+
+		assertEquals(2, loaded.getSize());
+		assertEquals(first, loaded.getSlide(0).getId());
+		assertEquals(0, loaded.getPositionOfSlide(first));
+	}
+
+	@Test
+	public void testLoadsPaddedArrayFormat() {
+		String xml = "<Experiment><slides__><Slide><elements__/></Slide>"
+				+ "<null/><null/><null/><null/></slides__></Experiment>";
+
+		XStream xs = new XStream();
+		Experiment.addXStreamAliases(xs);
+		Experiment loaded = (Experiment) xs.fromXML(xml);
+
+		assertEquals(1, loaded.getSize());
+	}
+}
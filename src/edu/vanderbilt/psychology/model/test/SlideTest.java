@@ -5,8 +5,21 @@ package edu.vanderbilt.psychology.model.test;
 
 import static org.junit.Assert.*;
 
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Point;
+import java.util.List;
+
 import org.junit.Test;
 
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.elements.ModelElement;
+import edu.vanderbilt.psychology.model.elements.TextModelElement;
+import edu.vanderbilt.psychology.model.reactor.Action;
+import edu.vanderbilt.psychology.model.reactor.ActionType;
+import edu.vanderbilt.psychology.model.reactor.Reactor;
+
 /**
  * @author Hamilton Turner
  *
@@ -21,4 +34,50 @@ public class SlideTest {
 		fail("Not yet implemented");
 	}
 
+	@Test
+	public void testCopyOnWrite() {
+		Experiment e = new Experiment();
+		Slide original = e.getSlide(0);
+		TextModelElement first = null;
+		for (int i = 0; i < 40; i++) {
+			TextModelElement text = new TextModelElement("Item " + i, new Font(
+					"Dialog", Font.PLAIN, 12), Color.BLACK);
+			text.addGuiProperties(1, new Point(i, i));
+			original.saveElement(text);
+			if (first == null)
+				first = text;
+		}
+		original.addEventReactor(new Reactor(first,
+				Reactor.TRIGGER_ON_MOUSE_ENTER, new Action(
+						ActionType.TYPE_SLIDE_EVENTS,
+						Slide.ACTION_ADVANCE_TO_NEXT_SLIDE, first, null)));
+
+		List<Slide> copies = e.copySlide(0, 500);
+		assertEquals(501, e.getSize());
+		assertFalse(original.isShared());
+
+		// Only the first copy has its own elements, the rest share them
+		Slide a = copies.get(0), b = copies.get(1), c = copies.get(2);
+		assertNotSame(original.getModelElements(), a.getModelElements());
+		assertFalse(a.getModelElements().contains(first));
+		assertSame(a.getModelElements(), b.getModelElements());
+		assertSame(a.getModelElements(), c.getModelElements());
+		assertEquals(original.getContentHash(), b.getContentHash());
+		assertSame(e.snapshot().getSlide(2).getElements(), e.snapshot()
+				.getSlide(3).getElements());
+
+		// Changing one copy leaves the others alone
+		b.unshare();
+		assertFalse(b.isShared());
+		assertNotSame(a.getModelElements(), b.getModelElements());
+		ModelElement moved = b.getModelElements().iterator().next();
+		moved.addGuiProperties(2, new Point(500, 500));
+		assertFalse(a.getContentHash() == b.getContentHash());
+		assertEquals(a.getContentHash(), c.getContentHash());
+
+		// The copied reactor points at the copied element
+		Reactor r = b.getEventReactors().get(0);
+		assertTrue(b.getModelElements().contains(r.getModelElement()));
+		assertSame(r.getModelElement(), r.getActions().get(0).getModel());
+	}
 }
@@ -0,0 +1,96 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.gui.main.SpatialGrid;
+
+/**
+ * 
+ * @author hamiltont
+ * 
+ */
+public class SpatialGridTest {
+
+	@Test
+	public void testAgainstLinearScan() {
+		Random r = new Random(3);
+		SpatialGrid<String> grid = new SpatialGrid<String>(50);
+		List<String> names = new ArrayList<String>();
+		List<Rectangle> bounds = new ArrayList<Rectangle>();
+
+		for (int i = 0; i < 400; i++) {
+			Rectangle b = new Rectangle(r.nextInt(1200) - 100,
+					r.nextInt(900) - 100, 1 + r.nextInt(120),
+					1 + r.nextInt(120));
+			String name = "e" + i;
+			names.add(name);
+			bounds.add(b);
+			grid.put(name, b);
+		}
+
+		// Move some, remove some
+		for (int i = 0; i < 100; i++) {
+			Rectangle b = bounds.get(i);
+			b.translate(r.nextInt(300) - 150, r.nextInt(300) - 150);
+			grid.put(names.get(i), b);
+		}
+		for (int i = 399; i >= 350; i--) {
+			grid.remove(names.remove(i));
+			bounds.remove(i);
+		}
+		assertEquals(350, grid.size());
+
+		for (int q = 0; q < 200; q++) {
+			Rectangle area = new Rectangle(r.nextInt(1200) - 100, r
+					.nextInt(900) - 100, r.nextInt(400), r.nextInt(400));
+			HashSet<String> intersecting = new HashSet<String>();
+			HashSet<String> contained = new HashSet<String>();
+			HashSet<String> at = new HashSet<String>();
+			for (int i = 0; i < names.size(); i++) {
+				if (area.intersects(bounds.get(i)))
+					intersecting.add(names.get(i));
+				if (area.contains(bounds.get(i)))
+					contained.add(names.get(i));
+				if (bounds.get(i).contains(area.x, area.y))
+					at.add(names.get(i));
+			}
+
+			List<String> found = grid.getIntersecting(area);
+			assertEquals(intersecting.size(), found.size());
+			assertEquals(intersecting, new HashSet<String>(found));
+			assertEquals(contained, new HashSet<String>(grid
+					.getContained(area)));
+			assertEquals(at, new HashSet<String>(grid.getAt(area.x, area.y)));
+		}
+	}
+
+	@Test
+	public void testSnapAndOverlap() {
+		SpatialGrid<String> grid = new SpatialGrid<String>();
+		grid.put("a", new Rectangle(100, 100, 50, 50));
+		grid.put("b", new Rectangle(140, 400, 50, 50));
+
+		// Left edge 4px right of a's left edge, top 3px below a's bottom
+		Point offset = grid.getSnapOffset(new Rectangle(104, 153, 30, 30), 6,
+				null);
+		assertEquals(new Point(-4, -3), offset);
+
+		// Nothing close enough
+		assertEquals(new Point(0, 0), grid.getSnapOffset(new Rectangle(600,
+				600, 20, 20), 6, null));
+
+		grid.put("c", new Rectangle(120, 120, 10, 10));
+		assertEquals(1, grid.getOverlapping("a").size());
+		assertTrue(grid.getOverlapping("b").isEmpty());
+	}
+}
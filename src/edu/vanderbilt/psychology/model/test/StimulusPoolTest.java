@@ -0,0 +1,86 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.model.media.StimulusPool;
+
+/**
+ *
+ * @author hamiltont
+ *
+ */
+public class StimulusPoolTest {
+
+	private static BufferedImage solid(int size, int argb) {
+		BufferedImage img = new BufferedImage(size, size,
+				BufferedImage.TYPE_INT_ARGB);
+		for (int x = 0; x < size; x++)
+			for (int y = 0; y < size; y++)
+				img.setRGB(x, y, argb);
+		return img;
+	}
+
+	@Test
+	public void testEvictionAndFragmentation() {
+		// Room for exactly four 10x10 images
+		StimulusPool pool = StimulusPool.allocateDirect(4 * 10 * 10 * 4);
+
+		for (int i = 0; i < 4; i++)
+			assertTrue(pool.put("img" + i, solid(10, 0xff000000 | i)));
+		assertEquals(1.0, pool.getOccupancy(), 0.0001);
+		assertEquals(0, pool.getEvictionCount());
+
+		// Free two blocks that are not next to each other
+		pool.remove("img0");
+		pool.remove("img2");
+		assertEquals(0.5, pool.getFragmentation(), 0.0001);
+
+		// Freeing the block between them merges all three
+		pool.remove("img1");
+		assertEquals(0.0, pool.getFragmentation(), 0.0001);
+		assertEquals(3 * 400, pool.getLargestFreeBlock());
+
+		// Fill up again, and then force an eviction of the oldest image
+		pool.put("a", solid(10, 0xffff0000));
+		pool.put("b", solid(10, 0xff00ff00));
+		pool.put("c", solid(10, 0xff0000ff));
+		assertTrue(pool.put("d", solid(10, 0xffffffff)));
+		assertEquals(1, pool.getEvictionCount());
+		assertFalse(pool.contains("img3"));
+
+		// Images that cannot ever fit are refused
+		assertFalse(pool.put("huge", solid(30, 0)));
+	}
+
+	@Test
+	public void testDraw() {
+		StimulusPool pool = StimulusPool.allocateDirect(64 * 1024);
+		pool.put("red", solid(4, 0xffff0000));
+
+		BufferedImage target = new BufferedImage(4, 4,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics g = target.getGraphics();
+		assertTrue(pool.draw(g, "red", 0, 0, 4, 4, null));
+		assertFalse(pool.draw(g, "missing", 0, 0, 4, 4, null));
+		g.dispose();
+
+		assertEquals(0xffff0000, target.getRGB(2, 2));
+
+		// A smaller image after a larger one is drawn from a wider scratch
+		pool.put("wide", solid(8, 0xff0000ff));
+		pool.put("small", solid(2, 0xff00ff00));
+		g = target.getGraphics();
+		assertTrue(pool.draw(g, "wide", 0, 0, 4, 4, null));
+		assertTrue(pool.draw(g, "small", 0, 0, 4, 4, null));
+		g.dispose();
+
+		assertEquals(0xff00ff00, target.getRGB(3, 3));
+	}
+}
@@ -0,0 +1,146 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.model.EBList;
+import edu.vanderbilt.psychology.model.Loop;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.TrialGenerator;
+
+/**
+ *
+ * @author hamiltont
+ *
+ */
+public class TrialGeneratorTest {
+
+	private static EBList<String> factor(String name, int levels) {
+		EBList<String> list = new EBList<String>(name);
+		for (int i = 0; i < levels; i++)
+			list.add(name + " " + i);
+		return list;
+	}
+
+	private static List<EBList<String>> factors(int... levels) {
+		List<EBList<String>> factors = new ArrayList<EBList<String>>();
+		for (int i = 0; i < levels.length; i++)
+			factors.add(factor("f" + i, levels[i]));
+		return factors;
+	}
+
+	@Test
+	public void testOrdered() {
+		TrialGenerator g = new TrialGenerator(factors(2, 3), 2, false);
+		assertEquals(6, g.getCellCount());
+		assertEquals(12, g.getTrialCount());
+
+		// The last factor changes fastest, and each repetition is a block
+		Iterator<int[]> trials = g.iterator();
+		assertArrayEquals(new int[] { 0, 0 }, trials.next());
+		assertArrayEquals(new int[] { 0, 1 }, trials.next());
+		assertArrayEquals(new int[] { 0, 2 }, trials.next());
+		assertArrayEquals(new int[] { 1, 0 }, trials.next());
+		int count = 4;
+		while (trials.hasNext()) {
+			int[] cell = trials.next();
+			if (count == 6)
+				assertArrayEquals(new int[] { 0, 0 }, cell);
+			count++;
+		}
+		assertEquals(12, count);
+	}
+
+	@Test
+	public void testShuffled() {
+		TrialGenerator g = new TrialGenerator(factors(3, 4, 5), 3, true, 1,
+				null, 42);
+
+		// Every cell exactly as many times as there are repetitions
+		Map<String, Integer> seen = new HashMap<String, Integer>();
+		List<String> order = new ArrayList<String>();
+		for (int[] cell : g) {
+			String key = Arrays.toString(cell);
+			Integer old = seen.get(key);
+			seen.put(key, old == null ? 1 : old + 1);
+			order.add(key);
+		}
+		assertEquals(60, seen.size());
+		for (Integer times : seen.values())
+			assertEquals(3, times.intValue());
+
+		// The same seed gives the same order
+		List<String> again = new ArrayList<String>();
+		for (int[] cell : g)
+			again.add(Arrays.toString(cell));
+		assertEquals(order, again);
+	}
+
+	@Test
+	public void testFractionAndConstraints() {
+		List<TrialGenerator.Constraint> different = new ArrayList<TrialGenerator.Constraint>();
+		different.add(new TrialGenerator.DifferentLevels(0, 1));
+		TrialGenerator g = new TrialGenerator(factors(4, 4), 1, true, 1,
+				different, 0);
+		int count = 0;
+		for (int[] cell : g) {
+			assertFalse(cell[0] == cell[1]);
+			count++;
+		}
+		assertEquals(12, count);
+
+		// The half fraction of a 2x2x2 design
+		g = new TrialGenerator(factors(2, 2, 2), 1, false, 2, null, 0);
+		count = 0;
+		for (int[] cell : g) {
+			assertEquals(0, (cell[0] + cell[1] + cell[2]) % 2);
+			count++;
+		}
+		assertEquals(4, count);
+	}
+
+	@Test
+	public void testLargeDesign() {
+		// 64 million cells, of which only the first few are ever worked out
+		TrialGenerator g = new TrialGenerator(factors(20, 20, 20, 20, 20, 20),
+				1, true);
+		assertEquals(64000000L, g.getTrialCount());
+
+		Loop.Run run = new Loop(5, g, null).start();
+		Slide template = new Slide();
+		int passes = 0;
+		while (run.hasNext()) {
+			run.next(template);
+			passes++;
+		}
+		assertEquals(5, passes);
+
+		for (EBList<?> factor : g.getFactors())
+			assertTrue(factor.getLocation() < 20);
+	}
+
+	@Test
+	public void testNothingAllowed() {
+		// A factor can never differ from itself, so every cell is left out.
+		// The search gives up long before all 64 million are looked at
+		List<TrialGenerator.Constraint> none = new ArrayList<TrialGenerator.Constraint>();
+		none.add(new TrialGenerator.DifferentLevels(0, 0));
+		TrialGenerator g = new TrialGenerator(factors(20, 20, 20, 20, 20, 20),
+				1, false, 1, none, 0);
+
+		assertTrue(g.isEmpty());
+		assertFalse(new Loop(5, g, null).start().hasNext());
+		assertFalse(new TrialGenerator(factors(2, 2), 1, false).isEmpty());
+	}
+}
@@ -0,0 +1,73 @@
+package edu.vanderbilt.psychology.model.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.ExperimentSnapshot;
+import edu.vanderbilt.psychology.model.Slide;
+import edu.vanderbilt.psychology.model.UndoHistory;
+
+/**
+ *
+ * @author hamiltont
+ *
+ */
+public class UndoHistoryTest {
+
+	@Test
+	public void testUndoRedo() {
+		Experiment e = new Experiment();
+		e.getSlide(0);
+		UndoHistory history = new UndoHistory();
+		assertNull(history.getCurrent());
+
+		ExperimentSnapshot one = e.snapshot();
+		assertTrue(history.record(one));
+		assertFalse(history.canUndo());
+
+		// Nothing changed, so nothing to record
+		assertFalse(history.record(e.snapshot()));
+		assertEquals(1, history.size());
+
+		e.saveSlide(new Slide(), 1);
+		ExperimentSnapshot two = e.snapshot();
+		history.record(two);
+		e.saveSlide(new Slide(), 2);
+		ExperimentSnapshot three = e.snapshot();
+		history.record(three);
+
+		assertSame(two, history.undo());
+		assertSame(one, history.undo());
+		assertFalse(history.canUndo());
+		assertSame(two, history.redo());
+		assertTrue(history.canRedo());
+
+		// A new version after an undo throws the redo away
+		e.restore(two);
+		e.removeSlide(0);
+		ExperimentSnapshot other = e.snapshot();
+		assertTrue(history.record(other));
+		assertFalse(history.canRedo());
+		assertEquals(3, history.size());
+		assertSame(other, history.getCurrent());
+		assertSame(two, history.undo());
+
+		history.clear();
+		assertNull(history.getCurrent());
+		assertFalse(history.canUndo());
+		assertFalse(history.canRedo());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNothingToRedo() {
+		UndoHistory history = new UndoHistory();
+		history.record(new Experiment().snapshot());
+		history.redo();
+	}
+}
@@ -2,12 +2,17 @@ package edu.vanderbilt.psychology.player;
 
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
+import java.util.List;
 
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 
 import edu.vanderbilt.psychology.controller.toolbarActions.XMLFilter;
 import edu.vanderbilt.psychology.model.Experiment;
+import edu.vanderbilt.psychology.model.ExperimentValidator;
+import edu.vanderbilt.psychology.model.ExperimentValidator.Problem;
+import edu.vanderbilt.psychology.model.media.PixelCache;
 
 /**
  * The entry point for the experiment player
@@ -20,6 +25,9 @@ public class Player {
 
 	private static final boolean DEBUG = true;
 
+	/** How many problems are listed in the dialog before the experiment runs */
+	private static final int MAX_PROBLEMS_SHOWN = 20;
+
 	public static void main(String[] args) {
 		Experiment e = null;
 		JFileChooser open = new JFileChooser();
@@ -41,6 +49,9 @@ public class Player {
 	    } else 
 	    	System.exit(0);
 	    
+	    checkExperiment(e);
+	    preloadImages(e);
+
 	    final PlayerController pc = new PlayerController(e);
 
 		// Schedule a job for the event-dispatching thread:
@@ -71,4 +82,65 @@ public class Player {
 		});
 	}
 	}
+
+	/**
+	 * Decodes every image the {@link Experiment} shows into the
+	 * {@link PixelCache} ahead of time. On every run after the first this only
+	 * checks that the entries are still valid
+	 */
+	private static void preloadImages(Experiment e) {
+		long start = System.currentTimeMillis();
+		int count;
+		try {
+			count = PixelCache.getDefault().preload(e);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		System.out.println("Preloaded " + count + " images in "
+				+ (System.currentTimeMillis() - start) + "ms");
+	}
+
+	/**
+	 * Checks the {@link Experiment} for missing media, broken references and
+	 * the like (see {@link ExperimentValidator}), so that a problem is found
+	 * now rather than in the middle of a session. If there are any problems,
+	 * the experimenter is asked whether to continue anyways
+	 */
+	private static void checkExperiment(Experiment e) {
+		ExperimentValidator validator = new ExperimentValidator();
+		List<Problem> problems;
+		try {
+			problems = validator.validate(e);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		System.out.println("Checked " + e.getSize() + " slides in "
+				+ validator.getLastValidateTime() + "ms");
+
+		if (problems.isEmpty())
+			return;
+
+		StringBuilder message = new StringBuilder();
+		message.append(problems.size()).append(
+				" problem(s) were found in the experiment:\n\n");
+		for (int i = 0; i < problems.size(); i++) {
+			System.out.println(problems.get(i));
+			// Keep the dialog on the screen
+			if (i < MAX_PROBLEMS_SHOWN)
+				message.append(problems.get(i)).append('\n');
+		}
+		if (problems.size() > MAX_PROBLEMS_SHOWN)
+			message.append("...\n");
+		message.append("\nRun the experiment anyways?");
+
+		int choice = JOptionPane.showConfirmDialog(null, message.toString(),
+				"Problems Found", JOptionPane.YES_NO_OPTION,
+				JOptionPane.WARNING_MESSAGE);
+		if (choice != JOptionPane.YES_OPTION)
+			System.exit(1);
+	}
 }
@@ -8,12 +8,16 @@ import javax.swing.JLayeredPane;
 import com.sun.tools.javac.util.Pair;
 
 import edu.vanderbilt.psychology.model.Experiment;
-import edu.vanderbilt.psychology.model.ListDatabase;
+import edu.vanderbilt.psychology.model.Loop;
 import edu.vanderbilt.psychology.model.Slide;
 import edu.vanderbilt.psychology.model.properties.Appearance;
+import edu.vanderbilt.psychology.model.properties.Property;
 import edu.vanderbilt.psychology.model.reactor.Action;
 import edu.vanderbilt.psychology.model.reactor.ActionListener;
 import edu.vanderbilt.psychology.model.reactor.ActionType;
+import edu.vanderbilt.psychology.model.reactor.Condition;
+import edu.vanderbilt.psychology.model.reactor.ConditionContext;
+import edu.vanderbilt.psychology.model.reactor.Reactor;
 import edu.vanderbilt.psychology.model.reactor.Sleeper;
 
 /**
@@ -31,16 +35,35 @@ public class PlayerController extends JLayeredPane implements ActionListener {
 	private Experiment mExperiment;
 	private int mCurrentSlide = 0;
 
+	/**
+	 * The passes left of the current {@link Slide}'s {@link Loop}, or null if
+	 * it is only shown once
+	 */
+	private Loop.Run mRun = null;
+
 	public PlayerController(Experiment e) {
 		// We are interested in slide events
 		EventManager.getInstance().registerEventObserver(
 				ActionType.TYPE_SLIDE_EVENTS, this);
 		EventManager.getInstance().registerEventObserver(
-				ActionType.TYPE_APPEARANCE_EVENTS, new Appearance());
+				ActionType.TYPE_APPEARANCE_EVENTS, Property
+						.getDefault(Appearance.class));
 		EventManager.getInstance().registerEventObserver(
 				ActionType.TYPE_SLEEP_EVENTS, new Sleeper());
+		// The lists loaded with the experiment, which are the ones its slides
+		// and loops refer to
+		EventManager.getInstance().registerEventObserver(
+				ActionType.TYPE_LIST_EVENTS, e.getListDatabase());
+
+		// Counters and responses, for the reactors' conditions. Nothing is
+		// kept from an experiment played before
+		ConditionContext conditions = ConditionContext.getInstance();
+		conditions.reset();
+		conditions.setLists(e.getListDatabase());
+		EventManager.getInstance().registerEventObserver(
+				ActionType.TYPE_COUNTER_EVENTS, conditions);
 		EventManager.getInstance().registerEventObserver(
-				ActionType.TYPE_LIST_EVENTS, ListDatabase.getInstance());
+				ActionType.TYPE_RESPONSE_EVENTS, conditions);
 
 		mExperiment = e;
 
@@ -48,8 +71,38 @@ public class PlayerController extends JLayeredPane implements ActionListener {
 			throw new IllegalArgumentException(
 					"The loaded experiment has no slides!");
 
-		loadSlide(e.getSlide(mCurrentSlide));
+		compileConditions();
+
+		startSlide(mCurrentSlide);
+
+	}
+
+	/**
+	 * @return the position of the {@link Slide} being shown
+	 */
+	public int getCurrentSlidePosition() {
+		return mCurrentSlide;
+	}
 
+	/**
+	 * Compiles the {@link Condition} of every {@link Reactor} now, so that a
+	 * mistake in one is found before the experiment starts, and none are
+	 * parsed while it runs. The copies shown for each pass of a {@link Loop}
+	 * share their template's {@link Condition}s, so are compiled too
+	 *
+	 * @throws IllegalArgumentException
+	 *             if any {@link Condition} is not valid
+	 */
+	private void compileConditions() {
+		for (int i = 0; i < mExperiment.getSize(); i++)
+			for (Reactor r : mExperiment.getSlide(i).getEventReactors())
+				if (r.getCondition() != null)
+					try {
+						r.getCondition().compile();
+					} catch (IllegalArgumentException ex) {
+						throw new IllegalArgumentException("Slide " + (i + 1)
+								+ ": " + ex.getMessage());
+					}
 	}
 
 	/**
@@ -73,16 +126,54 @@ public class PlayerController extends JLayeredPane implements ActionListener {
 
 		validate();
 		repaint();
+
+		ConditionContext.getInstance().slideShown(
+				mRun == null ? 1 : mRun.getPass());
+	}
+
+	/**
+	 * Shows the {@link Slide} at a position, starting its {@link Loop} if it
+	 * has one. A {@link Slide} whose {@link Loop} makes no passes at all (such
+	 * as one bound to an empty list) is skipped
+	 */
+	private void startSlide(int position) {
+		mRun = null;
+		while (mExperiment.getSlideExistsAtPosition(position)) {
+			Slide s = mExperiment.getSlide(position);
+			if (s.getLoop() == null) {
+				mCurrentSlide = position;
+				// Shown from a fresh copy, like each pass of a loop. The
+				// elements of a slide cache their component, and each time a
+				// slide is shown its reactors add another listener to it, so
+				// slides sharing their elements (see Slide#copy(int)) would
+				// otherwise fire their actions once per copy shown so far
+				loadSlide(s.copy(1).get(0));
+				return;
+			}
+
+			Loop.Run run = s.getLoop().start();
+			if (run.hasNext()) {
+				mCurrentSlide = position;
+				mRun = run;
+				loadSlide(run.next(s));
+				return;
+			}
+			position++;
+		}
+
+		loadSlide(null);
 	}
 
 	@Override
 	public void receiveAction(Action e) {
 		if (e.getType().equals(ActionType.TYPE_SLIDE_EVENTS)) {
-			mCurrentSlide++;
-			if (mExperiment.getSlideExistsAtPosition(mCurrentSlide))
-				loadSlide(mExperiment.getSlide(mCurrentSlide));
-			else
-				loadSlide(null);
+			// The next pass re-uses the template, rather than moving on
+			if (mRun != null && mRun.hasNext()) {
+				loadSlide(mRun.next(mExperiment.getSlide(mCurrentSlide)));
+				return;
+			}
+
+			startSlide(mCurrentSlide + 1);
 		}
 
 	}